@@ -1,25 +1,54 @@
 package wumpus;
 
-import java.util.Comparator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import wumpus.engine.entity.ArchetypeEntityStore;
+import wumpus.engine.entity.ChangeFeed;
 import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.LogEntityStore;
 import wumpus.engine.entity.MemoryEntityStore;
-import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.Snapshot;
+import wumpus.engine.metrics.MetricsRegistry;
+import wumpus.engine.metrics.ReplicaMetrics;
+import wumpus.engine.metrics.SnapshotMetrics;
+import wumpus.engine.service.CommandService;
 import wumpus.engine.service.CooldownService;
 import wumpus.engine.service.ExaminingService;
-import wumpus.engine.service.HazardService;
+import wumpus.engine.service.FeedService;
 import wumpus.engine.service.LairService;
 import wumpus.engine.service.PlayerService;
+import wumpus.engine.service.PortalService;
+import wumpus.engine.service.ReplayJournal;
 import wumpus.engine.service.Service;
-import wumpus.engine.service.TransitService;
+import wumpus.engine.service.SnapshotService;
+import wumpus.engine.service.SyncService;
+import wumpus.engine.service.TickScheduler;
 import wumpus.engine.service.WorldService;
+import wumpus.engine.service.ZoneShardService;
+import wumpus.io.GatewayProtocol;
+import wumpus.io.GatewayServer;
+import wumpus.io.NetworkServer;
+import wumpus.io.PeerLink;
+import wumpus.io.ReplicaLink;
+import wumpus.io.ReplicationServer;
 import wumpus.io.SessionManager;
 
 /**
@@ -40,16 +69,601 @@ public class App implements Runnable {
     /**
      * Duration of a tick in milliseconds.
      */
-    private static final int TICK_IN_MILLIS = 10;
+    static final int TICK_IN_MILLIS = 10;
 
     /**
-     * Runs a new wumpus App instance using standard output.
+     * System property giving the port to serve network players on. When set,
+     * the game serves network players instead of standard IO.
+     */
+    private static final String PORT_PROPERTY = "wumpus.port";
+
+    /**
+     * System property choosing how sessions are hosted: {@code virtual} or
+     * {@code platform} for a thread per session, or unset for a single
+     * dispatcher.
+     */
+    private static final String THREADS_PROPERTY = "wumpus.threads";
+
+    /**
+     * System property giving the directory to keep the world in. When set,
+     * the world is restored from the directory on startup and every change to
+     * it is logged there; otherwise the world lives only in memory.
+     */
+    private static final String DATA_PROPERTY = "wumpus.data";
+
+    /**
+     * System property choosing how a world kept only in memory is stored:
+     * {@value #ARCHETYPE_STORE} to group entities by their component types
+     * in columns, or unset for the store indexing entities by component.
+     */
+    private static final String STORE_PROPERTY = "wumpus.store";
+
+    /**
+     * Value of the {@value #STORE_PROPERTY} system property choosing the
+     * {@link ArchetypeEntityStore}.
+     */
+    private static final String ARCHETYPE_STORE = "archetype";
+
+    /**
+     * System property giving the directory to write world snapshots to. When
+     * set, a snapshot of the world is written there every
+     * {@value #INTERVAL_PROPERTY} ticks.
+     */
+    private static final String SNAPSHOTS_PROPERTY = "wumpus.snapshots";
+
+    /**
+     * System property giving the number of ticks between world snapshots.
+     */
+    private static final String INTERVAL_PROPERTY = "wumpus.snapshot.ticks";
+
+    /**
+     * Default number of ticks between world snapshots, a minute's worth.
+     */
+    private static final int DEFAULT_INTERVAL = 6000;
+
+    /**
+     * Number of world snapshots kept.
+     */
+    private static final int RETAINED_SNAPSHOTS = 3;
+
+    /**
+     * System property giving the seed of the game's random choices. When
+     * unset, the current time is used.
+     */
+    static final String SEED_PROPERTY = "wumpus.seed";
+
+    /**
+     * System property giving the number of shards of the world, each with a
+     * worker thread running the transit and hazards of its zones. When unset,
+     * there is one for each processor.
+     */
+    private static final String SHARDS_PROPERTY = "wumpus.shards";
+
+    /**
+     * System property giving the file to journal the game to for replay by
+     * {@link Replay}. A journal can only be kept of a world which starts
+     * empty and lives in memory.
+     */
+    private static final String JOURNAL_PROPERTY = "wumpus.journal";
+
+    /**
+     * System property giving the addresses of the processes hosting lairs,
+     * as a comma separated list of {@code host:port}. When set, the overworld
+     * leads to a portal to each instead of to a lair of its own.
+     */
+    private static final String LAIRS_PROPERTY = "wumpus.lairs";
+
+    /**
+     * System property giving the address to serve {@link Gateway} processes
+     * on, as {@code host:port} or {@code unix:path}. When set, the game
+     * serves the players of gateways instead of standard IO or its own
+     * network players.
+     */
+    private static final String GATEWAY_PROPERTY = "wumpus.gateway";
+
+    /**
+     * System property giving the directory to keep a feed of every change to
+     * the world in, for consumers to tail.
+     */
+    private static final String FEED_PROPERTY = "wumpus.feed";
+
+    /**
+     * System property giving the address to serve replicas on, as
+     * {@code host:port} or {@code unix:path}. Replicas follow the feed given
+     * by the {@value #FEED_PROPERTY} system property, which must be set.
+     */
+    private static final String REPLICATION_PROPERTY = "wumpus.replication";
+
+    /**
+     * System property giving the address of the primary to replicate, as
+     * served on its {@value #REPLICATION_PROPERTY} address. When set, the
+     * game keeps a copy of the primary's world and only starts once the
+     * primary goes away, taking over from it.
+     */
+    private static final String REPLICA_PROPERTY = "wumpus.replica";
+
+    /**
+     * Command line option restoring the world from a snapshot.
+     */
+    private static final String RESTORE_OPTION = "--restore";
+
+    /**
+     * Snapshot to restore the world from on startup, or null.
+     */
+    private final Path restore;
+
+    /**
+     * Create an application instance starting from an empty world, or the
+     * world kept in the {@value #DATA_PROPERTY} directory.
+     */
+    public App() {
+        this(null);
+    }
+
+    /**
+     * Create an application instance restoring its world from a snapshot.
+     *
+     * @param r
+     *              the snapshot to restore, or null for none
+     */
+    public App(final Path r) {
+        restore = r;
+    }
+
+    /**
+     * Runs a new wumpus App instance using standard output, serving network
+     * players if the {@value #PORT_PROPERTY} system property is set, or
+     * serving the players of gateways if the {@value #GATEWAY_PROPERTY}
+     * system property is set.
+     * Sessions are hosted as chosen by the {@value #THREADS_PROPERTY} system
+     * property, the world is kept in the directory given by the
+     * {@value #DATA_PROPERTY} system property, if any, and snapshots of it
+     * are written to the directory given by the {@value #SNAPSHOTS_PROPERTY}
+     * system property, if any. Its changes are published to the feed in the
+     * directory given by the {@value #FEED_PROPERTY} system property, if
+     * any, and streamed to replicas on the address given by the
+     * {@value #REPLICATION_PROPERTY} system property, if any. Given the
+     * {@value #REPLICA_PROPERTY} system property, the game starts as a
+     * replica of that primary, and takes over once it goes away. The world
+     * is split into the number of shards given by the
+     * {@value #SHARDS_PROPERTY} system property, and its lairs are hosted by
+     * the {@link LairHost} processes given by the {@value #LAIRS_PROPERTY}
+     * system property, if any.
      *
      * @param args
-     *                 Command line arguments. None specified at this time.
+     *                 Command line arguments: optionally
+     *                 {@value #RESTORE_OPTION} and the snapshot to restore
+     *                 the world from.
+     * @throws IllegalArgumentException
+     *                                      if the arguments are not understood
      */
     public static void main(final String... args) {
-        new App().run();
+        if (args.length == 0) {
+            new App().run();
+        } else if (args.length == 2 && RESTORE_OPTION.equals(args[0])) {
+            new App(Paths.get(args[1])).run();
+        } else {
+            throw new IllegalArgumentException(
+                    "Usage: wumpus.App [" + RESTORE_OPTION + " <snapshot>]");
+        }
+    }
+
+    /**
+     * Give a service its view of the store, metered on its behalf when
+     * metrics are enabled.
+     *
+     * @param store
+     *                    the shared store
+     * @param metrics
+     *                    the metrics registry, or null if metrics are disabled
+     * @param service
+     *                    the class of the service
+     * @return the store the service should use
+     */
+    static EntityStore storeFor(final EntityStore store,
+            final MetricsRegistry metrics,
+            final Class<? extends Service> service) {
+        if (metrics == null) {
+            return store;
+        } else {
+            return metrics.service(service.getSimpleName()).meter(store);
+        }
+    }
+
+    /**
+     * Create the game services other than those keeping the world on disk.
+     * The random choices of the services all follow from one seed.
+     *
+     * @param store
+     *                     the shared store
+     * @param commands
+     *                     the command service
+     * @param seed
+     *                     the seed of the services
+     * @param shards
+     *                     the number of shards of the world
+     * @param metrics
+     *                     the metrics registry, or null if metrics are disabled
+     * @return the services
+     */
+    static Set<Service> services(final EntityStore store,
+            final CommandService commands, final long seed, final int shards,
+            final MetricsRegistry metrics) {
+        final Random seeds = new Random(seed);
+        final Set<Service> services = new HashSet<>();
+        services.add(commands);
+        services.add(new CooldownService(
+                storeFor(store, metrics, CooldownService.class)));
+        services.add(new PlayerService(
+                storeFor(store, metrics, PlayerService.class)));
+        services.add(new WorldService(
+                storeFor(store, metrics, WorldService.class)));
+        services.add(new LairService(
+                storeFor(store, metrics, LairService.class), DEFAULT_SIZE,
+                seeds.nextLong()));
+        services.add(new ExaminingService(
+                storeFor(store, metrics, ExaminingService.class)));
+        final ZoneShardService zones = new ZoneShardService(
+                storeFor(store, metrics, ZoneShardService.class), shards,
+                seeds.nextLong());
+        services.add(zones);
+        services.add(zones.hazards());
+        return services;
+    }
+
+    /**
+     * Link to processes hosting lairs, with a service moving players to each.
+     *
+     * @param store
+     *                    the shared store
+     * @param metrics
+     *                    the metrics registry, or null if metrics are disabled
+     * @param lairs
+     *                    the addresses of the processes, as a comma separated
+     *                    list of {@code host:port}
+     * @return the services
+     * @throws UncheckedIOException
+     *                                      if a process cannot be reached
+     * @throws IllegalArgumentException
+     *                                      if an address is not understood
+     */
+    static Set<Service> portals(final EntityStore store,
+            final MetricsRegistry metrics, final String lairs) {
+        final Set<Service> portals = new HashSet<>();
+        for (final String a : lairs.split(",")) {
+            final int colon = a.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException(
+                        "A lair host is given as host:port, not " + a + ".");
+            }
+            try {
+                final PeerLink link = PeerLink.connect(new InetSocketAddress(
+                        a.substring(0, colon).trim(),
+                        Integer.parseInt(a.substring(colon + 1).trim())));
+                final PortalService p = new PortalService(
+                        storeFor(store, metrics, PortalService.class), link);
+                link.start(p);
+                portals.add(p);
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "Could not link to the lair host " + a + ".", e);
+            }
+            if (LOG.isLoggable(Level.INFO)) {
+                LOG.info("Linked to the lair host " + a + ".");
+            }
+        }
+        return portals;
+    }
+
+    /**
+     * The number of shards of the world chosen by the
+     * {@value #SHARDS_PROPERTY} system property.
+     *
+     * @return the number of shards
+     */
+    static int shards() {
+        return Integer.getInteger(SHARDS_PROPERTY,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Close those services which hold threads or files, once they have
+     * stopped ticking.
+     *
+     * @param services
+     *                     the services
+     */
+    static void close(final Collection<Service> services) {
+        services.stream().filter(Closeable.class::isInstance)
+                .map(Closeable.class::cast).forEach(c -> {
+                    try {
+                        c.close();
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "Could not close a service.",
+                                e);
+                    }
+                });
+    }
+
+    /**
+     * Start the replay journal chosen by the {@value #JOURNAL_PROPERTY}
+     * system property.
+     *
+     * @param memory
+     *                   the store journaled, or null if the world is not in a
+     *                   memory store
+     * @param seed
+     *                   the seed of the services
+     * @param shards
+     *                   the number of shards of the world
+     * @return the journal, or null to keep none
+     * @throws IllegalStateException
+     *                                   if the world does not start empty
+     * @throws UncheckedIOException
+     *                                   if the journal cannot be written
+     */
+    private ReplayJournal journal(final MemoryEntityStore memory,
+            final long seed, final int shards) {
+        final String file = System.getProperty(JOURNAL_PROPERTY);
+        if (file == null) {
+            return null;
+        } else if (memory == null || restore != null
+                || System.getProperty(REPLICA_PROPERTY) != null) {
+            throw new IllegalStateException("A journal replays from an empty"
+                    + " world, so cannot be kept of a durable, archetype,"
+                    + " restored or replicated world.");
+        } else {
+            try {
+                if (LOG.isLoggable(Level.INFO)) {
+                    LOG.info("Journaling the game to " + file
+                            + " from seed " + seed + ".");
+                }
+                return new ReplayJournal(
+                        Files.newBufferedWriter(Paths.get(file)),
+                        memory.origin(), seed, shards);
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "Could not write the journal " + file + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Open the durable store in the directory chosen by the
+     * {@value #DATA_PROPERTY} system property.
+     *
+     * @param feed
+     *                 the feed to publish changes to, or null for none
+     * @return the store, or null to keep the world only in memory
+     * @throws UncheckedIOException
+     *                                  if the store cannot be opened
+     */
+    private static LogEntityStore durableStore(final ChangeFeed feed) {
+        final String data = System.getProperty(DATA_PROPERTY);
+        if (data == null) {
+            return null;
+        } else {
+            try {
+                if (feed == null) {
+                    return new LogEntityStore(Paths.get(data));
+                } else {
+                    return new LogEntityStore(Paths.get(data), feed);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "Could not open the world kept in " + data + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Open the feed of changes to the world in the directory given by the
+     * {@value #FEED_PROPERTY} system property.
+     *
+     * @return the feed, or null to keep none
+     * @throws UncheckedIOException
+     *                                  if the feed cannot be opened
+     */
+    private static ChangeFeed feed() {
+        final String dir = System.getProperty(FEED_PROPERTY);
+        if (dir == null) {
+            return null;
+        } else {
+            try {
+                return new ChangeFeed(Paths.get(dir));
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "Could not open the change feed in " + dir + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Listen for replicas on the address given by the
+     * {@value #REPLICATION_PROPERTY} system property.
+     *
+     * @param store
+     *                  the world to replicate
+     * @param feed
+     *                  the feed of changes to the world, or null for none
+     * @return the server, or null to serve no replicas
+     * @throws IllegalStateException
+     *                                   if there is no feed to replicate
+     * @throws UncheckedIOException
+     *                                   if the address cannot be bound
+     */
+    private static ReplicationServer replication(final EntityStore store,
+            final ChangeFeed feed) {
+        final String address = System.getProperty(REPLICATION_PROPERTY);
+        if (address == null) {
+            return null;
+        } else if (feed == null) {
+            throw new IllegalStateException("Replicas follow the change feed,"
+                    + " so " + REPLICATION_PROPERTY + " needs "
+                    + FEED_PROPERTY + ".");
+        } else {
+            try {
+                return new ReplicationServer(
+                        GatewayProtocol.address(address), store, feed);
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "Could not serve replicas on " + address + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Keep a store a copy of the world of the primary given by the
+     * {@value #REPLICA_PROPERTY} system property, if any, until the primary
+     * goes away with its world copied.
+     *
+     * @param store
+     *                    the store, changed by nothing else meanwhile
+     * @param metrics
+     *                    the metrics registry, or null if metrics are disabled
+     * @return true if the store was replicated
+     * @throws IllegalStateException
+     *                                   if the store already holds entities,
+     *                                   or the replica stopped before the
+     *                                   primary's world was copied
+     */
+    private static boolean replicate(final EntityStore store,
+            final MetricsRegistry metrics) {
+        final String primary = System.getProperty(REPLICA_PROPERTY);
+        if (primary == null) {
+            return false;
+        }
+        ReplicaMetrics m = new ReplicaMetrics();
+        if (metrics != null) {
+            m = metrics.replica();
+        }
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Replicating the primary at " + primary + ".");
+        }
+        final ReplicaLink link = new ReplicaLink(
+                GatewayProtocol.address(primary), store, m);
+        link.run();
+        if (!link.copied()) {
+            throw new IllegalStateException("The replica stopped before the"
+                    + " primary's world was copied.");
+        }
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Taking over from the primary, " + m.getLagTicks()
+                    + " ticks behind it.");
+        }
+        return true;
+    }
+
+    /**
+     * Restore the world from a snapshot into a store.
+     *
+     * @param store
+     *                  the store, which must hold no entities
+     * @param file
+     *                  the snapshot
+     * @throws UncheckedIOException
+     *                                  if the snapshot cannot be read
+     */
+    private static void restore(final EntityStore store, final Path file) {
+        try {
+            Snapshot.restore(file, store);
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Could not restore the snapshot " + file + ".", e);
+        }
+    }
+
+    /**
+     * Create the service writing world snapshots to the directory chosen by
+     * the {@value #SNAPSHOTS_PROPERTY} system property.
+     *
+     * @param store
+     *                    the store to snapshot
+     * @param metrics
+     *                    the metrics registry, or null if metrics are disabled
+     * @return the service, or null to take no snapshots
+     * @throws UncheckedIOException
+     *                                  if the directory cannot be created
+     */
+    private static SnapshotService snapshots(final EntityStore store,
+            final MetricsRegistry metrics) {
+        final String dir = System.getProperty(SNAPSHOTS_PROPERTY);
+        if (dir == null) {
+            return null;
+        } else {
+            try {
+                SnapshotMetrics m = null;
+                if (metrics != null) {
+                    m = metrics.snapshots();
+                }
+                return new SnapshotService(store, Paths.get(dir),
+                        Integer.getInteger(INTERVAL_PROPERTY,
+                                DEFAULT_INTERVAL),
+                        RETAINED_SNAPSHOTS, m);
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        "Could not write snapshots to " + dir + ".", e);
+            }
+        }
+    }
+
+    /**
+     * The factory of session threads chosen by the {@value #THREADS_PROPERTY}
+     * system property.
+     *
+     * @return the factory, or null to serve every session from one
+     *         dispatcher
+     */
+    static ThreadFactory sessionThreads() {
+        final String threads = System.getProperty(THREADS_PROPERTY, "");
+        if ("virtual".equals(threads)) {
+            return Thread.ofVirtual().name("session-", 0).factory();
+        } else if ("platform".equals(threads)) {
+            return Thread.ofPlatform().name("session-", 0).factory();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Serve network players until the server stops.
+     *
+     * @param sessions
+     *                     the session manager to hand connections to
+     * @param port
+     *                     the port to listen on
+     */
+    private static void serve(final SessionManager sessions, final int port) {
+        try (NetworkServer server = new NetworkServer(
+                new InetSocketAddress(port), sessions::create)) {
+            if (LOG.isLoggable(Level.INFO)) {
+                LOG.info("Serving players on port " + server.port() + ".");
+            }
+            server.run();
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Could not serve network players.", e);
+        }
+    }
+
+    /**
+     * Serve the players of gateways until the server stops.
+     *
+     * @param sessions
+     *                     the session manager to hand sessions to
+     * @param address
+     *                     the address to listen on
+     */
+    private static void serveGateways(final SessionManager sessions,
+            final String address) {
+        try (GatewayServer server = new GatewayServer(
+                GatewayProtocol.address(address), sessions)) {
+            if (LOG.isLoggable(Level.INFO)) {
+                LOG.info("Serving gateways on " + server.address() + ".");
+            }
+            server.run();
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Could not serve gateways.", e);
+        }
     }
 
     @Override
@@ -58,37 +672,110 @@ public class App implements Runnable {
         LOG.info("The game engine is starting...");
         LOG.fine("Fine logging is enabled.");
 
-        final EntityStore store = new MemoryEntityStore();
+        final ChangeFeed feed = feed();
+        final LogEntityStore durable = durableStore(feed);
+        EntityStore store = durable;
+        MemoryEntityStore memory = null;
+        if (ARCHETYPE_STORE.equals(System.getProperty(STORE_PROPERTY))) {
+            if (durable != null || feed != null) {
+                throw new IllegalStateException("The archetype store keeps"
+                        + " the world only in memory and publishes no"
+                        + " change feed.");
+            }
+            store = new ArchetypeEntityStore();
+        } else if (durable == null) {
+            if (feed == null) {
+                memory = new MemoryEntityStore();
+            } else {
+                memory = new MemoryEntityStore(feed);
+            }
+            store = memory;
+        }
+        if (restore != null) {
+            restore(store, restore);
+        }
 
-        final Set<Service> services = new HashSet<>();
-        services.add(new CooldownService(store));
-        services.add(new PlayerService(store));
-        services.add(new WorldService(store));
-        services.add(new LairService(store, DEFAULT_SIZE));
-        services.add(new TransitService(store));
-        services.add(new ExaminingService(store));
-        services.add(new HazardService(store));
+        MetricsRegistry metrics = null;
+        if (MetricsRegistry.enabled()) {
+            metrics = new MetricsRegistry(
+                    ManagementFactory.getPlatformMBeanServer(), TICK_IN_MILLIS);
+            LOG.info("Service metrics are enabled.");
+        }
+        final ReplicationServer replicas = replication(store, feed);
+        final boolean replicated = replicate(store, metrics);
+        final long promoted = System.nanoTime();
+
+        final long seed = Long.getLong(SEED_PROPERTY,
+                System.currentTimeMillis());
+        final int shards = shards();
+        final ReplayJournal journal = journal(memory, seed, shards);
+        final CommandService commands = new CommandService(
+                storeFor(store, metrics, CommandService.class), journal);
+        final Set<Service> services = services(store, commands, seed,
+                shards, metrics);
+        final String lairs = System.getProperty(LAIRS_PROPERTY);
+        if (lairs != null) {
+            services.removeIf(LairService.class::isInstance);
+            services.addAll(portals(store, metrics, lairs));
+        }
+        if (durable != null) {
+            services.add(new SyncService(durable));
+        }
+        if (feed != null) {
+            services.add(new FeedService(feed));
+        }
+        final SnapshotService snapshots = snapshots(store, metrics);
+        if (snapshots != null) {
+            services.add(snapshots);
+        }
 
         final ScheduledExecutorService tickService = Executors
                 .newScheduledThreadPool(1);
         tickService.scheduleAtFixedRate(
-                () -> services.stream()
-                        .sorted(Comparator.comparing(Service::priority))
-                        .forEach(Service::tick),
+                new TickScheduler(services, TICK_IN_MILLIS,
+                        ForkJoinPool.commonPool(), metrics),
                 0, TICK_IN_MILLIS, TimeUnit.MILLISECONDS);
 
-        final SessionManager sessions = new SessionManager(store);
+        final SessionManager sessions = new SessionManager(store,
+                commands, sessionThreads());
         sessions.start();
         LOG.info("The game engine has started.");
+        if (replicated && LOG.isLoggable(Level.INFO)) {
+            LOG.info("Took over from the primary in "
+                    + TimeUnit.NANOSECONDS.toMillis(
+                            System.nanoTime() - promoted)
+                    + " ms.");
+        }
+        if (replicas != null) {
+            Thread.ofPlatform().name("replication").daemon()
+                    .start(replicas);
+        }
 
-        sessions.create();
-
-        long count = store.stream().component(Listener.class).count();
-        while (count > 0) {
-            count = store.stream().component(Listener.class).count();
+        final Integer port = Integer.getInteger(PORT_PROPERTY);
+        final String gateway = System.getProperty(GATEWAY_PROPERTY);
+        if (gateway != null) {
+            serveGateways(sessions, gateway);
+        } else if (port == null) {
+            sessions.create();
+            try {
+                sessions.awaitFinished();
+            } catch (InterruptedException e) {
+                LOG.log(Level.WARNING,
+                        "Interrupted while waiting for players.", e);
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            serve(sessions, port);
         }
 
         LOG.info("Shutting down game services.");
+        if (replicas != null) {
+            try {
+                replicas.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not stop serving replicas.", e);
+            }
+        }
         sessions.stop();
         tickService.shutdown();
         try {
@@ -97,6 +784,20 @@ public class App implements Runnable {
             LOG.log(Level.WARNING,
                     "Interrupted while shutting down game services.", e);
         }
+        close(services);
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not close the journal.", e);
+            }
+        }
+        if (durable != null) {
+            durable.close();
+        }
+        if (feed != null) {
+            feed.close();
+        }
 
         LOG.info("The game is now shut down.");
     }
@@ -0,0 +1,123 @@
+package wumpus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.io.EngineLink;
+import wumpus.io.GatewayProtocol;
+import wumpus.io.NetworkServer;
+
+/**
+ * Process holding the connections of network players apart from the game
+ * engine, which serves gateways when given an address in the
+ * {@code wumpus.gateway} system property.
+ *
+ * The gateway accepts players, frames their lines and buffers their output,
+ * and relays their sessions to the engine over a loopback or Unix-domain
+ * socket. Connection storms and slow clients cost the engine nothing but
+ * frames, and the engine may restart without dropping a player: the gateway
+ * holds the connections until the engine is back, and resumes each player
+ * where the engine kept it.
+ */
+public final class Gateway implements Runnable, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(Gateway.class.getName());
+
+    /**
+     * Server accepting players.
+     */
+    private final NetworkServer server;
+
+    /**
+     * Link relaying the sessions of players to the engine.
+     */
+    private final EngineLink link;
+
+    /**
+     * Open a gateway listening for players on an address. Players are not
+     * accepted and the engine is not reached until the gateway is run.
+     *
+     * @param players
+     *                    the address to listen for players on; port 0 picks
+     *                    any free port
+     * @param engine
+     *                    the address of the engine
+     * @throws IOException
+     *                         if the address cannot be bound
+     */
+    public Gateway(final InetSocketAddress players,
+            final SocketAddress engine) throws IOException {
+        link = new EngineLink(engine);
+        server = new NetworkServer(players, link::accept);
+    }
+
+    /**
+     * Relay players on the port given on the command line to the engine at
+     * the address given after it, until killed.
+     *
+     * @param args
+     *                 the port to listen for players on, and the address of
+     *                 the engine as {@code host:port} or {@code unix:path}
+     * @throws IOException
+     *                         if the port cannot be bound
+     * @throws IllegalArgumentException
+     *                                      if an argument is missing or
+     *                                      malformed
+     */
+    public static void main(final String... args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException(
+                    "Usage: wumpus.Gateway <port> <engine address>");
+        }
+        try (Gateway g = new Gateway(
+                new InetSocketAddress(Integer.parseInt(args[0])),
+                GatewayProtocol.address(args[1]))) {
+            g.run();
+        }
+    }
+
+    /**
+     * The port the gateway is listening for players on.
+     *
+     * @return the local port
+     * @throws IOException
+     *                         if the gateway is closed
+     */
+    public int port() throws IOException {
+        return server.port();
+    }
+
+    @Override
+    public void run() {
+        final Thread linking = Thread.ofPlatform().name("engine-link")
+                .daemon().start(link);
+        try {
+            if (LOG.isLoggable(Level.INFO)) {
+                LOG.info("Relaying players on port " + port() + ".");
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "The gateway closed while starting.", e);
+        }
+        server.run();
+        link.close();
+        linking.interrupt();
+        LOG.info("The gateway is now shut down.");
+    }
+
+    /**
+     * Stop accepting players. The running gateway then closes their
+     * connections and its link to the engine.
+     */
+    @Override
+    public void close() {
+        server.close();
+    }
+}
@@ -0,0 +1,212 @@
+package wumpus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.service.CommandService;
+import wumpus.engine.service.CooldownService;
+import wumpus.engine.service.ExaminingService;
+import wumpus.engine.service.LairHostService;
+import wumpus.engine.service.LairService;
+import wumpus.engine.service.Service;
+import wumpus.engine.service.TickScheduler;
+import wumpus.engine.service.ZoneShardService;
+import wumpus.io.PeerLink;
+
+/**
+ * Process hosting lairs for the overworld of an {@link App}, which links to
+ * it when given its address in the {@code wumpus.lairs} system property.
+ *
+ * The host runs a world of lairs alone, with no tavern or wilderness, in
+ * memory. Players descending to it from the overworld arrive over the link
+ * with what they carry, play out their hunt here, and are sent back when
+ * they climb out, die or quit. Its random choices follow from the
+ * {@code wumpus.seed} system property, and it is split into the number of
+ * shards given by the {@code wumpus.shards} system property, as for
+ * {@link App}.
+ */
+public final class LairHost implements Runnable, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(LairHost.class.getName());
+
+    /**
+     * Default size of a lair.
+     */
+    private static final int DEFAULT_SIZE = 20;
+
+    /**
+     * Bit set in the IDs of the entities a host creates. The IDs of the
+     * overworld are the time it started shifted clear of a sequence, which
+     * leaves this bit clear, so players carrying anything made here never
+     * clash with the entities of the overworld.
+     */
+    private static final long HOST_IDS = 0x4000_0000_0000_0000L;
+
+    /**
+     * Socket accepting links from the overworld.
+     */
+    private final ServerSocket server;
+
+    /**
+     * The store of the lairs.
+     */
+    private final MemoryEntityStore store;
+
+    /**
+     * Links accepted.
+     */
+    private final List<PeerLink> links;
+
+    /**
+     * Open a host listening for links on an address. The host does not
+     * accept links until run.
+     *
+     * @param address
+     *                    the address to listen on; port 0 picks any free port
+     * @throws IOException
+     *                         if the address cannot be bound
+     */
+    public LairHost(final InetSocketAddress address) throws IOException {
+        server = new ServerSocket();
+        server.bind(address);
+        store = new MemoryEntityStore(
+                MemoryEntityStore.newOrigin() | HOST_IDS, id -> false);
+        links = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Host lairs on the port given on the command line until killed.
+     *
+     * @param args
+     *                 the port to listen for links on
+     * @throws IOException
+     *                         if the port cannot be bound
+     * @throws IllegalArgumentException
+     *                                      if the port is missing or not a
+     *                                      number
+     */
+    public static void main(final String... args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: wumpus.LairHost <port>");
+        }
+        try (LairHost h = new LairHost(
+                new InetSocketAddress(Integer.parseInt(args[0])))) {
+            h.run();
+        }
+    }
+
+    /**
+     * The port the host is listening on.
+     *
+     * @return the local port
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * The store of the lairs.
+     *
+     * @return the store
+     */
+    MemoryEntityStore store() {
+        return store;
+    }
+
+    /**
+     * Accept links until the host is closed.
+     *
+     * @param host
+     *                 the service hosting the players arriving over them
+     */
+    private void accept(final LairHostService host) {
+        try {
+            while (!server.isClosed()) {
+                final Socket s = server.accept();
+                final PeerLink l = new PeerLink(s);
+                links.add(l);
+                l.start(host.connect(l));
+                if (LOG.isLoggable(Level.INFO)) {
+                    LOG.info("Linked to the overworld at "
+                            + s.getRemoteSocketAddress() + ".");
+                }
+            }
+        } catch (IOException e) {
+            if (!server.isClosed()) {
+                LOG.log(Level.SEVERE, "Could not accept links.", e);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        final Random seeds = new Random(Long.getLong(App.SEED_PROPERTY,
+                System.currentTimeMillis()));
+        final CommandService commands = new CommandService(store);
+        final LairHostService host = new LairHostService(store, commands);
+        final Set<Service> services = new HashSet<>();
+        services.add(commands);
+        services.add(new CooldownService(store));
+        services.add(new LairService(store, DEFAULT_SIZE, seeds.nextLong()));
+        services.add(new ExaminingService(store));
+        final ZoneShardService zones = new ZoneShardService(store,
+                App.shards(), seeds.nextLong());
+        services.add(zones);
+        services.add(zones.hazards());
+        services.add(host);
+        final ScheduledExecutorService tickService = Executors
+                .newScheduledThreadPool(1);
+        tickService.scheduleAtFixedRate(
+                new TickScheduler(services, App.TICK_IN_MILLIS,
+                        ForkJoinPool.commonPool()),
+                0, App.TICK_IN_MILLIS, TimeUnit.MILLISECONDS);
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Hosting lairs on port " + port() + ".");
+        }
+
+        accept(host);
+
+        links.forEach(PeerLink::close);
+        tickService.shutdown();
+        try {
+            tickService.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOG.log(Level.WARNING,
+                    "Interrupted while shutting down lair services.", e);
+            Thread.currentThread().interrupt();
+        }
+        App.close(services);
+        LOG.info("The lair host is now shut down.");
+    }
+
+    /**
+     * Stop accepting links. The running host then closes its links and stops
+     * its services.
+     *
+     * @throws IOException
+     *                         if the socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
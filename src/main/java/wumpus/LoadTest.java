@@ -0,0 +1,385 @@
+package wumpus;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.command.Stats;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.metrics.LatencyHistogram;
+import wumpus.engine.metrics.MetricsRegistry;
+import wumpus.engine.metrics.ServiceMetrics;
+import wumpus.engine.service.CommandService;
+import wumpus.engine.service.Service;
+import wumpus.engine.service.TickScheduler;
+import wumpus.io.IOAdapter;
+import wumpus.io.SessionManager;
+
+/**
+ * Headless load test of a game played by simulated hunters.
+ *
+ * A game is started as by {@link App}, with metrics enabled, and each hunter
+ * joins it through the session manager as an in-process {@link IOAdapter}.
+ * A hunter sends one command at a time, drawn from a mix of moves, looks,
+ * inventories and shots, waits for its response, then pauses for a random
+ * think time before the next. Sessions are hosted as chosen by the
+ * {@code wumpus.threads} system property, as for {@link App}.
+ *
+ * Once the test has run, it reports the commands completed per second, the
+ * percentiles of their response latency, from sending the command to
+ * receiving its response, and the rate of ticks overrunning their budget.
+ */
+public final class LoadTest implements Runnable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(LoadTest.class.getName());
+
+    /**
+     * System property giving the mean think time of a hunter between
+     * commands, in milliseconds.
+     */
+    private static final String THINK_PROPERTY = "wumpus.load.think";
+
+    /**
+     * Default mean think time in milliseconds.
+     */
+    private static final long DEFAULT_THINK = 1000;
+
+    /**
+     * Commands played, drawn uniformly: half moves, a quarter looks, then
+     * inventories and shots.
+     */
+    private static final List<String> MIX = List.of("north", "south",
+            "east", "west", "up", "down", "move north", "move south", "look",
+            "look", "look", "look", "inventory", "inventory", "shoot north",
+            "shoot east");
+
+    /**
+     * Median percentile.
+     */
+    private static final double P50 = 50.0;
+
+    /**
+     * 99th percentile.
+     */
+    private static final double P99 = 99.0;
+
+    /**
+     * 99.9th percentile.
+     */
+    private static final double P999 = 99.9;
+
+    /**
+     * Largest percentage.
+     */
+    private static final double ALL = 100.0;
+
+    /**
+     * A simulated hunter, sending its commands as input and taking output
+     * starting on a new line as messages, anything else as the response to
+     * its command.
+     */
+    private final class Hunter implements IOAdapter {
+
+        /**
+         * Input not yet taken.
+         */
+        private final Queue<String> input;
+
+        /**
+         * Called whenever input arrives or the hunter leaves.
+         */
+        private volatile Runnable activity;
+
+        /**
+         * Set once the hunter has left.
+         */
+        private volatile boolean closed;
+
+        /**
+         * When the outstanding command was sent, in nanoseconds.
+         */
+        private volatile long sent;
+
+        /**
+         * Create a hunter.
+         */
+        Hunter() {
+            input = new ConcurrentLinkedQueue<>();
+            activity = () -> { };
+        }
+
+        /**
+         * Send the next command, unless the test is over.
+         */
+        void act() {
+            if (running && !closed) {
+                sent = System.nanoTime();
+                input.add(MIX.get(
+                        ThreadLocalRandom.current().nextInt(MIX.size())));
+                activity.run();
+            }
+        }
+
+        /**
+         * Schedule the next command after a think time.
+         *
+         * @param bound
+         *                  the longest think time in milliseconds
+         */
+        void think(final long bound) {
+            driver.schedule(this::act,
+                    ThreadLocalRandom.current().nextLong(bound + 1),
+                    TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Leave the game.
+         */
+        void leave() {
+            closed = true;
+            activity.run();
+        }
+
+        @Override
+        public Optional<String> poll() {
+            return Optional.ofNullable(input.poll());
+        }
+
+        @Override
+        public void post(final String o) {
+            if (o.startsWith("\n")) {
+                messages.increment();
+            } else if (running) {
+                latency.record(System.nanoTime() - sent);
+                think(2 * think);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void onActivity(final Runnable signal) {
+            activity = signal;
+        }
+    }
+
+    /**
+     * Number of hunters.
+     */
+    private final int hunters;
+
+    /**
+     * Duration of the test in milliseconds.
+     */
+    private final long duration;
+
+    /**
+     * Mean think time of a hunter in milliseconds.
+     */
+    private final long think;
+
+    /**
+     * The store of the game.
+     */
+    private final MemoryEntityStore store;
+
+    /**
+     * Response latencies of the commands completed.
+     */
+    private final LatencyHistogram latency;
+
+    /**
+     * Count of messages to hunters.
+     */
+    private final LongAdder messages;
+
+    /**
+     * Metrics of the game.
+     */
+    private final MetricsRegistry metrics;
+
+    /**
+     * Executor sending the hunters' commands.
+     */
+    private final ScheduledExecutorService driver;
+
+    /**
+     * True while the test is running.
+     */
+    private volatile boolean running;
+
+    /**
+     * Prepare a load test.
+     *
+     * @param h
+     *              the number of hunters
+     * @param d
+     *              the duration of the test in milliseconds
+     * @param t
+     *              the mean think time of a hunter in milliseconds
+     */
+    public LoadTest(final int h, final long d, final long t) {
+        hunters = h;
+        duration = d;
+        think = t;
+        store = new MemoryEntityStore();
+        latency = new LatencyHistogram();
+        messages = new LongAdder();
+        metrics = new MetricsRegistry(
+                ManagementFactory.getPlatformMBeanServer(),
+                App.TICK_IN_MILLIS);
+        driver = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Run a load test with the number of hunters and duration in seconds
+     * given on the command line, reporting its results and the metrics of
+     * each service.
+     *
+     * @param args
+     *                 the number of hunters and the duration in seconds
+     * @throws IllegalArgumentException
+     *                                      if either is missing or not a
+     *                                      number
+     */
+    public static void main(final String... args) {
+        if (args.length != 2) {
+            throw new IllegalArgumentException(
+                    "Usage: wumpus.LoadTest <hunters> <seconds>");
+        }
+        final LoadTest l = new LoadTest(Integer.parseInt(args[0]),
+                TimeUnit.SECONDS.toMillis(Long.parseLong(args[1])),
+                Long.getLong(THINK_PROPERTY, DEFAULT_THINK));
+        l.run();
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("\n" + new Stats().exec(0, l.store));
+        }
+    }
+
+    /**
+     * Response latencies of the commands completed during the test.
+     *
+     * @return the latencies in nanoseconds
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * Metrics of the whole tick of the game.
+     *
+     * @return the tick metrics
+     */
+    public ServiceMetrics ticks() {
+        return metrics.service(MetricsRegistry.TICK);
+    }
+
+    /**
+     * Convert nanoseconds to milliseconds.
+     *
+     * @param nanos
+     *                  a duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static double millis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Report the results of the test.
+     *
+     * @param elapsed
+     *                    the duration of the test in nanoseconds
+     */
+    private void report(final long elapsed) {
+        if (LOG.isLoggable(Level.INFO)) {
+            final double seconds = Math.max(elapsed, 1)
+                    / (double) TimeUnit.SECONDS.toNanos(1);
+            final ServiceMetrics t = ticks();
+            final double overrun = ALL * t.getOverruns()
+                    / Math.max(t.getTicks(), 1);
+            LOG.info(String.format("%d hunters over %.1f s: %d commands, %.0f"
+                    + " commands/s, %d messages; latency p50 %.2f ms, p99 %.2f"
+                    + " ms, p99.9 %.2f ms, max %.2f ms; %d of %d ticks"
+                    + " overran (%.2f%%).", hunters, seconds, latency.count(),
+                    latency.count() / seconds, messages.sum(),
+                    millis(latency.percentile(P50)),
+                    millis(latency.percentile(P99)),
+                    millis(latency.percentile(P999)), millis(latency.max()),
+                    t.getOverruns(), t.getTicks(), overrun));
+        }
+    }
+
+    @Override
+    public void run() {
+        final CommandService commands = new CommandService(
+                App.storeFor(store, metrics, CommandService.class));
+        final ScheduledExecutorService tickService = Executors
+                .newScheduledThreadPool(1);
+        final Set<Service> services = App.services(store, commands,
+                Long.getLong(App.SEED_PROPERTY, System.currentTimeMillis()),
+                App.shards(), metrics);
+        tickService.scheduleAtFixedRate(new TickScheduler(services,
+                App.TICK_IN_MILLIS, ForkJoinPool.commonPool(), metrics), 0,
+                App.TICK_IN_MILLIS, TimeUnit.MILLISECONDS);
+        final SessionManager sessions = new SessionManager(store, commands,
+                App.sessionThreads());
+        sessions.start();
+
+        running = true;
+        final List<Hunter> hs = new ArrayList<>(hunters);
+        for (int i = 0; i < hunters; i++) {
+            final Hunter h = new Hunter();
+            hs.add(h);
+            sessions.create(h);
+            h.think(think);
+        }
+        final long start = System.nanoTime();
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            LOG.log(Level.WARNING, "Interrupted while under load.", e);
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+        final long elapsed = System.nanoTime() - start;
+
+        hs.forEach(Hunter::leave);
+        driver.shutdownNow();
+        sessions.stop();
+        tickService.shutdown();
+        try {
+            tickService.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOG.log(Level.WARNING,
+                    "Interrupted while shutting down game services.", e);
+            Thread.currentThread().interrupt();
+        }
+        App.close(services);
+        report(elapsed);
+    }
+}
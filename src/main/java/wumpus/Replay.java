@@ -0,0 +1,178 @@
+package wumpus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.command.Intent;
+import wumpus.engine.command.Stats;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.metrics.MetricsRegistry;
+import wumpus.engine.service.CommandService;
+import wumpus.engine.service.ReplayJournal;
+import wumpus.engine.service.ReplayJournal.Entry;
+import wumpus.engine.service.ReplayJournal.Recording;
+import wumpus.engine.service.Service;
+import wumpus.engine.service.TickScheduler;
+
+/**
+ * Headless replay of a game journaled by {@link App}.
+ *
+ * The journal is re-executed against a fresh store with the same ID origin
+ * and services with the same seed: each tick, the players who joined and the
+ * commands executed in that tick of the game are submitted, then every
+ * service is ticked, one after another on the calling thread. Ticks run back
+ * to back rather than every ten milliseconds, so a replay reproduces the game
+ * as fast as the services allow and serves as a load test of them. Responses
+ * and messages to players are counted and discarded.
+ */
+public final class Replay implements Runnable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger.getLogger(Replay.class.getName());
+
+    /**
+     * The journal replayed.
+     */
+    private final Recording recording;
+
+    /**
+     * The store replayed into.
+     */
+    private final MemoryEntityStore store;
+
+    /**
+     * Count of commands executed.
+     */
+    private final LongAdder commands;
+
+    /**
+     * Count of responses and messages to players.
+     */
+    private final LongAdder messages;
+
+    /**
+     * Metrics of the services, or null if metrics are disabled.
+     */
+    private final MetricsRegistry metrics;
+
+    /**
+     * Prepare the replay of a journal.
+     *
+     * @param r
+     *              the journal
+     */
+    public Replay(final Recording r) {
+        recording = r;
+        store = new MemoryEntityStore(r.origin(), r.players()::contains);
+        commands = new LongAdder();
+        messages = new LongAdder();
+        if (MetricsRegistry.enabled()) {
+            metrics = new MetricsRegistry(
+                    ManagementFactory.getPlatformMBeanServer(),
+                    App.TICK_IN_MILLIS);
+        } else {
+            metrics = null;
+        }
+    }
+
+    /**
+     * Replay the journal named on the command line, reporting the pace of
+     * the replay and, if metrics are enabled, the metrics of each service.
+     *
+     * @param args
+     *                 the journal file
+     * @throws IllegalArgumentException
+     *                                      if no journal is given
+     * @throws UncheckedIOException
+     *                                      if the journal cannot be read
+     */
+    public static void main(final String... args) {
+        if (args.length != 1) {
+            throw new IllegalArgumentException(
+                    "Usage: wumpus.Replay <journal>");
+        }
+        final Path file = Paths.get(args[0]);
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            final Replay r = new Replay(ReplayJournal.read(in));
+            r.run();
+            if (r.metrics != null && LOG.isLoggable(Level.INFO)) {
+                LOG.info("\n" + new Stats().exec(0, r.store));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Could not read the journal " + file + ".", e);
+        }
+    }
+
+    /**
+     * The store replayed into.
+     *
+     * @return the store
+     */
+    public MemoryEntityStore store() {
+        return store;
+    }
+
+    /**
+     * Submit an entry of the journal to the command service.
+     *
+     * @param e
+     *                  the entry
+     * @param service
+     *                  the command service
+     */
+    private void submit(final Entry e, final CommandService service) {
+        if (e.isJoin()) {
+            store.commit(new Entity(e.player()));
+            service.join(e.player(), new Listener(m -> messages.increment()));
+        } else {
+            commands.increment();
+            service.submit(new Intent(e.player(), e.command(),
+                    r -> messages.increment(), e.args()));
+        }
+    }
+
+    @Override
+    public void run() {
+        final CommandService service = new CommandService(
+                App.storeFor(store, metrics, CommandService.class));
+        final Set<Service> services = App.services(store, service,
+                recording.seed(), recording.shards(), metrics);
+        final TickScheduler scheduler = new TickScheduler(services,
+                App.TICK_IN_MILLIS, Runnable::run, metrics);
+        final long start = System.nanoTime();
+        for (long t = 1; t <= recording.ticks(); t++) {
+            for (final Entry e : recording.entries(t)) {
+                submit(e, service);
+            }
+            scheduler.run();
+        }
+        App.close(services);
+        final long millis = TimeUnit.NANOSECONDS
+                .toMillis(System.nanoTime() - start);
+        if (LOG.isLoggable(Level.INFO)) {
+            final double seconds = Math.max(millis, 1)
+                    / (double) TimeUnit.SECONDS.toMillis(1);
+            LOG.info(String.format("Replayed %d ticks of %d players, %d"
+                    + " commands and %d messages in %d ms: %.0f ticks/s,"
+                    + " %.0f commands/s.", recording.ticks(),
+                    recording.players().size(), commands.sum(),
+                    messages.sum(), millis, recording.ticks() / seconds,
+                    commands.sum() / seconds));
+        }
+    }
+}
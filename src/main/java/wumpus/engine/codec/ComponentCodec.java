@@ -0,0 +1,54 @@
+package wumpus.engine.codec;
+
+import wumpus.engine.entity.component.Component;
+
+/**
+ * Encoder and decoder of one type of component.
+ *
+ * A codec writes its components in the newest version of their encoding,
+ * and must be able to read every version it has ever written. Changing the
+ * encoding of a type means raising its version.
+ *
+ * @param <C>
+ *                the type of component
+ */
+public interface ComponentCodec<C extends Component> {
+
+    /**
+     * The type of component encoded.
+     *
+     * @return the component class
+     */
+    Class<C> type();
+
+    /**
+     * The version of the encoding written, counting from one.
+     *
+     * @return the version
+     */
+    default int version() {
+        return 1;
+    }
+
+    /**
+     * Encode a component.
+     *
+     * @param component
+     *                      the component
+     * @param out
+     *                      the writer to encode to
+     */
+    void write(C component, ComponentWriter out);
+
+    /**
+     * Decode a component.
+     *
+     * @param in
+     *                    the reader to decode from
+     * @param version
+     *                    the version of the encoding, no newer than
+     *                    {@link #version()}
+     * @return the component
+     */
+    C read(ComponentReader in, int version);
+}
@@ -0,0 +1,416 @@
+package wumpus.engine.codec;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import wumpus.engine.entity.component.Arrow;
+import wumpus.engine.entity.component.ArrowHit;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Cooldown;
+import wumpus.engine.entity.component.Dead;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Examining;
+import wumpus.engine.entity.component.Expired;
+import wumpus.engine.entity.component.Hazard;
+import wumpus.engine.entity.component.Hidden;
+import wumpus.engine.entity.component.Inventory;
+import wumpus.engine.entity.component.Item;
+import wumpus.engine.entity.component.Lair;
+import wumpus.engine.entity.component.Overworld;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.PitTrap;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.entity.component.SuperBat;
+import wumpus.engine.entity.component.Tavern;
+import wumpus.engine.entity.component.Transit;
+import wumpus.engine.entity.component.Void;
+import wumpus.engine.entity.component.Wilderness;
+import wumpus.engine.entity.component.Wumpus;
+import wumpus.engine.entity.component.Zone;
+import wumpus.engine.type.Direction;
+
+/**
+ * Registry of component codecs, keyed by component class and by a numeric
+ * tag written ahead of each component.
+ *
+ * Each component is written as its tag, the version of its encoding and the
+ * length of its encoding, followed by the encoding itself. A reader can so
+ * skip components whose tag it does not know, and a codec can read the
+ * encodings of older versions. Tags count up from one in order of
+ * registration; they are part of the format, so codecs may only ever be
+ * registered after the existing ones.
+ *
+ * Codecs are registered before the registry is shared; once shared it may be
+ * used by any number of threads.
+ */
+public final class ComponentCodecs {
+
+    /**
+     * Codec built from functions, for encodings with a single version.
+     *
+     * @param <C>
+     *                the type of component
+     */
+    private static final class Codec<C extends Component>
+            implements ComponentCodec<C> {
+
+        /**
+         * The type of component encoded.
+         */
+        private final Class<C> type;
+
+        /**
+         * Encodes a component.
+         */
+        private final BiConsumer<C, ComponentWriter> writer;
+
+        /**
+         * Decodes a component.
+         */
+        private final Function<ComponentReader, C> reader;
+
+        /**
+         * Build a codec from functions.
+         *
+         * @param t
+         *              the type of component encoded
+         * @param w
+         *              encodes a component
+         * @param r
+         *              decodes a component
+         */
+        Codec(final Class<C> t, final BiConsumer<C, ComponentWriter> w,
+                final Function<ComponentReader, C> r) {
+            type = t;
+            writer = w;
+            reader = r;
+        }
+
+        @Override
+        public Class<C> type() {
+            return type;
+        }
+
+        @Override
+        public void write(final C component, final ComponentWriter out) {
+            writer.accept(component, out);
+        }
+
+        @Override
+        public C read(final ComponentReader in, final int version) {
+            return reader.apply(in);
+        }
+    }
+
+    /**
+     * Directions by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Tags by component type.
+     */
+    private final Map<Class<? extends Component>, Integer> tags;
+
+    /**
+     * Codecs by tag.
+     */
+    private final Map<Integer, ComponentCodec<?>> codecs;
+
+    /**
+     * Create an empty registry.
+     */
+    public ComponentCodecs() {
+        tags = new HashMap<>();
+        codecs = new HashMap<>();
+    }
+
+    /**
+     * Create a registry of codecs for every persistent component of the game.
+     * Transient components have none. New codecs go last.
+     *
+     * @return the registry
+     */
+    public static ComponentCodecs standard() {
+        return new ComponentCodecs()
+                .register(marker(Arrow.class, Arrow::new))
+                .register(marker(ArrowHit.class, ArrowHit::new))
+                .register(new Codec<>(Container.class,
+                        ComponentCodecs::writeContainer,
+                        ComponentCodecs::readContainer))
+                .register(new Codec<>(Cooldown.class,
+                        (c, out) -> out.writeVarInt(c.remaining()),
+                        in -> new Cooldown(in.readVarInt())))
+                .register(marker(Dead.class, Dead::new))
+                .register(new Codec<>(Descriptive.class,
+                        (d, out) -> out.writeString(d.shortDescription())
+                                .writeString(d.longDescription()),
+                        in -> new Descriptive(in.readString(),
+                                in.readString())))
+                .register(new Codec<>(Examining.class,
+                        (e, out) -> out.writeId(e.target()),
+                        in -> new Examining(in.readId())))
+                .register(marker(Expired.class, Expired::new))
+                .register(marker(Hazard.class, Hazard::new))
+                .register(marker(Hidden.class, Hidden::new))
+                .register(marker(Inventory.class, Inventory::new))
+                .register(new Codec<>(Item.class,
+                        (i, out) -> out.writeVarInt(i.count()),
+                        in -> new Item(in.readVarInt())))
+                .register(new Codec<>(Lair.class,
+                        (l, out) -> out.writeId(l.entrance())
+                                .writeId(l.wumpus()),
+                        in -> new Lair(in.readId(), in.readId())))
+                .register(marker(Overworld.class, Overworld::new))
+                .register(new Codec<>(Physical.class,
+                        (p, out) -> out.writeId(p.location())
+                                .writeId(p.zone()),
+                        in -> new Physical(in.readId(), in.readId())))
+                .register(marker(PitTrap.class, PitTrap::new))
+                .register(new Codec<>(Player.class,
+                        (p, out) -> out.writeId(p.inventory()),
+                        in -> new Player(in.readId())))
+                .register(new Codec<>(Room.class,
+                        ComponentCodecs::writeRoom,
+                        ComponentCodecs::readRoom))
+                .register(marker(SuperBat.class, SuperBat::new))
+                .register(marker(Tavern.class, Tavern::new))
+                .register(new Codec<>(Transit.class,
+                        (t, out) -> out.writeId(t.to()),
+                        in -> new Transit(in.readId())))
+                .register(marker(Void.class, Void::new))
+                .register(marker(Wilderness.class, Wilderness::new))
+                .register(marker(Wumpus.class, Wumpus::new))
+                .register(marker(Zone.class, Zone::new));
+    }
+
+    /**
+     * Build the codec of a component type without state.
+     *
+     * @param t
+     *              the type of component
+     * @param s
+     *              creates a component
+     * @param <C>
+     *              the type of component
+     * @return the codec
+     */
+    private static <C extends Component> ComponentCodec<C> marker(
+            final Class<C> t, final Supplier<C> s) {
+        return new Codec<>(t, (c, out) -> {
+        }, in -> s.get());
+    }
+
+    /**
+     * Encode a container as its size and its contents in ascending order,
+     * each after the first as its distance from the one before.
+     *
+     * @param c
+     *                the container
+     * @param out
+     *                the writer
+     */
+    private static void writeContainer(final Container c,
+            final ComponentWriter out) {
+        out.writeUnsignedVarLong(c.size());
+        final long[] ids = c.contents().toArray();
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0) {
+                out.writeId(ids[i]);
+            } else {
+                out.writeUnsignedVarLong(ids[i] - ids[i - 1]);
+            }
+        }
+    }
+
+    /**
+     * Decode a container.
+     *
+     * @param in
+     *               the reader
+     * @return the container
+     */
+    private static Container readContainer(final ComponentReader in) {
+        final long[] ids = new long[Math.toIntExact(in.readUnsignedVarLong())];
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0) {
+                ids[i] = in.readId();
+            } else {
+                ids[i] = ids[i - 1] + in.readUnsignedVarLong();
+            }
+        }
+        return new Container(ids);
+    }
+
+    /**
+     * Encode a room as its zone and its links in order of direction, each
+     * link as the ordinal of its direction and the linked room.
+     *
+     * @param r
+     *                the room
+     * @param out
+     *                the writer
+     */
+    private static void writeRoom(final Room r, final ComponentWriter out) {
+        final Map<Direction, Long> linked = r.linkedRooms();
+        out.writeId(r.zone());
+        out.writeUnsignedVarLong(linked.size());
+        for (final Direction d : DIRECTIONS) {
+            final Long id = linked.get(d);
+            if (id != null) {
+                out.writeByte(d.ordinal()).writeId(id);
+            }
+        }
+    }
+
+    /**
+     * Decode a room.
+     *
+     * @param in
+     *               the reader
+     * @return the room
+     */
+    private static Room readRoom(final ComponentReader in) {
+        final long zone = in.readId();
+        final int links = Math.toIntExact(in.readUnsignedVarLong());
+        final Map<Direction, Long> linked = new EnumMap<>(Direction.class);
+        for (int i = 0; i < links; i++) {
+            linked.put(DIRECTIONS[in.readByte()], in.readId());
+        }
+        return new Room(linked, zone);
+    }
+
+    /**
+     * Register a codec under the next tag.
+     *
+     * @param codec
+     *                  the codec
+     * @return this registry
+     * @throws IllegalArgumentException
+     *                                      if the type is already registered
+     */
+    public ComponentCodecs register(final ComponentCodec<?> codec) {
+        if (tags.containsKey(codec.type())) {
+            throw new IllegalArgumentException(
+                    codec.type().getName() + " is already registered.");
+        }
+        final int tag = codecs.size() + 1;
+        codecs.put(tag, codec);
+        tags.put(codec.type(), tag);
+        return this;
+    }
+
+    /**
+     * Determine if a component type has a codec.
+     *
+     * @param c
+     *              the component type
+     * @return true if the type is registered
+     */
+    public boolean has(final Class<? extends Component> c) {
+        return tags.containsKey(c);
+    }
+
+    /**
+     * Find the tag of a component type.
+     *
+     * @param c
+     *              the component type
+     * @return the tag
+     * @throws IllegalArgumentException
+     *                                      if the type has no codec
+     */
+    public int tag(final Class<? extends Component> c) {
+        final Integer tag = tags.get(c);
+        if (tag == null) {
+            throw new IllegalArgumentException(
+                    "No codec for " + c.getName() + ".");
+        }
+        return tag;
+    }
+
+    /**
+     * Find the component type of a tag.
+     *
+     * @param tag
+     *                the tag
+     * @return the component type, if the tag is registered
+     */
+    public Optional<Class<? extends Component>> type(final int tag) {
+        return Optional.ofNullable(codecs.get(tag)).map(c -> c.type());
+    }
+
+    /**
+     * Encode a component with its tag, version and length.
+     *
+     * @param c
+     *                the component
+     * @param out
+     *                the writer
+     * @throws IllegalArgumentException
+     *                                      if the type of the component has no
+     *                                      codec
+     */
+    public void write(final Component c, final ComponentWriter out) {
+        final int tag = tag(c.getClass());
+        final ComponentCodec<?> codec = codecs.get(tag);
+        out.writeUnsignedVarLong(tag);
+        out.writeUnsignedVarLong(codec.version());
+        final int mark = out.startSection();
+        encode(codec, c, out);
+        out.endSection(mark);
+    }
+
+    /**
+     * Encode a component with a codec of its type.
+     *
+     * @param codec
+     *                  the codec
+     * @param c
+     *                  the component, of the codec's type
+     * @param out
+     *                  the writer
+     * @param <C>
+     *                  the type of component
+     */
+    private static <C extends Component> void encode(
+            final ComponentCodec<C> codec, final Component c,
+            final ComponentWriter out) {
+        codec.write(codec.type().cast(c), out);
+    }
+
+    /**
+     * Decode a component, skipping it if its tag is unknown.
+     *
+     * @param in
+     *               the reader
+     * @return the component, or empty if its tag has no codec
+     * @throws IllegalStateException
+     *                                   if the component was encoded in a
+     *                                   newer version than its codec reads
+     */
+    public Optional<Component> read(final ComponentReader in) {
+        final int tag = Math.toIntExact(in.readUnsignedVarLong());
+        final int version = Math.toIntExact(in.readUnsignedVarLong());
+        final int length = in.readSection();
+        final int end = in.position() + length;
+        final ComponentCodec<?> codec = codecs.get(tag);
+        Component c = null;
+        if (codec != null) {
+            if (version > codec.version()) {
+                throw new IllegalStateException("Cannot read version "
+                        + version + " of " + codec.type().getName() + ".");
+            }
+            c = codec.read(in, version);
+        }
+        in.skip(end - in.position());
+        return Optional.ofNullable(c);
+    }
+}
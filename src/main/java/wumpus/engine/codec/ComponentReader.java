@@ -0,0 +1,188 @@
+package wumpus.engine.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder of the compact binary format written by a {@link ComponentWriter},
+ * reading from a buffer and advancing its position.
+ */
+public final class ComponentReader {
+
+    /**
+     * Bits in a long beyond which a variable-length quantity is malformed.
+     */
+    private static final int MAX_SHIFT = Long.SIZE;
+
+    /**
+     * The buffer read from.
+     */
+    private final ByteBuffer in;
+
+    /**
+     * The ID entity IDs are read relative to.
+     */
+    private long base;
+
+    /**
+     * Strings read so far, in order of first appearance, or null if none
+     * have been.
+     */
+    private List<String> strings;
+
+    /**
+     * Read from a buffer, with a base ID of zero.
+     *
+     * @param b
+     *              the buffer, read from its position
+     */
+    public ComponentReader(final ByteBuffer b) {
+        in = b;
+    }
+
+    /**
+     * Set the ID that following entity IDs are read relative to, which must
+     * be the base they were written with.
+     *
+     * @param id
+     *               the base ID
+     * @return this reader
+     */
+    public ComponentReader base(final long id) {
+        base = id;
+        return this;
+    }
+
+    /**
+     * Determine if any bytes remain to be read.
+     *
+     * @return true if bytes remain
+     */
+    public boolean hasRemaining() {
+        return in.hasRemaining();
+    }
+
+    /**
+     * Read a single byte.
+     *
+     * @return the byte, from 0 to 255
+     */
+    public int readByte() {
+        return Byte.toUnsignedInt(in.get());
+    }
+
+    /**
+     * Read a long written in eight bytes.
+     *
+     * @return the value
+     */
+    public long readFixedLong() {
+        return in.getLong();
+    }
+
+    /**
+     * Read an unsigned variable-length quantity.
+     *
+     * @return the value
+     * @throws IllegalStateException
+     *                                   if the quantity is malformed
+     */
+    public long readUnsignedVarLong() {
+        long v = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift >= MAX_SHIFT) {
+                throw new IllegalStateException(
+                        "Malformed variable-length quantity.");
+            }
+            b = readByte();
+            v |= (long) (b & ComponentWriter.VALUE_MASK) << shift;
+            shift += ComponentWriter.SEVEN_BITS;
+        } while ((b & ComponentWriter.MORE) != 0);
+        return v;
+    }
+
+    /**
+     * Read a zigzag encoded variable-length long.
+     *
+     * @return the value
+     */
+    public long readVarLong() {
+        final long z = readUnsignedVarLong();
+        return z >>> 1 ^ -(z & 1);
+    }
+
+    /**
+     * Read a zigzag encoded variable-length int.
+     *
+     * @return the value
+     */
+    public int readVarInt() {
+        return Math.toIntExact(readVarLong());
+    }
+
+    /**
+     * Read an entity ID written relative to the base ID.
+     *
+     * @return the entity ID
+     */
+    public long readId() {
+        return base + readVarLong();
+    }
+
+    /**
+     * Read a string, or the earlier string it refers to.
+     *
+     * @return the string
+     * @throws IllegalStateException
+     *                                   if it refers to no string read
+     */
+    public String readString() {
+        if (strings == null) {
+            strings = new ArrayList<>();
+        }
+        final int ref = Math.toIntExact(readUnsignedVarLong());
+        if (ref == 0) {
+            final byte[] utf = new byte[Math.toIntExact(readUnsignedVarLong())];
+            in.get(utf);
+            final String s = new String(utf, StandardCharsets.UTF_8);
+            strings.add(s);
+            return s;
+        } else if (ref <= strings.size()) {
+            return strings.get(ref - 1);
+        } else {
+            throw new IllegalStateException("Unknown string " + ref + ".");
+        }
+    }
+
+    /**
+     * Read the length of a section, leaving the position at its content.
+     *
+     * @return the length of the section in bytes
+     */
+    int readSection() {
+        return Math.toIntExact(readUnsignedVarLong());
+    }
+
+    /**
+     * Skip bytes.
+     *
+     * @param n
+     *              the number of bytes to skip
+     */
+    void skip(final int n) {
+        in.position(in.position() + n);
+    }
+
+    /**
+     * Observe the position of the reader in its buffer.
+     *
+     * @return the position
+     */
+    int position() {
+        return in.position();
+    }
+}
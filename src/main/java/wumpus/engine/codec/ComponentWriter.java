@@ -0,0 +1,283 @@
+package wumpus.engine.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Growable buffer encoding the compact binary format of components.
+ *
+ * Integers are written as variable-length quantities of seven bits per byte,
+ * signed values zigzag encoded so that small magnitudes stay short. Entity
+ * IDs are written relative to a base ID, typically the ID of the entity being
+ * encoded, since related entities are created close together and their IDs
+ * differ in the low bits only. Strings are interned: a string written more
+ * than once is written in full the first time only, and referred to by
+ * number after.
+ *
+ * A writer may be reset and reused, so that encoding allocates nothing once
+ * its buffer has grown to size.
+ */
+public final class ComponentWriter {
+
+    /**
+     * Initial capacity of the buffer in bytes.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Bits of a value carried by each byte of a variable-length quantity.
+     */
+    static final int SEVEN_BITS = 7;
+
+    /**
+     * Mask of the value bits of each byte of a variable-length quantity.
+     */
+    static final int VALUE_MASK = 0x7f;
+
+    /**
+     * Flag marking a byte of a variable-length quantity followed by another.
+     */
+    static final int MORE = 0x80;
+
+    /**
+     * Bytes written.
+     */
+    private byte[] bytes;
+
+    /**
+     * Number of bytes written.
+     */
+    private int size;
+
+    /**
+     * The ID entity IDs are written relative to.
+     */
+    private long base;
+
+    /**
+     * Number of each string written so far, or null if none has been.
+     */
+    private Map<String, Integer> strings;
+
+    /**
+     * Create an empty writer with a base ID of zero.
+     */
+    public ComponentWriter() {
+        bytes = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Empty the writer for reuse, forgetting its strings and base ID.
+     *
+     * @return this writer
+     */
+    public ComponentWriter reset() {
+        size = 0;
+        base = 0;
+        if (strings != null) {
+            strings.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Set the ID that following entity IDs are written relative to. The
+     * reader must be given the same base.
+     *
+     * @param id
+     *               the base ID
+     * @return this writer
+     */
+    public ComponentWriter base(final long id) {
+        base = id;
+        return this;
+    }
+
+    /**
+     * Make room for more bytes.
+     *
+     * @param n
+     *              the number of bytes about to be written
+     */
+    private void ensure(final int n) {
+        if (size + n > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+        }
+    }
+
+    /**
+     * Write a single byte.
+     *
+     * @param b
+     *              the byte
+     * @return this writer
+     */
+    public ComponentWriter writeByte(final int b) {
+        ensure(1);
+        bytes[size++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * Write a long in eight bytes, most significant first.
+     *
+     * @param l
+     *              the value
+     * @return this writer
+     */
+    public ComponentWriter writeFixedLong(final long l) {
+        ensure(Long.BYTES);
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0;
+                shift -= Byte.SIZE) {
+            bytes[size++] = (byte) (l >>> shift);
+        }
+        return this;
+    }
+
+    /**
+     * Write a long as an unsigned variable-length quantity; negative values
+     * take ten bytes.
+     *
+     * @param l
+     *              the value
+     * @return this writer
+     */
+    public ComponentWriter writeUnsignedVarLong(final long l) {
+        long v = l;
+        while ((v & ~VALUE_MASK) != 0) {
+            writeByte((int) (v & VALUE_MASK) | MORE);
+            v >>>= SEVEN_BITS;
+        }
+        return writeByte((int) v);
+    }
+
+    /**
+     * Write a long as a zigzag encoded variable-length quantity, short for
+     * values of small magnitude whatever their sign.
+     *
+     * @param l
+     *              the value
+     * @return this writer
+     */
+    public ComponentWriter writeVarLong(final long l) {
+        return writeUnsignedVarLong(l << 1 ^ l >> (Long.SIZE - 1));
+    }
+
+    /**
+     * Write an int as a zigzag encoded variable-length quantity.
+     *
+     * @param i
+     *              the value
+     * @return this writer
+     */
+    public ComponentWriter writeVarInt(final int i) {
+        return writeVarLong(i);
+    }
+
+    /**
+     * Write an entity ID relative to the base ID.
+     *
+     * @param id
+     *               the entity ID
+     * @return this writer
+     */
+    public ComponentWriter writeId(final long id) {
+        return writeVarLong(id - base);
+    }
+
+    /**
+     * Write a string, or a reference to it if it has been written before.
+     *
+     * @param s
+     *              the string
+     * @return this writer
+     */
+    public ComponentWriter writeString(final String s) {
+        if (strings == null) {
+            strings = new HashMap<>();
+        }
+        final Integer n = strings.get(s);
+        if (n == null) {
+            strings.put(s, strings.size());
+            final byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+            writeUnsignedVarLong(0);
+            writeUnsignedVarLong(utf.length);
+            ensure(utf.length);
+            System.arraycopy(utf, 0, bytes, size, utf.length);
+            size += utf.length;
+        } else {
+            writeUnsignedVarLong(n + 1);
+        }
+        return this;
+    }
+
+    /**
+     * Mark the start of a length-prefixed section, reserving one byte for
+     * its length.
+     *
+     * @return the mark to end the section with
+     */
+    int startSection() {
+        writeByte(0);
+        return size;
+    }
+
+    /**
+     * End a length-prefixed section, writing its length as an unsigned
+     * variable-length quantity and moving its content up if the length takes
+     * more than the byte reserved.
+     *
+     * @param mark
+     *                 the mark returned when the section was started
+     */
+    void endSection(final int mark) {
+        final int length = size - mark;
+        int extra = 0;
+        for (int l = length >>> SEVEN_BITS; l != 0; l >>>= SEVEN_BITS) {
+            extra++;
+        }
+        if (extra > 0) {
+            ensure(extra);
+            System.arraycopy(bytes, mark, bytes, mark + extra, length);
+            size += extra;
+        }
+        int at = mark - 1;
+        int v = length;
+        while ((v & ~VALUE_MASK) != 0) {
+            bytes[at++] = (byte) (v & VALUE_MASK | MORE);
+            v >>>= SEVEN_BITS;
+        }
+        bytes[at] = (byte) v;
+    }
+
+    /**
+     * Count the bytes written.
+     *
+     * @return the number of bytes written
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy out the bytes written.
+     *
+     * @return a buffer holding a copy of the bytes written
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(Arrays.copyOf(bytes, size));
+    }
+
+    /**
+     * View the bytes written, without copying. The view is valid until the
+     * writer is next changed.
+     *
+     * @return a read-only buffer over the bytes written
+     */
+    public ByteBuffer view() {
+        return ByteBuffer.wrap(bytes, 0, size).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Compact binary encoding of components.
+ */
+package wumpus.engine.codec;
@@ -46,7 +46,8 @@ public final class CommandLibrary {
      */
     private static final Set<Command> COMMANDS = Set.of(new Quit(), new Move(),
             new North(), new East(), new South(), new West(), new Up(),
-            new Down(), new Shoot(), new Debug(), new Look(), new Inventory());
+            new Down(), new Shoot(), new Debug(), new Look(), new Inventory(),
+            new Stats());
 
     /**
      * Map of command names to commands.
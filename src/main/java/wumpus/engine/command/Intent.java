@@ -0,0 +1,87 @@
+package wumpus.engine.command;
+
+import java.util.function.Consumer;
+
+/**
+ * A command submitted by a player, to be executed later by the tick loop.
+ */
+public final class Intent {
+
+    /**
+     * The ID of the player entity submitting the command.
+     */
+    private final long source;
+
+    /**
+     * The name or alias of the command.
+     */
+    private final String command;
+
+    /**
+     * Arguments to the command.
+     */
+    private final String[] args;
+
+    /**
+     * Receiver of the command response.
+     */
+    private final Consumer<String> reply;
+
+    /**
+     * Create an intent.
+     *
+     * @param s
+     *              the ID of the player entity submitting the command
+     * @param c
+     *              the name or alias of the command
+     * @param r
+     *              receiver of the command response, called on the tick
+     *              thread
+     * @param a
+     *              arguments to the command
+     */
+    public Intent(final long s, final String c, final Consumer<String> r,
+            final String... a) {
+        source = s;
+        command = c;
+        reply = r;
+        args = a.clone();
+    }
+
+    /**
+     * Get the ID of the player entity submitting the command.
+     *
+     * @return the entity ID
+     */
+    public long source() {
+        return source;
+    }
+
+    /**
+     * Get the name or alias of the command.
+     *
+     * @return the command name
+     */
+    public String command() {
+        return command;
+    }
+
+    /**
+     * Get the arguments to the command.
+     *
+     * @return a copy of the arguments
+     */
+    public String[] args() {
+        return args.clone();
+    }
+
+    /**
+     * Deliver the command response.
+     *
+     * @param response
+     *                     the response
+     */
+    public void reply(final String response) {
+        reply.accept(response);
+    }
+}
@@ -0,0 +1,87 @@
+package wumpus.engine.command;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.management.MBeanServer;
+
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.metrics.MetricsRegistry;
+import wumpus.engine.metrics.ServiceMetricsMXBean;
+import wumpus.engine.metrics.SnapshotMetricsMXBean;
+
+/**
+ * Command to report the tick metrics of each service, and those of world
+ * snapshots if any are taken, as published over JMX.
+ */
+public final class Stats implements Command {
+
+    /**
+     * Column headings of the report.
+     */
+    private static final String HEADINGS = String.format(
+            "%-18s %8s %8s %8s %8s %8s %8s %10s %8s", "service", "ticks",
+            "p50us", "p99us", "p999us", "maxus", "overrun", "touched",
+            "commits");
+
+    /**
+     * Format one service line of the report.
+     *
+     * @param m
+     *              the metrics of the service
+     * @return the report line
+     */
+    private static String line(final ServiceMetricsMXBean m) {
+        return String.format("%-18s %8d %8d %8d %8d %8d %8d %10d %8d",
+                m.getName(), m.getTicks(), m.getP50Micros(), m.getP99Micros(),
+                m.getP999Micros(), m.getMaxMicros(), m.getOverruns(),
+                m.getEntitiesTouched(), m.getCommits());
+    }
+
+    /**
+     * Format the snapshot line of the report.
+     *
+     * @param m
+     *              the snapshot metrics
+     * @return the report line
+     */
+    private static String line(final SnapshotMetricsMXBean m) {
+        return String.format(
+                "snapshots: %d written, %d skipped; last %d entities in %d"
+                        + " bytes written in %d ms; max write %d ms;"
+                        + " capture mean %.0f us, max %d us",
+                m.getSnapshots(), m.getSkipped(), m.getLastEntities(),
+                m.getLastBytes(), m.getLastWriteMillis(), m.getMaxWriteMillis(),
+                m.getMeanCaptureMicros(), m.getMaxCaptureMicros());
+    }
+
+    @Override
+    public String exec(final long source, final EntityStore store,
+            final String... args) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final List<ServiceMetricsMXBean> metrics = MetricsRegistry
+                .query(server);
+        if (metrics.isEmpty()) {
+            return "Metrics are disabled. Start the game with -D"
+                    + MetricsRegistry.PROPERTY + "=true to enable them.";
+        } else {
+            return HEADINGS + "\n" + metrics.stream().map(Stats::line)
+                    .collect(Collectors.joining("\n"))
+                    + MetricsRegistry.querySnapshots(server)
+                            .map(m -> "\n" + line(m)).orElse("");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "stats";
+    }
+
+    @Override
+    public Set<String> aliases() {
+        return Set.of();
+    }
+
+}
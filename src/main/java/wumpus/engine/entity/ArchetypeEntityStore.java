@@ -0,0 +1,517 @@
+package wumpus.engine.entity;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Expired;
+
+/**
+ * In-memory entity storage which groups entities by their exact set of
+ * component types (their archetype) and keeps each component type of an
+ * archetype in a dense column.
+ *
+ * Component queries visit only the archetypes which carry the requested
+ * components and read their rows and columns in place, without probing each
+ * entity and without taking the lock writers hold. Rows are only appended and
+ * cleared, never reused, between compactions, and a compaction fills fresh
+ * arrays, so a query sees each entity of an archetype at most once. Entities
+ * remain the authority for their own components; the columns follow them
+ * through entity change notifications.
+ */
+public final class ArchetypeEntityStore implements EntityStore {
+
+    /**
+     * Initial number of rows allocated for a new archetype.
+     */
+    private static final int INITIAL_ROWS = 16;
+
+    /**
+     * The rows and columns of an archetype as published to queries.
+     */
+    private static final class View {
+
+        /**
+         * Entity of each row, null for a cleared row.
+         */
+        private final Entity[] rows;
+
+        /**
+         * Component values, by column then row.
+         */
+        private final Component[][] columns;
+
+        /**
+         * Number of rows in use.
+         */
+        private final int size;
+
+        /**
+         * Create a view of the current rows and columns of an archetype.
+         *
+         * @param a
+         *              the archetype
+         */
+        View(final Archetype a) {
+            rows = a.rows;
+            columns = a.columns;
+            size = a.size;
+        }
+    }
+
+    /**
+     * Entities sharing one exact set of component types, stored by column.
+     * Changed only while holding the store's lock, and read by
+     * queries through its latest {@link View}.
+     */
+    private static final class Archetype {
+
+        /**
+         * The component types of every entity in this archetype.
+         */
+        private final Set<Class<? extends Component>> signature;
+
+        /**
+         * Column number of each component type.
+         */
+        private final Map<Class<? extends Component>, Integer> columnIndex;
+
+        /**
+         * Entity of each row, null for a cleared row.
+         */
+        private Entity[] rows;
+
+        /**
+         * Component values, by column then row.
+         */
+        private Component[][] columns;
+
+        /**
+         * Number of rows in use, including cleared rows.
+         */
+        private int size;
+
+        /**
+         * Number of rows holding an entity.
+         */
+        private int live;
+
+        /**
+         * The rows and columns as of the last change.
+         */
+        private volatile View view;
+
+        /**
+         * Create an empty archetype.
+         *
+         * @param s
+         *              the component types of the archetype
+         */
+        Archetype(final Set<Class<? extends Component>> s) {
+            signature = s;
+            columnIndex = new HashMap<>();
+            s.forEach(c -> columnIndex.put(c, columnIndex.size()));
+            rows = new Entity[INITIAL_ROWS];
+            columns = new Component[s.size()][INITIAL_ROWS];
+            publish();
+        }
+
+        /**
+         * Publish the rows and columns to queries.
+         */
+        private void publish() {
+            view = new View(this);
+        }
+
+        /**
+         * Determine if a row must be made before another entity can be added.
+         *
+         * @return true if every row is in use
+         */
+        boolean full() {
+            return size == rows.length;
+        }
+
+        /**
+         * Move the entities to the front of fresh arrays with room for as many
+         * again, dropping the cleared rows. Queries reading the old arrays
+         * are unaffected. The rows of the entities change.
+         */
+        void compact() {
+            final int capacity = Math.max(INITIAL_ROWS, live * 2);
+            final Entity[] r = new Entity[capacity];
+            final Component[][] c = new Component[columns.length][capacity];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (rows[i] != null) {
+                    r[n] = rows[i];
+                    for (int j = 0; j < columns.length; j++) {
+                        c[j][n] = columns[j][i];
+                    }
+                    n++;
+                }
+            }
+            rows = r;
+            columns = c;
+            size = n;
+            publish();
+        }
+
+        /**
+         * Append an entity, copying its components in to the columns. There
+         * must be room for it.
+         *
+         * @param e
+         *              the entity to add
+         * @return the row of the entity
+         */
+        int add(final Entity e) {
+            rows[size] = e;
+            final Entity.ComponentMap m = e.componentMap();
+            columnIndex.forEach((c, i) -> columns[i][size] = m.get(c));
+            live++;
+            size++;
+            publish();
+            return size - 1;
+        }
+
+        /**
+         * Re-read the components of a row from its entity.
+         *
+         * @param row
+         *                the row to refresh
+         */
+        void refresh(final int row) {
+            final Entity.ComponentMap m = rows[row].componentMap();
+            columnIndex.forEach((c, i) -> columns[i][row] = m.get(c));
+            publish();
+        }
+
+        /**
+         * Replace a single component value.
+         *
+         * @param row
+         *                the row of the entity
+         * @param c
+         *                the new component value
+         */
+        void set(final int row, final Component c) {
+            columns[columnIndex.get(c.getClass())][row] = c;
+            publish();
+        }
+
+        /**
+         * Clear a row. No other entity moves in to its place.
+         *
+         * @param row
+         *                the row to remove
+         */
+        void remove(final int row) {
+            rows[row] = null;
+            for (final Component[] column : columns) {
+                column[row] = null;
+            }
+            live--;
+            publish();
+        }
+
+        /**
+         * Stream the entities of this archetype, reading its rows in place.
+         *
+         * @return the entities, in row order
+         */
+        Stream<Entity> entities() {
+            final View v = view;
+            return Arrays.stream(v.rows, 0, v.size).filter(Objects::nonNull);
+        }
+
+        /**
+         * Stream a column of this archetype, reading it in place.
+         *
+         * @param c
+         *              the component type of the column
+         * @return the component values, in row order
+         */
+        Stream<Component> column(final Class<? extends Component> c) {
+            final View v = view;
+            return Arrays.stream(v.columns[columnIndex.get(c)], 0, v.size)
+                    .filter(Objects::nonNull);
+        }
+
+        /**
+         * Determine if this archetype can answer a query.
+         *
+         * @param clazzes
+         *                    the component types queried
+         * @return true if the archetype has all of the types and is not
+         *         expired
+         */
+        boolean matches(final Set<Class<? extends Component>> clazzes) {
+            return signature.containsAll(clazzes)
+                    && !signature.contains(Expired.class);
+        }
+    }
+
+    /**
+     * Position of a stored entity.
+     */
+    private static final class Slot {
+
+        /**
+         * The archetype holding the entity.
+         */
+        private final Archetype archetype;
+
+        /**
+         * The row of the entity within the archetype.
+         */
+        private int row;
+
+        /**
+         * Create a slot.
+         *
+         * @param a
+         *              the archetype holding the entity
+         * @param r
+         *              the row of the entity
+         */
+        Slot(final Archetype a, final int r) {
+            archetype = a;
+            row = r;
+        }
+    }
+
+    /**
+     * Moves entities between archetypes as they change and answers queries
+     * from the columns.
+     */
+    private final class Indexer implements ComponentIndex, EntityObserver {
+
+        @Override
+        public Stream<Entity> having(
+                final Set<Class<? extends Component>> clazzes) {
+            return archetypes.values().stream()
+                    .filter(a -> a.matches(clazzes))
+                    .flatMap(Archetype::entities);
+        }
+
+        /**
+         * Every entity of a matching archetype has the components and is
+         * unexpired, so none is checked.
+         */
+        @Override
+        public Stream<Entity> matching(
+                final Set<Class<? extends Component>> clazzes) {
+            return having(clazzes);
+        }
+
+        @Override
+        public <C extends Component> Stream<C> component(
+                final Class<C> clazz) {
+            final Set<Class<? extends Component>> q = Set.of(clazz);
+            return archetypes.values().stream().filter(a -> a.matches(q))
+                    .flatMap(a -> a.column(clazz)).map(clazz::cast);
+        }
+
+        @Override
+        public void registered(final Entity e, final Component c) {
+            synchronized (lock) {
+                if (entities.get(e.id()) == e) {
+                    locations.registered(e, c);
+                    final Slot s = slots.get(e.id());
+                    if (s != null && s.archetype.rows[s.row] == e && s.archetype
+                            .signature.contains(c.getClass())) {
+                        s.archetype.set(s.row, c);
+                    } else {
+                        place(e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void deregistered(final Entity e,
+                final Class<? extends Component> c) {
+            synchronized (lock) {
+                if (entities.get(e.id()) == e) {
+                    locations.deregistered(e, c);
+                    place(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Entity storage, by entity ID.
+     */
+    private final Map<Long, Entity> entities;
+
+    /**
+     * Archetypes by component type signature.
+     */
+    private final Map<Set<Class<? extends Component>>, Archetype> archetypes;
+
+    /**
+     * Guards changes to the archetypes and the slots. Queries read the
+     * archetypes without it.
+     */
+    private final Object lock;
+
+    /**
+     * Archetype position of each stored entity, by entity ID.
+     */
+    private final Map<Long, Slot> slots;
+
+    /**
+     * Entities by physical location.
+     */
+    private final LocationIndex locations;
+
+    /**
+     * Observer and query interface to the archetypes.
+     */
+    private final Indexer indexer;
+
+    /**
+     * Generator of the IDs of created entities.
+     */
+    private final EntityIds sequence;
+
+    /**
+     * Construct an empty store.
+     */
+    public ArchetypeEntityStore() {
+        sequence = new EntityIds(EntityIds.origin());
+        entities = new ConcurrentHashMap<>();
+        archetypes = new ConcurrentHashMap<>();
+        lock = new Object();
+        slots = new HashMap<>();
+        locations = new LocationIndex();
+        indexer = new Indexer();
+    }
+
+    /**
+     * Move an entity to the archetype matching its current components. Must
+     * be called while holding the lock.
+     *
+     * @param e
+     *              the entity to place
+     */
+    private void place(final Entity e) {
+        final Set<Class<? extends Component>> sig = Set
+                .copyOf(e.componentMap().keySet());
+        final Slot s = slots.get(e.id());
+        if (s != null && s.archetype.rows[s.row] == e
+                && s.archetype.signature.equals(sig)) {
+            s.archetype.refresh(s.row);
+            return;
+        }
+        if (s != null) {
+            s.archetype.remove(s.row);
+        }
+        final Archetype a = archetypes.computeIfAbsent(sig, Archetype::new);
+        if (a.full()) {
+            a.compact();
+            for (int i = 0; i < a.size; i++) {
+                slots.get(a.rows[i].id()).row = i;
+            }
+        }
+        slots.put(e.id(), new Slot(a, a.add(e)));
+    }
+
+    @Override
+    public EntityStream stream() {
+        return new EntityStream(entities.values().stream(), this, indexer);
+    }
+
+    @Override
+    public EntityStream stream(final Set<Long> ids) {
+        return ids.stream().map(i -> this.get(i)).filter(o -> o.isPresent())
+                .map(o -> o.get()).collect(EntityStream.collector(this));
+    }
+
+    @Override
+    public EntityStream stream(final LongStream ids) {
+        return ids.mapToObj(i -> this.get(i)).filter(o -> o.isPresent())
+                .map(o -> o.get()).collect(EntityStream.collector(this));
+    }
+
+    @Override
+    public EntityStream located(final long location) {
+        return stream(locations.at(location));
+    }
+
+    @Override
+    public Optional<Entity> get(final long id) {
+        final Entity e = entities.get(id);
+        if (e == null || e.hasComponent(Expired.class)) {
+            return Optional.empty();
+        } else {
+            return Optional.of(e);
+        }
+    }
+
+    @Override
+    public Optional<Entity> commit(final Entity e) {
+        e.observe(indexer);
+        synchronized (lock) {
+            final Entity old = entities.put(e.id(), e);
+            if (old != e) {
+                if (old != null) {
+                    old.observe(null);
+                }
+                place(e);
+                locations.track(e);
+            }
+        }
+        return get(e.id());
+    }
+
+    /**
+     * Stores the batch while holding the lock once, so that no other writer
+     * interleaves with it. The batch is not atomic: queries read the rows
+     * and columns in place as each entity is placed, and lookups by ID find
+     * each entity as soon as it is stored, so both may see part of the
+     * batch.
+     */
+    @Override
+    public void commitAll(final Collection<Entity> es) {
+        final Map<Long, Entity> batch = new LinkedHashMap<>();
+        es.forEach(e -> batch.put(e.id(), e));
+        synchronized (lock) {
+            batch.values().forEach(e -> {
+                e.observe(indexer);
+                final Entity old = entities.put(e.id(), e);
+                if (old != e) {
+                    if (old != null) {
+                        old.observe(null);
+                    }
+                    place(e);
+                    locations.track(e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public Entity create() {
+        Entity e;
+        synchronized (lock) {
+            do {
+                e = new Entity(sequence.next(entities::containsKey));
+                e.observe(indexer);
+            } while (entities.putIfAbsent(e.id(), e) != null);
+            place(e);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,172 @@
+package wumpus.engine.entity;
+
+import java.util.Set;
+
+import wumpus.engine.entity.component.Component;
+
+/**
+ * A change to the stored entities, as published by a {@link ChangeFeed}: a
+ * component registered with or removed from an entity, or an entity stored
+ * in full, replacing whatever was stored with its ID.
+ */
+public final class Change {
+
+    /**
+     * The kinds of change.
+     */
+    public enum Kind {
+        /**
+         * An entity stored in full.
+         */
+        STORED,
+        /**
+         * A component registered with an entity, replacing any of its type.
+         */
+        REGISTERED,
+        /**
+         * A component type removed from an entity.
+         */
+        REMOVED
+    }
+
+    /**
+     * The offset of the change in its feed.
+     */
+    private final long offset;
+
+    /**
+     * The tick of the feed in which the change was made.
+     */
+    private final long tick;
+
+    /**
+     * The ID of the entity changed.
+     */
+    private final long entity;
+
+    /**
+     * The kind of change.
+     */
+    private final Kind kind;
+
+    /**
+     * The type of the component changed, or null for an entity stored.
+     */
+    private final Class<? extends Component> type;
+
+    /**
+     * The components of an entity stored, or the component registered.
+     */
+    private final Set<Component> components;
+
+    /**
+     * Create a change.
+     *
+     * @param o
+     *              the offset of the change in its feed
+     * @param t
+     *              the tick in which it was made
+     * @param e
+     *              the ID of the entity changed
+     * @param k
+     *              the kind of change
+     * @param c
+     *              the type of the component changed, or null for an entity
+     *              stored
+     * @param cs
+     *              the components of an entity stored, the component
+     *              registered, or none for a component removed
+     */
+    Change(final long o, final long t, final long e, final Kind k,
+            final Class<? extends Component> c, final Set<Component> cs) {
+        offset = o;
+        tick = t;
+        entity = e;
+        kind = k;
+        type = c;
+        components = cs;
+    }
+
+    /**
+     * The offset of the change in its feed. The next change follows at the
+     * next offset.
+     *
+     * @return the offset
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * The tick of the feed in which the change was made.
+     *
+     * @return the tick number
+     */
+    public long tick() {
+        return tick;
+    }
+
+    /**
+     * The ID of the entity changed.
+     *
+     * @return the entity ID
+     */
+    public long entity() {
+        return entity;
+    }
+
+    /**
+     * The kind of change.
+     *
+     * @return the kind
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * The type of the component registered or removed.
+     *
+     * @return the component type, or null for an entity stored in full
+     */
+    public Class<? extends Component> type() {
+        return type;
+    }
+
+    /**
+     * The new state of the entity: every persistent component of an entity
+     * stored, the component registered, or none for a component removed.
+     *
+     * @return the components
+     */
+    public Set<Component> components() {
+        return components;
+    }
+
+    /**
+     * Make the change to a replica of the store it was made to. An entity
+     * stored is rebuilt as it was, replacing any stored with its ID; a
+     * component registered or removed changes the stored entity, if any.
+     *
+     * @param store
+     *                  the replica
+     */
+    public void apply(final EntityStore store) {
+        if (kind == Kind.STORED) {
+            final Entity e = new Entity(entity);
+            components.forEach(e::restoreComponent);
+            store.commit(e);
+        } else if (kind == Kind.REGISTERED) {
+            store.get(entity)
+                    .ifPresent(e -> components.forEach(e::registerComponent));
+        } else {
+            store.get(entity).ifPresent(e -> e.deregisterComponent(type));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return offset + "@" + tick + ":" + kind + " " + entity + " "
+                + components;
+    }
+}
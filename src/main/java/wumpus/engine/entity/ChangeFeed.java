@@ -0,0 +1,734 @@
+package wumpus.engine.entity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import wumpus.engine.codec.ComponentCodecs;
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.TransientComponent;
+
+/**
+ * Durable feed of every change to the entities of a store, which consumers
+ * tail from an offset at their own pace.
+ *
+ * A store given the feed publishes each component registered with or removed
+ * from a stored entity, and each entity stored in full, as a {@link Change}
+ * stamped with the tick of the feed; transient components are never
+ * published. Changes are numbered in order from zero, and the number of a
+ * change is its offset.
+ *
+ * The feed is a directory of memory-mapped segment files of a fixed capacity,
+ * each named by the offset of its first change. Each change is framed by its
+ * length and a CRC32 checksum of its body, which is its kind, tick and entity
+ * ID, then the change in the format of {@link ComponentCodecs#standard()}.
+ * A full segment ends with a marker once the next segment exists. Only the
+ * newest segments are retained.
+ *
+ * Publishing a change only writes it to memory shared with the operating
+ * system, so the engine never waits for consumers. A {@link Cursor} reads the
+ * segment files itself, in this process or another, and takes a change only
+ * once it is whole. {@link #endTick()} forces the changes of a tick to the
+ * device and moves on to the next tick.
+ */
+public final class ChangeFeed implements Closeable {
+
+    /**
+     * Publishes every change to the stored entities.
+     */
+    private final class Publisher implements EntityObserver {
+
+        @Override
+        public void registered(final Entity e, final Component c) {
+            if (!(c instanceof TransientComponent)) {
+                append(REGISTERED, out -> writeRegistered(e.id(), c, out));
+            }
+        }
+
+        @Override
+        public void deregistered(final Entity e,
+                final Class<? extends Component> c) {
+            if (CODECS.has(c)) {
+                append(REMOVED, out -> writeRemoved(e.id(), c, out));
+            }
+        }
+
+        /**
+         * Publishes the entity in full while holding its monitor, so that
+         * changes made to it in the meantime are published after it.
+         */
+        @Override
+        public void stored(final Entity e) {
+            synchronized (e) {
+                final List<Component> cs = e.componentMap().values().stream()
+                        .filter(c -> !(c instanceof TransientComponent))
+                        .collect(Collectors.toList());
+                append(STORED,
+                        out -> EntityBundle.writeEntity(e.id(), cs, out));
+            }
+        }
+    }
+
+    /**
+     * Reads the changes of a feed in order from an offset, waiting at the end
+     * of the feed for more.
+     *
+     * A cursor reads the segment files directly, so it may be used in any
+     * process, and never holds up the feed. It is not safe for use by many
+     * threads.
+     */
+    public static final class Cursor {
+
+        /**
+         * Directory of the feed.
+         */
+        private final Path directory;
+
+        /**
+         * Checksum of the change being read.
+         */
+        private final CRC32 crc;
+
+        /**
+         * The segment being read, empty until the feed has one.
+         */
+        private ByteBuffer in;
+
+        /**
+         * Offset of the first change of the segment being read, or -1 before
+         * the feed has one.
+         */
+        private long first;
+
+        /**
+         * Offset of the change at the position of the segment being read.
+         */
+        private long at;
+
+        /**
+         * Offset of the next change to take.
+         */
+        private long offset;
+
+        /**
+         * Open a cursor at an offset.
+         *
+         * @param d
+         *              the directory of the feed
+         * @param o
+         *              the offset of the first change to take
+         * @throws IOException
+         *                         if the feed cannot be read
+         * @throws IllegalArgumentException
+         *                                      if the feed no longer retains
+         *                                      the offset
+         */
+        Cursor(final Path d, final long o) throws IOException {
+            directory = d;
+            crc = new CRC32();
+            offset = o;
+            final List<Long> firsts = list(d);
+            long start = -1;
+            for (final long f : firsts) {
+                if (f <= o) {
+                    start = f;
+                }
+            }
+            if (start >= 0) {
+                map(start);
+            } else if (firsts.isEmpty()) {
+                in = ByteBuffer.allocate(0);
+                first = -1;
+            } else {
+                throw new IllegalArgumentException(
+                        "The feed no longer retains offset " + o + ".");
+            }
+        }
+
+        /**
+         * Start reading a segment.
+         *
+         * @param start
+         *                  the offset of its first change
+         * @throws IOException
+         *                         if the segment cannot be read
+         */
+        private void map(final long start) throws IOException {
+            try (FileChannel f = FileChannel.open(
+                    segment(directory, start), StandardOpenOption.READ)) {
+                in = f.map(FileChannel.MapMode.READ_ONLY, 0, f.size());
+            }
+            first = start;
+            at = start;
+        }
+
+        /**
+         * The offset of the next change to take.
+         *
+         * @return the offset
+         */
+        public long offset() {
+            return offset;
+        }
+
+        /**
+         * Take the next change, if the feed holds it yet.
+         *
+         * @return the change, or empty at the end of the feed
+         * @throws IOException
+         *                         if the next segment cannot be read
+         * @throws IllegalStateException
+         *                                   if the feed has dropped the next
+         *                                   change, as when the cursor falls
+         *                                   more than the retained segments
+         *                                   behind
+         */
+        public Optional<Change> poll() throws IOException {
+            while (true) {
+                final int length = frame(in, in.position(), crc);
+                if (length > 0) {
+                    final ByteBuffer body = in.slice(in.position() + FRAME,
+                            length);
+                    in.position(in.position() + FRAME + length);
+                    at++;
+                    if (at > offset) {
+                        offset = at;
+                        final Optional<Change> c = decode(at - 1,
+                                new ComponentReader(body));
+                        if (c.isPresent()) {
+                            return c;
+                        }
+                    }
+                } else if (at > first
+                        && Files.exists(segment(directory, at))) {
+                    map(at);
+                } else if (length == END
+                        || (first < 0 && !list(directory).isEmpty())) {
+                    throw new IllegalStateException(
+                            "The feed no longer retains offset " + at + ".");
+                } else {
+                    return Optional.empty();
+                }
+            }
+        }
+    }
+
+    /**
+     * Default capacity of each segment in bytes.
+     */
+    public static final int SEGMENT_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Default number of segments retained.
+     */
+    public static final int RETAINED_SEGMENTS = 16;
+
+    /**
+     * Codecs of the published components.
+     */
+    private static final ComponentCodecs CODECS = ComponentCodecs.standard();
+
+    /**
+     * Change storing an entity in full.
+     */
+    private static final byte STORED = 0;
+
+    /**
+     * Change registering a component with an entity.
+     */
+    private static final byte REGISTERED = 1;
+
+    /**
+     * Change removing a component type from an entity.
+     */
+    private static final byte REMOVED = 2;
+
+    /**
+     * File name suffix of segments.
+     */
+    private static final String SUFFIX = ".feed";
+
+    /**
+     * Size of the frame preceding each change: its length and checksum.
+     */
+    private static final int FRAME = Integer.BYTES * 2;
+
+    /**
+     * Length marking the end of a full segment.
+     */
+    private static final int END = -1;
+
+    /**
+     * Directory holding the segments.
+     */
+    private final Path directory;
+
+    /**
+     * Capacity of each new segment in bytes.
+     */
+    private final int capacity;
+
+    /**
+     * Number of segments retained.
+     */
+    private final int retained;
+
+    /**
+     * Offsets of the first changes of the retained segments, in order.
+     */
+    private final List<Long> segments;
+
+    /**
+     * Writer of changes, guarded by this feed.
+     */
+    private final ComponentWriter writer;
+
+    /**
+     * Checksum of changes, guarded by this feed.
+     */
+    private final CRC32 crc;
+
+    /**
+     * The segment being appended to, or null until the first change.
+     */
+    private MappedByteBuffer current;
+
+    /**
+     * Position in the current segment up to which it has been forced.
+     */
+    private int synced;
+
+    /**
+     * Offset of the next change.
+     */
+    private long next;
+
+    /**
+     * The current tick.
+     */
+    private long tick;
+
+    /**
+     * True once the feed has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Open the feed kept in a directory, continuing after the changes it
+     * holds.
+     *
+     * @param dir
+     *                the directory of the feed, created if absent
+     * @throws IOException
+     *                         if the feed cannot be read
+     */
+    public ChangeFeed(final Path dir) throws IOException {
+        this(dir, SEGMENT_BYTES, RETAINED_SEGMENTS);
+    }
+
+    /**
+     * Open the feed kept in a directory, continuing after the changes it
+     * holds. A change cut short by a crash is dropped, and its offset given
+     * to the next change.
+     *
+     * @param dir
+     *                     the directory of the feed, created if absent
+     * @param segment
+     *                     the capacity of each segment in bytes
+     * @param retain
+     *                     the number of segments retained
+     * @throws IOException
+     *                         if the feed cannot be read
+     */
+    public ChangeFeed(final Path dir, final int segment, final int retain)
+            throws IOException {
+        directory = dir;
+        capacity = segment;
+        retained = retain;
+        writer = new ComponentWriter();
+        crc = new CRC32();
+        Files.createDirectories(dir);
+        segments = list(dir);
+        if (!segments.isEmpty()) {
+            reopen();
+        }
+    }
+
+    /**
+     * Continue appending to the last segment after its intact changes,
+     * clearing whatever follows them, in the tick after the last change.
+     *
+     * @throws IOException
+     *                         if a segment cannot be read
+     */
+    private synchronized void reopen() throws IOException {
+        final long first = segments.get(segments.size() - 1);
+        try (FileChannel f = FileChannel.open(segment(directory, first),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            current = f.map(FileChannel.MapMode.READ_WRITE, 0, f.size());
+        }
+        next = first + scan(current);
+        synced = current.position();
+        while (current.hasRemaining()) {
+            current.put((byte) 0);
+        }
+        current.position(synced).force();
+        if (next == first && segments.size() > 1) {
+            try (FileChannel f = FileChannel.open(
+                    segment(directory, segments.get(segments.size() - 2)),
+                    StandardOpenOption.READ)) {
+                scan(f.map(FileChannel.MapMode.READ_ONLY, 0, f.size()));
+            }
+        }
+    }
+
+    /**
+     * Move past the intact changes of a segment, taking the tick after the
+     * last of them as the current tick.
+     *
+     * @param in
+     *               the segment, positioned at its start
+     * @return the number of intact changes
+     */
+    private int scan(final ByteBuffer in) {
+        int n = 0;
+        int length = frame(in, in.position(), crc);
+        while (length > 0) {
+            final ComponentReader r = new ComponentReader(
+                    in.slice(in.position() + FRAME, length));
+            r.readByte();
+            tick = r.readUnsignedVarLong() + 1;
+            in.position(in.position() + FRAME + length);
+            n++;
+            length = frame(in, in.position(), crc);
+        }
+        return n;
+    }
+
+    /**
+     * List the segments of a feed.
+     *
+     * @param dir
+     *                the directory of the feed
+     * @return the offsets of their first changes, in order
+     * @throws IOException
+     *                         if the directory cannot be read
+     */
+    private static List<Long> list(final Path dir) throws IOException {
+        final List<Long> firsts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                "*" + SUFFIX)) {
+            for (final Path f : files) {
+                final String name = dir.relativize(f).toString();
+                firsts.add(Long.parseLong(
+                        name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(firsts);
+        return firsts;
+    }
+
+    /**
+     * Locate a segment.
+     *
+     * @param dir
+     *                  the directory of the feed
+     * @param first
+     *                  the offset of the first change of the segment
+     * @return the path of the segment file
+     */
+    private static Path segment(final Path dir, final long first) {
+        return dir.resolve(first + SUFFIX);
+    }
+
+    /**
+     * Check the frame of a change in a segment.
+     *
+     * @param in
+     *                     the segment
+     * @param position
+     *                     the position of the frame
+     * @param checksum
+     *                     the checksum to compute with
+     * @return the length of the intact change there, {@link #END} if the
+     *         segment ends there, or zero if there is no intact change yet
+     */
+    private static int frame(final ByteBuffer in, final int position,
+            final CRC32 checksum) {
+        if (in.limit() - position < FRAME) {
+            return 0;
+        }
+        final int length = in.getInt(position);
+        if (length == END) {
+            return END;
+        }
+        if (length <= 0 || length > in.limit() - position - FRAME) {
+            return 0;
+        }
+        checksum.reset();
+        checksum.update(in.slice(position + FRAME, length));
+        if ((int) checksum.getValue() != in.getInt(position + Integer.BYTES)) {
+            return 0;
+        }
+        return length;
+    }
+
+    /**
+     * Encode a registered component after the kind and tick of its change.
+     *
+     * @param id
+     *                the ID of the entity
+     * @param c
+     *                the component
+     * @param out
+     *                the writer to encode with
+     */
+    private static void writeRegistered(final long id, final Component c,
+            final ComponentWriter out) {
+        out.writeFixedLong(id).base(id);
+        CODECS.write(c, out);
+    }
+
+    /**
+     * Encode a removed component type after the kind and tick of its change.
+     *
+     * @param id
+     *                the ID of the entity
+     * @param c
+     *                the component type
+     * @param out
+     *                the writer to encode with
+     */
+    private static void writeRemoved(final long id,
+            final Class<? extends Component> c, final ComponentWriter out) {
+        out.writeFixedLong(id).writeUnsignedVarLong(CODECS.tag(c));
+    }
+
+    /**
+     * Encode a change as it is kept in a feed, as for a replica of the store
+     * it was made to. Its offset is not encoded.
+     *
+     * @param c
+     *                the change
+     * @param out
+     *                the writer to encode with
+     * @return the writer
+     */
+    public static ComponentWriter encode(final Change c,
+            final ComponentWriter out) {
+        if (c.kind() == Change.Kind.STORED) {
+            out.writeByte(STORED).writeUnsignedVarLong(c.tick());
+            EntityBundle.writeEntity(c.entity(), c.components(), out);
+        } else if (c.kind() == Change.Kind.REGISTERED) {
+            out.writeByte(REGISTERED).writeUnsignedVarLong(c.tick());
+            writeRegistered(c.entity(), c.components().iterator().next(),
+                    out);
+        } else {
+            out.writeByte(REMOVED).writeUnsignedVarLong(c.tick());
+            writeRemoved(c.entity(), c.type(), out);
+        }
+        return out;
+    }
+
+    /**
+     * Decode a change encoded by {@link #encode(Change, ComponentWriter)}.
+     * Components of types no longer known are skipped.
+     *
+     * @param offset
+     *                   the offset of the change
+     * @param in
+     *                   the reader of the change
+     * @return the change, or empty if it is of a component type no longer
+     *         known
+     * @throws IllegalStateException
+     *                                   if the change is of no known kind
+     */
+    public static Optional<Change> decode(final long offset,
+            final ComponentReader in) {
+        final int kind = in.readByte();
+        final long t = in.readUnsignedVarLong();
+        if (kind == STORED) {
+            final Entity e = EntityBundle.readEntity(in);
+            return Optional.of(new Change(offset, t, e.id(),
+                    Change.Kind.STORED, null, e.components()));
+        }
+        final long id = in.readFixedLong();
+        in.base(id);
+        if (kind == REGISTERED) {
+            return CODECS.read(in).map(c -> new Change(offset, t, id,
+                    Change.Kind.REGISTERED, c.getClass(), Set.of(c)));
+        } else if (kind == REMOVED) {
+            return CODECS.type(Math.toIntExact(in.readUnsignedVarLong()))
+                    .map(c -> new Change(offset, t, id, Change.Kind.REMOVED,
+                            c, Set.of()));
+        } else {
+            throw new IllegalStateException(
+                    "Unknown change kind " + kind + ".");
+        }
+    }
+
+    /**
+     * Open a cursor reading a feed from an offset.
+     *
+     * @param dir
+     *                   the directory of the feed
+     * @param offset
+     *                   the offset of the first change to read
+     * @return the cursor
+     * @throws IOException
+     *                         if the feed cannot be read
+     * @throws IllegalArgumentException
+     *                                      if the feed no longer retains the
+     *                                      offset
+     */
+    public static Cursor tail(final Path dir, final long offset)
+            throws IOException {
+        return new Cursor(dir, offset);
+    }
+
+    /**
+     * Open a cursor reading this feed from an offset.
+     *
+     * @param offset
+     *                   the offset of the first change to read
+     * @return the cursor
+     * @throws IOException
+     *                         if the feed cannot be read
+     * @throws IllegalArgumentException
+     *                                      if the feed no longer retains the
+     *                                      offset
+     */
+    public Cursor tail(final long offset) throws IOException {
+        return new Cursor(directory, offset);
+    }
+
+    /**
+     * The observer publishing the changes reported by a store.
+     *
+     * @return the observer
+     */
+    EntityObserver publisher() {
+        return new Publisher();
+    }
+
+    /**
+     * The offset the next change will be given.
+     *
+     * @return the offset
+     */
+    public synchronized long next() {
+        return next;
+    }
+
+    /**
+     * The tick changes are being stamped with.
+     *
+     * @return the tick number
+     */
+    public synchronized long tick() {
+        return tick;
+    }
+
+    /**
+     * Append a change.
+     *
+     * @param kind
+     *                   the kind of change
+     * @param change
+     *                   encodes the change after its kind and tick
+     * @throws UncheckedIOException
+     *                                  if a new segment cannot be created
+     */
+    private synchronized void append(final byte kind,
+            final Consumer<ComponentWriter> change) {
+        if (closed) {
+            throw new IllegalStateException("The feed is closed.");
+        }
+        writer.reset().writeByte(kind).writeUnsignedVarLong(tick);
+        change.accept(writer);
+        final int length = writer.size();
+        if (length + 2 * FRAME > capacity) {
+            throw new IllegalArgumentException("A change of " + length
+                    + " bytes exceeds the segment capacity.");
+        }
+        try {
+            if (current == null
+                    || current.remaining() < length + 2 * FRAME) {
+                roll();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not extend the feed.", ex);
+        }
+        crc.reset();
+        crc.update(writer.view());
+        current.putInt(length).putInt((int) crc.getValue())
+                .put(writer.view());
+        next++;
+    }
+
+    /**
+     * Start a new segment, then mark the end of the current one, if any,
+     * force it, and drop the oldest segments beyond those retained.
+     *
+     * @throws IOException
+     *                         if the new segment cannot be created
+     */
+    private void roll() throws IOException {
+        final MappedByteBuffer full = current;
+        try (FileChannel f = FileChannel.open(segment(directory, next),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            current = f.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        segments.add(next);
+        synced = 0;
+        if (full != null) {
+            full.putInt(END);
+            full.force();
+        }
+        while (segments.size() > retained) {
+            Files.deleteIfExists(segment(directory, segments.remove(0)));
+        }
+    }
+
+    /**
+     * End the current tick: force its changes to the device and stamp later
+     * changes with the next tick.
+     */
+    public synchronized void endTick() {
+        if (current != null && current.position() > synced) {
+            current.force(synced, current.position() - synced);
+            synced = current.position();
+        }
+        tick++;
+    }
+
+    /**
+     * Force the feed to the device and refuse further changes.
+     */
+    @Override
+    public synchronized void close() {
+        if (current != null) {
+            current.force();
+        }
+        current = null;
+        closed = true;
+    }
+}
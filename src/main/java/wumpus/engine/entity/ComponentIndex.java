@@ -0,0 +1,60 @@
+package wumpus.engine.entity;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Expired;
+
+/**
+ * A store-maintained lookup of entities by the components they carry.
+ */
+interface ComponentIndex {
+
+    /**
+     * Stream the entities which have all of the given components.
+     *
+     * The result may include expired entities, and may include entities which
+     * lost a component after the stream was opened, so callers should still
+     * check for the components they need.
+     *
+     * @param clazzes
+     *                    the component types to match
+     * @return a stream of matching entities
+     */
+    Stream<Entity> having(Set<Class<? extends Component>> clazzes);
+
+    /**
+     * Stream the unexpired entities which have all of the given components.
+     *
+     * By default each entity found by {@link #having(Set)} is checked for the
+     * components; an index which knows its matches exactly may skip the
+     * checks.
+     *
+     * @param clazzes
+     *                    the component types to match
+     * @return a stream of matching entities
+     */
+    default Stream<Entity> matching(
+            final Set<Class<? extends Component>> clazzes) {
+        return having(clazzes).filter(e -> !e.hasComponent(Expired.class))
+                .filter(e -> clazzes.stream()
+                        .allMatch(z -> e.hasComponent(z)));
+    }
+
+    /**
+     * Stream a component of every unexpired entity which has it.
+     *
+     * @param clazz
+     *                  the component type to match
+     * @param <C>
+     *                  the component type to match
+     * @return a stream of the matching components
+     */
+    default <C extends Component> Stream<C> component(final Class<C> clazz) {
+        return having(Set.of(clazz))
+                .filter(e -> !e.hasComponent(Expired.class)
+                        && e.hasComponent(clazz))
+                .map(e -> e.component(clazz));
+    }
+}
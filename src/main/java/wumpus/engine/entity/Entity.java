@@ -7,6 +7,8 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
 
 import wumpus.engine.entity.component.AbstractEntityComponent;
 import wumpus.engine.entity.component.Component;
@@ -15,6 +17,12 @@ import wumpus.engine.entity.component.Container;
 /**
  * A shallow representation of any game object. This implements a loose ECS
  * architecture and holds no data of its own, instead delegating to components.
+ *
+ * Every change to the components of an entity advances its version, which a
+ * {@link Transaction} uses to detect conflicting changes. Changes are
+ * serialized on the entity's monitor; reads take no lock. Once a transaction
+ * replaces a stored entity with a new version, changes made through the
+ * replaced object are forwarded to its replacement.
  */
 public final class Entity implements ComponentRegistry {
 
@@ -96,6 +104,28 @@ public final class Entity implements ComponentRegistry {
      */
     private final ComponentMap components;
 
+    /**
+     * Observer of component changes, typically the store holding this entity.
+     * May be null.
+     */
+    private volatile EntityObserver observer;
+
+    /**
+     * Count of changes to the components of this entity.
+     */
+    private final AtomicLong version;
+
+    /**
+     * False while this entity is a transaction's private copy, whose
+     * components still refer back to the stored entity.
+     */
+    private volatile boolean attached;
+
+    /**
+     * The entity which replaced this one in its store, or null.
+     */
+    private volatile Entity successor;
+
     /**
      * Initialize a new entity with its components.
      *
@@ -107,12 +137,29 @@ public final class Entity implements ComponentRegistry {
     public Entity(final long i, final Component... cs) {
         this.id = i;
         this.components = new ComponentMap(this);
+        this.version = new AtomicLong();
+        this.attached = true;
         Arrays.stream(cs).forEach(c -> {
             this.registerComponent(c);
             this.backRegister(c);
         });
     }
 
+    /**
+     * Initialize a detached copy of an entity, sharing its components and
+     * version.
+     *
+     * @param e
+     *              the entity to copy
+     */
+    private Entity(final Entity e) {
+        this.id = e.id;
+        this.components = new ComponentMap(this);
+        this.components.putAll(e.components);
+        this.version = new AtomicLong(e.version());
+        this.attached = false;
+    }
+
     /**
      * Register this entity with the component if possible.
      *
@@ -120,7 +167,7 @@ public final class Entity implements ComponentRegistry {
      *              the component to register
      */
     private void backRegister(final Component c) {
-        if (c instanceof AbstractEntityComponent) {
+        if (attached && c instanceof AbstractEntityComponent) {
             ((AbstractEntityComponent) c).setEntity(this);
         }
     }
@@ -132,12 +179,59 @@ public final class Entity implements ComponentRegistry {
      *              the component to deregister
      */
     private void backDeregister(final Component c) {
-        if (c != null && c instanceof AbstractEntityComponent
+        if (attached && c != null && c instanceof AbstractEntityComponent
                 && this.equals(c.entity())) {
             ((AbstractEntityComponent) c).setEntity(null);
         }
     }
 
+    /**
+     * Create a detached copy of this entity for a transaction to change
+     * privately. The components of the copy keep referring to this entity.
+     *
+     * @return the copy
+     */
+    Entity detach() {
+        return new Entity(this);
+    }
+
+    /**
+     * Attach a copy made by {@link #detach()}, pointing its components back
+     * to it, and forward later changes to the entity it was copied from.
+     *
+     * Must be called while holding the monitor of the replaced entity.
+     *
+     * @param replaced
+     *                     the stored entity this copy replaces
+     */
+    void attach(final Entity replaced) {
+        attached = true;
+        components.values().forEach(this::backRegister);
+        replaced.successor = this;
+    }
+
+    /**
+     * Observe the version of this entity, which advances with every change
+     * to its components.
+     *
+     * @return the version
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Set the observer to be notified of component changes.
+     *
+     * Ideally this should only be set by the store holding this entity.
+     *
+     * @param o
+     *              the observer to notify, or null for none
+     */
+    void observe(final EntityObserver o) {
+        this.observer = o;
+    }
+
     /**
      * Observe the ID of this entity.
      *
@@ -159,14 +253,14 @@ public final class Entity implements ComponentRegistry {
     /**
      * Get the contents of this entity.
      *
-     * @return the contents if this entity is a container or an empty set
-     *         otherwise.
+     * @return the IDs of the contents if this entity is a container or an
+     *         empty stream otherwise.
      */
-    public Set<Long> contents() {
+    public LongStream contents() {
         if (this.hasComponent(Container.class)) {
             return this.component(Container.class).contents();
         } else {
-            return Set.of();
+            return LongStream.empty();
         }
     }
 
@@ -196,19 +290,54 @@ public final class Entity implements ComponentRegistry {
         return components.byComponent(c);
     }
 
-    @Override
-    public void registerComponent(final Component component) {
+    /**
+     * Restore a component as it was stored, without registering its
+     * dependencies or notifying the observer. Used to rebuild an entity from
+     * durable storage before the entity is stored.
+     *
+     * @param component
+     *                      the component to restore
+     */
+    void restoreComponent(final Component component) {
         this.backRegister(component);
         components.put(component.getClass(), component);
-        component.dependencies().stream()
-                .filter(c -> !hasComponent(c.getClass()))
-                .forEach(c -> registerComponent(c));
     }
 
     @Override
-    public void deregisterComponent(final Class<? extends Component> c) {
-        this.backDeregister(components.get(c));
-        components.remove(c);
+    public synchronized void registerComponent(final Component component) {
+        final Entity s = successor;
+        if (s == null) {
+            this.backRegister(component);
+            components.put(component.getClass(), component);
+            version.incrementAndGet();
+            final EntityObserver o = observer;
+            if (o != null) {
+                o.registered(this, component);
+            }
+            component.dependencies().stream()
+                    .filter(c -> !hasComponent(c.getClass()))
+                    .forEach(c -> registerComponent(c));
+        } else {
+            s.registerComponent(component);
+        }
+    }
+
+    @Override
+    public synchronized void deregisterComponent(
+            final Class<? extends Component> c) {
+        final Entity s = successor;
+        if (s == null) {
+            this.backDeregister(components.get(c));
+            final EntityObserver o = observer;
+            if (components.remove(c) != null) {
+                version.incrementAndGet();
+                if (o != null) {
+                    o.deregistered(this, c);
+                }
+            }
+        } else {
+            s.deregisterComponent(c);
+        }
     }
 
     @Override
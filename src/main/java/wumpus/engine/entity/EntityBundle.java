@@ -0,0 +1,112 @@
+package wumpus.engine.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import wumpus.engine.codec.ComponentCodecs;
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.TransientComponent;
+
+/**
+ * Encoding of the persistent components of entities, so that they can be
+ * rebuilt in another store, such as a player and its inventory moving to
+ * another process of the game.
+ *
+ * Each entity is its ID, then the number of its components and each in the
+ * format of {@link ComponentCodecs#standard()} relative to that ID. A bundle
+ * is the number of its entities, then each of them.
+ */
+public final class EntityBundle {
+
+    /**
+     * Codecs of the components encoded.
+     */
+    private static final ComponentCodecs CODECS = ComponentCodecs.standard();
+
+    /**
+     * Utility class.
+     */
+    private EntityBundle() {
+    }
+
+    /**
+     * Encode an entity.
+     *
+     * @param id
+     *                       the ID of the entity
+     * @param components
+     *                       its persistent components
+     * @param out
+     *                       the writer to encode with
+     * @throws IllegalArgumentException
+     *                                      if a component has no codec
+     */
+    static void writeEntity(final long id,
+            final Collection<Component> components,
+            final ComponentWriter out) {
+        out.writeFixedLong(id).base(id);
+        out.writeUnsignedVarLong(components.size());
+        components.forEach(c -> CODECS.write(c, out));
+    }
+
+    /**
+     * Decode an entity. Components of types no longer known are skipped.
+     *
+     * @param in
+     *               the reader to decode with
+     * @return the entity, which is not yet stored
+     */
+    static Entity readEntity(final ComponentReader in) {
+        final long id = in.readFixedLong();
+        final Entity e = new Entity(id);
+        in.base(id);
+        for (long m = in.readUnsignedVarLong(); m > 0; m--) {
+            CODECS.read(in).ifPresent(e::restoreComponent);
+        }
+        return e;
+    }
+
+    /**
+     * Encode the persistent components of a bundle of entities, leaving out
+     * their transient components.
+     *
+     * @param es
+     *                the entities
+     * @param out
+     *                the writer to encode with
+     * @throws IllegalArgumentException
+     *                                      if a component has no codec
+     */
+    public static void write(final Collection<Entity> es,
+            final ComponentWriter out) {
+        out.writeUnsignedVarLong(es.size());
+        es.forEach(e -> {
+            final List<Component> cs;
+            synchronized (e) {
+                cs = e.componentMap().values().stream()
+                        .filter(c -> !(c instanceof TransientComponent))
+                        .collect(Collectors.toList());
+            }
+            writeEntity(e.id(), cs, out);
+        });
+    }
+
+    /**
+     * Decode a bundle of entities, in the order they were encoded.
+     *
+     * @param in
+     *               the reader to decode with
+     * @return the entities, which are not yet stored
+     */
+    public static List<Entity> read(final ComponentReader in) {
+        final List<Entity> es = new ArrayList<>();
+        for (long n = in.readUnsignedVarLong(); n > 0; n--) {
+            es.add(readEntity(in));
+        }
+        return es;
+    }
+}
@@ -0,0 +1,60 @@
+package wumpus.engine.entity;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Generator of entity IDs for the in-memory stores.
+ *
+ * IDs are handed out in sequence from an origin, so that a store created
+ * with the same origin and changed in the same order gives its entities the
+ * same IDs. The default origin is the current time in milliseconds shifted
+ * clear of the sequence, so that the IDs of a new store follow those of any
+ * world restored into it.
+ */
+final class EntityIds {
+
+    /**
+     * Bit offset to make space for the sequence.
+     */
+    private static final int MILLIS_BIT_OFFSET = 20;
+
+    /**
+     * The next ID to try.
+     */
+    private final AtomicLong next;
+
+    /**
+     * Create a generator.
+     *
+     * @param origin
+     *                   the first ID to hand out
+     */
+    EntityIds(final long origin) {
+        next = new AtomicLong(origin);
+    }
+
+    /**
+     * Choose an origin from the current time.
+     *
+     * @return the origin
+     */
+    static long origin() {
+        return System.currentTimeMillis() << MILLIS_BIT_OFFSET;
+    }
+
+    /**
+     * Generate the next unique ID of the sequence.
+     *
+     * @param taken
+     *                  test for whether an ID is already in use
+     * @return a new entity ID
+     */
+    long next(final LongPredicate taken) {
+        long id;
+        do {
+            id = next.getAndIncrement();
+        } while (taken.test(id));
+        return id;
+    }
+}
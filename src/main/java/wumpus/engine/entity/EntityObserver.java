@@ -0,0 +1,77 @@
+package wumpus.engine.entity;
+
+import wumpus.engine.entity.component.Component;
+
+/**
+ * Receives notice of changes to the components of an entity, typically so
+ * that a store can keep its indexes current, and of entities being stored.
+ */
+interface EntityObserver {
+
+    /**
+     * Called after a component has been registered with an entity.
+     *
+     * @param e
+     *              the entity the component was registered with
+     * @param c
+     *              the registered component
+     */
+    void registered(Entity e, Component c);
+
+    /**
+     * Called after a component type has been removed from an entity.
+     *
+     * @param e
+     *              the entity the component was removed from
+     * @param c
+     *              the type of the removed component
+     */
+    void deregistered(Entity e, Class<? extends Component> c);
+
+    /**
+     * Called after an entity has been stored, whether newly created or
+     * replacing a stored entity with the same ID. Its components are not
+     * reported individually.
+     *
+     * @param e
+     *              the stored entity
+     */
+    default void stored(Entity e) {
+    }
+
+    /**
+     * Combine two observers, which are told of each change in turn.
+     *
+     * @param first
+     *                   the observer told first
+     * @param second
+     *                   the observer told second, or null for none
+     * @return the combined observer
+     */
+    static EntityObserver both(final EntityObserver first,
+            final EntityObserver second) {
+        if (second == null) {
+            return first;
+        }
+        return new EntityObserver() {
+            @Override
+            public void registered(final Entity e, final Component c) {
+                first.registered(e, c);
+                second.registered(e, c);
+            }
+
+            @Override
+            public void deregistered(final Entity e,
+                    final Class<? extends Component> c) {
+                first.deregistered(e, c);
+                second.deregistered(e, c);
+            }
+
+            @Override
+            public void stored(final Entity e) {
+                first.stored(e);
+                second.stored(e);
+            }
+        };
+    }
+}
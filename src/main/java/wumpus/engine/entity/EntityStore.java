@@ -1,7 +1,9 @@
 package wumpus.engine.entity;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.LongStream;
 
 /**
  * Interface to concrete entity storage.
@@ -27,6 +29,25 @@ public interface EntityStore {
      */
     EntityStream stream(Set<Long> ids);
 
+    /**
+     * Retrieves a stream reference to a stream of entity IDs.
+     *
+     * @param ids
+     *                the entity IDs to stream.
+     * @return stream reference to the given entities.
+     */
+    EntityStream stream(LongStream ids);
+
+    /**
+     * Retrieves a stream reference to the entities physically located in
+     * another entity, typically the occupants of a room.
+     *
+     * @param location
+     *                     the entity ID of the location
+     * @return stream reference to the entities at the location.
+     */
+    EntityStream located(long location);
+
     /**
      * Retrieves an individual entity by ID.
      *
@@ -50,6 +71,38 @@ public interface EntityStore {
      */
     Optional<Entity> commit(final Entity e);
 
+    /**
+     * Stores a batch of entities, each replacing the existing entity with the
+     * same ID as by {@link #commit(Entity)}. Where an ID appears more than
+     * once, the last entity with that ID is stored.
+     *
+     * Stores may apply the batch more cheaply than separate commits, updating
+     * their indexes once for the whole batch. The batch is not atomic:
+     * queries and lookups made meanwhile may see part of it.
+     *
+     * @param es
+     *               the entities to store
+     */
+    default void commitAll(final Collection<Entity> es) {
+        es.forEach(this::commit);
+    }
+
+    /**
+     * Applies the changes staged by a transaction if no entity it read has
+     * changed since. Transactions commit one at a time; readers are not
+     * blocked.
+     *
+     * @param t
+     *              the transaction
+     * @return true if the changes were applied, false if nothing was applied
+     *         because of a conflicting change
+     */
+    default boolean commit(final Transaction t) {
+        synchronized (this) {
+            return t.apply(this);
+        }
+    }
+
     /**
      * Generates a new entity.
      *
@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
@@ -18,7 +19,6 @@ import java.util.function.ToDoubleFunction;
 import java.util.function.ToIntFunction;
 import java.util.function.ToLongFunction;
 import java.util.stream.Collector;
-import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
@@ -110,6 +110,12 @@ public final class EntityStream implements Stream<Entity> {
      */
     private final EntityStore store;
 
+    /**
+     * Component index covering the same entities as the delegate stream. May
+     * be null, in which case component queries filter the delegate stream.
+     */
+    private final ComponentIndex index;
+
     /**
      * Create this stream wrapping another stream of entities.
      *
@@ -121,8 +127,88 @@ public final class EntityStream implements Stream<Entity> {
      *              the store to stream from
      */
     public EntityStream(final Stream<Entity> d, final EntityStore s) {
+        this(d, s, null);
+    }
+
+    /**
+     * Create this stream wrapping another stream of entities, answering
+     * component queries from an index over those same entities.
+     *
+     * Will exclude expired entities.
+     *
+     * @param d
+     *              the stream to be wrapped
+     * @param s
+     *              the store to stream from
+     * @param i
+     *              an index over exactly the entities of the wrapped stream
+     */
+    EntityStream(final Stream<Entity> d, final EntityStore s,
+            final ComponentIndex i) {
         this.delegate = d.filter(e -> !e.hasComponent(Expired.class));
         this.store = s;
+        this.index = i;
+    }
+
+    /**
+     * Re-wrap this stream so that every entity it yields, including those
+     * answered from the index, is counted.
+     *
+     * @param s
+     *                    the store to stream contents from
+     * @param touched
+     *                    the counter of entities yielded
+     * @return the counting stream
+     */
+    EntityStream touching(final EntityStore s, final LongAdder touched) {
+        final ComponentIndex counted;
+        if (index == null) {
+            counted = null;
+        } else {
+            counted = new ComponentIndex() {
+
+                @Override
+                public Stream<Entity> having(
+                        final Set<Class<? extends Component>> clazzes) {
+                    return index.having(clazzes)
+                            .peek(e -> touched.increment());
+                }
+
+                @Override
+                public Stream<Entity> matching(
+                        final Set<Class<? extends Component>> clazzes) {
+                    return index.matching(clazzes)
+                            .peek(e -> touched.increment());
+                }
+
+                @Override
+                public <C extends Component> Stream<C> component(
+                        final Class<C> clazz) {
+                    return index.component(clazz)
+                            .peek(c -> touched.increment());
+                }
+            };
+        }
+        return new EntityStream(delegate.peek(e -> touched.increment()), s,
+                counted);
+    }
+
+    /**
+     * Stream the unexpired entities having all of the given components, using
+     * the index when one is available.
+     *
+     * @param clazzes
+     *                    the components to match
+     * @return a stream of matching entities
+     */
+    private Stream<Entity> having(
+            final Set<Class<? extends Component>> clazzes) {
+        if (index == null) {
+            return delegate.filter(e -> clazzes.stream()
+                    .allMatch(z -> e.hasComponent(z)));
+        } else {
+            return index.matching(clazzes);
+        }
     }
 
     /**
@@ -136,8 +222,11 @@ public final class EntityStream implements Stream<Entity> {
      * @return a stream of those components from the given entities
      */
     public <C extends Component> Stream<C> component(final Class<C> clazz) {
-        return delegate.filter(e -> e.hasComponent(clazz))
-                .map(e -> e.component(clazz));
+        if (index == null) {
+            return having(Set.of(clazz)).map(e -> e.component(clazz));
+        } else {
+            return index.component(clazz);
+        }
     }
 
     /**
@@ -150,10 +239,7 @@ public final class EntityStream implements Stream<Entity> {
      */
     public Stream<Entity.ComponentMap> components(
             final Set<Class<? extends Component>> clazzes) {
-        return delegate
-                .filter(e -> clazzes.stream().map(z -> e.hasComponent(z))
-                        .reduce(true, (i, d) -> i && d))
-                .map(e -> e.componentMap());
+        return having(clazzes).map(e -> e.componentMap());
     }
 
     /**
@@ -162,8 +248,8 @@ public final class EntityStream implements Stream<Entity> {
      * @return entity stream of the contents of the stream
      */
     public EntityStream contents() {
-        return store.stream(this.map(e -> e.contents())
-                .flatMap(sl -> sl.stream()).collect(Collectors.toSet()));
+        return store.stream(
+                delegate.flatMapToLong(e -> e.contents()).distinct());
     }
 
     @Override
@@ -0,0 +1,124 @@
+package wumpus.engine.entity;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Physical;
+
+/**
+ * Lookup of entities by their physical location, kept current from changes
+ * to their {@link Physical} components.
+ */
+final class LocationIndex {
+
+    /**
+     * IDs of the entities at each location.
+     */
+    private final Map<Long, Set<Long>> occupants;
+
+    /**
+     * Indexed location of each entity.
+     */
+    private final Map<Long, Long> locations;
+
+    /**
+     * Create an empty index.
+     */
+    LocationIndex() {
+        occupants = new ConcurrentHashMap<>();
+        locations = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Retrieve the entities at a location.
+     *
+     * @param location
+     *                     the entity ID of the location
+     * @return a live view of the IDs of the entities at the location
+     */
+    Set<Long> at(final long location) {
+        return occupants.getOrDefault(location, Set.of());
+    }
+
+    /**
+     * Index an entity at the location given by its physical component, if
+     * it has one.
+     *
+     * @param e
+     *              the entity to index
+     */
+    void track(final Entity e) {
+        final Component p = e.componentMap().get(Physical.class);
+        if (p == null) {
+            untrack(e.id());
+        } else {
+            registered(e, p);
+        }
+    }
+
+    /**
+     * Update the index for a component registered with an entity.
+     *
+     * @param e
+     *              the entity the component was registered with
+     * @param c
+     *              the registered component
+     */
+    void registered(final Entity e, final Component c) {
+        if (c instanceof Physical) {
+            final long to = ((Physical) c).location();
+            final Long from = locations.put(e.id(), to);
+            if (from == null || from != to) {
+                if (from != null) {
+                    leave(e.id(), from);
+                }
+                occupants.computeIfAbsent(to,
+                        k -> ConcurrentHashMap.newKeySet()).add(e.id());
+            }
+        }
+    }
+
+    /**
+     * Update the index for a component type removed from an entity.
+     *
+     * @param e
+     *              the entity the component was removed from
+     * @param c
+     *              the type of the removed component
+     */
+    void deregistered(final Entity e, final Class<? extends Component> c) {
+        if (Physical.class.equals(c)) {
+            untrack(e.id());
+        }
+    }
+
+    /**
+     * Remove an entity from the index.
+     *
+     * @param id
+     *               the entity ID
+     */
+    void untrack(final long id) {
+        final Long from = locations.remove(id);
+        if (from != null) {
+            leave(id, from);
+        }
+    }
+
+    /**
+     * Remove an entity from the occupants of a location.
+     *
+     * @param id
+     *                     the entity ID
+     * @param location
+     *                     the location it is leaving
+     */
+    private void leave(final long id, final long location) {
+        final Set<Long> ids = occupants.get(location);
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package wumpus.engine.entity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import wumpus.engine.codec.ComponentCodecs;
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Expired;
+import wumpus.engine.entity.component.TransientComponent;
+
+/**
+ * Durable entity storage: entities are held in memory as by
+ * {@link MemoryEntityStore}, and every change to them is appended to a log
+ * from which they are restored when the store is next opened.
+ *
+ * A change is logged as it is made, whether a component registered with or
+ * removed from a stored entity, or an entity stored in full. Logged changes
+ * survive a crash of the process at once, and a crash of the machine once
+ * {@link #sync()} has forced them to the device, which the game does at the
+ * end of every tick. Components are written in the compact format of
+ * {@link ComponentCodecs#standard()}, relative to the ID of their entity;
+ * transient components are never logged.
+ *
+ * Opening the store replays the log, then compacts it to a single statement
+ * of every entity which has not expired. The log is compacted again whenever
+ * a sync finds it has grown beyond a number of segments.
+ */
+public final class LogEntityStore implements EntityStore, Closeable {
+
+    /**
+     * Logs every change to the stored entities.
+     */
+    private final class Journal implements EntityObserver {
+
+        @Override
+        public void registered(final Entity e, final Component c) {
+            if (!(c instanceof TransientComponent)) {
+                append(REGISTERED, e.id(), out -> CODECS.write(c, out));
+            }
+        }
+
+        @Override
+        public void deregistered(final Entity e,
+                final Class<? extends Component> c) {
+            if (CODECS.has(c)) {
+                append(DEREGISTERED, e.id(),
+                        out -> out.writeUnsignedVarLong(CODECS.tag(c)));
+            }
+        }
+
+        /**
+         * Logs the entity in full while holding its monitor, so that changes
+         * made to it in the meantime are logged after it.
+         */
+        @Override
+        public void stored(final Entity e) {
+            synchronized (e) {
+                append(STORED, e.id(), out -> state(e, out));
+            }
+        }
+    }
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(LogEntityStore.class.getName());
+
+    /**
+     * Default capacity of each log segment in bytes.
+     */
+    public static final int SEGMENT_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Default number of log segments beyond which the log is compacted.
+     */
+    public static final int COMPACT_SEGMENTS = 4;
+
+    /**
+     * Codecs of the logged components.
+     */
+    private static final ComponentCodecs CODECS = ComponentCodecs.standard();
+
+    /**
+     * Record of an entity stored in full.
+     */
+    private static final byte STORED = 0;
+
+    /**
+     * Record of a component registered with an entity.
+     */
+    private static final byte REGISTERED = 1;
+
+    /**
+     * Record of a component type removed from an entity.
+     */
+    private static final byte DEREGISTERED = 2;
+
+    /**
+     * The log of changes.
+     */
+    private final SegmentLog log;
+
+    /**
+     * Writer of records, reused under the monitor of the log.
+     */
+    private final ComponentWriter writer;
+
+    /**
+     * The entities, held in memory.
+     */
+    private final MemoryEntityStore delegate;
+
+    /**
+     * Number of log segments beyond which the log is compacted.
+     */
+    private final int compactSegments;
+
+    /**
+     * Open the store logged in a directory, restoring its entities.
+     *
+     * @param dir
+     *                the directory of the log, created if absent
+     * @throws IOException
+     *                         if the log cannot be read or compacted
+     */
+    public LogEntityStore(final Path dir) throws IOException {
+        this(dir, SEGMENT_BYTES, COMPACT_SEGMENTS, null);
+    }
+
+    /**
+     * Open the store logged in a directory, restoring its entities, and
+     * publish every change to them to a feed, starting with the restored
+     * entities.
+     *
+     * @param dir
+     *                 the directory of the log, created if absent
+     * @param feed
+     *                 the feed
+     * @throws IOException
+     *                         if the log cannot be read or compacted
+     */
+    public LogEntityStore(final Path dir, final ChangeFeed feed)
+            throws IOException {
+        this(dir, SEGMENT_BYTES, COMPACT_SEGMENTS, feed);
+    }
+
+    /**
+     * Open the store logged in a directory, restoring its entities.
+     *
+     * @param dir
+     *                     the directory of the log, created if absent
+     * @param segment
+     *                     the capacity of each log segment in bytes
+     * @param compact
+     *                     the number of log segments beyond which the log is
+     *                     compacted
+     * @throws IOException
+     *                         if the log cannot be read or compacted
+     */
+    LogEntityStore(final Path dir, final int segment, final int compact)
+            throws IOException {
+        this(dir, segment, compact, null);
+    }
+
+    /**
+     * Open the store logged in a directory, restoring its entities.
+     *
+     * @param dir
+     *                     the directory of the log, created if absent
+     * @param segment
+     *                     the capacity of each log segment in bytes
+     * @param compact
+     *                     the number of log segments beyond which the log is
+     *                     compacted
+     * @param feed
+     *                     the feed to publish changes to, or null for none
+     * @throws IOException
+     *                         if the log cannot be read or compacted
+     */
+    LogEntityStore(final Path dir, final int segment, final int compact,
+            final ChangeFeed feed) throws IOException {
+        final long start = System.nanoTime();
+        log = new SegmentLog(dir, segment);
+        writer = new ComponentWriter();
+        compactSegments = compact;
+        final Map<Long, Entity> restored = new LinkedHashMap<>();
+        log.replay(r -> restore(restored, r));
+        EntityObserver published = null;
+        if (feed != null) {
+            published = feed.publisher();
+        }
+        delegate = new MemoryEntityStore(
+                EntityObserver.both(new Journal(), published));
+        final List<Entity> live = restored.values().stream()
+                .filter(e -> !e.hasComponent(Expired.class))
+                .collect(Collectors.toList());
+        log.rewrite(() -> delegate.commitAll(live));
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Restored " + live.size() + " entities from " + dir
+                    + " in " + TimeUnit.NANOSECONDS
+                            .toMillis(System.nanoTime() - start)
+                    + " ms.");
+        }
+    }
+
+    /**
+     * Encode the state of an entity: its components other than transient
+     * ones.
+     *
+     * @param e
+     *                the entity
+     * @param out
+     *                the writer
+     * @throws IllegalArgumentException
+     *                                      if a component has no codec
+     */
+    private static void state(final Entity e, final ComponentWriter out) {
+        final List<Component> cs = e.componentMap().values().stream()
+                .filter(c -> !(c instanceof TransientComponent))
+                .collect(Collectors.toList());
+        out.writeUnsignedVarLong(cs.size());
+        cs.forEach(c -> CODECS.write(c, out));
+    }
+
+    /**
+     * Apply a log record to the entities being restored. Components of types
+     * no longer known are skipped.
+     *
+     * @param restored
+     *                     the entities restored so far, by ID
+     * @param r
+     *                     the record
+     * @throws IllegalStateException
+     *                                   if the record cannot be decoded
+     */
+    private static void restore(final Map<Long, Entity> restored,
+            final ByteBuffer r) {
+        final ComponentReader in = new ComponentReader(r);
+        final int type = in.readByte();
+        final long id = in.readFixedLong();
+        in.base(id);
+        if (type == STORED) {
+            final Entity e = new Entity(id);
+            restored.put(id, e);
+            for (long n = in.readUnsignedVarLong(); n > 0; n--) {
+                CODECS.read(in).ifPresent(e::restoreComponent);
+            }
+        } else {
+            final Entity e = restored.computeIfAbsent(id, i -> new Entity(i));
+            if (type == REGISTERED) {
+                CODECS.read(in).ifPresent(e::restoreComponent);
+            } else if (type == DEREGISTERED) {
+                CODECS.type(Math.toIntExact(in.readUnsignedVarLong()))
+                        .ifPresent(e::deregisterComponent);
+            } else {
+                throw new IllegalStateException(
+                        "Unknown log record type " + type + ".");
+            }
+        }
+    }
+
+    /**
+     * Append a record to the log. Records are encoded by a single writer
+     * while holding the monitor of the log.
+     *
+     * @param type
+     *                   the type of record
+     * @param id
+     *                   the ID of the entity changed
+     * @param change
+     *                   encodes the change, relative to the entity ID
+     * @throws UncheckedIOException
+     *                                  if the log cannot be appended to
+     */
+    private void append(final byte type, final long id,
+            final Consumer<ComponentWriter> change) {
+        synchronized (log) {
+            writer.reset().writeByte(type).writeFixedLong(id).base(id);
+            change.accept(writer);
+            try {
+                log.append(writer.view());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(
+                        "Could not append to the log.", ex);
+            }
+        }
+    }
+
+    /**
+     * Force every change logged so far to the device, then compact the log
+     * if it has grown beyond the compaction threshold.
+     *
+     * @throws UncheckedIOException
+     *                                  if the log cannot be forced or
+     *                                  compacted
+     */
+    public void sync() {
+        log.sync();
+        if (log.segments() > compactSegments) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log as a statement of every entity which has not expired.
+     *
+     * Entities are read without their monitors, as the log is locked for the
+     * rewrite; any change made meanwhile is logged after the rewrite.
+     *
+     * @throws UncheckedIOException
+     *                                  if the log cannot be rewritten
+     */
+    private void compact() {
+        final long start = System.nanoTime();
+        try {
+            log.rewrite(() -> delegate.stream().forEach(
+                    e -> append(STORED, e.id(), out -> state(e, out))));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not compact the log.", ex);
+        }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Compacted the log in " + TimeUnit.NANOSECONDS
+                    .toMillis(System.nanoTime() - start) + " ms.");
+        }
+    }
+
+    @Override
+    public EntityStream stream() {
+        return delegate.stream();
+    }
+
+    @Override
+    public EntityStream stream(final Set<Long> ids) {
+        return delegate.stream(ids);
+    }
+
+    @Override
+    public EntityStream stream(final LongStream ids) {
+        return delegate.stream(ids);
+    }
+
+    @Override
+    public EntityStream located(final long location) {
+        return delegate.located(location);
+    }
+
+    @Override
+    public Optional<Entity> get(final long id) {
+        return delegate.get(id);
+    }
+
+    @Override
+    public Optional<Entity> commit(final Entity e) {
+        return delegate.commit(e);
+    }
+
+    @Override
+    public void commitAll(final Collection<Entity> es) {
+        delegate.commitAll(es);
+    }
+
+    @Override
+    public Entity create() {
+        return delegate.create();
+    }
+
+    /**
+     * Force the log to the device and stop logging. The store must not be
+     * changed once closed.
+     */
+    @Override
+    public void close() {
+        log.close();
+    }
+}
@@ -1,39 +1,195 @@
 package wumpus.engine.entity;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Expired;
 
 /**
- * HashSet-based in-memory entity storage.
+ * Map-based in-memory entity storage, keyed by entity ID and indexed by
+ * component type.
  */
 public final class MemoryEntityStore implements EntityStore {
 
     /**
-     * Bit offset to make space for nanoseconds.
+     * Keeps the component index current and answers queries from it.
+     */
+    private final class Indexer implements ComponentIndex, EntityObserver {
+
+        @Override
+        public Stream<Entity> having(
+                final Set<Class<? extends Component>> clazzes) {
+            final Set<Long> ids = clazzes.stream()
+                    .map(c -> index.getOrDefault(c, Set.of()))
+                    .min(Comparator.comparing(Set::size))
+                    .orElse(entities.keySet());
+            return ids.stream().map(entities::get).filter(Objects::nonNull);
+        }
+
+        @Override
+        public void registered(final Entity e, final Component c) {
+            if (entities.get(e.id()) == e) {
+                index(e.id(), c.getClass());
+                locations.registered(e, c);
+                if (changes != null) {
+                    changes.registered(e, c);
+                }
+            }
+        }
+
+        @Override
+        public void deregistered(final Entity e,
+                final Class<? extends Component> c) {
+            if (entities.get(e.id()) == e) {
+                unindex(e.id(), c);
+                locations.deregistered(e, c);
+                if (changes != null) {
+                    changes.deregistered(e, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Entity storage, by entity ID.
+     */
+    private final Map<Long, Entity> entities;
+
+    /**
+     * IDs of the stored entities carrying each component type.
+     */
+    private final Map<Class<? extends Component>, Set<Long>> index;
+
+    /**
+     * Entities by physical location.
+     */
+    private final LocationIndex locations;
+
+    /**
+     * Observer and query interface to the component index.
+     */
+    private final Indexer indexer;
+
+    /**
+     * Observer of every change to the stored entities, or null.
      */
-    private static final int MILLIS_BIT_OFFSET = 20;
+    private final EntityObserver changes;
 
     /**
-     * Mask to remove the millisecond digits from nanoseconds.
+     * The first ID handed out by {@link #create()}.
      */
-    private static final long NANO_MILLIS_MASK = 9223372036854251520L;
+    private final long origin;
 
     /**
-     * Entity storage.
+     * Generator of the IDs of created entities.
      */
-    private final Set<Entity> entities;
+    private final EntityIds sequence;
 
     /**
-     * Construct the store. Uses a simple empty HashSet.
+     * Test for IDs kept back from created entities.
+     */
+    private final LongPredicate reserved;
+
+    /**
+     * Construct the store. Uses simple empty concurrent maps.
      */
     public MemoryEntityStore() {
-        entities = ConcurrentHashMap.newKeySet();
+        this(null, EntityIds.origin(), id -> false);
+    }
+
+    /**
+     * Construct the store, giving created entities IDs in sequence from an
+     * origin. Two such stores changed in the same order give their entities
+     * the same IDs.
+     *
+     * @param o
+     *              the first ID to give a created entity
+     * @param r
+     *              test for IDs to skip, kept for entities to be committed
+     *              later
+     */
+    public MemoryEntityStore(final long o, final LongPredicate r) {
+        this(null, o, r);
+    }
+
+    /**
+     * Construct the store, publishing every change to the stored entities to
+     * a feed.
+     *
+     * @param f
+     *              the feed
+     */
+    public MemoryEntityStore(final ChangeFeed f) {
+        this(f.publisher());
+    }
+
+    /**
+     * Choose an origin for the IDs of a new store, as the default constructor
+     * does, from the current time.
+     *
+     * @return the origin
+     */
+    public static long newOrigin() {
+        return EntityIds.origin();
+    }
+
+    /**
+     * Construct the store, reporting every change to the stored entities:
+     * component changes once indexed, and entities once stored.
+     *
+     * @param c
+     *              the observer of changes, or null for none
+     */
+    MemoryEntityStore(final EntityObserver c) {
+        this(c, EntityIds.origin(), id -> false);
+    }
+
+    /**
+     * Construct the store.
+     *
+     * @param c
+     *              the observer of changes, or null for none
+     * @param o
+     *              the first ID to give a created entity
+     * @param r
+     *              test for IDs to skip
+     */
+    private MemoryEntityStore(final EntityObserver c, final long o,
+            final LongPredicate r) {
+        entities = new ConcurrentHashMap<>();
+        index = new ConcurrentHashMap<>();
+        locations = new LocationIndex();
+        indexer = new Indexer();
+        changes = c;
+        origin = o;
+        sequence = new EntityIds(o);
+        reserved = r;
+    }
+
+    /**
+     * Observe the first ID given to a created entity.
+     *
+     * @return the origin of created IDs
+     */
+    public long origin() {
+        return origin;
     }
 
     @Override
     public EntityStream stream() {
-        return new EntityStream(entities.stream(), this);
+        return new EntityStream(entities.values().stream(), this, indexer);
     }
 
     @Override
@@ -42,35 +198,134 @@ public final class MemoryEntityStore implements EntityStore {
                 .map(o -> o.get()).collect(EntityStream.collector(this));
     }
 
+    @Override
+    public EntityStream stream(final LongStream ids) {
+        return ids.mapToObj(i -> this.get(i)).filter(o -> o.isPresent())
+                .map(o -> o.get()).collect(EntityStream.collector(this));
+    }
+
+    @Override
+    public EntityStream located(final long location) {
+        return stream(locations.at(location));
+    }
+
     @Override
     public Optional<Entity> get(final long id) {
-        return stream().filter(e -> id == e.id()).findFirst();
+        final Entity e = entities.get(id);
+        if (e == null || e.hasComponent(Expired.class)) {
+            return Optional.empty();
+        } else {
+            return Optional.of(e);
+        }
     }
 
     @Override
     public Optional<Entity> commit(final Entity e) {
-        entities.add(e);
+        e.observe(indexer);
+        final Entity old = entities.put(e.id(), e);
+        if (old != e) {
+            if (old != null) {
+                old.observe(null);
+                old.componentMap().keySet()
+                        .forEach(c -> unindex(old.id(), c));
+            }
+            e.componentMap().keySet().forEach(c -> index(e.id(), c));
+            locations.track(e);
+            stored(e);
+        }
         return get(e.id());
     }
 
+    /**
+     * Stores the batch, then updates the component index once per component
+     * type rather than once per entity and type. Entities become visible by
+     * ID as they are stored, and by component type once the batch is
+     * indexed.
+     */
+    @Override
+    public void commitAll(final Collection<Entity> es) {
+        final Map<Long, Entity> batch = new LinkedHashMap<>();
+        es.forEach(e -> batch.put(e.id(), e));
+        final Map<Class<? extends Component>, Set<Long>> removed =
+                new HashMap<>();
+        final Map<Class<? extends Component>, Set<Long>> added =
+                new HashMap<>();
+        batch.values().forEach(e -> {
+            e.observe(indexer);
+            final Entity old = entities.put(e.id(), e);
+            if (old != e) {
+                if (old != null) {
+                    old.observe(null);
+                    old.componentMap().keySet().forEach(c -> removed
+                            .computeIfAbsent(c, k -> new HashSet<>())
+                            .add(old.id()));
+                }
+                e.componentMap().keySet().forEach(c -> added
+                        .computeIfAbsent(c, k -> new HashSet<>())
+                        .add(e.id()));
+                locations.track(e);
+                stored(e);
+            }
+        });
+        removed.forEach((c, ids) -> {
+            final Set<Long> indexed = index.get(c);
+            if (indexed != null) {
+                indexed.removeAll(ids);
+            }
+        });
+        added.forEach((c, ids) -> index
+                .computeIfAbsent(c, k -> ConcurrentHashMap.newKeySet())
+                .addAll(ids));
+    }
+
     @Override
     public Entity create() {
-        final Entity e = new Entity(newId());
-        entities.add(e);
+        Entity e;
+        do {
+            e = new Entity(sequence.next(
+                    id -> entities.containsKey(id) || reserved.test(id)));
+            e.observe(indexer);
+        } while (entities.putIfAbsent(e.id(), e) != null);
+        stored(e);
         return e;
     }
 
     /**
-     * Generate a new unique ID from system time.
+     * Report that an entity has been stored.
      *
-     * @return a new entity ID
+     * @param e
+     *              the stored entity
      */
-    private long newId() {
-        long id;
-        do {
-            id = (System.currentTimeMillis() << MILLIS_BIT_OFFSET)
-                    | (System.nanoTime() & ~NANO_MILLIS_MASK);
-        } while (get(id).isPresent());
-        return id;
+    private void stored(final Entity e) {
+        if (changes != null) {
+            changes.stored(e);
+        }
+    }
+
+    /**
+     * Record that an entity carries a component type.
+     *
+     * @param id
+     *               the entity ID
+     * @param c
+     *               the component type
+     */
+    private void index(final long id, final Class<? extends Component> c) {
+        index.computeIfAbsent(c, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    /**
+     * Record that an entity no longer carries a component type.
+     *
+     * @param id
+     *               the entity ID
+     * @param c
+     *               the component type
+     */
+    private void unindex(final long id, final Class<? extends Component> c) {
+        final Set<Long> ids = index.get(c);
+        if (ids != null) {
+            ids.remove(id);
+        }
     }
 }
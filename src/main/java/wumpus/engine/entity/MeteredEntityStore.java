@@ -0,0 +1,108 @@
+package wumpus.engine.entity;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * Entity store decorator counting the entities handed to its user and the
+ * commits issued through it.
+ *
+ * Each service may be given its own metered view of a shared store so that
+ * the work done by the service can be attributed to it.
+ */
+public final class MeteredEntityStore implements EntityStore {
+
+    /**
+     * The store being metered.
+     */
+    private final EntityStore delegate;
+
+    /**
+     * Counter of entities yielded by lookups and streams.
+     */
+    private final LongAdder touched;
+
+    /**
+     * Counter of commits.
+     */
+    private final LongAdder commits;
+
+    /**
+     * Meter a store.
+     *
+     * @param d
+     *              the store to meter
+     * @param t
+     *              the counter of entities yielded by lookups and streams
+     * @param c
+     *              the counter of commits
+     */
+    public MeteredEntityStore(final EntityStore d, final LongAdder t,
+            final LongAdder c) {
+        delegate = d;
+        touched = t;
+        commits = c;
+    }
+
+    @Override
+    public EntityStream stream() {
+        return delegate.stream().touching(this, touched);
+    }
+
+    @Override
+    public EntityStream stream(final Set<Long> ids) {
+        return delegate.stream(ids).touching(this, touched);
+    }
+
+    @Override
+    public EntityStream stream(final LongStream ids) {
+        return delegate.stream(ids).touching(this, touched);
+    }
+
+    @Override
+    public EntityStream located(final long location) {
+        return delegate.located(location).touching(this, touched);
+    }
+
+    @Override
+    public Optional<Entity> get(final long id) {
+        final Optional<Entity> e = delegate.get(id);
+        if (e.isPresent()) {
+            touched.increment();
+        }
+        return e;
+    }
+
+    @Override
+    public Optional<Entity> commit(final Entity e) {
+        commits.increment();
+        return delegate.commit(e);
+    }
+
+    /**
+     * Counts the batch as a single commit.
+     */
+    @Override
+    public void commitAll(final Collection<Entity> es) {
+        commits.increment();
+        delegate.commitAll(es);
+    }
+
+    /**
+     * Counts the transaction as a single commit, whether applied or not, and
+     * applies it to the metered store.
+     */
+    @Override
+    public boolean commit(final Transaction t) {
+        commits.increment();
+        return delegate.commit(t);
+    }
+
+    @Override
+    public Entity create() {
+        return delegate.create();
+    }
+}
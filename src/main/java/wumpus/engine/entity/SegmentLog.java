@@ -0,0 +1,255 @@
+package wumpus.engine.entity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records kept in a directory of memory-mapped segment
+ * files.
+ *
+ * Segments are files of a fixed capacity, named by sequence number and filled
+ * in order. Each record is framed by its length and a CRC32 checksum of its
+ * body. The unwritten remainder of a segment is zero, and a zero length ends
+ * the records of a segment, as does a record cut short or failing its
+ * checksum, such as one being written during a crash.
+ *
+ * Appended records reach the operating system at once, so they survive a
+ * crash of the process. {@link #sync()} forces them to the device; a segment
+ * is also forced once it is full.
+ *
+ * The log is safe for use by many threads, synchronizing on itself.
+ */
+final class SegmentLog implements Closeable {
+
+    /**
+     * File name suffix of segments.
+     */
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Size of the frame preceding each record body: its length and checksum.
+     */
+    private static final int FRAME = Integer.BYTES * 2;
+
+    /**
+     * Directory holding the segments.
+     */
+    private final Path directory;
+
+    /**
+     * Capacity of each new segment in bytes.
+     */
+    private final int capacity;
+
+    /**
+     * Sequence numbers of the segments in the log, in order.
+     */
+    private final List<Long> segments;
+
+    /**
+     * The segment being appended to, or null until the first append.
+     */
+    private MappedByteBuffer current;
+
+    /**
+     * Position in the current segment up to which it has been forced.
+     */
+    private int synced;
+
+    /**
+     * True once the log has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Open the log in a directory, creating the directory if necessary.
+     * Appends go to a new segment after any already in the directory.
+     *
+     * @param d
+     *              the directory, holding nothing but segments
+     * @param c
+     *              the capacity of each new segment in bytes
+     * @throws IOException
+     *                         if the directory cannot be read
+     */
+    SegmentLog(final Path d, final int c) throws IOException {
+        directory = d;
+        capacity = c;
+        segments = new ArrayList<>();
+        Files.createDirectories(d);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(d,
+                "*" + SUFFIX)) {
+            for (final Path f : files) {
+                final String name = d.relativize(f).toString();
+                segments.add(Long.parseLong(
+                        name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+    }
+
+    /**
+     * Locate a segment.
+     *
+     * @param sequence
+     *                     the sequence number of the segment
+     * @return the path of the segment file
+     */
+    private Path segment(final long sequence) {
+        return directory.resolve(sequence + SUFFIX);
+    }
+
+    /**
+     * Read every intact record in the log, in order.
+     *
+     * @param records
+     *                    receives the body of each record, valid only until it
+     *                    returns
+     * @throws IOException
+     *                         if a segment cannot be read
+     */
+    synchronized void replay(final Consumer<ByteBuffer> records)
+            throws IOException {
+        final CRC32 crc = new CRC32();
+        for (final long s : segments) {
+            final MappedByteBuffer in;
+            try (FileChannel f = FileChannel.open(segment(s),
+                    StandardOpenOption.READ)) {
+                in = f.map(FileChannel.MapMode.READ_ONLY, 0, f.size());
+            }
+            boolean intact = true;
+            while (intact && in.remaining() >= FRAME) {
+                final int length = in.getInt();
+                final int checksum = in.getInt();
+                if (length > 0 && length <= in.remaining()) {
+                    final ByteBuffer body = in.slice(in.position(), length);
+                    crc.reset();
+                    crc.update(body.duplicate());
+                    intact = (int) crc.getValue() == checksum;
+                    if (intact) {
+                        records.accept(body.asReadOnlyBuffer());
+                        in.position(in.position() + length);
+                    }
+                } else {
+                    intact = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Append a record, starting a new segment if the current one is full.
+     *
+     * @param body
+     *                 the body of the record, which is consumed
+     * @throws IOException
+     *                         if a new segment cannot be created
+     * @throws IllegalArgumentException
+     *                                      if the record cannot fit in a
+     *                                      segment
+     */
+    synchronized void append(final ByteBuffer body) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The log is closed.");
+        }
+        final int length = body.remaining();
+        if (length + FRAME > capacity) {
+            throw new IllegalArgumentException("A record of " + length
+                    + " bytes exceeds the segment capacity.");
+        }
+        if (current == null || current.remaining() < length + FRAME) {
+            roll();
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        current.putInt(length).putInt((int) crc.getValue()).put(body);
+    }
+
+    /**
+     * Force the current segment, if any, and start appending to a new one.
+     *
+     * @throws IOException
+     *                         if the new segment cannot be created
+     */
+    private void roll() throws IOException {
+        if (current != null) {
+            current.force();
+        }
+        long next = 0;
+        if (!segments.isEmpty()) {
+            next = segments.get(segments.size() - 1) + 1;
+        }
+        try (FileChannel f = FileChannel.open(segment(next),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            current = f.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        segments.add(next);
+        synced = 0;
+    }
+
+    /**
+     * Force every record appended so far to the device.
+     */
+    synchronized void sync() {
+        if (current != null && current.position() > synced) {
+            current.force(synced, current.position() - synced);
+            synced = current.position();
+        }
+    }
+
+    /**
+     * Count the segments in the log.
+     *
+     * @return the number of segments
+     */
+    synchronized int segments() {
+        return segments.size();
+    }
+
+    /**
+     * Replace the log with the records appended by a rewrite, which must
+     * state everything the log holds. No other records are appended during
+     * the rewrite. Once it is forced, the segments it replaces are deleted,
+     * oldest first, so that a crash at any point leaves a log replaying to
+     * the same state.
+     *
+     * @param rewrite
+     *                    appends the records replacing the log
+     * @throws IOException
+     *                         if a segment cannot be created or deleted
+     */
+    synchronized void rewrite(final Runnable rewrite) throws IOException {
+        final List<Long> replaced = new ArrayList<>(segments);
+        roll();
+        rewrite.run();
+        current.force();
+        synced = current.position();
+        for (final Long s : replaced) {
+            Files.delete(segment(s));
+            segments.remove(s);
+        }
+    }
+
+    /**
+     * Force the log to the device and refuse further appends.
+     */
+    @Override
+    public synchronized void close() {
+        sync();
+        current = null;
+        closed = true;
+    }
+}
@@ -0,0 +1,277 @@
+package wumpus.engine.entity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.TransientComponent;
+
+/**
+ * A point-in-time copy of the persistent components of every entity in a
+ * store, captured at a tick boundary and written to disk apart from the tick.
+ *
+ * Capturing copies only references. Components are immutable, so the
+ * components an entity holds when captured stay as they were however the
+ * entity changes afterwards. An entity which is the same object at the same
+ * version as in the previous snapshot shares that snapshot's copy, so a
+ * capture copies only the entities changed since. Encoding and writing the
+ * snapshot, the expensive part, is then left to the caller's choice of
+ * thread.
+ *
+ * A snapshot file holds a magic number, the format version, the tick and the
+ * number of entities, then each entity as encoded by {@link EntityBundle},
+ * with strings interned across the file; it ends with a CRC-32 of everything
+ * before it.
+ */
+public final class Snapshot {
+
+    /**
+     * The persistent components of one entity as captured.
+     */
+    private static final class Captured {
+
+        /**
+         * The entity captured.
+         */
+        private final Entity entity;
+
+        /**
+         * The version of the entity when captured.
+         */
+        private final long version;
+
+        /**
+         * The persistent components of the entity when captured.
+         */
+        private final List<Component> components;
+
+        /**
+         * Capture an entity while holding its monitor, so that no change to
+         * it is half seen.
+         *
+         * @param e
+         *              the entity
+         */
+        Captured(final Entity e) {
+            synchronized (e) {
+                entity = e;
+                version = e.version();
+                components = e.componentMap().values().stream()
+                        .filter(c -> !(c instanceof TransientComponent))
+                        .collect(Collectors.toUnmodifiableList());
+            }
+        }
+
+        /**
+         * Determine if this capture is still the state of an entity.
+         *
+         * @param e
+         *              the entity as now stored
+         * @return true if the entity is the one captured and is unchanged
+         */
+        boolean current(final Entity e) {
+            return entity == e && version == e.version();
+        }
+    }
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(Snapshot.class.getName());
+
+    /**
+     * Magic number opening every snapshot file.
+     */
+    private static final long MAGIC = 0x57554d50534e4150L;
+
+    /**
+     * Version of the snapshot format written.
+     */
+    private static final int FORMAT = 1;
+
+    /**
+     * The tick captured.
+     */
+    private final long tick;
+
+    /**
+     * The entities captured, by ID.
+     */
+    private final Map<Long, Captured> entities;
+
+    /**
+     * Create a snapshot from captured entities.
+     *
+     * @param t
+     *               the tick captured
+     * @param es
+     *               the entities captured, by ID
+     */
+    private Snapshot(final long t, final Map<Long, Captured> es) {
+        tick = t;
+        entities = es;
+    }
+
+    /**
+     * Capture every entity of a store. No service may change the store
+     * meanwhile, so this is called at a tick boundary.
+     *
+     * @param store
+     *                     the store
+     * @param t
+     *                     the tick being captured
+     * @param previous
+     *                     the previous snapshot of the store, whose copies of
+     *                     unchanged entities are shared, or null
+     * @return the snapshot
+     */
+    public static Snapshot capture(final EntityStore store, final long t,
+            final Snapshot previous) {
+        final Map<Long, Captured> es = new HashMap<>();
+        store.stream().forEach(e -> {
+            Captured c = null;
+            if (previous != null) {
+                c = previous.entities.get(e.id());
+            }
+            if (c == null || !c.current(e)) {
+                c = new Captured(e);
+            }
+            es.put(e.id(), c);
+        });
+        return new Snapshot(t, es);
+    }
+
+    /**
+     * Observe the tick captured.
+     *
+     * @return the tick
+     */
+    public long tick() {
+        return tick;
+    }
+
+    /**
+     * Count the entities captured.
+     *
+     * @return the number of entities
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * Write this snapshot to a file, replacing it atomically once the whole
+     * snapshot is forced to the device.
+     *
+     * @param file
+     *                 the file to write
+     * @param out
+     *                 the writer to encode with, which is reset first
+     * @return the size of the file in bytes
+     * @throws IOException
+     *                         if the file cannot be written
+     * @throws IllegalArgumentException
+     *                                      if a component has no codec
+     */
+    public long write(final Path file, final ComponentWriter out)
+            throws IOException {
+        out.reset().writeFixedLong(MAGIC).writeUnsignedVarLong(FORMAT)
+                .writeUnsignedVarLong(tick)
+                .writeUnsignedVarLong(entities.size());
+        for (final Captured c : entities.values()) {
+            EntityBundle.writeEntity(c.entity.id(), c.components, out);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(out.view());
+        final ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES)
+                .putInt((int) crc.getValue()).flip();
+        final Path partial = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(partial,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer body = out.view();
+            while (body.hasRemaining()) {
+                ch.write(body);
+            }
+            while (trailer.hasRemaining()) {
+                ch.write(trailer);
+            }
+            ch.force(true);
+        }
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        return out.size() + Integer.BYTES;
+    }
+
+    /**
+     * Restore the entities of a snapshot file into an empty store.
+     * Components of types no longer known are skipped.
+     *
+     * @param file
+     *                  the snapshot file
+     * @param store
+     *                  the store, which must hold no entities
+     * @return the number of entities restored
+     * @throws IOException
+     *                         if the file cannot be read, or is not an intact
+     *                         snapshot
+     * @throws IllegalStateException
+     *                                   if the store already holds entities,
+     *                                   or the snapshot is of a newer format
+     */
+    public static int restore(final Path file, final EntityStore store)
+            throws IOException {
+        final long start = System.nanoTime();
+        if (store.stream().findAny().isPresent()) {
+            throw new IllegalStateException(
+                    "Cannot restore a snapshot over an existing world.");
+        }
+        final ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file));
+        final int end = b.limit() - Integer.BYTES;
+        final CRC32 crc = new CRC32();
+        if (end >= Long.BYTES) {
+            crc.update(b.slice(0, end));
+        }
+        if (end < Long.BYTES || b.getLong(0) != MAGIC
+                || (int) crc.getValue() != b.getInt(end)) {
+            throw new IOException(file + " is not an intact snapshot.");
+        }
+        final ComponentReader in = new ComponentReader(b.limit(end));
+        in.readFixedLong();
+        final long format = in.readUnsignedVarLong();
+        if (format > FORMAT) {
+            throw new IllegalStateException(
+                    "Cannot read snapshot format " + format + ".");
+        }
+        final long t = in.readUnsignedVarLong();
+        final List<Entity> es = new ArrayList<>();
+        for (long n = in.readUnsignedVarLong(); n > 0; n--) {
+            es.add(EntityBundle.readEntity(in));
+        }
+        store.commitAll(es);
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Restored " + es.size() + " entities from the snapshot "
+                    + file + " of tick " + t + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                    + " ms.");
+        }
+        return es.size();
+    }
+}
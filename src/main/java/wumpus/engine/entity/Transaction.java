@@ -0,0 +1,231 @@
+package wumpus.engine.entity;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import wumpus.engine.entity.component.Component;
+
+/**
+ * An optimistic unit of work against an entity store.
+ *
+ * Changes are staged on private copies of the entities they touch, so nobody
+ * else sees them until the transaction commits. Committing succeeds only if
+ * every entity the transaction read is still the stored entity at the version
+ * read; the copies then replace the stored entities together. Otherwise
+ * nothing is applied and the work may be retried, as {@link #run} does.
+ *
+ * A transaction is used by one thread and cannot be reused once committed.
+ */
+public final class Transaction {
+
+    /**
+     * Number of attempts {@link #run} makes before giving up.
+     */
+    public static final int MAX_ATTEMPTS = 16;
+
+    /**
+     * The store the transaction works against.
+     */
+    private final EntityStore store;
+
+    /**
+     * The stored entities read, by ID, or null where none was stored.
+     */
+    private final Map<Long, Entity> read;
+
+    /**
+     * The version of each stored entity read, by ID.
+     */
+    private final Map<Long, Long> versions;
+
+    /**
+     * Private copies of the entities changed, by ID.
+     */
+    private final Map<Long, Entity> staged;
+
+    /**
+     * Begin a transaction against a store.
+     *
+     * @param s
+     *              the store
+     */
+    public Transaction(final EntityStore s) {
+        store = s;
+        read = new HashMap<>();
+        versions = new HashMap<>();
+        staged = new LinkedHashMap<>();
+    }
+
+    /**
+     * Run work in transactions against a store until one commits.
+     *
+     * @param s
+     *                 the store
+     * @param work
+     *                 the work, which may run more than once and should have
+     *                 no effects beyond the transaction it is given
+     * @throws ConcurrentModificationException
+     *                                             if every attempt conflicted
+     */
+    public static void run(final EntityStore s,
+            final Consumer<Transaction> work) {
+        boolean committed = false;
+        int attempts = 0;
+        while (!committed && attempts < MAX_ATTEMPTS) {
+            final Transaction t = new Transaction(s);
+            work.accept(t);
+            committed = t.commit();
+            attempts++;
+        }
+        if (!committed) {
+            throw new ConcurrentModificationException(
+                    "Transaction conflicted " + attempts + " times.");
+        }
+    }
+
+    /**
+     * Retrieve an entity as this transaction sees it: its staged copy if
+     * changed, or else the stored entity, which is recorded as read. The
+     * entity returned must be changed only through this transaction.
+     *
+     * @param id
+     *               ID of the entity
+     * @return the entity, if it exists
+     */
+    public Optional<Entity> get(final long id) {
+        final Entity s = staged.get(id);
+        if (s == null) {
+            if (!read.containsKey(id)) {
+                final Entity e = store.get(id).orElse(null);
+                read.put(id, e);
+                if (e != null) {
+                    versions.put(id, e.version());
+                }
+            }
+            return Optional.ofNullable(read.get(id));
+        } else {
+            return Optional.of(s);
+        }
+    }
+
+    /**
+     * Get the private copy of an entity, staging one on first change.
+     *
+     * @param id
+     *               ID of the entity
+     * @return the staged copy
+     * @throws NoSuchElementException
+     *                                    if the entity does not exist
+     */
+    private Entity stage(final long id) {
+        Entity s = staged.get(id);
+        if (s == null) {
+            s = get(id).orElseThrow(() -> new NoSuchElementException(
+                    "No entity " + id + " to change.")).detach();
+            staged.put(id, s);
+        }
+        return s;
+    }
+
+    /**
+     * Stage a component registration.
+     *
+     * @param id
+     *                      ID of the entity
+     * @param component
+     *                      the component to register
+     * @throws NoSuchElementException
+     *                                    if the entity does not exist
+     */
+    public void register(final long id, final Component component) {
+        stage(id).registerComponent(component);
+    }
+
+    /**
+     * Stage a component removal.
+     *
+     * @param id
+     *               ID of the entity
+     * @param c
+     *               the type of component to remove
+     * @throws NoSuchElementException
+     *                                    if the entity does not exist
+     */
+    public void deregister(final long id,
+            final Class<? extends Component> c) {
+        stage(id).deregisterComponent(c);
+    }
+
+    /**
+     * Attempt to apply the staged changes.
+     *
+     * @return true if the changes were applied, false if an entity read has
+     *         since changed and nothing was applied
+     */
+    public boolean commit() {
+        return staged.isEmpty() || store.commit(this);
+    }
+
+    /**
+     * Apply the staged changes to a store if nothing read has changed. Called
+     * by the store while it holds its commit lock.
+     *
+     * @param s
+     *              the store to apply to
+     * @return true if the changes were applied
+     */
+    boolean apply(final EntityStore s) {
+        final List<Entity> replaced = new ArrayList<>();
+        staged.keySet().forEach(id -> replaced.add(read.get(id)));
+        return apply(s, replaced.iterator());
+    }
+
+    /**
+     * Hold the monitor of each replaced entity in turn, so that no change can
+     * be made through them, then validate and install the copies.
+     *
+     * @param s
+     *                     the store to apply to
+     * @param replaced
+     *                     the replaced entities yet to be locked
+     * @return true if the changes were applied
+     */
+    private boolean apply(final EntityStore s,
+            final Iterator<Entity> replaced) {
+        if (replaced.hasNext()) {
+            final Entity e = replaced.next();
+            synchronized (e) {
+                return apply(s, replaced);
+            }
+        } else if (current(s)) {
+            staged.values().forEach(c -> c.attach(read.get(c.id())));
+            s.commitAll(staged.values());
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Determine if every entity read is still stored at the version read.
+     *
+     * @param s
+     *              the store to check
+     * @return true if nothing read has changed
+     */
+    private boolean current(final EntityStore s) {
+        return read.entrySet().stream().allMatch(r -> {
+            final Entity now = s.get(r.getKey()).orElse(null);
+            return now == r.getValue() && (now == null
+                    || now.version() == versions.get(r.getKey()));
+        });
+    }
+}
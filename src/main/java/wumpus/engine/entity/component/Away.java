@@ -0,0 +1,41 @@
+package wumpus.engine.entity.component;
+
+import java.util.function.Consumer;
+
+import wumpus.engine.command.Intent;
+
+/**
+ * Entity is a player who has moved to another process of the game, which
+ * executes its commands in its stead.
+ */
+public final class Away extends AbstractEntityComponent
+        implements TransientComponent {
+
+    /**
+     * Operation forwarding an intent to the process the player is in.
+     */
+    private final Consumer<Intent> forward;
+
+    /**
+     * Constructs the mark of a player away, with the operation forwarding its
+     * intents.
+     *
+     * @param f
+     *              the forwarding operation
+     */
+    public Away(final Consumer<Intent> f) {
+        this.forward = f;
+    }
+
+    /**
+     * Forward an intent of the player to the process it is in, which replies
+     * to it.
+     *
+     * @param i
+     *              the intent
+     */
+    public void forward(final Intent i) {
+        forward.accept(i);
+    }
+
+}
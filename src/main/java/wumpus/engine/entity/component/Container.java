@@ -1,29 +1,34 @@
 package wumpus.engine.entity.component;
 
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.function.Predicate;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.LongStream;
 
 /**
  * Component for holding other entities.
+ *
+ * Contents are kept as a sorted array of distinct entity IDs. Containers are
+ * immutable, so adding or removing contents copies the array once.
  */
 public final class Container extends AbstractEntityComponent {
 
     /**
-     * The contents of this entity.
+     * Shared contents of every empty container.
      */
-    private final Set<Long> contents;
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * The contents of this entity, sorted and without duplicates.
+     */
+    private final long[] contents;
 
     /**
      * Build a container with no entities.
      */
     public Container() {
-        contents = Collections.unmodifiableSet(new HashSet<>());
+        contents = EMPTY;
     }
 
     /**
@@ -33,8 +38,7 @@ public final class Container extends AbstractEntityComponent {
      *               the entities to add to the container
      */
     public Container(final long... cs) {
-        contents = Arrays.stream(cs).boxed()
-                .collect(Collectors.toUnmodifiableSet());
+        contents = LongStream.of(cs).sorted().distinct().toArray();
     }
 
     /**
@@ -46,9 +50,23 @@ public final class Container extends AbstractEntityComponent {
      *               additional entities to add to the container
      */
     public Container(final Container c, final long... cs) {
-        contents = Stream
-                .concat(c.contents().stream(), Arrays.stream(cs).boxed())
-                .collect(Collectors.toUnmodifiableSet());
+        final long[] add = LongStream.of(cs).sorted().distinct().toArray();
+        final long[] merged = new long[c.contents.length + add.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < c.contents.length || j < add.length) {
+            if (j == add.length
+                    || i < c.contents.length && c.contents[i] < add[j]) {
+                merged[n++] = c.contents[i++];
+            } else if (i == c.contents.length || add[j] < c.contents[i]) {
+                merged[n++] = add[j++];
+            } else {
+                merged[n++] = c.contents[i++];
+                j++;
+            }
+        }
+        contents = Arrays.copyOf(merged, n);
     }
 
     /**
@@ -59,23 +77,51 @@ public final class Container extends AbstractEntityComponent {
      * @param rem
      *                the condition of entities to keep
      */
-    public Container(final Container c, final Predicate<Long> rem) {
-        contents = c.contents().stream().filter(rem)
-                .collect(Collectors.toUnmodifiableSet());
+    public Container(final Container c, final LongPredicate rem) {
+        contents = LongStream.of(c.contents).filter(rem).toArray();
     }
 
     /**
      * Retrieve the contents of the container.
      *
-     * @return the contents of the container
+     * @return the IDs of the entities in the container, in ascending order
+     */
+    public LongStream contents() {
+        return LongStream.of(contents);
+    }
+
+    /**
+     * Determine if the container holds an entity.
+     *
+     * @param id
+     *               the ID of the entity
+     * @return true if the entity is in the container
+     */
+    public boolean contains(final long id) {
+        return Arrays.binarySearch(contents, id) >= 0;
+    }
+
+    /**
+     * Count the entities in the container.
+     *
+     * @return the number of entities in the container
+     */
+    public int size() {
+        return contents.length;
+    }
+
+    /**
+     * Determine if the container is empty.
+     *
+     * @return true if the container holds no entities
      */
-    public Set<Long> contents() {
-        return contents;
+    public boolean isEmpty() {
+        return contents.length == 0;
     }
 
     @Override
     public List<String> debug() {
-        return List.of("[" + contents.stream().map(l -> l.toString())
+        return List.of("[" + contents().mapToObj(l -> Long.toString(l))
                 .collect(Collectors.joining(",")) + "]");
     }
 }
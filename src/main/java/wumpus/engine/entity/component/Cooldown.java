@@ -31,6 +31,15 @@ public final class Cooldown extends AbstractEntityComponent {
         return new Cooldown(wait - 1);
     }
 
+    /**
+     * Retrieve the number of ticks left to wait.
+     *
+     * @return the ticks left, zero or lower once cool
+     */
+    public int remaining() {
+        return wait;
+    }
+
     /**
      * Determines if the cooldown wait has passed. In other words, the number of
      * ticks to wait must be zero or lower.
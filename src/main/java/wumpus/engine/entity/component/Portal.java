@@ -0,0 +1,10 @@
+package wumpus.engine.entity.component;
+
+/**
+ * Room leading to another process of the game, which players entering it move
+ * to.
+ */
+public final class Portal extends AbstractEntityComponent
+        implements TransientComponent {
+
+}
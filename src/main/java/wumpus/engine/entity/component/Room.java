@@ -36,7 +36,8 @@ public final class Room extends AbstractEntityComponent {
     }
 
     /**
-     * Initialize room based on an existing room with an additional link.
+     * Initialize room based on an existing room with an additional link. The
+     * existing room is left as it was.
      *
      * @param r
      *              an existing room to extend
@@ -46,10 +47,9 @@ public final class Room extends AbstractEntityComponent {
      *              the ID of the new link
      */
     public Room(final Room r, final Direction d, final long i) {
-        final Map<Direction, Long> rooms = r.linkedRooms();
-        rooms.put(d, i);
-        this.linkedRooms = rooms.entrySet().stream().collect(
+        this.linkedRooms = r.linkedRooms().entrySet().stream().collect(
                 Collectors.toConcurrentMap(e -> e.getKey(), e -> e.getValue()));
+        this.linkedRooms.put(d, i);
         this.zone = r.zone();
     }
 
@@ -0,0 +1,173 @@
+package wumpus.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with logarithmic buckets.
+ *
+ * Each power of two is split in to a fixed number of linear sub-buckets, so
+ * every recorded value is kept to within about three percent. All buckets are
+ * allocated up front, so recording never allocates and is safe from any
+ * number of threads.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Number of bits of each value kept exactly.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * Number of sub-buckets in each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Total number of buckets, enough for any positive long.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    /**
+     * Largest percentile.
+     */
+    private static final double ALL = 100.0;
+
+    /**
+     * Number of recorded values in each bucket.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * Number of recorded values.
+     */
+    private final LongAdder count;
+
+    /**
+     * Sum of recorded values.
+     */
+    private final LongAdder sum;
+
+    /**
+     * Largest recorded value.
+     */
+    private final AtomicLong max;
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Find the bucket of a value.
+     *
+     * @param v
+     *              a non-negative value
+     * @return the bucket holding the value
+     */
+    static int bucket(final long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        } else {
+            final int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(v);
+            final int shift = exp - SUB_BITS;
+            return (shift + 1) * SUB_BUCKETS
+                    + (int) (v >>> shift) - SUB_BUCKETS;
+        }
+    }
+
+    /**
+     * Find the largest value held by a bucket.
+     *
+     * @param b
+     *              the bucket
+     * @return the largest value the bucket holds
+     */
+    static long highest(final int b) {
+        if (b < SUB_BUCKETS) {
+            return b;
+        } else {
+            final int shift = b / SUB_BUCKETS - 1;
+            final long low = (long) (SUB_BUCKETS + b % SUB_BUCKETS) << shift;
+            return low + (1L << shift) - 1;
+        }
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos
+     *                  the duration in nanoseconds; negative durations are
+     *                  recorded as zero
+     */
+    public void record(final long nanos) {
+        final long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * Count the recorded durations.
+     *
+     * @return the number of recorded durations
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Find the largest recorded duration.
+     *
+     * @return the largest duration in nanoseconds, or zero if none
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Find the mean recorded duration.
+     *
+     * @return the mean duration in nanoseconds, or zero if none
+     */
+    public double mean() {
+        final long n = count.sum();
+        if (n == 0) {
+            return 0;
+        } else {
+            return (double) sum.sum() / n;
+        }
+    }
+
+    /**
+     * Find the duration at or below which a percentage of recorded durations
+     * fall.
+     *
+     * @param percentile
+     *                       the percentage, from 0 to 100
+     * @return the duration in nanoseconds, or zero if none are recorded
+     */
+    public long percentile(final double percentile) {
+        final long n = count.sum();
+        final long rank = Math.max(1,
+                (long) Math.ceil(Math.min(percentile, ALL) / ALL * n));
+        int b = 0;
+        long seen = counts.get(0);
+        while (seen < rank && b < BUCKETS - 1) {
+            b++;
+            seen += counts.get(b);
+        }
+        if (n == 0) {
+            return 0;
+        } else {
+            return Math.min(highest(b), max.get());
+        }
+    }
+}
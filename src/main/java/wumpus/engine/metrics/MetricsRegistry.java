@@ -0,0 +1,244 @@
+package wumpus.engine.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Creates service and snapshot metrics and publishes them as MBeans.
+ *
+ * Metrics are only collected when the system property {@value #PROPERTY} is
+ * true; otherwise no registry is created and services run uninstrumented.
+ */
+public final class MetricsRegistry {
+
+    /**
+     * System property enabling metrics.
+     */
+    public static final String PROPERTY = "wumpus.metrics";
+
+    /**
+     * Metrics name of the whole tick, as opposed to a single service.
+     */
+    public static final String TICK = "tick";
+
+    /**
+     * Object name prefix of service metrics MBeans.
+     */
+    private static final String PREFIX = "wumpus:type=ServiceMetrics";
+
+    /**
+     * Object name of the snapshot metrics MBean.
+     */
+    private static final String SNAPSHOTS = "wumpus:type=SnapshotMetrics";
+
+    /**
+     * Object name of the replica metrics MBean.
+     */
+    private static final String REPLICA = "wumpus:type=ReplicaMetrics";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(MetricsRegistry.class.getName());
+
+    /**
+     * Server to publish MBeans to.
+     */
+    private final MBeanServer server;
+
+    /**
+     * Tick budget in nanoseconds.
+     */
+    private final long budget;
+
+    /**
+     * Metrics by service name.
+     */
+    private final Map<String, ServiceMetrics> services;
+
+    /**
+     * Metrics of world snapshots, or null until first used.
+     */
+    private SnapshotMetrics snapshots;
+
+    /**
+     * Create a registry.
+     *
+     * @param s
+     *                   the server to publish MBeans to
+     * @param millis
+     *                   the tick budget in milliseconds
+     */
+    public MetricsRegistry(final MBeanServer s, final long millis) {
+        server = s;
+        budget = TimeUnit.MILLISECONDS.toNanos(millis);
+        services = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Determine if metrics are enabled for this process.
+     *
+     * @return true if the metrics system property is set to true
+     */
+    public static boolean enabled() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * Build the object name of a service metrics MBean.
+     *
+     * @param name
+     *                 the service name, or a pattern
+     * @return the object name
+     * @throws JMException
+     *                         if the name is malformed
+     */
+    private static ObjectName objectName(final String name)
+            throws JMException {
+        return new ObjectName(PREFIX + ",name=" + name);
+    }
+
+    /**
+     * Get the metrics of a service, creating and publishing them on first
+     * use.
+     *
+     * @param name
+     *                 the service name
+     * @return the metrics of the service
+     */
+    public ServiceMetrics service(final String name) {
+        return services.computeIfAbsent(name, this::publish);
+    }
+
+    /**
+     * Get the metrics of world snapshots, creating and publishing them on
+     * first use.
+     *
+     * @return the snapshot metrics
+     */
+    public synchronized SnapshotMetrics snapshots() {
+        if (snapshots == null) {
+            snapshots = new SnapshotMetrics();
+            try {
+                register(snapshots, new ObjectName(SNAPSHOTS));
+            } catch (JMException e) {
+                LOG.log(Level.WARNING, "Unable to publish snapshot metrics.",
+                        e);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Create the metrics of a replica and publish them.
+     *
+     * @return the replica metrics
+     */
+    public ReplicaMetrics replica() {
+        final ReplicaMetrics m = new ReplicaMetrics();
+        try {
+            register(m, new ObjectName(REPLICA));
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Unable to publish replica metrics.", e);
+        }
+        return m;
+    }
+
+    /**
+     * Create metrics and publish them, replacing any previously published
+     * under the same name.
+     *
+     * @param name
+     *                 the service name
+     * @return the new metrics
+     */
+    private ServiceMetrics publish(final String name) {
+        final ServiceMetrics m = new ServiceMetrics(name, budget);
+        try {
+            register(m, objectName(name));
+        } catch (JMException e) {
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.log(Level.WARNING, "Unable to publish metrics of service "
+                        + name + ".", e);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Publish an MBean, replacing any previously published under its name.
+     *
+     * @param mbean
+     *                  the MBean
+     * @param on
+     *                  its object name
+     * @throws JMException
+     *                         if the MBean cannot be published
+     */
+    private void register(final Object mbean, final ObjectName on)
+            throws JMException {
+        if (server.isRegistered(on)) {
+            server.unregisterMBean(on);
+        }
+        server.registerMBean(mbean, on);
+    }
+
+    /**
+     * Read every published service metrics MBean.
+     *
+     * @param s
+     *              the server to read from
+     * @return views of the metrics, ordered by name
+     */
+    public static List<ServiceMetricsMXBean> query(final MBeanServer s) {
+        List<ServiceMetricsMXBean> found;
+        try {
+            found = s.queryNames(objectName("*"), null).stream()
+                    .map(n -> JMX.newMXBeanProxy(s, n,
+                            ServiceMetricsMXBean.class))
+                    .sorted((a, b) -> a.getName().compareTo(b.getName()))
+                    .collect(Collectors.toList());
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Unable to query service metrics.", e);
+            found = List.of();
+        }
+        return found;
+    }
+
+    /**
+     * Read the published snapshot metrics MBean.
+     *
+     * @param s
+     *              the server to read from
+     * @return a view of the metrics, if snapshots are being taken
+     */
+    public static Optional<SnapshotMetricsMXBean> querySnapshots(
+            final MBeanServer s) {
+        Optional<SnapshotMetricsMXBean> found;
+        try {
+            final ObjectName on = new ObjectName(SNAPSHOTS);
+            if (s.isRegistered(on)) {
+                found = Optional.of(JMX.newMXBeanProxy(s, on,
+                        SnapshotMetricsMXBean.class));
+            } else {
+                found = Optional.empty();
+            }
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Unable to query snapshot metrics.", e);
+            found = Optional.empty();
+        }
+        return found;
+    }
+}
@@ -0,0 +1,117 @@
+package wumpus.engine.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a replica following the changes of a primary, chiefly how many
+ * ticks it lags behind.
+ */
+public final class ReplicaMetrics implements ReplicaMetricsMXBean {
+
+    /**
+     * Count of changes applied.
+     */
+    private final LongAdder changes;
+
+    /**
+     * Whether the replica is linked to its primary.
+     */
+    private volatile boolean linked;
+
+    /**
+     * The tick of the primary when it last reported.
+     */
+    private volatile long primaryTick;
+
+    /**
+     * The tick of the last change applied.
+     */
+    private volatile long appliedTick;
+
+    /**
+     * Whether the replica had applied every change of the primary when it
+     * last reported.
+     */
+    private volatile boolean current;
+
+    /**
+     * Create empty metrics.
+     */
+    public ReplicaMetrics() {
+        changes = new LongAdder();
+    }
+
+    /**
+     * Record the link to the primary made or lost.
+     *
+     * @param l
+     *              true if the link was made
+     */
+    public void linked(final boolean l) {
+        linked = l;
+    }
+
+    /**
+     * Record a change applied.
+     *
+     * @param tick
+     *                 the tick of the change
+     */
+    public void applied(final long tick) {
+        appliedTick = tick;
+        changes.increment();
+    }
+
+    /**
+     * Record entities copied from the world of the primary.
+     *
+     * @param tick
+     *                 the tick of the primary when they were copied
+     */
+    public void copied(final long tick) {
+        appliedTick = tick;
+    }
+
+    /**
+     * Record the primary reporting its progress.
+     *
+     * @param tick
+     *                     the tick of the primary
+     * @param caughtUp
+     *                     true if the replica had applied every change the
+     *                     primary had made
+     */
+    public void reported(final long tick, final boolean caughtUp) {
+        primaryTick = tick;
+        current = caughtUp;
+    }
+
+    @Override
+    public boolean isLinked() {
+        return linked;
+    }
+
+    @Override
+    public long getChanges() {
+        return changes.sum();
+    }
+
+    @Override
+    public long getPrimaryTick() {
+        return primaryTick;
+    }
+
+    @Override
+    public long getAppliedTick() {
+        return appliedTick;
+    }
+
+    @Override
+    public long getLagTicks() {
+        if (current) {
+            return 0;
+        } else {
+            return Math.max(0, primaryTick - appliedTick);
+        }
+    }
+}
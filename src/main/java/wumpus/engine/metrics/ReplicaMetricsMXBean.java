@@ -0,0 +1,45 @@
+package wumpus.engine.metrics;
+
+/**
+ * Management view of the metrics of a replica following the changes of a
+ * primary.
+ */
+public interface ReplicaMetricsMXBean {
+
+    /**
+     * Whether the replica is linked to its primary.
+     *
+     * @return true while linked
+     */
+    boolean isLinked();
+
+    /**
+     * Count the changes applied.
+     *
+     * @return the number of changes
+     */
+    long getChanges();
+
+    /**
+     * The tick of the primary when it last reported to the replica.
+     *
+     * @return the tick number
+     */
+    long getPrimaryTick();
+
+    /**
+     * The tick of the last change applied.
+     *
+     * @return the tick number
+     */
+    long getAppliedTick();
+
+    /**
+     * How far the replica is behind its primary: the ticks between the
+     * primary's last reported tick and the last change applied, or zero when
+     * the replica had applied every change the primary had made by then.
+     *
+     * @return the lag in ticks
+     */
+    long getLagTicks();
+}
@@ -0,0 +1,160 @@
+package wumpus.engine.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MeteredEntityStore;
+
+/**
+ * Tick metrics of one service.
+ */
+public final class ServiceMetrics implements ServiceMetricsMXBean {
+
+    /**
+     * Median percentile.
+     */
+    private static final double P50 = 50.0;
+
+    /**
+     * 99th percentile.
+     */
+    private static final double P99 = 99.0;
+
+    /**
+     * 99.9th percentile.
+     */
+    private static final double P999 = 99.9;
+
+    /**
+     * Name of the service.
+     */
+    private final String name;
+
+    /**
+     * Tick budget in nanoseconds.
+     */
+    private final long budget;
+
+    /**
+     * Tick latencies.
+     */
+    private final LatencyHistogram latency;
+
+    /**
+     * Number of overrunning ticks.
+     */
+    private final LongAdder overruns;
+
+    /**
+     * Number of entities touched.
+     */
+    private final LongAdder touched;
+
+    /**
+     * Number of commits.
+     */
+    private final LongAdder commits;
+
+    /**
+     * Create empty metrics.
+     *
+     * @param n
+     *              the name of the service
+     * @param b
+     *              the tick budget in nanoseconds
+     */
+    public ServiceMetrics(final String n, final long b) {
+        name = n;
+        budget = b;
+        latency = new LatencyHistogram();
+        overruns = new LongAdder();
+        touched = new LongAdder();
+        commits = new LongAdder();
+    }
+
+    /**
+     * Record one tick.
+     *
+     * @param nanos
+     *                  the duration of the tick in nanoseconds
+     */
+    public void record(final long nanos) {
+        latency.record(nanos);
+        if (nanos > budget) {
+            overruns.increment();
+        }
+    }
+
+    /**
+     * Meter a store on behalf of the service.
+     *
+     * @param store
+     *                  the store used by the service
+     * @return a view of the store counting entities touched and commits
+     */
+    public EntityStore meter(final EntityStore store) {
+        return new MeteredEntityStore(store, touched, commits);
+    }
+
+    /**
+     * Convert nanoseconds to microseconds.
+     *
+     * @param nanos
+     *                  a duration in nanoseconds
+     * @return the duration in microseconds
+     */
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getTicks() {
+        return latency.count();
+    }
+
+    @Override
+    public long getOverruns() {
+        return overruns.sum();
+    }
+
+    @Override
+    public long getEntitiesTouched() {
+        return touched.sum();
+    }
+
+    @Override
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.mean() / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getP50Micros() {
+        return micros(latency.percentile(P50));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return micros(latency.percentile(P99));
+    }
+
+    @Override
+    public long getP999Micros() {
+        return micros(latency.percentile(P999));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return micros(latency.max());
+    }
+}
@@ -0,0 +1,77 @@
+package wumpus.engine.metrics;
+
+/**
+ * Management view of the tick metrics of one service.
+ */
+public interface ServiceMetricsMXBean {
+
+    /**
+     * The name of the service.
+     *
+     * @return the service name
+     */
+    String getName();
+
+    /**
+     * Count the ticks run.
+     *
+     * @return the number of ticks
+     */
+    long getTicks();
+
+    /**
+     * Count the ticks which alone took longer than the tick budget.
+     *
+     * @return the number of overrunning ticks
+     */
+    long getOverruns();
+
+    /**
+     * Count the entities handed to the service by its store.
+     *
+     * @return the number of entities touched
+     */
+    long getEntitiesTouched();
+
+    /**
+     * Count the commits issued by the service.
+     *
+     * @return the number of commits
+     */
+    long getCommits();
+
+    /**
+     * The mean tick latency.
+     *
+     * @return the mean latency in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * The median tick latency.
+     *
+     * @return the median latency in microseconds
+     */
+    long getP50Micros();
+
+    /**
+     * The 99th percentile tick latency.
+     *
+     * @return the 99th percentile latency in microseconds
+     */
+    long getP99Micros();
+
+    /**
+     * The 99.9th percentile tick latency.
+     *
+     * @return the 99.9th percentile latency in microseconds
+     */
+    long getP999Micros();
+
+    /**
+     * The longest tick.
+     *
+     * @return the longest latency in microseconds
+     */
+    long getMaxMicros();
+}
@@ -0,0 +1,125 @@
+package wumpus.engine.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of world snapshots: the time each took to capture within its tick,
+ * and the time and size of each as written in the background.
+ */
+public final class SnapshotMetrics implements SnapshotMetricsMXBean {
+
+    /**
+     * Time taken to capture each snapshot.
+     */
+    private final LatencyHistogram captures;
+
+    /**
+     * Time taken to write each snapshot.
+     */
+    private final LatencyHistogram writes;
+
+    /**
+     * Count of skipped snapshots.
+     */
+    private final LongAdder skipped;
+
+    /**
+     * Entities in the last snapshot written.
+     */
+    private volatile long lastEntities;
+
+    /**
+     * Size in bytes of the last snapshot written.
+     */
+    private volatile long lastBytes;
+
+    /**
+     * Time in nanoseconds taken to write the last snapshot.
+     */
+    private volatile long lastWrite;
+
+    /**
+     * Create empty metrics.
+     */
+    public SnapshotMetrics() {
+        captures = new LatencyHistogram();
+        writes = new LatencyHistogram();
+        skipped = new LongAdder();
+    }
+
+    /**
+     * Record the capture of a snapshot.
+     *
+     * @param nanos
+     *                  the capture time in nanoseconds
+     */
+    public void captured(final long nanos) {
+        captures.record(nanos);
+    }
+
+    /**
+     * Record a snapshot skipped.
+     */
+    public void skipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Record the writing of a snapshot.
+     *
+     * @param nanos
+     *                     the write time in nanoseconds
+     * @param entities
+     *                     the number of entities written
+     * @param bytes
+     *                     the size of the snapshot in bytes
+     */
+    public void written(final long nanos, final long entities,
+            final long bytes) {
+        lastEntities = entities;
+        lastBytes = bytes;
+        lastWrite = nanos;
+        writes.record(nanos);
+    }
+
+    @Override
+    public long getSnapshots() {
+        return writes.count();
+    }
+
+    @Override
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public long getLastEntities() {
+        return lastEntities;
+    }
+
+    @Override
+    public long getLastBytes() {
+        return lastBytes;
+    }
+
+    @Override
+    public long getLastWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastWrite);
+    }
+
+    @Override
+    public long getMaxWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writes.max());
+    }
+
+    @Override
+    public double getMeanCaptureMicros() {
+        return captures.mean() / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getMaxCaptureMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(captures.max());
+    }
+}
@@ -0,0 +1,64 @@
+package wumpus.engine.metrics;
+
+/**
+ * Management view of the metrics of world snapshots.
+ */
+public interface SnapshotMetricsMXBean {
+
+    /**
+     * Count the snapshots written.
+     *
+     * @return the number of snapshots
+     */
+    long getSnapshots();
+
+    /**
+     * Count the snapshots skipped because the one before was still being
+     * written.
+     *
+     * @return the number of skipped snapshots
+     */
+    long getSkipped();
+
+    /**
+     * The number of entities in the last snapshot written.
+     *
+     * @return the number of entities
+     */
+    long getLastEntities();
+
+    /**
+     * The size of the last snapshot written.
+     *
+     * @return the size in bytes
+     */
+    long getLastBytes();
+
+    /**
+     * The time taken to write the last snapshot.
+     *
+     * @return the write time in milliseconds
+     */
+    long getLastWriteMillis();
+
+    /**
+     * The longest time taken to write a snapshot.
+     *
+     * @return the write time in milliseconds
+     */
+    long getMaxWriteMillis();
+
+    /**
+     * The mean time spent capturing a snapshot within its tick.
+     *
+     * @return the mean capture time in microseconds
+     */
+    double getMeanCaptureMicros();
+
+    /**
+     * The longest time spent capturing a snapshot within its tick.
+     *
+     * @return the capture time in microseconds
+     */
+    long getMaxCaptureMicros();
+}
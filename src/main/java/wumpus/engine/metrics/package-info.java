@@ -0,0 +1,4 @@
+/**
+ * Runtime instrumentation of the game engine.
+ */
+package wumpus.engine.metrics;
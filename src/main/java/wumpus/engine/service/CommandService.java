@@ -0,0 +1,199 @@
+package wumpus.engine.service;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.command.CommandLibrary;
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Away;
+import wumpus.engine.entity.component.Listener;
+
+/**
+ * Service executing the commands submitted since the previous tick.
+ *
+ * Any thread may submit intents without blocking. They are executed in
+ * submission order on the tick thread, before every other service, so that
+ * commands never mutate entities while services are running. The service
+ * declares access to every component type, which the {@link TickScheduler}
+ * orders before all other services. Players join the game the same way, so
+ * that everything which enters the game from outside does so at a tick
+ * boundary, in an order a {@link ReplayJournal} can record. The intents of a
+ * player {@link Away} in another process are forwarded there, which replies.
+ */
+public final class CommandService implements Service {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(CommandService.class.getName());
+
+    /**
+     * Execution priority of this service.
+     */
+    private static final int PRIORITY = 0;
+
+    /**
+     * Response to a command which failed.
+     */
+    private static final String FAILED = "You cannot do that right now.";
+
+    /**
+     * The entity store used by this service.
+     */
+    private final EntityStore store;
+
+    /**
+     * Game commands.
+     */
+    private final CommandLibrary library;
+
+    /**
+     * Intents and joining players awaiting the next tick.
+     */
+    private final Queue<Runnable> pending;
+
+    /**
+     * Journal of the players joined and commands executed, or null.
+     */
+    private final ReplayJournal journal;
+
+    /**
+     * Ticks run so far.
+     */
+    private long ticks;
+
+    /**
+     * Create a service for the given entity store.
+     *
+     * @param s
+     *              the entity store used
+     */
+    public CommandService(final EntityStore s) {
+        this(s, null);
+    }
+
+    /**
+     * Create a service for the given entity store, recording every player
+     * joined and command executed in a journal.
+     *
+     * @param s
+     *              the entity store used
+     * @param j
+     *              the journal, or null for none
+     */
+    public CommandService(final EntityStore s, final ReplayJournal j) {
+        store = s;
+        library = new CommandLibrary();
+        pending = new ConcurrentLinkedQueue<>();
+        journal = j;
+    }
+
+    /**
+     * Submit an intent for execution on the next tick.
+     *
+     * @param i
+     *              the intent
+     */
+    public void submit(final Intent i) {
+        pending.add(() -> execute(i));
+    }
+
+    /**
+     * Have a stored entity join the game as a player on the next tick, by
+     * giving it a listener. Intents submitted after it are executed after
+     * it joins.
+     *
+     * @param player
+     *                   the ID of the entity
+     * @param l
+     *                   the listener to the player's messages
+     * @return completes once the tick has executed the join
+     */
+    public CompletableFuture<Void> join(final long player, final Listener l) {
+        final CompletableFuture<Void> joined = new CompletableFuture<>();
+        pending.add(() -> {
+            try {
+                store.get(player).ifPresent(e -> {
+                    if (journal != null) {
+                        journal.joined(player);
+                    }
+                    e.registerComponent(l);
+                    store.commit(e);
+                });
+            } finally {
+                joined.complete(null);
+            }
+        });
+        return joined;
+    }
+
+    /**
+     * Execute an intent and reply with its response, or forward it if its
+     * player is away in another process. A failing command is logged and
+     * answered rather than halting the remaining intents.
+     *
+     * @param i
+     *              the intent
+     */
+    private void execute(final Intent i) {
+        if (journal != null) {
+            journal.executed(i);
+        }
+        final Optional<Away> away = store.get(i.source())
+                .filter(e -> e.hasComponent(Away.class))
+                .map(e -> e.component(Away.class));
+        if (away.isPresent()) {
+            away.get().forward(i);
+        } else {
+            reply(i);
+        }
+    }
+
+    /**
+     * Execute an intent here and reply with its response.
+     *
+     * @param i
+     *              the intent
+     */
+    private void reply(final Intent i) {
+        String response;
+        try {
+            response = library.execute(i.command(), i.source(), store,
+                    i.args());
+        } catch (RuntimeException ex) {
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.log(Level.WARNING, "Command " + i.command()
+                        + " failed for entity " + i.source() + ".", ex);
+            }
+            response = FAILED;
+        }
+        i.reply(response);
+    }
+
+    @Override
+    public void tick() {
+        ticks++;
+        if (journal != null) {
+            journal.ticked(ticks);
+        }
+        Runnable r = pending.poll();
+        while (r != null) {
+            r.run();
+            r = pending.poll();
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    @Override
+    public int priority() {
+        return PRIORITY;
+    }
+}
@@ -1,7 +1,10 @@
 package wumpus.engine.service;
 
+import java.util.Set;
+
 import wumpus.engine.entity.Entity;
 import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Component;
 import wumpus.engine.entity.component.Cooldown;
 
 /**
@@ -46,4 +49,14 @@ public final class CooldownService implements Service {
         return PRIORITY;
     }
 
+    @Override
+    public Set<Class<? extends Component>> reads() {
+        return Set.of(Cooldown.class);
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return Set.of(Cooldown.class);
+    }
+
 }
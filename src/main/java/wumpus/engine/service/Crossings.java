@@ -0,0 +1,123 @@
+package wumpus.engine.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.Transaction;
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Examining;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.Transit;
+
+/**
+ * Steps of players crossing between processes of the game, shared by the
+ * services at either end of a {@link Peer}.
+ */
+final class Crossings {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Crossings() {
+
+    }
+
+    /**
+     * Gather a player with everything it carries, which move together, as a
+     * transaction reads them.
+     *
+     * @param tx
+     *                   the transaction reading them
+     * @param player
+     *                   the ID of the player
+     * @return the player, first, then its inventory and the contents of that
+     */
+    private static List<Entity> bundle(final Transaction tx,
+            final long player) {
+        final List<Entity> es = new ArrayList<>();
+        final Entity p = tx.get(player).get();
+        es.add(p);
+        tx.get(p.component(Player.class).inventory()).ifPresent(i -> {
+            es.add(i);
+            i.contents().mapToObj(tx::get).flatMap(Optional::stream)
+                    .forEach(es::add);
+        });
+        return es;
+    }
+
+    /**
+     * Take a player out of the world of this process, as by
+     * {@link #leave(Transaction, long)}, with further changes made in the
+     * same transaction. It is retried until it commits, and only then may
+     * the player be sent on.
+     *
+     * @param store
+     *                   the entity store
+     * @param player
+     *                   the ID of the player
+     * @param more
+     *                   further changes to make in the transaction
+     * @return the player, first, then its inventory and the contents of
+     *         that, as they were when the player left
+     * @throws java.util.ConcurrentModificationException
+     *                                                       if every attempt
+     *                                                       conflicted
+     */
+    static List<Entity> leave(final EntityStore store, final long player,
+            final Consumer<Transaction> more) {
+        final AtomicReference<List<Entity>> bundle = new AtomicReference<>();
+        Transaction.run(store, tx -> {
+            bundle.set(bundle(tx, player));
+            leave(tx, player);
+            more.accept(tx);
+        });
+        return bundle.get();
+    }
+
+    /**
+     * Take a player out of the world of this process, leaving the room and
+     * zone it is in.
+     *
+     * @param tx
+     *                   the transaction to make the change in
+     * @param player
+     *                   the ID of the player
+     */
+    static void leave(final Transaction tx, final long player) {
+        final Physical p = tx.get(player).get().component(Physical.class);
+        LongStream.of(p.location(), p.zone()).distinct()
+                .forEach(x -> tx.get(x)
+                        .filter(e -> e.hasComponent(Container.class))
+                        .ifPresent(e -> tx.register(x, new Container(
+                                e.component(Container.class),
+                                l -> l != player))));
+        tx.deregister(player, Physical.class);
+        tx.deregister(player, Transit.class);
+        tx.deregister(player, Examining.class);
+    }
+
+    /**
+     * Place a player which has arrived from another process, yet to be
+     * stored, so that it moves into a room on the next tick. Whatever it was
+     * examining there is forgotten.
+     *
+     * @param player
+     *                   the player
+     * @param room
+     *                   the ID of the room
+     * @param zone
+     *                   the ID of the zone of the room
+     */
+    static void enter(final Entity player, final long room, final long zone) {
+        player.deregisterComponent(Examining.class);
+        player.registerComponent(new Physical(room, zone));
+        player.registerComponent(new Transit(room));
+    }
+}
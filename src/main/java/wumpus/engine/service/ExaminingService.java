@@ -1,13 +1,13 @@
 package wumpus.engine.service;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import wumpus.engine.entity.Entity;
 import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Component;
 import wumpus.engine.entity.component.Container;
 import wumpus.engine.entity.component.Dead;
 import wumpus.engine.entity.component.Descriptive;
@@ -15,6 +15,7 @@ import wumpus.engine.entity.component.Examining;
 import wumpus.engine.entity.component.Hidden;
 import wumpus.engine.entity.component.Item;
 import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Physical;
 import wumpus.engine.entity.component.PitTrap;
 import wumpus.engine.entity.component.Player;
 import wumpus.engine.entity.component.Room;
@@ -73,13 +74,8 @@ public final class ExaminingService implements Service {
      */
     private void examine(final Player p, final Descriptive target) {
         final StringBuilder out = new StringBuilder();
-        final Set<Long> targetContents = new HashSet<>();
         final Map<Direction, Entity> exits = new HashMap<>();
 
-        if (target.hasComponent(Container.class)) {
-            targetContents.addAll(target.entity().contents());
-        }
-
         if (target.hasComponent(Room.class)) {
             exits.putAll(target.component(Room.class).linkedRooms().entrySet()
                     .stream().collect(Collectors.toMap(e -> e.getKey(),
@@ -87,7 +83,8 @@ public final class ExaminingService implements Service {
         }
 
         out.append("\nO--- You ");
-        if (targetContents.contains(p.entity().id())) {
+        if (target.hasComponent(Container.class) && target
+                .component(Container.class).contains(p.entity().id())) {
             out.append("are in");
         } else {
             out.append("see");
@@ -124,21 +121,15 @@ public final class ExaminingService implements Service {
                                     .shortDescription())
                     .collect(Collectors.joining("\n")));
             out.append("\n");
-            final Set<Entity> contents = exits.values().stream()
-                    .flatMap(e -> e.contentsStream(store))
-                    .collect(Collectors.toSet());
-            if (contents.stream().filter(e -> e.hasComponent(Wumpus.class))
-                    .findAny().isPresent()) {
+            final Set<Class<? extends Component>> hazards = Locations
+                    .adjacentHazards(store, target.entity().id());
+            if (hazards.contains(Wumpus.class)) {
                 out.append(WUMPUS_SMELL);
             }
-            if (contents.stream()
-                    .filter(e -> e.hasComponent(SuperBat.class)
-                            && !e.hasComponent(Dead.class))
-                    .findAny().isPresent()) {
+            if (hazards.contains(SuperBat.class)) {
                 out.append(BAT_SOUND);
             }
-            if (contents.stream().filter(e -> e.hasComponent(PitTrap.class))
-                    .findAny().isPresent()) {
+            if (hazards.contains(PitTrap.class)) {
                 out.append(PIT_DRAFT);
             }
         }
@@ -169,4 +160,17 @@ public final class ExaminingService implements Service {
         return PRIORITY;
     }
 
+    @Override
+    public Set<Class<? extends Component>> reads() {
+        return Set.of(Player.class, Listener.class, Examining.class,
+                Descriptive.class, Container.class, Room.class, Item.class,
+                Dead.class, Hidden.class, Wumpus.class, SuperBat.class,
+                PitTrap.class, Physical.class);
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return Set.of(Examining.class);
+    }
+
 }
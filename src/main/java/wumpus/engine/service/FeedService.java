@@ -0,0 +1,51 @@
+package wumpus.engine.service;
+
+import java.util.Set;
+
+import wumpus.engine.entity.ChangeFeed;
+import wumpus.engine.entity.component.Component;
+
+/**
+ * Service ending each tick of a change feed.
+ *
+ * It ticks last and reads every component type, as {@link SyncService} does,
+ * so the changes of the whole tick are stamped with that tick and forced to
+ * the device together before the next tick begins.
+ */
+public final class FeedService implements Service {
+
+    /**
+     * Execution priority of this service.
+     */
+    private static final int PRIORITY = 1000;
+
+    /**
+     * The feed ticked by this service.
+     */
+    private final ChangeFeed feed;
+
+    /**
+     * Create a service for the given feed.
+     *
+     * @param f
+     *              the feed ticked
+     */
+    public FeedService(final ChangeFeed f) {
+        this.feed = f;
+    }
+
+    @Override
+    public void tick() {
+        feed.endTick();
+    }
+
+    @Override
+    public int priority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return Set.of();
+    }
+}
@@ -4,10 +4,14 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
 
+import wumpus.engine.entity.Entity;
 import wumpus.engine.entity.EntityStore;
 import wumpus.engine.entity.component.ArrowHit;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Cooldown;
 import wumpus.engine.entity.component.Dead;
 import wumpus.engine.entity.component.Hazard;
 import wumpus.engine.entity.component.Hidden;
@@ -21,7 +25,7 @@ import wumpus.engine.entity.component.Transit;
 import wumpus.engine.entity.component.Wumpus;
 
 /**
- * Service to manage all of the game world hazards.
+ * Service to manage all of the game world hazards, or those of some zones.
  */
 public final class HazardService implements Service {
 
@@ -72,6 +76,21 @@ public final class HazardService implements Service {
      */
     private final EntityStore store;
 
+    /**
+     * Chooses where super bats carry players.
+     */
+    private final Random random;
+
+    /**
+     * Test for whether a zone is served by this service.
+     */
+    private final LongPredicate zones;
+
+    /**
+     * True if this service also serves hazards with no physical place.
+     */
+    private final boolean unplaced;
+
     /**
      * Create a hazard service for the given entity store.
      *
@@ -80,6 +99,60 @@ public final class HazardService implements Service {
      */
     public HazardService(final EntityStore s) {
         this.store = s;
+        this.random = new Random();
+        this.zones = z -> true;
+        this.unplaced = true;
+    }
+
+    /**
+     * Create a hazard service for the given entity store, making its random
+     * choices from a seed.
+     *
+     * @param s
+     *                 the entity store used
+     * @param seed
+     *                 the seed of the random choices
+     */
+    public HazardService(final EntityStore s, final long seed) {
+        this(s, seed, z -> true, true);
+    }
+
+    /**
+     * Create a hazard service for the hazards of some zones, making its
+     * random choices from a seed.
+     *
+     * @param s
+     *                 the entity store used
+     * @param seed
+     *                 the seed of the random choices
+     * @param z
+     *                 test for whether a zone is served by this service
+     * @param u
+     *                 true if this service also serves hazards with no
+     *                 physical place, as only one service should
+     */
+    public HazardService(final EntityStore s, final long seed,
+            final LongPredicate z, final boolean u) {
+        this.store = s;
+        this.random = new Random(seed);
+        this.zones = z;
+        this.unplaced = u;
+    }
+
+    /**
+     * Determine if a hazard is served by this service: if it is in a zone
+     * served, or has no physical place and this service serves those.
+     *
+     * @param e
+     *              the hazard
+     * @return true if it is to be served
+     */
+    private boolean served(final Entity e) {
+        if (e.hasComponent(Physical.class)) {
+            return zones.test(e.component(Physical.class).zone());
+        } else {
+            return unplaced;
+        }
     }
 
     /**
@@ -95,8 +168,8 @@ public final class HazardService implements Service {
             final List<Room> rooms = store.stream().component(Room.class)
                     .collect(Collectors.toList());
             final long playerRoom = rooms
-                    .get(new Random().nextInt(rooms.size())).entity().id();
-            final long batRoom = rooms.get(new Random().nextInt(rooms.size()))
+                    .get(random.nextInt(rooms.size())).entity().id();
+            final long batRoom = rooms.get(random.nextInt(rooms.size()))
                     .entity().id();
             player.registerComponent(new Transit(playerRoom));
             bat.registerComponent(new Transit(batRoom));
@@ -147,12 +220,10 @@ public final class HazardService implements Service {
     @Override
     public void tick() {
         store.stream().components(Set.of(Hazard.class, Physical.class))
-                .map(cm -> cm.entity()).forEach(e -> {
+                .map(cm -> cm.entity()).filter(this::served).forEach(e -> {
                     final long loc = e.component(Physical.class).location();
-                    final Optional<Player> player = store.get(loc).get()
-                            .contentsStream(store).component(Player.class)
-                            .filter(p -> !p.hasComponent(Dead.class))
-                            .findFirst();
+                    final Optional<Player> player = Locations
+                            .livingPlayers(store, loc).findFirst();
                     if (player.isPresent()) {
                         if (e.hasComponent(SuperBat.class)) {
                             batMove(player.get(), e.component(SuperBat.class));
@@ -167,7 +238,7 @@ public final class HazardService implements Service {
                 });
         final StringBuilder exs = new StringBuilder();
         store.stream().components(Set.of(Hazard.class, ArrowHit.class))
-                .map(cm -> cm.entity()).forEach(e -> {
+                .map(cm -> cm.entity()).filter(this::served).forEach(e -> {
                     if (e.hasComponent(SuperBat.class)) {
                         e.registerComponent(new Dead());
                         exs.append(BAT_DEATH);
@@ -194,4 +265,17 @@ public final class HazardService implements Service {
         return PRIORITY;
     }
 
+    @Override
+    public Set<Class<? extends Component>> reads() {
+        return Set.of(Hazard.class, Physical.class, Player.class, Dead.class,
+                SuperBat.class, PitTrap.class, Wumpus.class, Hidden.class,
+                Listener.class, ArrowHit.class, Room.class);
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return Set.of(Transit.class, Dead.class, Cooldown.class, Hidden.class,
+                ArrowHit.class);
+    }
+
 }
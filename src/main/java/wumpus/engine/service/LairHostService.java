@@ -0,0 +1,338 @@
+package wumpus.engine.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Dead;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Expired;
+import wumpus.engine.entity.component.Lair;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.Portal;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.type.Direction;
+
+/**
+ * Service hosting, in the lairs of this process, players who have come from
+ * the overworld over links to its process.
+ *
+ * A player arriving enters at the entrance of the lair, with a listener
+ * sending its messages back over the link, and the commands forwarded for it
+ * are executed here. The entrance leads back up to a {@link Portal} room, and
+ * a player entering it, dying or quitting is sent back over its link with
+ * what it carries, and expires here. Responses to the commands of a tick are
+ * sent once that tick's players have, so that the overworld learns of a
+ * player leaving before the response to the command which made it leave.
+ *
+ * Should a link be lost, its players expire here, to be rescued by the
+ * overworld.
+ */
+public final class LairHostService implements Service {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(LairHostService.class.getName());
+
+    /**
+     * Execution priority of this service.
+     */
+    private static final int PRIORITY = 15;
+
+    /**
+     * Response to a command of a player no longer here.
+     */
+    private static final String GONE = "You have already left the lair.";
+
+    /**
+     * A link from the overworld, over which players visit.
+     */
+    private final class Visit implements Peer.Receiver {
+
+        /**
+         * The overworld.
+         */
+        private final Peer peer;
+
+        /**
+         * Create a visit over a link.
+         *
+         * @param p
+         *              the overworld
+         */
+        Visit(final Peer p) {
+            peer = p;
+        }
+
+        @Override
+        public void arrived(final List<Entity> bundle,
+                final boolean listening) {
+            inbox.add(l -> receive(this, bundle, l));
+        }
+
+        @Override
+        public void command(final Intent i) {
+            inbox.add(l -> submit(i));
+        }
+
+        @Override
+        public void replied(final Intent i, final String response) {
+            LOG.warning("Ignored a response from the overworld.");
+        }
+
+        @Override
+        public void message(final long player, final String text) {
+            LOG.warning("Ignored a message from the overworld.");
+        }
+
+        @Override
+        public void closed() {
+            inbox.add(l -> {
+                LOG.warning("Lost a link to the overworld.");
+                visitors.entrySet().stream().filter(v -> v.getValue() == this)
+                        .map(v -> v.getKey()).collect(Collectors.toList())
+                        .forEach(id -> store.get(id)
+                                .ifPresent(e -> expire(e)));
+            });
+        }
+    }
+
+    /**
+     * The entity store used by this service.
+     */
+    private final EntityStore store;
+
+    /**
+     * The service executing the commands of players.
+     */
+    private final CommandService commands;
+
+    /**
+     * Work received over the links, done in order once there is a lair.
+     */
+    private final Queue<Consumer<Lair>> inbox;
+
+    /**
+     * Responses to send once the players leaving this tick have been sent.
+     */
+    private final Queue<Runnable> outbox;
+
+    /**
+     * The link each player here came over, by ID.
+     */
+    private final Map<Long, Visit> visitors;
+
+    /**
+     * ID of the portal room, once created.
+     */
+    private Optional<Long> portal;
+
+    /**
+     * ID of the lair the portal leads from.
+     */
+    private long portalLair;
+
+    /**
+     * Create a service hosting players in lairs.
+     *
+     * @param s
+     *              the entity store used
+     * @param c
+     *              the service executing the commands of players
+     */
+    public LairHostService(final EntityStore s, final CommandService c) {
+        store = s;
+        commands = c;
+        inbox = new ConcurrentLinkedQueue<>();
+        outbox = new ConcurrentLinkedQueue<>();
+        visitors = new ConcurrentHashMap<>();
+        portal = Optional.empty();
+    }
+
+    /**
+     * Accept a link from the overworld.
+     *
+     * @param p
+     *              the overworld
+     * @return the receiver of what the overworld sends over the link
+     */
+    public Peer.Receiver connect(final Peer p) {
+        return new Visit(p);
+    }
+
+    /**
+     * Place a player arriving over a link at the entrance of the lair. A
+     * player which somehow is here already is sent straight back.
+     *
+     * @param v
+     *                   the link
+     * @param bundle
+     *                   the player, its inventory and the contents of that
+     * @param lair
+     *                   the lair
+     */
+    private void receive(final Visit v, final List<Entity> bundle,
+            final Lair lair) {
+        final Entity player = bundle.get(0);
+        final long id = player.id();
+        if (bundle.stream().anyMatch(e -> store.get(e.id()).isPresent())) {
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.warning("Sent back player " + id
+                        + ", which is here already.");
+            }
+            v.peer.arrive(bundle, true);
+        } else {
+            player.registerComponent(
+                    new Listener(m -> v.peer.message(id, m.toString())));
+            Crossings.enter(player, lair.entrance(), lair.entity().id());
+            store.commitAll(bundle);
+            visitors.put(id, v);
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Player " + id + " entered lair "
+                        + lair.entity().id() + ".");
+            }
+        }
+    }
+
+    /**
+     * Submit an intent forwarded for a player, whose response is sent in
+     * turn.
+     *
+     * @param i
+     *              the intent
+     */
+    private void submit(final Intent i) {
+        if (visitors.containsKey(i.source())) {
+            commands.submit(new Intent(i.source(), i.command(),
+                    r -> outbox.add(() -> i.reply(r)), i.args()));
+        } else {
+            outbox.add(() -> i.reply(GONE));
+        }
+    }
+
+    /**
+     * Take a player out of this process, leaving its room and zone.
+     *
+     * @param player
+     *                   the player
+     * @return the player with what it carries, as by
+     *         {@link Crossings#leave(EntityStore, long, Consumer)}
+     */
+    private List<Entity> remove(final Entity player) {
+        final List<Entity> bundle = Crossings.leave(store, player.id(),
+                tx -> { });
+        visitors.remove(player.id());
+        return bundle;
+    }
+
+    /**
+     * Take a player out of this process, leaving its room and zone, and
+     * expire it with what it carries.
+     *
+     * @param player
+     *                   the player
+     */
+    private void expire(final Entity player) {
+        remove(player).forEach(e -> e.registerComponent(new Expired()));
+    }
+
+    /**
+     * Send a player back over its link, when it enters the portal, dies or
+     * quits. The player is sent only once it has left this store, and
+     * expires with what it carries once sent.
+     *
+     * @param player
+     *                   the player
+     */
+    private void depart(final Entity player) {
+        final Visit v = visitors.get(player.id());
+        final List<Entity> bundle = remove(player);
+        v.peer.arrive(bundle, player.hasComponent(Listener.class));
+        bundle.forEach(e -> e.registerComponent(new Expired()));
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Player " + player.id() + " left the lair.");
+        }
+    }
+
+    /**
+     * Determine if a player is leaving.
+     *
+     * @param player
+     *                   the player
+     * @return true if the player is in the portal, dead or no longer
+     *         listening
+     */
+    private boolean leaving(final Entity player) {
+        return player.hasComponent(Dead.class)
+                || !player.hasComponent(Listener.class)
+                || (portal.isPresent() && player.hasComponent(Physical.class)
+                        && player.component(Physical.class)
+                                .location() == portal.get());
+    }
+
+    /**
+     * Create a portal room for a lair, below its entrance, replacing the
+     * portal of any lair before.
+     *
+     * @param lair
+     *                 the lair
+     */
+    private void createPortal(final Lair lair) {
+        portal.flatMap(store::get)
+                .ifPresent(p -> p.registerComponent(new Expired()));
+        final Entity e = store.create();
+        e.registerComponent(new Portal());
+        e.registerComponent(new Room(Map.of(Direction.north, lair.entrance()),
+                lair.entity().id()));
+        e.registerComponent(new Descriptive("the trail back",
+                "The trail leads back up to the wilderness."));
+        store.commit(e);
+        final Room entrance = store.get(lair.entrance()).get()
+                .component(Room.class);
+        entrance.registerComponent(
+                new Room(entrance, Direction.south, e.id()));
+        store.commit(entrance.entity());
+        portal = Optional.of(e.id());
+        portalLair = lair.entity().id();
+    }
+
+    @Override
+    public void tick() {
+        visitors.keySet().removeIf(id -> store.get(id).isEmpty());
+        visitors.keySet().stream().map(store::get)
+                .flatMap(Optional::stream).filter(this::leaving)
+                .collect(Collectors.toList()).forEach(this::depart);
+        final Optional<Lair> lair = store.stream().component(Lair.class)
+                .findAny();
+        if (lair.isPresent()) {
+            if (portal.isEmpty() || portalLair != lair.get().entity().id()) {
+                createPortal(lair.get());
+            }
+            for (Consumer<Lair> c = inbox.poll(); c != null; c = inbox
+                    .poll()) {
+                c.accept(lair.get());
+            }
+        }
+        for (Runnable r = outbox.poll(); r != null; r = outbox.poll()) {
+            r.run();
+        }
+    }
+
+    @Override
+    public int priority() {
+        return PRIORITY;
+    }
+}
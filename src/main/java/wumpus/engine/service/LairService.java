@@ -1,5 +1,6 @@
 package wumpus.engine.service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -141,8 +142,24 @@ public final class LairService implements Service {
      *               the default lair size
      */
     public LairService(final EntityStore s, final int ds) {
+        this(s, ds, System.currentTimeMillis());
+    }
+
+    /**
+     * Create a new lair service with a given entity store, generating lairs
+     * from a seed. Lairs generated from the same seed in the same order are
+     * the same.
+     *
+     * @param s
+     *                 the entity store for this service
+     * @param ds
+     *                 the default lair size
+     * @param seed
+     *                 the seed of the random number supplier
+     */
+    public LairService(final EntityStore s, final int ds, final long seed) {
         this.store = s;
-        final Random ran = new Random(System.currentTimeMillis());
+        final Random ran = new Random(seed);
         this.random = () -> ran.nextInt(MAX_RAND_GEN) + 1;
         this.gapChance = DEFAULT_GAP_CHANCE;
         this.defaultSize = ds;
@@ -202,6 +219,7 @@ public final class LairService implements Service {
             }
         }
 
+        final List<Entity> generated = new ArrayList<>();
         for (int i = 0; i < h; i++) {
             for (int j = 0; j < v; j++) {
                 if (grid[i][j] != null) {
@@ -223,10 +241,11 @@ public final class LairService implements Service {
                             "a dark cavern",
                             "This room is lit low by your lantern, but you "
                                     + "cannot see very far."));
-                    store.commit(grid[i][j]);
+                    generated.add(grid[i][j]);
                 }
             }
         }
+        store.commitAll(generated);
 
         return Arrays.stream(grid).flatMap(a -> Arrays.stream(a))
                 .filter(Objects::nonNull).map(Entity::id)
@@ -275,7 +294,8 @@ public final class LairService implements Service {
      */
     private Set<Long> generateBats(final List<Long> rooms, final long firstRoom,
             final long zone) {
-        Set<Long> bats = new HashSet<>();
+        final Set<Long> bats = new HashSet<>();
+        final List<Entity> generated = new ArrayList<>();
         for (int i = 0; i <= rooms.size() / BAT_FACTOR; i++) {
             long batRoom;
             do {
@@ -286,9 +306,10 @@ public final class LairService implements Service {
             bat.registerComponent(new SuperBat());
             bat.registerComponent(new Physical(batRoom, zone));
             bat.registerComponent(new Transit(batRoom));
-            store.commit(bat);
+            generated.add(bat);
             bats.add(bat.id());
         }
+        store.commitAll(generated);
         return bats;
     }
 
@@ -305,7 +326,8 @@ public final class LairService implements Service {
      */
     private Set<Long> generatePits(final List<Long> rooms, final long firstRoom,
             final long zone) {
-        Set<Long> pits = new HashSet<>();
+        final Set<Long> pits = new HashSet<>();
+        final List<Entity> generated = new ArrayList<>();
         for (int i = 0; i <= rooms.size() / PIT_FACTOR; i++) {
             long pitRoom;
             do {
@@ -317,9 +339,10 @@ public final class LairService implements Service {
             pit.registerComponent(new Hidden());
             pit.registerComponent(new Physical(pitRoom, zone));
             pit.registerComponent(new Transit(pitRoom));
-            store.commit(pit);
+            generated.add(pit);
             pits.add(pit.id());
         }
+        store.commitAll(generated);
         return pits;
     }
 
@@ -357,9 +380,7 @@ public final class LairService implements Service {
         lair.registerComponent(new Lair(entrance.id(), wumpus));
         lair.registerComponent(new Container(
                 contents.stream().mapToLong(l -> l.longValue()).toArray()));
-        store.commit(lair);
-        store.commit(entrance);
-        store.commit(firstRoomE.entity());
+        store.commitAll(List.of(lair, entrance, firstRoomE.entity()));
         if (LOG.isLoggable(Level.INFO)) {
             LOG.info("Generated new lair " + lair.id());
         }
@@ -0,0 +1,89 @@
+package wumpus.engine.service;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Dead;
+import wumpus.engine.entity.component.PitTrap;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.entity.component.SuperBat;
+import wumpus.engine.entity.component.Wumpus;
+
+/**
+ * Queries over the occupants of rooms, answered from the store's location
+ * index.
+ */
+final class Locations {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Locations() {
+
+    }
+
+    /**
+     * Find the living players in a room.
+     *
+     * @param store
+     *                  the entity store
+     * @param room
+     *                  the entity ID of the room
+     * @return a stream of the player components of living occupants
+     */
+    static Stream<Player> livingPlayers(final EntityStore store,
+            final long room) {
+        return store.located(room).component(Player.class)
+                .filter(p -> !p.hasComponent(Dead.class));
+    }
+
+    /**
+     * Find the occupants of the rooms linked to a room.
+     *
+     * @param store
+     *                  the entity store
+     * @param room
+     *                  the entity ID of the room
+     * @return a stream of the entities in neighbouring rooms
+     */
+    static Stream<Entity> adjacent(final EntityStore store, final long room) {
+        return store.get(room).filter(e -> e.hasComponent(Room.class))
+                .stream()
+                .flatMap(e -> e.component(Room.class).linkedRooms().values()
+                        .stream())
+                .flatMap(r -> store.located(r));
+    }
+
+    /**
+     * Find the kinds of hazard which can be sensed from a room: a wumpus,
+     * living or dead, a living super bat, or a pit trap in a linked room.
+     *
+     * @param store
+     *                  the entity store
+     * @param room
+     *                  the entity ID of the room
+     * @return the hazard component types sensed
+     */
+    static Set<Class<? extends Component>> adjacentHazards(
+            final EntityStore store, final long room) {
+        final Set<Class<? extends Component>> kinds = new HashSet<>();
+        adjacent(store, room).forEach(e -> {
+            if (e.hasComponent(Wumpus.class)) {
+                kinds.add(Wumpus.class);
+            }
+            if (e.hasComponent(SuperBat.class)
+                    && !e.hasComponent(Dead.class)) {
+                kinds.add(SuperBat.class);
+            }
+            if (e.hasComponent(PitTrap.class)) {
+                kinds.add(PitTrap.class);
+            }
+        });
+        return kinds;
+    }
+}
@@ -0,0 +1,96 @@
+package wumpus.engine.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.Entity;
+
+/**
+ * The far end of a link between two processes of the game, the overworld and
+ * a host of lairs, across which players move. Any thread may send to a peer.
+ */
+public interface Peer {
+
+    /**
+     * Receiver of what a peer sends, called in order on the thread of the
+     * link, so that it must hand anything touching the store to its tick.
+     */
+    interface Receiver {
+
+        /**
+         * A player has moved here from the peer.
+         *
+         * @param bundle
+         *                      the player, first, then its inventory and the
+         *                      contents of that
+         * @param listening
+         *                      true if the player is still in the game
+         */
+        void arrived(List<Entity> bundle, boolean listening);
+
+        /**
+         * The peer forwards an intent of a player who has moved here.
+         *
+         * @param i
+         *              the intent, replying to which sends the response to
+         *              the peer
+         */
+        void command(Intent i);
+
+        /**
+         * The peer has replied to an intent forwarded to it.
+         *
+         * @param i
+         *                     the intent forwarded
+         * @param response
+         *                     the response
+         */
+        void replied(Intent i, String response);
+
+        /**
+         * The peer tells a player who has moved there a message.
+         *
+         * @param player
+         *                   the ID of the player
+         * @param text
+         *                   the message
+         */
+        void message(long player, String text);
+
+        /**
+         * The link to the peer is lost. Nothing more is received.
+         */
+        void closed();
+    }
+
+    /**
+     * Move a player to the peer.
+     *
+     * @param bundle
+     *                      the player, first, then its inventory and the
+     *                      contents of that
+     * @param listening
+     *                      true if the player is still in the game
+     */
+    void arrive(Collection<Entity> bundle, boolean listening);
+
+    /**
+     * Forward an intent of a player who has moved to the peer, which replies
+     * to it.
+     *
+     * @param i
+     *              the intent
+     */
+    void command(Intent i);
+
+    /**
+     * Tell a player who has moved here from the peer a message.
+     *
+     * @param player
+     *                   the ID of the player
+     * @param text
+     *                   the message
+     */
+    void message(long player, String text);
+}
@@ -0,0 +1,308 @@
+package wumpus.engine.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Away;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Expired;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.Portal;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.entity.component.Transit;
+import wumpus.engine.entity.component.Wilderness;
+import wumpus.engine.type.Direction;
+
+/**
+ * Service at the overworld's end of a link to a process hosting lairs.
+ *
+ * It keeps a {@link Portal} room, which the wilderness leads to, and a player
+ * entering it moves to the host with what it carries. The player stays in
+ * this store {@link Away}, keeping its listener but with no place in the
+ * world, and its commands are forwarded to the host. When the host sends it
+ * back, as it leaves the lair, dies or quits, it returns to the wilderness
+ * with what it came back with.
+ *
+ * Should the link be lost, the portal leads nowhere, and players away are
+ * rescued to the wilderness with what they carried when they left. So is any
+ * player found away with no link, as after a restart.
+ */
+public final class PortalService implements Service, Peer.Receiver,
+        Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(PortalService.class.getName());
+
+    /**
+     * Execution priority of this service.
+     */
+    private static final int PRIORITY = 15;
+
+    /**
+     * Told to a player entering the portal once the link is lost.
+     */
+    private static final String BLOCKED = "The trail to the lair is blocked"
+            + " by a fallen tree, and you turn back.";
+
+    /**
+     * Told to a player rescued from a lair.
+     */
+    private static final String RESCUED = "The cave falls in around you, and"
+            + " you scramble back out into the wilderness.";
+
+    /**
+     * The entity store used by this service.
+     */
+    private final EntityStore store;
+
+    /**
+     * The host of lairs.
+     */
+    private final Peer peer;
+
+    /**
+     * Work received from the host, done in order on the next tick.
+     */
+    private final Queue<Runnable> inbox;
+
+    /**
+     * IDs of the players away at the host.
+     */
+    private final Set<Long> away;
+
+    /**
+     * ID of the portal room, once created.
+     */
+    private Optional<Long> portal;
+
+    /**
+     * False once the link to the host is lost.
+     */
+    private boolean open;
+
+    /**
+     * Create a service moving players to a host of lairs.
+     *
+     * @param s
+     *              the entity store used
+     * @param p
+     *              the host
+     */
+    public PortalService(final EntityStore s, final Peer p) {
+        store = s;
+        peer = p;
+        inbox = new ConcurrentLinkedQueue<>();
+        away = ConcurrentHashMap.newKeySet();
+        portal = Optional.empty();
+        open = true;
+    }
+
+    @Override
+    public void arrived(final List<Entity> bundle, final boolean listening) {
+        inbox.add(() -> receive(bundle, listening));
+    }
+
+    @Override
+    public void command(final Intent i) {
+        LOG.warning("Ignored a command from the host of lairs.");
+    }
+
+    @Override
+    public void replied(final Intent i, final String response) {
+        inbox.add(() -> i.reply(response));
+    }
+
+    @Override
+    public void message(final long player, final String text) {
+        inbox.add(() -> store.get(player)
+                .filter(e -> e.hasComponent(Listener.class))
+                .ifPresent(e -> e.component(Listener.class).tell(text)));
+    }
+
+    @Override
+    public void closed() {
+        inbox.add(() -> {
+            LOG.warning("Lost the link to a host of lairs.");
+            open = false;
+            away.forEach(id -> store.get(id).ifPresent(
+                    e -> e.deregisterComponent(Away.class)));
+            away.clear();
+        });
+    }
+
+    /**
+     * Return a player sent back by the host to the wilderness, with what it
+     * carries now in place of what it carried when it left.
+     *
+     * @param bundle
+     *                      the player, its inventory and the contents of that
+     * @param listening
+     *                      true if the player is still in the game
+     * @param wilderness
+     *                      the wilderness
+     */
+    private void receive(final List<Entity> bundle, final boolean listening,
+            final Entity wilderness) {
+        final Entity player = bundle.get(0);
+        final Optional<Entity> stub = store.get(player.id());
+        if (listening && stub.isPresent()
+                && stub.get().hasComponent(Listener.class)) {
+            player.registerComponent(stub.get().component(Listener.class));
+        }
+        final Set<Long> returned = bundle.stream().map(Entity::id)
+                .collect(Collectors.toSet());
+        stub.filter(e -> e.hasComponent(Player.class))
+                .flatMap(e -> store
+                        .get(e.component(Player.class).inventory()))
+                .ifPresent(i -> i.contentsStream(store)
+                        .filter(c -> !returned.contains(c.id()))
+                        .forEach(c -> c.registerComponent(new Expired())));
+        Crossings.enter(player, wilderness.id(),
+                wilderness.component(Room.class).zone());
+        store.commitAll(bundle);
+        away.remove(player.id());
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Player " + player.id() + " returned from a lair.");
+        }
+    }
+
+    /**
+     * Return a player sent back by the host to the wilderness of this store.
+     *
+     * @param bundle
+     *                      the player, its inventory and the contents of that
+     * @param listening
+     *                      true if the player is still in the game
+     */
+    private void receive(final List<Entity> bundle,
+            final boolean listening) {
+        store.stream().component(Wilderness.class).findAny().ifPresentOrElse(
+                w -> receive(bundle, listening, w.entity()),
+                () -> LOG.warning("No wilderness to return a player to."));
+    }
+
+    /**
+     * Create the portal room, leading back to the wilderness.
+     *
+     * @param wilderness
+     *                       the wilderness
+     * @return the ID of the portal
+     */
+    private long createPortal(final Entity wilderness) {
+        final Entity e = store.create();
+        e.registerComponent(new Portal());
+        e.registerComponent(new Room(
+                Map.of(Direction.south, wilderness.id()),
+                wilderness.component(Room.class).zone()));
+        e.registerComponent(new Descriptive("a trail down to a cave",
+                "The trail winds down from the wilderness towards the stench"
+                        + " of a wumpus."));
+        store.commit(e);
+        return e.id();
+    }
+
+    /**
+     * Move a player in the portal to the host, or turn it back to the
+     * wilderness if the link is lost. The player is sent only once it has
+     * left this store.
+     *
+     * @param player
+     *                       the player
+     * @param wilderness
+     *                       the wilderness
+     */
+    private void depart(final Entity player, final Entity wilderness) {
+        final long id = player.id();
+        if (open) {
+            final List<Entity> bundle = Crossings.leave(store, id,
+                    tx -> tx.register(id, new Away(peer::command)));
+            away.add(id);
+            peer.arrive(bundle, player.hasComponent(Listener.class));
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Player " + id + " left for a lair.");
+            }
+        } else {
+            player.registerComponent(new Transit(wilderness.id()));
+            if (player.hasComponent(Listener.class)) {
+                player.component(Listener.class).tell(BLOCKED);
+            }
+        }
+    }
+
+    /**
+     * Return a player away with no link to the wilderness.
+     *
+     * @param player
+     *                       the player
+     * @param wilderness
+     *                       the wilderness
+     */
+    private void rescue(final Entity player, final Entity wilderness) {
+        player.registerComponent(new Physical(wilderness.id(),
+                wilderness.component(Room.class).zone()));
+        player.registerComponent(new Transit(wilderness.id()));
+        store.commit(player);
+        if (player.hasComponent(Listener.class)) {
+            player.component(Listener.class).tell(RESCUED);
+        }
+    }
+
+    @Override
+    public void tick() {
+        for (Runnable r = inbox.poll(); r != null; r = inbox.poll()) {
+            r.run();
+        }
+        final Optional<Entity> wilderness = store.stream()
+                .component(Wilderness.class).findAny().map(w -> w.entity());
+        if (wilderness.isPresent()) {
+            final Entity w = wilderness.get();
+            if (portal.isEmpty()) {
+                portal = Optional.of(createPortal(w));
+            }
+            store.located(portal.get()).component(Player.class)
+                    .map(p -> p.entity()).collect(Collectors.toList())
+                    .forEach(p -> depart(p, w));
+            store.stream().component(Player.class).map(p -> p.entity())
+                    .filter(e -> !e.hasComponent(Physical.class)
+                            && !e.hasComponent(Away.class))
+                    .collect(Collectors.toList())
+                    .forEach(e -> rescue(e, w));
+        }
+    }
+
+    @Override
+    public int priority() {
+        return PRIORITY;
+    }
+
+    /**
+     * Close the link to the host, if it can be.
+     *
+     * @throws IOException
+     *                         if the link cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (peer instanceof Closeable) {
+            ((Closeable) peer).close();
+        }
+    }
+}
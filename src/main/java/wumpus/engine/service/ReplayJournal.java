@@ -0,0 +1,494 @@
+package wumpus.engine.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import wumpus.engine.command.Intent;
+
+/**
+ * Journal of everything needed to replay a game from an empty world: the ID
+ * origin of its store, the seed of its services and the number of shards of
+ * the world, then each player joining and each command executed, in order of
+ * execution and with the tick executing it.
+ *
+ * The journal is text, one record to a line:
+ *
+ * <pre>
+ * wumpus-journal 1
+ * origin &lt;first entity ID&gt;
+ * seed &lt;seed&gt;
+ * shards &lt;shards&gt;
+ * &lt;tick&gt; join &lt;player&gt;
+ * &lt;tick&gt; command &lt;player&gt; &lt;command&gt; [&lt;argument&gt;...]
+ * &lt;tick&gt; end
+ * </pre>
+ *
+ * Ticks count from one. The end record, written on closing, gives the number
+ * of ticks run; a journal cut short by a crash replays up to its last
+ * record. Records are written by the tick thread, and flushed at the end of
+ * every tick which wrote any.
+ */
+public final class ReplayJournal implements Closeable {
+
+    /**
+     * A record of a player joining or a command executed.
+     */
+    public static final class Entry {
+
+        /**
+         * The player.
+         */
+        private final long player;
+
+        /**
+         * The command, or null if the player joined.
+         */
+        private final String command;
+
+        /**
+         * The arguments of the command.
+         */
+        private final String[] args;
+
+        /**
+         * Create an entry.
+         *
+         * @param p
+         *              the player
+         * @param c
+         *              the command, or null if the player joined
+         * @param a
+         *              the arguments of the command
+         */
+        Entry(final long p, final String c, final String... a) {
+            player = p;
+            command = c;
+            args = a.clone();
+        }
+
+        /**
+         * Determine if this entry is a player joining.
+         *
+         * @return true if the player joined, false if it is a command
+         */
+        public boolean isJoin() {
+            return command == null;
+        }
+
+        /**
+         * The player joining or executing the command.
+         *
+         * @return the entity ID of the player
+         */
+        public long player() {
+            return player;
+        }
+
+        /**
+         * The command executed.
+         *
+         * @return the command name, or null if the player joined
+         */
+        public String command() {
+            return command;
+        }
+
+        /**
+         * The arguments of the command executed.
+         *
+         * @return a copy of the arguments
+         */
+        public String[] args() {
+            return args.clone();
+        }
+    }
+
+    /**
+     * A journal as read back.
+     */
+    public static final class Recording {
+
+        /**
+         * The first entity ID of the store journaled.
+         */
+        private final long origin;
+
+        /**
+         * The seed of the services.
+         */
+        private final long seed;
+
+        /**
+         * The number of shards of the world.
+         */
+        private final int shards;
+
+        /**
+         * The entries of each tick which has any.
+         */
+        private final Map<Long, List<Entry>> entries;
+
+        /**
+         * The number of ticks run.
+         */
+        private long ticks;
+
+        /**
+         * Create an empty recording.
+         *
+         * @param o
+         *              the first entity ID of the store journaled
+         * @param s
+         *              the seed of the services
+         * @param n
+         *              the number of shards of the world
+         */
+        Recording(final long o, final long s, final int n) {
+            origin = o;
+            seed = s;
+            shards = n;
+            entries = new TreeMap<>();
+        }
+
+        /**
+         * The first ID handed out by the store journaled.
+         *
+         * @return the ID origin
+         */
+        public long origin() {
+            return origin;
+        }
+
+        /**
+         * The seed of the services journaled.
+         *
+         * @return the seed
+         */
+        public long seed() {
+            return seed;
+        }
+
+        /**
+         * The number of shards of the world journaled, on which the random
+         * choices of hazards depend.
+         *
+         * @return the number of shards
+         */
+        public int shards() {
+            return shards;
+        }
+
+        /**
+         * The number of ticks to replay.
+         *
+         * @return the number of ticks
+         */
+        public long ticks() {
+            return ticks;
+        }
+
+        /**
+         * The players which joined, whose IDs were not handed out by the
+         * ticks.
+         *
+         * @return the entity IDs of the players
+         */
+        public Set<Long> players() {
+            final Set<Long> ps = new HashSet<>();
+            entries.values().forEach(es -> es.stream()
+                    .filter(Entry::isJoin).forEach(e -> ps.add(e.player())));
+            return ps;
+        }
+
+        /**
+         * The entries executed by a tick.
+         *
+         * @param tick
+         *                 the tick
+         * @return the entries in order of execution
+         */
+        public List<Entry> entries(final long tick) {
+            return entries.getOrDefault(tick, List.of());
+        }
+
+        /**
+         * Add an entry.
+         *
+         * @param tick
+         *                 the tick executing it
+         * @param e
+         *                 the entry
+         */
+        void add(final long tick, final Entry e) {
+            entries.computeIfAbsent(tick, t -> new ArrayList<>()).add(e);
+            ran(tick);
+        }
+
+        /**
+         * Note that a tick was run.
+         *
+         * @param tick
+         *                 the tick
+         */
+        void ran(final long tick) {
+            ticks = Math.max(ticks, tick);
+        }
+    }
+
+    /**
+     * First line of a journal.
+     */
+    private static final String HEADER = "wumpus-journal 1";
+
+    /**
+     * Key of the ID origin.
+     */
+    private static final String ORIGIN = "origin";
+
+    /**
+     * Key of the seed.
+     */
+    private static final String SEED = "seed";
+
+    /**
+     * Key of the number of shards.
+     */
+    private static final String SHARDS = "shards";
+
+    /**
+     * Type of a join record.
+     */
+    private static final String JOIN = "join";
+
+    /**
+     * Type of a command record.
+     */
+    private static final String COMMAND = "command";
+
+    /**
+     * Type of the end record.
+     */
+    private static final String END = "end";
+
+    /**
+     * Field of a record giving its type.
+     */
+    private static final int TYPE_FIELD = 1;
+
+    /**
+     * Field of a record giving its player.
+     */
+    private static final int PLAYER_FIELD = 2;
+
+    /**
+     * Field of a command record giving the command.
+     */
+    private static final int COMMAND_FIELD = 3;
+
+    /**
+     * Fields of a join record.
+     */
+    private static final int JOIN_FIELDS = 3;
+
+    /**
+     * Fields of a command record ahead of its arguments.
+     */
+    private static final int COMMAND_FIELDS = 4;
+
+    /**
+     * The journal written to.
+     */
+    private final Writer out;
+
+    /**
+     * The last tick seen.
+     */
+    private long tick;
+
+    /**
+     * True if records have been written since the last flush.
+     */
+    private boolean dirty;
+
+    /**
+     * Start a journal.
+     *
+     * @param w
+     *                   the writer of the journal
+     * @param origin
+     *                   the first entity ID of the store journaled
+     * @param seed
+     *                   the seed of the services
+     * @param shards
+     *                   the number of shards of the world
+     * @throws UncheckedIOException
+     *                                  if the journal cannot be written
+     */
+    public ReplayJournal(final Writer w, final long origin, final long seed,
+            final int shards) {
+        out = w;
+        write(HEADER);
+        write(ORIGIN + " " + origin);
+        write(SEED + " " + seed);
+        write(SHARDS + " " + shards);
+        flush();
+    }
+
+    /**
+     * Write a line.
+     *
+     * @param line
+     *                 the line
+     * @throws UncheckedIOException
+     *                                  if the journal cannot be written
+     */
+    private void write(final String line) {
+        try {
+            out.write(line);
+            out.write('\n');
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the journal.", e);
+        }
+    }
+
+    /**
+     * Note the start of a tick.
+     *
+     * @param t
+     *              the tick
+     */
+    void ticked(final long t) {
+        tick = t;
+    }
+
+    /**
+     * Record a player joining.
+     *
+     * @param player
+     *                   the entity ID of the player
+     */
+    void joined(final long player) {
+        write(tick + " " + JOIN + " " + player);
+    }
+
+    /**
+     * Record a command executed.
+     *
+     * @param i
+     *              the intent of the command
+     */
+    void executed(final Intent i) {
+        final StringBuilder b = new StringBuilder().append(tick).append(' ')
+                .append(COMMAND).append(' ').append(i.source()).append(' ')
+                .append(i.command());
+        for (final String a : i.args()) {
+            b.append(' ').append(a);
+        }
+        write(b.toString());
+    }
+
+    /**
+     * Flush the records written since the last flush.
+     *
+     * @throws UncheckedIOException
+     *                                  if the journal cannot be written
+     */
+    void flush() {
+        if (dirty) {
+            try {
+                out.flush();
+                dirty = false;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not flush the journal.",
+                        e);
+            }
+        }
+    }
+
+    /**
+     * Record the number of ticks run and close the journal. No further
+     * records may be written.
+     *
+     * @throws IOException
+     *                         if the journal cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        write(tick + " " + END);
+        out.close();
+    }
+
+    /**
+     * Read a journal.
+     *
+     * @param in
+     *               the reader of the journal
+     * @return the recording
+     * @throws IOException
+     *                         if the journal cannot be read or is malformed
+     */
+    public static Recording read(final BufferedReader in) throws IOException {
+        if (!HEADER.equals(in.readLine())) {
+            throw new IOException("Not a replay journal.");
+        }
+        final Recording r = new Recording(value(in.readLine(), ORIGIN),
+                value(in.readLine(), SEED),
+                Math.toIntExact(value(in.readLine(), SHARDS)));
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            final String[] f = line.split(" ");
+            try {
+                final long t = Long.parseLong(f[0]);
+                if (f.length == 2 && END.equals(f[TYPE_FIELD])) {
+                    r.ran(t);
+                } else if (f.length == JOIN_FIELDS
+                        && JOIN.equals(f[TYPE_FIELD])) {
+                    r.add(t, new Entry(Long.parseLong(f[PLAYER_FIELD]), null));
+                } else if (f.length >= COMMAND_FIELDS
+                        && COMMAND.equals(f[TYPE_FIELD])) {
+                    r.add(t, new Entry(Long.parseLong(f[PLAYER_FIELD]),
+                            f[COMMAND_FIELD], Arrays.copyOfRange(f,
+                                    COMMAND_FIELDS, f.length)));
+                } else {
+                    throw new IOException("Malformed record: " + line);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed record: " + line, e);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Read the value of a header line.
+     *
+     * @param line
+     *                 the line
+     * @param key
+     *                 the key expected
+     * @return the value
+     * @throws IOException
+     *                         if the line is not of the key
+     */
+    private static long value(final String line, final String key)
+            throws IOException {
+        if (line == null || !line.startsWith(key + " ")) {
+            throw new IOException("Missing journal " + key + ".");
+        }
+        try {
+            return Long.parseLong(line.substring(key.length() + 1));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed journal " + key + ".", e);
+        }
+    }
+}
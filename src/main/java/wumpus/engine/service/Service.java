@@ -1,5 +1,9 @@
 package wumpus.engine.service;
 
+import java.util.Set;
+
+import wumpus.engine.entity.component.Component;
+
 /**
  * An engine operation which performs tasks at a regular interval ("tick").
  */
@@ -17,4 +21,27 @@ public interface Service {
      */
     int priority();
 
+    /**
+     * The component types this service reads. {@link Component} itself stands
+     * for every type, and is the default for services which do not declare
+     * their access.
+     *
+     * @return the component types read during a tick
+     */
+    default Set<Class<? extends Component>> reads() {
+        return Set.of(Component.class);
+    }
+
+    /**
+     * The component types this service registers, replaces or removes,
+     * including those registered as dependencies. {@link Component} itself
+     * stands for every type, and is the default for services which do not
+     * declare their access.
+     *
+     * @return the component types written during a tick
+     */
+    default Set<Class<? extends Component>> writes() {
+        return Set.of(Component.class);
+    }
+
 }
@@ -0,0 +1,242 @@
+package wumpus.engine.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.Snapshot;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.metrics.SnapshotMetrics;
+
+/**
+ * Service taking a snapshot of the world every so many ticks.
+ *
+ * It ticks last and reads every component type, so the {@link TickScheduler}
+ * runs it once every service which changes components has finished, and the
+ * snapshot is of the world as the tick left it. Only the capture happens
+ * within the tick; the snapshot is encoded and written by a background
+ * thread. While one snapshot is being written the next is skipped rather
+ * than queued. Snapshots are written to files named for the time of their
+ * capture, and only the newest few are kept.
+ */
+public final class SnapshotService implements Service, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(SnapshotService.class.getName());
+
+    /**
+     * Execution priority of this service.
+     */
+    private static final int PRIORITY = 1000;
+
+    /**
+     * Prefix of snapshot file names.
+     */
+    private static final String PREFIX = "snapshot-";
+
+    /**
+     * Suffix of snapshot file names.
+     */
+    private static final String SUFFIX = ".snap";
+
+    /**
+     * Longest wait in seconds for the last snapshot on closing.
+     */
+    private static final int CLOSE_SECONDS = 10;
+
+    /**
+     * The store captured.
+     */
+    private final EntityStore store;
+
+    /**
+     * The directory snapshots are written to.
+     */
+    private final Path dir;
+
+    /**
+     * Number of ticks between snapshots.
+     */
+    private final int interval;
+
+    /**
+     * Number of snapshot files kept.
+     */
+    private final int retain;
+
+    /**
+     * Metrics of the snapshots, or null.
+     */
+    private final SnapshotMetrics metrics;
+
+    /**
+     * Thread writing snapshots.
+     */
+    private final ExecutorService background;
+
+    /**
+     * Writer of snapshots, used only by the background thread.
+     */
+    private final ComponentWriter writer;
+
+    /**
+     * True while a snapshot is being written.
+     */
+    private final AtomicBoolean writing;
+
+    /**
+     * Ticks run so far.
+     */
+    private long ticks;
+
+    /**
+     * The last snapshot captured, or null.
+     */
+    private Snapshot previous;
+
+    /**
+     * Create a service snapshotting a store.
+     *
+     * @param s
+     *              the store
+     * @param d
+     *              the directory to write snapshots to, created if absent
+     * @param i
+     *              the number of ticks between snapshots
+     * @param r
+     *              the number of snapshot files to keep
+     * @param m
+     *              the metrics to record snapshots in, or null
+     * @throws IOException
+     *                         if the directory cannot be created
+     */
+    public SnapshotService(final EntityStore s, final Path d, final int i,
+            final int r, final SnapshotMetrics m) throws IOException {
+        store = s;
+        dir = Files.createDirectories(d);
+        interval = i;
+        retain = r;
+        metrics = m;
+        background = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("snapshot").daemon().factory());
+        writer = new ComponentWriter();
+        writing = new AtomicBoolean();
+    }
+
+    @Override
+    public void tick() {
+        ticks++;
+        if (ticks % interval == 0) {
+            if (writing.compareAndSet(false, true)) {
+                final long start = System.nanoTime();
+                final Snapshot s = Snapshot.capture(store, ticks, previous);
+                if (metrics != null) {
+                    metrics.captured(System.nanoTime() - start);
+                }
+                previous = s;
+                final Path file = dir.resolve(
+                        PREFIX + System.currentTimeMillis() + SUFFIX);
+                background.execute(() -> write(s, file));
+            } else {
+                if (metrics != null) {
+                    metrics.skipped();
+                }
+                LOG.fine("Skipped a snapshot while the last is written.");
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot, then delete all but the newest snapshot files.
+     *
+     * @param s
+     *                 the snapshot
+     * @param file
+     *                 the file to write
+     */
+    private void write(final Snapshot s, final Path file) {
+        try {
+            final long start = System.nanoTime();
+            final long bytes = s.write(file, writer);
+            final long nanos = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.written(nanos, s.size(), bytes);
+            }
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Wrote " + s.size() + " entities of tick " + s.tick()
+                        + " to " + file + ": " + bytes + " bytes in "
+                        + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms.");
+            }
+            prune();
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not write a snapshot.", e);
+        } finally {
+            writing.set(false);
+        }
+    }
+
+    /**
+     * Delete all but the newest snapshot files.
+     *
+     * @throws IOException
+     *                         if the files cannot be listed or deleted
+     */
+    private void prune() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+                PREFIX + "*" + SUFFIX)) {
+            ds.forEach(files::add);
+        }
+        Collections.sort(files);
+        for (int i = 0; i < files.size() - retain; i++) {
+            Files.delete(files.get(i));
+        }
+    }
+
+    @Override
+    public int priority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return Set.of();
+    }
+
+    /**
+     * Stop taking snapshots, waiting for any being written to finish. The
+     * service must not tick once closed.
+     */
+    @Override
+    public void close() {
+        background.shutdown();
+        try {
+            if (!background.awaitTermination(CLOSE_SECONDS,
+                    TimeUnit.SECONDS)) {
+                LOG.warning("Gave up waiting for a snapshot to be written.");
+            }
+        } catch (InterruptedException e) {
+            LOG.log(Level.WARNING,
+                    "Interrupted while waiting for a snapshot to be written.",
+                    e);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
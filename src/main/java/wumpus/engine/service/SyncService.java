@@ -0,0 +1,51 @@
+package wumpus.engine.service;
+
+import java.util.Set;
+
+import wumpus.engine.entity.LogEntityStore;
+import wumpus.engine.entity.component.Component;
+
+/**
+ * Service making the changes of each tick durable.
+ *
+ * It ticks last and reads every component type, so the {@link TickScheduler}
+ * runs it once every service which changes components has finished; the
+ * changes of the whole tick are then forced to the device together.
+ */
+public final class SyncService implements Service {
+
+    /**
+     * Execution priority of this service.
+     */
+    private static final int PRIORITY = 1000;
+
+    /**
+     * The durable store synced by this service.
+     */
+    private final LogEntityStore store;
+
+    /**
+     * Create a service for the given durable store.
+     *
+     * @param s
+     *              the durable store synced
+     */
+    public SyncService(final LogEntityStore s) {
+        this.store = s;
+    }
+
+    @Override
+    public void tick() {
+        store.sync();
+    }
+
+    @Override
+    public int priority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return Set.of();
+    }
+}
@@ -0,0 +1,255 @@
+package wumpus.engine.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.metrics.MetricsRegistry;
+import wumpus.engine.metrics.ServiceMetrics;
+
+/**
+ * Runs one tick of a set of services.
+ *
+ * Services are ordered by priority once, at construction. A service waits for
+ * every earlier service whose declared component access conflicts with its
+ * own, so conflicting services still run in priority order while services
+ * with disjoint access run concurrently on the executor.
+ *
+ * When given a metrics registry, the latency of each service tick and of the
+ * whole tick is recorded under the simple class name of the service and
+ * {@link MetricsRegistry#TICK} respectively. Without one, ticks are not timed
+ * individually.
+ */
+public final class TickScheduler implements Runnable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(TickScheduler.class.getName());
+
+    /**
+     * Services in priority order.
+     */
+    private final List<Service> order;
+
+    /**
+     * Positions in the priority order of the services each service waits on.
+     */
+    private final List<int[]> waits;
+
+    /**
+     * Executor running the service ticks.
+     */
+    private final Executor executor;
+
+    /**
+     * Tick budget in nanoseconds.
+     */
+    private final long budget;
+
+    /**
+     * Metrics of each service in priority order, or null if metrics are
+     * disabled.
+     */
+    private final ServiceMetrics[] meters;
+
+    /**
+     * Metrics of the whole tick, or null if metrics are disabled.
+     */
+    private final ServiceMetrics total;
+
+    /**
+     * Number of ticks run.
+     */
+    private final AtomicLong ticks;
+
+    /**
+     * Number of ticks which exceeded the budget.
+     */
+    private final AtomicLong overruns;
+
+    /**
+     * Create a scheduler for a set of services.
+     *
+     * @param services
+     *                     the services to tick
+     * @param millis
+     *                     the tick budget in milliseconds
+     * @param e
+     *                     the executor to run service ticks on
+     */
+    public TickScheduler(final Collection<Service> services, final long millis,
+            final Executor e) {
+        this(services, millis, e, null);
+    }
+
+    /**
+     * Create a scheduler for a set of services, recording their metrics.
+     *
+     * @param services
+     *                     the services to tick
+     * @param millis
+     *                     the tick budget in milliseconds
+     * @param e
+     *                     the executor to run service ticks on
+     * @param metrics
+     *                     the registry to record metrics in, or null to
+     *                     disable metrics
+     */
+    public TickScheduler(final Collection<Service> services, final long millis,
+            final Executor e, final MetricsRegistry metrics) {
+        order = services.stream()
+                .sorted(Comparator.comparing(Service::priority))
+                .collect(Collectors.toUnmodifiableList());
+        waits = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            final Service s = order.get(i);
+            waits.add(IntStream.range(0, i)
+                    .filter(j -> conflicts(order.get(j), s)).toArray());
+        }
+        executor = e;
+        budget = TimeUnit.MILLISECONDS.toNanos(millis);
+        ticks = new AtomicLong();
+        overruns = new AtomicLong();
+        if (metrics == null) {
+            meters = null;
+            total = null;
+        } else {
+            meters = order.stream()
+                    .map(s -> metrics.service(s.getClass().getSimpleName()))
+                    .toArray(ServiceMetrics[]::new);
+            total = metrics.service(MetricsRegistry.TICK);
+        }
+    }
+
+    /**
+     * Determine if two sets of component types overlap, treating
+     * {@link Component} as every type.
+     *
+     * @param a
+     *              the first set of types
+     * @param b
+     *              the second set of types
+     * @return true if any type is in both sets
+     */
+    private static boolean overlaps(final Set<Class<? extends Component>> a,
+            final Set<Class<? extends Component>> b) {
+        return a.contains(Component.class) && !b.isEmpty()
+                || b.contains(Component.class) && !a.isEmpty()
+                || a.stream().anyMatch(b::contains);
+    }
+
+    /**
+     * Determine if two services may not run at the same time.
+     *
+     * @param a
+     *              the first service
+     * @param b
+     *              the second service
+     * @return true if either writes a component type the other uses
+     */
+    static boolean conflicts(final Service a, final Service b) {
+        return overlaps(a.writes(), b.writes())
+                || overlaps(a.writes(), b.reads())
+                || overlaps(a.reads(), b.writes());
+    }
+
+    /**
+     * Tick a single service, logging rather than propagating failure so that
+     * one faulty service does not halt the others.
+     *
+     * @param s
+     *              the service to tick
+     */
+    private static void tick(final Service s) {
+        try {
+            s.tick();
+        } catch (RuntimeException ex) {
+            if (LOG.isLoggable(Level.SEVERE)) {
+                LOG.log(Level.SEVERE, "Service "
+                        + s.getClass().getSimpleName() + " failed during tick.",
+                        ex);
+            }
+        }
+    }
+
+    /**
+     * Tick a single service, recording its latency.
+     *
+     * @param s
+     *              the service to tick
+     * @param m
+     *              the metrics of the service
+     */
+    private static void tick(final Service s, final ServiceMetrics m) {
+        final long start = System.nanoTime();
+        tick(s);
+        m.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+        final List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            final Service s = order.get(i);
+            final CompletableFuture<?>[] before = Arrays
+                    .stream(waits.get(i)).mapToObj(done::get)
+                    .toArray(CompletableFuture<?>[]::new);
+            final Runnable r;
+            if (meters == null) {
+                r = () -> tick(s);
+            } else {
+                final ServiceMetrics m = meters[i];
+                r = () -> tick(s, m);
+            }
+            done.add(CompletableFuture.allOf(before).thenRunAsync(r,
+                    executor));
+        }
+        CompletableFuture.allOf(done.toArray(CompletableFuture<?>[]::new))
+                .join();
+        final long elapsed = System.nanoTime() - start;
+        final long tick = ticks.incrementAndGet();
+        if (total != null) {
+            total.record(elapsed);
+        }
+        if (elapsed > budget) {
+            overruns.incrementAndGet();
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.warning("Tick " + tick + " overran its budget, taking "
+                        + TimeUnit.NANOSECONDS.toMicros(elapsed) + "us.");
+            }
+        }
+    }
+
+    /**
+     * Count the ticks run.
+     *
+     * @return the number of ticks run
+     */
+    public long ticks() {
+        return ticks.get();
+    }
+
+    /**
+     * Count the ticks which exceeded the budget.
+     *
+     * @return the number of overrunning ticks
+     */
+    public long overruns() {
+        return overruns.get();
+    }
+}
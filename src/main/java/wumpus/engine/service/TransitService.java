@@ -1,11 +1,14 @@
 package wumpus.engine.service;
 
+import java.util.Optional;
 import java.util.Set;
-import java.util.function.Predicate;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
 
 import wumpus.engine.entity.Entity;
 import wumpus.engine.entity.EntityStore;
-import wumpus.engine.entity.EntityStream;
+import wumpus.engine.entity.Transaction;
+import wumpus.engine.entity.component.Component;
 import wumpus.engine.entity.component.Container;
 import wumpus.engine.entity.component.Examining;
 import wumpus.engine.entity.component.Listener;
@@ -17,6 +20,14 @@ import wumpus.engine.entity.component.Wumpus;
 
 /**
  * Service for moving all entities with a transit component.
+ *
+ * Each move is one transaction, so that no reader sees an entity in neither
+ * or both of its rooms.
+ *
+ * A service may be confined to some zones, moving only the entities in them.
+ * An entity bound for a room of another zone is then handed off rather than
+ * moved, so that whoever serves the destination zone can move it with
+ * {@link #arrive(long)}.
  */
 public final class TransitService implements Service {
 
@@ -30,6 +41,16 @@ public final class TransitService implements Service {
      */
     private final EntityStore store;
 
+    /**
+     * Test for whether a zone is served by this service.
+     */
+    private final LongPredicate zones;
+
+    /**
+     * Receiver of the IDs of entities bound for zones not served.
+     */
+    private final LongConsumer handoff;
+
     /**
      * The smell of a wumpus in the adjacent room.
      */
@@ -49,52 +70,109 @@ public final class TransitService implements Service {
      */
     public TransitService(final EntityStore s) {
         this.store = s;
+        this.zones = z -> true;
+        this.handoff = this::arrive;
     }
 
-    @Override
-    public void tick() {
-        store.stream().components(Set.of(Transit.class, Physical.class))
-                .forEach(m -> {
-                    final Entity e = m.entity();
-                    final Transit t = m.byComponent(Transit.class);
-                    final Entity from = store
-                            .get(m.byComponent(Physical.class).location())
-                            .get();
-                    final Entity to = store.get(t.to()).get();
-
-                    final Container fromC = from.component(Container.class);
-                    final Container toC = to.component(Container.class);
-                    final Room toR = to.component(Room.class);
-
-                    final Predicate<Long> rem = (l -> l != e.id());
-                    from.registerComponent(new Container(fromC, rem));
-                    to.registerComponent(new Container(toC, e.id()));
-
-                    e.registerComponent(new Physical(to.id(), toR.zone()));
-                    if (e.hasComponent(Player.class)) {
-                        e.registerComponent(new Examining(to.id()));
-                    }
+    /**
+     * Creates a new transit service confined to some zones.
+     *
+     * @param s
+     *              the entity store to be used by this service
+     * @param z
+     *              test for whether a zone is served by this service
+     * @param h
+     *              receiver of the IDs of entities in a zone served and
+     *              bound for a zone which is not
+     */
+    public TransitService(final EntityStore s, final LongPredicate z,
+            final LongConsumer h) {
+        this.store = s;
+        this.zones = z;
+        this.handoff = h;
+    }
 
-                    final Container fromZ = store
-                            .get(from.component(Room.class).zone()).get()
-                            .component(Container.class);
-                    final Container toZ = store.get(toR.zone()).get()
-                            .component(Container.class);
-                    fromZ.registerComponent(new Container(fromZ, rem));
-                    toZ.registerComponent(new Container(toZ, e.id()));
+    /**
+     * Move an entity to the destination of its transit, updating the
+     * contents of both rooms and of their zones.
+     *
+     * @param tx
+     *               the transaction to stage the move in
+     * @param id
+     *               the ID of the moving entity
+     */
+    private static void move(final Transaction tx, final long id) {
+        final Entity e = tx.get(id).get();
+        final Transit t = e.component(Transit.class);
+        final Entity from = tx.get(e.component(Physical.class).location())
+                .get();
+        final Entity to = tx.get(t.to()).get();
+        final long fromZone = from.component(Room.class).zone();
+        final Room toR = to.component(Room.class);
+        final LongPredicate rem = (l -> l != id);
+
+        tx.register(from.id(),
+                new Container(from.component(Container.class), rem));
+        tx.register(to.id(), new Container(
+                tx.get(to.id()).get().component(Container.class), id));
+
+        tx.register(id, new Physical(to.id(), toR.zone()));
+        if (e.hasComponent(Player.class)) {
+            tx.register(id, new Examining(to.id()));
+        }
+
+        tx.register(fromZone, new Container(
+                tx.get(fromZone).get().component(Container.class), rem));
+        tx.register(toR.zone(), new Container(
+                tx.get(toR.zone()).get().component(Container.class), id));
+
+        tx.deregister(id, Transit.class);
+    }
 
-                    e.deregisterComponent(Transit.class);
+    /**
+     * Find the zone of the room an entity is bound for.
+     *
+     * @param t
+     *              the transit of the entity
+     * @return the entity ID of the destination zone, if the destination is
+     *         a room
+     */
+    private Optional<Long> destination(final Transit t) {
+        return store.get(t.to()).filter(e -> e.hasComponent(Room.class))
+                .map(e -> e.component(Room.class).zone());
+    }
 
-                    store.commit(from);
-                    store.commit(fromZ.entity());
-                    store.commit(to);
-                    store.commit(toZ.entity());
-                    store.commit(e);
+    /**
+     * Move an entity in transit to its destination.
+     *
+     * @param id
+     *               the ID of the entity
+     */
+    public void arrive(final long id) {
+        final Optional<Entity> e = store.get(id)
+                .filter(x -> x.hasComponent(Transit.class));
+        if (e.isPresent()) {
+            Transaction.run(store, tx -> move(tx, id));
+            if (e.get().hasComponent(Wumpus.class)) {
+                wumpusMove(e.get().component(Transit.class));
+            }
+        }
+    }
 
-                    if (e.hasComponent(Wumpus.class)) {
-                        wumpusMove(t);
+    @Override
+    public void tick() {
+        store.stream().components(Set.of(Transit.class, Physical.class))
+                .filter(m -> zones
+                        .test(m.byComponent(Physical.class).zone()))
+                .forEach(m -> {
+                    final long id = m.entity().id();
+                    final Optional<Long> to = destination(
+                            m.byComponent(Transit.class));
+                    if (to.isEmpty() || zones.test(to.get())) {
+                        arrive(id);
+                    } else {
+                        handoff.accept(id);
                     }
-
                 });
     }
 
@@ -109,12 +187,10 @@ public final class TransitService implements Service {
                 .map(cm -> cm.byComponent(Listener.class))
                 .forEach(l -> l.tell(WUMPUS_MOVE));
 
-        store.get(t.to()).get().component(Room.class).linkedRooms().values()
-                .stream().map(id -> store.get(id).get())
-                .flatMap(e -> e.contentsStream(store))
-                .collect(EntityStream.collector(store))
-                .components(Set.of(Player.class, Listener.class))
-                .map(cm -> cm.byComponent(Listener.class))
+        Locations.adjacent(store, t.to())
+                .filter(e -> e.hasComponent(Player.class)
+                        && e.hasComponent(Listener.class))
+                .map(e -> e.component(Listener.class))
                 .forEach(l -> l.tell(WUMPUS_SMELL));
 
     }
@@ -124,4 +200,16 @@ public final class TransitService implements Service {
         return PRIORITY;
     }
 
+    @Override
+    public Set<Class<? extends Component>> reads() {
+        return Set.of(Transit.class, Physical.class, Container.class,
+                Room.class, Player.class, Wumpus.class, Listener.class);
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return Set.of(Container.class, Physical.class, Examining.class,
+                Transit.class);
+    }
+
 }
@@ -1,5 +1,8 @@
 package wumpus.engine.service;
 
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 
@@ -8,6 +11,7 @@ import wumpus.engine.entity.EntityStore;
 import wumpus.engine.entity.component.Descriptive;
 import wumpus.engine.entity.component.Lair;
 import wumpus.engine.entity.component.Overworld;
+import wumpus.engine.entity.component.Portal;
 import wumpus.engine.entity.component.Room;
 import wumpus.engine.entity.component.Tavern;
 import wumpus.engine.entity.component.Wilderness;
@@ -15,6 +19,9 @@ import wumpus.engine.type.Direction;
 
 /**
  * Service for managing the state of the world exterior to the wumpus lairs.
+ *
+ * The wilderness leads north to a lair of this process, if any, and to the
+ * {@link Portal} of each process hosting lairs in the other directions left.
  */
 public final class WorldService implements Service {
 
@@ -120,6 +127,8 @@ public final class WorldService implements Service {
         // TODO needs random
         final Optional<Entity> randomLair = store.stream().component(Lair.class)
                 .map(l -> l.entity()).findAny();
+        final Map<Direction, Long> links = new EnumMap<>(Direction.class);
+        links.put(Direction.south, tavern.id());
         if (randomLair.isPresent()) {
             final Lair lair = randomLair.get().component(Lair.class);
             final Room entrace = store.get(lair.entrance()).get()
@@ -127,11 +136,18 @@ public final class WorldService implements Service {
             lair.registerComponent(
                     new Room(entrace, Direction.south, wilderness.id()));
             store.commit(lair.entity());
-            wilderness
-                    .registerComponent(new Room(
-                            Map.of(Direction.south, tavern.id(),
-                                    Direction.north, lair.entrance()),
-                            overworld.id()));
+            links.put(Direction.north, lair.entrance());
+        }
+        final Iterator<Direction> free = Arrays.stream(Direction.values())
+                .filter(d -> !links.containsKey(d)).iterator();
+        store.stream().component(Portal.class).map(p -> p.entity().id())
+                .sorted().forEach(p -> {
+                    if (free.hasNext()) {
+                        links.put(free.next(), p);
+                    }
+                });
+        if (links.size() > 1) {
+            wilderness.registerComponent(new Room(links, overworld.id()));
         }
 
         store.commit(tavern);
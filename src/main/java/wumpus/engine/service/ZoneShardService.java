@@ -0,0 +1,343 @@
+package wumpus.engine.service;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.entity.component.Transit;
+import wumpus.engine.entity.component.Zone;
+
+/**
+ * Service running the work local to each zone, transit and hazards, on one
+ * worker thread per shard of the world.
+ *
+ * Zones are dealt to shards as they appear, each to the shard with the
+ * fewest, and each shard has a {@link TransitService} and a
+ * {@link HazardService} confined to its zones. This service moves entities
+ * in two phases, the shards working in parallel within each and every shard
+ * finishing one phase before any starts the next:
+ *
+ * <ol>
+ * <li>entities move within their zones, and those bound for a zone of
+ * another shard are queued for that shard;</li>
+ * <li>each shard moves the entities queued for it, in order of ID.</li>
+ * </ol>
+ *
+ * The hazards of the shards act in a service of their own, given by
+ * {@link #hazards()}, ticking at the priority of a {@link HazardService}. So
+ * every move of a tick, within a zone or across, happens before players
+ * examine where they are, and hazards act after that, as when the services
+ * run unsharded. A move across zones changes the contents of both, but it
+ * is one transaction, retried should another shard change the zone it
+ * leaves at the same time.
+ */
+public final class ZoneShardService implements Service, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(ZoneShardService.class.getName());
+
+    /**
+     * Execution priority of this service.
+     */
+    private static final int PRIORITY = 10;
+
+    /**
+     * Execution priority of the hazards of the shards, as of a
+     * {@link HazardService}.
+     */
+    private static final int HAZARD_PRIORITY = 100;
+
+    /**
+     * Longest wait in seconds for the shards to stop on closing.
+     */
+    private static final int CLOSE_SECONDS = 1;
+
+    /**
+     * A shard of the world, with its worker and the services confined to its
+     * zones.
+     */
+    private final class Shard {
+
+        /**
+         * Thread running the work of the shard.
+         */
+        private final ExecutorService worker;
+
+        /**
+         * IDs of the entities handed off to this shard by others.
+         */
+        private final Queue<Long> inbox;
+
+        /**
+         * Transit within the zones of the shard.
+         */
+        private final TransitService transit;
+
+        /**
+         * Hazards of the zones of the shard.
+         */
+        private final HazardService hazards;
+
+        /**
+         * Number of zones of the shard.
+         */
+        private int zones;
+
+        /**
+         * Create a shard.
+         *
+         * @param index
+         *                  the index of the shard
+         * @param seed
+         *                  the seed of the random choices of its hazards
+         */
+        Shard(final int index, final long seed) {
+            worker = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+                    .name("shard-" + index).daemon().factory());
+            inbox = new ConcurrentLinkedQueue<>();
+            transit = new TransitService(store, this::serves,
+                    ZoneShardService.this::handoff);
+            hazards = new HazardService(store, seed, this::serves,
+                    index == 0);
+        }
+
+        /**
+         * Determine if a zone belongs to this shard.
+         *
+         * @param zone
+         *                 the entity ID of the zone
+         * @return true if the shard serves the zone
+         */
+        boolean serves(final long zone) {
+            return owner(zone) == this;
+        }
+
+        /**
+         * Move the entities handed off to this shard.
+         */
+        void arrive() {
+            final List<Long> arrivals = new ArrayList<>();
+            for (Long id = inbox.poll(); id != null; id = inbox.poll()) {
+                arrivals.add(id);
+            }
+            arrivals.sort(Comparator.naturalOrder());
+            arrivals.forEach(transit::arrive);
+        }
+    }
+
+    /**
+     * Service running the hazards of every shard, each on its worker.
+     */
+    private final class Hazards implements Service {
+
+        @Override
+        public void tick() {
+            phase(s -> s.hazards.tick());
+        }
+
+        @Override
+        public int priority() {
+            return HAZARD_PRIORITY;
+        }
+
+        @Override
+        public Set<Class<? extends Component>> reads() {
+            return shards.get(0).hazards.reads();
+        }
+
+        @Override
+        public Set<Class<? extends Component>> writes() {
+            return shards.get(0).hazards.writes();
+        }
+    }
+
+    /**
+     * The entity store used by this service.
+     */
+    private final EntityStore store;
+
+    /**
+     * The shards.
+     */
+    private final List<Shard> shards;
+
+    /**
+     * The shard of each zone.
+     */
+    private final Map<Long, Shard> owners;
+
+    /**
+     * The service running the hazards of the shards.
+     */
+    private final Hazards hazards;
+
+    /**
+     * Create a service sharding the world.
+     *
+     * @param s
+     *                 the entity store used
+     * @param n
+     *                 the number of shards
+     * @param seed
+     *                 the seed of the random choices of hazards
+     * @throws IllegalArgumentException
+     *                                      if there are no shards
+     */
+    public ZoneShardService(final EntityStore s, final int n,
+            final long seed) {
+        if (n < 1) {
+            throw new IllegalArgumentException(
+                    "There must be at least one shard, not " + n + ".");
+        }
+        store = s;
+        owners = new ConcurrentHashMap<>();
+        final Random seeds = new Random(seed);
+        final List<Shard> ss = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ss.add(new Shard(i, seeds.nextLong()));
+        }
+        shards = List.copyOf(ss);
+        hazards = new Hazards();
+    }
+
+    /**
+     * The service running the hazards of the shards, to tick alongside this
+     * one.
+     *
+     * @return the service
+     */
+    public Service hazards() {
+        return hazards;
+    }
+
+    /**
+     * Find the shard of a zone. A zone not yet dealt belongs to the first.
+     *
+     * @param zone
+     *                 the entity ID of the zone
+     * @return the shard serving the zone
+     */
+    private Shard owner(final long zone) {
+        return owners.getOrDefault(zone, shards.get(0));
+    }
+
+    /**
+     * Queue an entity for the shard of the zone it is bound for.
+     *
+     * @param id
+     *               the ID of the entity
+     */
+    private void handoff(final long id) {
+        final long to = store.get(id).get().component(Transit.class).to();
+        owner(store.get(to).get().component(Room.class).zone()).inbox.add(id);
+    }
+
+    /**
+     * Deal the zones which have appeared since the last tick to the shards,
+     * and forget those which have gone.
+     */
+    private void deal() {
+        final Set<Long> zones = store.stream().component(Zone.class)
+                .map(z -> z.entity().id()).collect(Collectors.toSet());
+        final Iterator<Map.Entry<Long, Shard>> it = owners.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, Shard> o = it.next();
+            if (!zones.contains(o.getKey())) {
+                o.getValue().zones--;
+                it.remove();
+            }
+        }
+        zones.stream().filter(z -> !owners.containsKey(z)).sorted()
+                .forEach(z -> {
+                    final Shard s = shards.stream()
+                            .min(Comparator.comparingInt(x -> x.zones)).get();
+                    s.zones++;
+                    owners.put(z, s);
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.fine("Zone " + z + " is served by shard "
+                                + shards.indexOf(s) + ".");
+                    }
+                });
+    }
+
+    /**
+     * Run a phase of the tick on every shard, waiting for all to finish.
+     *
+     * @param step
+     *                 the work of each shard
+     */
+    private void phase(final Consumer<Shard> step) {
+        CompletableFuture.allOf(shards.stream()
+                .map(s -> CompletableFuture.runAsync(() -> step.accept(s),
+                        s.worker))
+                .toArray(CompletableFuture<?>[]::new)).join();
+    }
+
+    @Override
+    public void tick() {
+        deal();
+        phase(s -> s.transit.tick());
+        phase(Shard::arrive);
+    }
+
+    @Override
+    public int priority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public Set<Class<? extends Component>> reads() {
+        return Stream.of(shards.get(0).transit.reads(), Set.of(Zone.class))
+                .flatMap(Set::stream).collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<Class<? extends Component>> writes() {
+        return shards.get(0).transit.writes();
+    }
+
+    /**
+     * Stop the workers of the shards. Neither this service nor its hazards
+     * may tick once closed.
+     */
+    @Override
+    public void close() {
+        shards.forEach(s -> s.worker.shutdown());
+        try {
+            for (final Shard s : shards) {
+                if (!s.worker.awaitTermination(CLOSE_SECONDS,
+                        TimeUnit.SECONDS)) {
+                    LOG.warning("Gave up waiting for a shard to stop.");
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.log(Level.WARNING, "Interrupted while stopping the shards.",
+                    e);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
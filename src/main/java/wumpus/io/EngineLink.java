@@ -0,0 +1,340 @@
+package wumpus.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+
+/**
+ * The link of a gateway to the game engine, relaying the sessions of the
+ * player connections the gateway holds.
+ *
+ * Connections are handed to the link as {@link IOAdapter}s, typically by a
+ * {@link NetworkServer}, which frames their lines and buffers their output.
+ * Each becomes a session opened with the engine; its lines are sent to the
+ * engine as they arrive, and its output is posted as it comes back. Should
+ * the engine go away, the connections are kept open, their input waits, and
+ * the link retries until the engine is back, then opens every session again
+ * as the player it played as before.
+ */
+public final class EngineLink implements Runnable, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(EngineLink.class.getName());
+
+    /**
+     * Pause between attempts to reach the engine, in milliseconds.
+     */
+    private static final long RETRY_MILLIS = 500;
+
+    /**
+     * Told to players when the engine goes away.
+     */
+    private static final String RESTARTING =
+            "\nThe game is restarting; hold on...";
+
+    /**
+     * A player connection held by the gateway.
+     */
+    private static final class Client {
+
+        /**
+         * The number of the session of the connection.
+         */
+        private final long session;
+
+        /**
+         * The connection.
+         */
+        private final IOAdapter io;
+
+        /**
+         * ID of the player the session last joined as, if any.
+         */
+        private volatile Optional<Long> player;
+
+        /**
+         * Set while the session is open with the engine, guarded by this
+         * client.
+         */
+        private boolean linked;
+
+        /**
+         * Create a client not yet linked.
+         *
+         * @param s
+         *              the number of its session
+         * @param i
+         *              its connection
+         */
+        Client(final long s, final IOAdapter i) {
+            session = s;
+            io = i;
+            player = Optional.empty();
+        }
+    }
+
+    /**
+     * The address of the engine.
+     */
+    private final SocketAddress engine;
+
+    /**
+     * Connections held, by the number of their session.
+     */
+    private final Map<Long, Client> clients;
+
+    /**
+     * Number of the last session.
+     */
+    private final AtomicLong sessions;
+
+    /**
+     * Writer encoding frames, guarded by this link.
+     */
+    private final ComponentWriter writer;
+
+    /**
+     * Channel to the engine while it is reached, guarded by this link.
+     */
+    private Optional<SocketChannel> channel;
+
+    /**
+     * Cleared once the link is closed.
+     */
+    private volatile boolean running;
+
+    /**
+     * Create a link to an engine. The engine is not reached until the link is
+     * run.
+     *
+     * @param e
+     *              the address of the engine
+     */
+    public EngineLink(final SocketAddress e) {
+        engine = e;
+        clients = new ConcurrentHashMap<>();
+        sessions = new AtomicLong();
+        writer = new ComponentWriter();
+        channel = Optional.empty();
+        running = true;
+    }
+
+    /**
+     * Hold a new player connection, opening its session with the engine.
+     *
+     * @param io
+     *               the connection
+     */
+    public void accept(final IOAdapter io) {
+        final Client c = new Client(sessions.incrementAndGet(), io);
+        clients.put(c.session, c);
+        io.onActivity(() -> relay(c));
+        open(c);
+        relay(c);
+    }
+
+    /**
+     * Open the session of a connection with the engine, if reached and not
+     * already open.
+     *
+     * @param c
+     *              the connection
+     */
+    private void open(final Client c) {
+        synchronized (c) {
+            if (!c.linked) {
+                c.linked = send(w -> {
+                    w.writeByte(GatewayProtocol.OPEN)
+                            .writeUnsignedVarLong(c.session);
+                    if (c.player.isPresent()) {
+                        w.writeByte(1).writeFixedLong(c.player.get());
+                    } else {
+                        w.writeByte(0).writeFixedLong(0);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Send the waiting input of a connection to the engine, or close its
+     * session if the connection has closed. Input waits while the session is
+     * not open with the engine.
+     *
+     * @param c
+     *              the connection
+     */
+    private void relay(final Client c) {
+        synchronized (c) {
+            if (!c.io.isOpen()) {
+                if (clients.remove(c.session) != null && c.linked) {
+                    send(w -> w.writeByte(GatewayProtocol.CLOSE)
+                            .writeUnsignedVarLong(c.session));
+                }
+            } else {
+                Optional<String> line = Optional.empty();
+                if (c.linked) {
+                    line = c.io.poll();
+                }
+                while (line.isPresent()) {
+                    final String l = line.get();
+                    send(w -> w.writeByte(GatewayProtocol.INPUT)
+                            .writeUnsignedVarLong(c.session).writeString(l));
+                    line = c.io.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a frame to the engine, closing the channel if it cannot be sent.
+     *
+     * @param frame
+     *                  writes the type and fields of the frame
+     * @return true if the frame was sent
+     */
+    private synchronized boolean send(final Consumer<ComponentWriter> frame) {
+        if (channel.isPresent()) {
+            frame.accept(writer.reset());
+            try {
+                GatewayProtocol.write(channel.get(), writer);
+                return true;
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not send to the engine.", e);
+                disconnect();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Close the channel to the engine, if any. The link then stops receiving
+     * from it.
+     */
+    private synchronized void disconnect() {
+        channel.ifPresent(ch -> {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Could not close the engine link.", e);
+            }
+        });
+        channel = Optional.empty();
+    }
+
+    /**
+     * Act on a frame from the engine.
+     *
+     * @param f
+     *              the reader of the frame
+     * @throws IOException
+     *                         if the frame is of no known type
+     */
+    private void dispatch(final ComponentReader f) throws IOException {
+        final int type = f.readByte();
+        final Optional<Client> c = Optional
+                .ofNullable(clients.get(f.readUnsignedVarLong()));
+        if (type == GatewayProtocol.JOINED) {
+            final long id = f.readFixedLong();
+            c.ifPresent(k -> k.player = Optional.of(id));
+        } else if (type == GatewayProtocol.OUTPUT) {
+            final String o = f.readString();
+            c.ifPresent(k -> k.io.post(o));
+        } else if (type == GatewayProtocol.END) {
+            if (c.isPresent()) {
+                clients.remove(c.get().session);
+                try {
+                    c.get().io.shutdown();
+                } catch (IOException e) {
+                    LOG.log(Level.FINE, "Could not close a connection.", e);
+                }
+            }
+        } else {
+            throw new IOException("Unknown frame type " + type + ".");
+        }
+    }
+
+    /**
+     * Reach the engine, open every session with it, and receive from it until
+     * it goes away.
+     *
+     * @throws IOException
+     *                         if the engine cannot be reached or goes away
+     */
+    private void link() throws IOException {
+        final SocketChannel ch = GatewayProtocol.connect(engine);
+        synchronized (this) {
+            channel = Optional.of(ch);
+        }
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Linked to the engine at " + engine + ".");
+        }
+        clients.values().forEach(c -> {
+            open(c);
+            relay(c);
+        });
+        try {
+            while (running) {
+                dispatch(GatewayProtocol.read(ch));
+            }
+        } finally {
+            disconnect();
+            clients.values().forEach(c -> {
+                synchronized (c) {
+                    c.linked = false;
+                }
+                c.io.post(RESTARTING);
+            });
+        }
+    }
+
+    /**
+     * Keep the engine linked until the link is closed.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                link();
+            } catch (EOFException e) {
+                LOG.info("The engine has gone away.");
+            } catch (IOException e) {
+                if (running && LOG.isLoggable(Level.FINE)) {
+                    LOG.log(Level.FINE, "Could not reach the engine.", e);
+                }
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                LOG.fine("Interrupted while waiting for the engine.");
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Stop the link. Connections held are left to their server to close.
+     */
+    @Override
+    public void close() {
+        running = false;
+        disconnect();
+    }
+}
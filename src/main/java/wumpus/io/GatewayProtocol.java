@@ -0,0 +1,222 @@
+package wumpus.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+
+/**
+ * The protocol spoken between a gateway holding player connections and the
+ * game engine, over a loopback or Unix-domain socket.
+ *
+ * Everything sent is a frame: its length as a four byte integer, then its
+ * type and fields encoded by a {@link ComponentWriter}. Each player
+ * connection is a session numbered by the gateway. The gateway opens a
+ * session, naming the player it played as before if any, sends its lines of
+ * input and closes it; the engine tells the gateway which player a session
+ * joined as, sends its output and ends it.
+ *
+ * Addresses are written {@code host:port} for a loopback socket or
+ * {@code unix:path} for a Unix-domain socket. The link from a primary to its
+ * replicas is framed and addressed the same way.
+ */
+public final class GatewayProtocol {
+
+    /**
+     * Frame opening a session: its number, whether it played before, and the
+     * ID of the player it played as.
+     */
+    static final int OPEN = 1;
+
+    /**
+     * Frame carrying a line of input of a session.
+     */
+    static final int INPUT = 2;
+
+    /**
+     * Frame closing a session whose connection has closed.
+     */
+    static final int CLOSE = 3;
+
+    /**
+     * Frame telling the gateway the ID of the player a session joined as.
+     */
+    static final int JOINED = 4;
+
+    /**
+     * Frame carrying output of a session.
+     */
+    static final int OUTPUT = 5;
+
+    /**
+     * Frame ending a session whose play has ended.
+     */
+    static final int END = 6;
+
+    /**
+     * Largest frame accepted, in bytes: 1 MiB.
+     */
+    private static final int MAX_FRAME = 0x10_0000;
+
+    /**
+     * Prefix of the address of a Unix-domain socket.
+     */
+    private static final String UNIX = "unix:";
+
+    /**
+     * Utility class.
+     */
+    private GatewayProtocol() {
+    }
+
+    /**
+     * Parse an address.
+     *
+     * @param a
+     *              {@code host:port} or {@code unix:path}
+     * @return the address
+     * @throws IllegalArgumentException
+     *                                      if the address cannot be parsed
+     */
+    public static SocketAddress address(final String a) {
+        if (a.startsWith(UNIX)) {
+            return UnixDomainSocketAddress.of(a.substring(UNIX.length()));
+        }
+        final int colon = a.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException(
+                    "Expected host:port or unix:path, not " + a + ".");
+        }
+        return new InetSocketAddress(a.substring(0, colon),
+                Integer.parseInt(a.substring(colon + 1)));
+    }
+
+    /**
+     * Listen on an address, replacing any stale Unix-domain socket file.
+     *
+     * @param a
+     *              the address
+     * @return the listening channel, which blocks
+     * @throws IOException
+     *                         if the address cannot be bound
+     */
+    static ServerSocketChannel listen(final SocketAddress a)
+            throws IOException {
+        final ServerSocketChannel c;
+        if (a instanceof UnixDomainSocketAddress) {
+            final Path p = ((UnixDomainSocketAddress) a).getPath();
+            Files.deleteIfExists(p);
+            c = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            c = ServerSocketChannel.open();
+        }
+        try {
+            return c.bind(a);
+        } catch (IOException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Connect to an address.
+     *
+     * @param a
+     *              the address
+     * @return the connected channel, which blocks
+     * @throws IOException
+     *                         if the address cannot be reached
+     */
+    static SocketChannel connect(final SocketAddress a) throws IOException {
+        final SocketChannel c = SocketChannel.open(a);
+        if (a instanceof InetSocketAddress) {
+            c.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        return c;
+    }
+
+    /**
+     * Write a frame whole.
+     *
+     * @param c
+     *              the channel to write to
+     * @param w
+     *              the writer holding the type and fields of the frame
+     * @throws IOException
+     *                         if the channel fails
+     */
+    static void write(final SocketChannel c, final ComponentWriter w)
+            throws IOException {
+        final ByteBuffer[] frame = {
+                ByteBuffer.allocate(Integer.BYTES).putInt(0, w.size()),
+                w.view()};
+        while (frame[1].hasRemaining()) {
+            c.write(frame);
+        }
+    }
+
+    /**
+     * Read the next frame whole.
+     *
+     * @param c
+     *              the channel to read from
+     * @return a reader of the type and fields of the frame
+     * @throws EOFException
+     *                          if the channel is closed by its peer between
+     *                          frames
+     * @throws IOException
+     *                          if the channel fails, or the frame is too
+     *                          long or cut short
+     */
+    static ComponentReader read(final SocketChannel c) throws IOException {
+        final ByteBuffer length = fill(c, ByteBuffer.allocate(Integer.BYTES));
+        final int n = length.getInt(0);
+        if (n < 0 || n > MAX_FRAME) {
+            throw new IOException("Frame of " + n + " bytes is too long.");
+        }
+        try {
+            return new ComponentReader(fill(c, ByteBuffer.allocate(n)).flip());
+        } catch (EOFException e) {
+            throw new IOException("The frame was cut short.", e);
+        }
+    }
+
+    /**
+     * Read until a buffer is full.
+     *
+     * @param c
+     *              the channel to read from
+     * @param b
+     *              the buffer
+     * @return the buffer
+     * @throws EOFException
+     *                          if the channel is closed by its peer before
+     *                          anything is read
+     * @throws IOException
+     *                          if the channel fails, or is closed by its peer
+     *                          part way
+     */
+    private static ByteBuffer fill(final SocketChannel c, final ByteBuffer b)
+            throws IOException {
+        while (b.hasRemaining()) {
+            if (c.read(b) < 0) {
+                if (b.position() == 0) {
+                    throw new EOFException();
+                }
+                throw new IOException("The frame was cut short.");
+            }
+        }
+        return b;
+    }
+}
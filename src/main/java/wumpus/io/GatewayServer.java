@@ -0,0 +1,339 @@
+package wumpus.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+
+/**
+ * Serves players connected to gateways, handing each session a gateway opens
+ * to a {@link SessionManager} as an {@link IOAdapter} of its own.
+ *
+ * A thread per gateway reads its frames; output is written whole by
+ * whichever thread posts it. Should a gateway be lost, its sessions close
+ * and their players leave the game, to resume when the gateway reconnects.
+ */
+public final class GatewayServer implements Runnable, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(GatewayServer.class.getName());
+
+    /**
+     * A gateway linked to the engine.
+     */
+    private final class Gateway {
+
+        /**
+         * The link to the gateway.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * Writer encoding frames, guarded by this gateway.
+         */
+        private final ComponentWriter writer;
+
+        /**
+         * Sessions of the gateway, by their number.
+         */
+        private final Map<Long, Remote> remotes;
+
+        /**
+         * Create a gateway over an accepted link.
+         *
+         * @param c
+         *              the link
+         */
+        Gateway(final SocketChannel c) {
+            channel = c;
+            writer = new ComponentWriter();
+            remotes = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Receive frames until the link is lost or closed, then close every
+         * session of the gateway.
+         */
+        void receive() {
+            try {
+                while (channel.isOpen()) {
+                    dispatch(GatewayProtocol.read(channel));
+                }
+            } catch (EOFException e) {
+                LOG.fine("The gateway closed its link.");
+            } catch (IOException | RuntimeException e) {
+                if (channel.isOpen()) {
+                    LOG.log(Level.WARNING, "The gateway link failed.", e);
+                }
+            } finally {
+                close();
+                remotes.values().forEach(Remote::closed);
+                remotes.clear();
+                gateways.remove(this);
+            }
+        }
+
+        /**
+         * Act on a frame.
+         *
+         * @param f
+         *              the reader of the frame
+         * @throws IOException
+         *                         if the frame is of no known type
+         */
+        private void dispatch(final ComponentReader f) throws IOException {
+            final int type = f.readByte();
+            final long session = f.readUnsignedVarLong();
+            if (type == GatewayProtocol.OPEN) {
+                final boolean resume = f.readByte() != 0;
+                final long player = f.readFixedLong();
+                final Remote r = new Remote(this, session);
+                remotes.put(session, r);
+                final long id;
+                if (resume) {
+                    id = sessions.resume(r, player);
+                } else {
+                    id = sessions.create(r);
+                }
+                send(w -> w.writeByte(GatewayProtocol.JOINED)
+                        .writeUnsignedVarLong(session).writeFixedLong(id));
+            } else if (type == GatewayProtocol.INPUT) {
+                final String line = f.readString();
+                Optional.ofNullable(remotes.get(session))
+                        .ifPresent(r -> r.received(line));
+            } else if (type == GatewayProtocol.CLOSE) {
+                Optional.ofNullable(remotes.remove(session))
+                        .ifPresent(Remote::closed);
+            } else {
+                throw new IOException("Unknown frame type " + type + ".");
+            }
+        }
+
+        /**
+         * Send a frame, closing the link if it cannot be sent.
+         *
+         * @param frame
+         *                  writes the type and fields of the frame
+         */
+        private synchronized void send(
+                final Consumer<ComponentWriter> frame) {
+            if (channel.isOpen()) {
+                frame.accept(writer.reset());
+                try {
+                    GatewayProtocol.write(channel, writer);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Could not send to the gateway.",
+                            e);
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Close the link. The thread of the gateway then closes its sessions.
+         */
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Could not close the gateway link.", e);
+            }
+        }
+    }
+
+    /**
+     * A session of a gateway, adapting its frames to a session manager.
+     */
+    private static final class Remote implements IOAdapter {
+
+        /**
+         * The gateway of the session.
+         */
+        private final Gateway gateway;
+
+        /**
+         * The number of the session.
+         */
+        private final long session;
+
+        /**
+         * Lines of input received.
+         */
+        private final Queue<String> input;
+
+        /**
+         * Set while the session is open.
+         */
+        private volatile boolean open;
+
+        /**
+         * Called whenever input arrives or the session closes.
+         */
+        private volatile Runnable activity;
+
+        /**
+         * Create an open session.
+         *
+         * @param g
+         *              the gateway of the session
+         * @param s
+         *              the number of the session
+         */
+        Remote(final Gateway g, final long s) {
+            gateway = g;
+            session = s;
+            input = new ConcurrentLinkedQueue<>();
+            open = true;
+            activity = () -> { };
+        }
+
+        /**
+         * Queue a line of input received from the gateway.
+         *
+         * @param line
+         *                 the line
+         */
+        void received(final String line) {
+            input.add(line);
+            activity.run();
+        }
+
+        /**
+         * Mark the session closed by the gateway, or lost with it.
+         */
+        void closed() {
+            open = false;
+            activity.run();
+        }
+
+        @Override
+        public Optional<String> poll() {
+            return Optional.ofNullable(input.poll());
+        }
+
+        @Override
+        public void post(final String o) {
+            if (open) {
+                gateway.send(w -> w.writeByte(GatewayProtocol.OUTPUT)
+                        .writeUnsignedVarLong(session).writeString(o));
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            if (open) {
+                open = false;
+                gateway.remotes.remove(session);
+                gateway.send(w -> w.writeByte(GatewayProtocol.END)
+                        .writeUnsignedVarLong(session));
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void onActivity(final Runnable signal) {
+            activity = signal;
+        }
+    }
+
+    /**
+     * Channel accepting gateways.
+     */
+    private final ServerSocketChannel listener;
+
+    /**
+     * The manager of the sessions of every gateway.
+     */
+    private final SessionManager sessions;
+
+    /**
+     * Gateways linked.
+     */
+    private final List<Gateway> gateways;
+
+    /**
+     * Listen for gateways on an address. Gateways are not accepted until the
+     * server is run.
+     *
+     * @param address
+     *                    the address to listen on
+     * @param s
+     *                    the manager to hand the sessions of gateways to
+     * @throws IOException
+     *                         if the address cannot be bound
+     */
+    public GatewayServer(final SocketAddress address, final SessionManager s)
+            throws IOException {
+        listener = GatewayProtocol.listen(address);
+        sessions = s;
+        gateways = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * The address the server is listening on.
+     *
+     * @return the local address
+     * @throws IOException
+     *                         if the server is closed
+     */
+    public SocketAddress address() throws IOException {
+        return listener.getLocalAddress();
+    }
+
+    /**
+     * Accept gateways until the server is closed.
+     */
+    @Override
+    public void run() {
+        LOG.info("Accepting gateways.");
+        try {
+            while (listener.isOpen()) {
+                final Gateway g = new Gateway(listener.accept());
+                gateways.add(g);
+                Thread.ofPlatform().name("gateway-", gateways.size())
+                        .daemon().start(g::receive);
+                LOG.info("A gateway has linked.");
+            }
+        } catch (IOException e) {
+            if (listener.isOpen()) {
+                LOG.log(Level.SEVERE, "Could not accept gateways.", e);
+            }
+        }
+        LOG.info("Stopped accepting gateways.");
+    }
+
+    /**
+     * Stop accepting gateways and close the links of those linked, whose
+     * sessions then close.
+     *
+     * @throws IOException
+     *                         if the listener cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        listener.close();
+        gateways.forEach(Gateway::close);
+    }
+}
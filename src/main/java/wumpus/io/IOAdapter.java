@@ -37,4 +37,14 @@ public interface IOAdapter {
      * @return true is both are open
      */
     boolean isOpen();
+
+    /**
+     * Register a callback for whenever input arrives or the adapter closes,
+     * replacing any previous callback. The callback may be run on any thread
+     * and must not block.
+     *
+     * @param signal
+     *                   the callback
+     */
+    void onActivity(Runnable signal);
 }
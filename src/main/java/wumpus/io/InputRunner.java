@@ -11,6 +11,9 @@ import java.util.logging.Logger;
 
 /**
  * Runnable for pulling lines from an input stream and queuing them.
+ *
+ * The runner blocks while waiting for input and stops at the end of the
+ * stream.
  */
 public final class InputRunner implements Runnable {
 
@@ -30,6 +33,11 @@ public final class InputRunner implements Runnable {
      */
     private final Queue<String> queue;
 
+    /**
+     * Called whenever input is queued or the runner stops.
+     */
+    private final Runnable signal;
+
     /**
      * Controls running continuation.
      */
@@ -44,8 +52,25 @@ public final class InputRunner implements Runnable {
      *              the queue to post to
      */
     public InputRunner(final InputStream i, final Queue<String> q) {
+        this(i, q, () -> { });
+    }
+
+    /**
+     * Construct an input runner with the given stream and queue, signalling
+     * a consumer of the queue on activity.
+     *
+     * @param i
+     *              the input stream to read from
+     * @param q
+     *              the queue to post to
+     * @param s
+     *              called whenever input is queued or the runner stops
+     */
+    public InputRunner(final InputStream i, final Queue<String> q,
+            final Runnable s) {
         this.in = i;
         this.queue = q;
+        this.signal = s;
         run = false;
     }
 
@@ -56,18 +81,17 @@ public final class InputRunner implements Runnable {
             this.notifyAll();
         }
         LOG.fine("Now running.");
-        String line = null;
         try (final BufferedReader sc = new BufferedReader(
                 new InputStreamReader(in, Charset.defaultCharset()))) {
             LOG.fine("Reader open. Beginning input loop.");
-            while (isRunning()) {
-                line = sc.readLine();
-                if (line != null) {
-                    if (LOG.isLoggable(Level.FINE)) {
-                        LOG.fine("Queuing input: " + line);
-                    }
-                    queue.add(line);
+            String line = sc.readLine();
+            while (isRunning() && line != null) {
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Queuing input: " + line);
                 }
+                queue.add(line);
+                signal.run();
+                line = sc.readLine();
             }
             LOG.fine("Exiting input loop.");
         } catch (IOException ex) {
@@ -81,6 +105,7 @@ public final class InputRunner implements Runnable {
                 run = false;
                 this.notifyAll();
             }
+            signal.run();
         }
         LOG.fine("Stopped.");
     }
@@ -0,0 +1,251 @@
+package wumpus.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An IO adapter for one connection of a {@link NetworkServer}.
+ *
+ * Input is framed in to lines as it is read, and output is queued as encoded
+ * buffers until the connection can take them. A connection which lets more
+ * than {@value #MAX_QUEUED} bytes of output wait is dropped along with its
+ * output. All channel IO happens on the server's selector thread; other
+ * threads only touch the queues.
+ */
+public final class NetworkIOAdapter implements IOAdapter {
+
+    /**
+     * Prompt displayed to attached players.
+     */
+    private static final String PROMPT = "\n>>> ";
+
+    /**
+     * Longest accepted line in bytes. Longer lines are split.
+     */
+    private static final int MAX_LINE = 1024;
+
+    /**
+     * Most bytes of output a connection may have waiting before it is
+     * dropped.
+     */
+    static final int MAX_QUEUED = 1024 * 1024;
+
+    /**
+     * The connection.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * The server owning the connection.
+     */
+    private final NetworkServer server;
+
+    /**
+     * Bytes of the line being read.
+     */
+    private final ByteBuffer line;
+
+    /**
+     * Complete input lines.
+     */
+    private final Queue<String> inQueue;
+
+    /**
+     * Encoded output not yet written.
+     */
+    private final Queue<ByteBuffer> outQueue;
+
+    /**
+     * Number of bytes of output queued and not yet written.
+     */
+    private final AtomicInteger queued;
+
+    /**
+     * Set while the adapter is waiting for the server to service it.
+     */
+    private final AtomicBoolean pending;
+
+    /**
+     * Set once the connection is closing or closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Set once the connection let too much output wait, so is dropped
+     * without writing the rest.
+     */
+    private volatile boolean overflowed;
+
+    /**
+     * Called whenever input arrives or the adapter closes.
+     */
+    private volatile Runnable activity;
+
+    /**
+     * Create an adapter for an accepted connection.
+     *
+     * @param c
+     *              the connection
+     * @param s
+     *              the server owning the connection
+     */
+    NetworkIOAdapter(final SocketChannel c, final NetworkServer s) {
+        channel = c;
+        server = s;
+        line = ByteBuffer.allocate(MAX_LINE);
+        inQueue = new ConcurrentLinkedQueue<>();
+        outQueue = new ConcurrentLinkedQueue<>();
+        queued = new AtomicInteger();
+        pending = new AtomicBoolean();
+        activity = () -> { };
+    }
+
+    /**
+     * The connection of this adapter.
+     *
+     * @return the connection
+     */
+    SocketChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Frame bytes read from the connection in to lines. Called on the
+     * selector thread.
+     *
+     * @param read
+     *                 the bytes read, ready to be consumed
+     */
+    void received(final ByteBuffer read) {
+        boolean framed = false;
+        while (read.hasRemaining()) {
+            final byte b = read.get();
+            if (b == '\n' || !line.hasRemaining()) {
+                frame();
+                framed = true;
+            }
+            if (b != '\n') {
+                line.put(b);
+            }
+        }
+        if (framed) {
+            activity.run();
+        }
+    }
+
+    /**
+     * Queue the line read so far as input, dropping a trailing carriage
+     * return.
+     */
+    private void frame() {
+        line.flip();
+        int length = line.remaining();
+        if (length > 0 && line.get(length - 1) == '\r') {
+            length--;
+        }
+        inQueue.add(new String(line.array(), 0, length,
+                StandardCharsets.UTF_8));
+        line.clear();
+    }
+
+    /**
+     * Write as much queued output as the connection will take. Called on the
+     * selector thread.
+     *
+     * @return true if all queued output was written
+     * @throws IOException
+     *                         if the connection fails
+     */
+    boolean flush() throws IOException {
+        ByteBuffer next = outQueue.peek();
+        while (next != null && channel.write(next) >= 0
+                && !next.hasRemaining()) {
+            queued.addAndGet(-outQueue.poll().limit());
+            next = outQueue.peek();
+        }
+        return next == null;
+    }
+
+    /**
+     * Determine if the connection let too much output wait, so should be
+     * closed without writing the rest.
+     *
+     * @return true if the connection overflowed
+     */
+    boolean overflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Mark the connection closed, as when the peer disconnects. Called on
+     * the selector thread.
+     */
+    void disconnected() {
+        closed = true;
+        activity.run();
+    }
+
+    /**
+     * Clear the waiting mark so that later output asks for service again.
+     * Called on the selector thread before servicing the adapter.
+     */
+    void serviced() {
+        pending.set(false);
+    }
+
+    /**
+     * Ask the server to service this adapter, unless already asked.
+     */
+    private void request() {
+        if (pending.compareAndSet(false, true)) {
+            server.service(this);
+        }
+    }
+
+    @Override
+    public Optional<String> poll() {
+        return Optional.ofNullable(inQueue.poll());
+    }
+
+    @Override
+    public void post(final String o) {
+        if (!closed) {
+            final ByteBuffer b = ByteBuffer
+                    .wrap((o + PROMPT).getBytes(StandardCharsets.UTF_8));
+            if (queued.addAndGet(b.remaining()) > MAX_QUEUED) {
+                overflowed = true;
+                closed = true;
+            } else {
+                outQueue.add(b);
+            }
+            request();
+        }
+    }
+
+    /**
+     * The server goes on writing the queued output for a while before it
+     * closes the connection.
+     */
+    @Override
+    public void shutdown() throws IOException {
+        closed = true;
+        request();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void onActivity(final Runnable signal) {
+        activity = signal;
+    }
+}
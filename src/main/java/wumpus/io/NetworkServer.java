@@ -0,0 +1,370 @@
+package wumpus.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Line-based TCP server hosting every connection on a single selector
+ * thread.
+ *
+ * Each accepted connection is wrapped in a {@link NetworkIOAdapter} and
+ * handed to a consumer, typically {@link SessionManager#create(IOAdapter)}.
+ * Connections never block the server: reads are framed in to lines as they
+ * arrive, and output waits in per-connection buffers until the connection is
+ * writable. A connection shut down by its session stays open until its output
+ * is written, for at most {@value #LINGER_MILLIS} ms.
+ */
+public final class NetworkServer implements Runnable, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(NetworkServer.class.getName());
+
+    /**
+     * Size of the shared read buffer.
+     */
+    private static final int READ_BUFFER = 8192;
+
+    /**
+     * Longest time in milliseconds a connection being shut down is given to
+     * take its remaining output.
+     */
+    private static final long LINGER_MILLIS = 5000;
+
+    /**
+     * Milliseconds between checks for connections lingering too long.
+     */
+    private static final long LINGER_CHECK_MILLIS = 100;
+
+    /**
+     * Selector for all channels.
+     */
+    private final Selector selector;
+
+    /**
+     * The listening channel.
+     */
+    private final ServerSocketChannel listener;
+
+    /**
+     * Receiver of new connections.
+     */
+    private final Consumer<IOAdapter> onConnect;
+
+    /**
+     * Adapters with output to write or closing.
+     */
+    private final Queue<NetworkIOAdapter> service;
+
+    /**
+     * Deadline in {@link System#nanoTime()} of each connection being shut
+     * down with output left to write. Touched only by the server thread.
+     */
+    private final Map<NetworkIOAdapter, Long> lingering;
+
+    /**
+     * Buffer for reads, reused for every connection.
+     */
+    private final ByteBuffer read;
+
+    /**
+     * Running status of the server.
+     */
+    private volatile boolean running;
+
+    /**
+     * Open a server listening on an address. The server does not accept
+     * connections until run.
+     *
+     * @param address
+     *                    the address to listen on; port 0 picks any free port
+     * @param c
+     *                    receiver of new connections, called on the server
+     *                    thread
+     * @throws IOException
+     *                         if the address cannot be bound
+     */
+    public NetworkServer(final InetSocketAddress address,
+            final Consumer<IOAdapter> c) throws IOException {
+        selector = Selector.open();
+        listener = ServerSocketChannel.open();
+        listener.bind(address);
+        listener.configureBlocking(false);
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+        onConnect = c;
+        service = new ConcurrentLinkedQueue<>();
+        lingering = new HashMap<>();
+        read = ByteBuffer.allocateDirect(READ_BUFFER);
+        running = true;
+    }
+
+    /**
+     * The port the server is listening on.
+     *
+     * @return the local port
+     * @throws IOException
+     *                         if the server is closed
+     */
+    public int port() throws IOException {
+        return ((InetSocketAddress) listener.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Ask the server thread to write the output of an adapter, or to close
+     * it.
+     *
+     * @param a
+     *              the adapter
+     */
+    void service(final NetworkIOAdapter a) {
+        service.add(a);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        LOG.info("Accepting network connections.");
+        try {
+            while (running) {
+                if (lingering.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.select(LINGER_CHECK_MILLIS);
+                    expireLingering();
+                }
+                serviceAdapters();
+                final Iterator<SelectionKey> keys = selector.selectedKeys()
+                        .iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Network server failed.", ex);
+        } finally {
+            closeAll();
+        }
+        LOG.info("Stopped accepting network connections.");
+    }
+
+    /**
+     * Act on a ready key.
+     *
+     * @param key
+     *                the key
+     * @throws IOException
+     *                         if a new connection cannot be accepted
+     */
+    private void handle(final SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            LOG.fine("Skipping cancelled key.");
+        } else if (key.isAcceptable()) {
+            accept();
+        } else {
+            final NetworkIOAdapter a = (NetworkIOAdapter) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(key, a);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    final boolean flushed = write(key, a);
+                    if (!a.isOpen()) {
+                        closing(key, a, flushed);
+                    }
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Connection failed.", ex);
+                disconnect(key, a);
+            }
+        }
+    }
+
+    /**
+     * Accept a pending connection.
+     *
+     * @throws IOException
+     *                         if the connection cannot be configured
+     */
+    private void accept() throws IOException {
+        final SocketChannel c = listener.accept();
+        if (c != null) {
+            c.configureBlocking(false);
+            final NetworkIOAdapter a = new NetworkIOAdapter(c, this);
+            c.register(selector, SelectionKey.OP_READ, a);
+            onConnect.accept(a);
+        }
+    }
+
+    /**
+     * Read what is available from a connection.
+     *
+     * @param key
+     *                the key of the connection
+     * @param a
+     *                the adapter of the connection
+     * @throws IOException
+     *                         if the connection fails
+     */
+    private void read(final SelectionKey key, final NetworkIOAdapter a)
+            throws IOException {
+        read.clear();
+        final int n = a.channel().read(read);
+        if (n < 0) {
+            disconnect(key, a);
+        } else {
+            read.flip();
+            a.received(read);
+        }
+    }
+
+    /**
+     * Write queued output to a connection, watching for writability only
+     * while output remains.
+     *
+     * @param key
+     *                the key of the connection
+     * @param a
+     *                the adapter of the connection
+     * @return true if all queued output was written
+     * @throws IOException
+     *                         if the connection fails
+     */
+    private boolean write(final SelectionKey key, final NetworkIOAdapter a)
+            throws IOException {
+        final boolean flushed = a.flush();
+        if (flushed) {
+            key.interestOps(SelectionKey.OP_READ);
+        } else {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        return flushed;
+    }
+
+    /**
+     * Close a connection whose session has shut it down once its output is
+     * written, or at once if it overflowed. Until then it lingers.
+     *
+     * @param key
+     *                    the key of the connection
+     * @param a
+     *                    the adapter of the connection
+     * @param flushed
+     *                    true if all queued output was written
+     */
+    private void closing(final SelectionKey key, final NetworkIOAdapter a,
+            final boolean flushed) {
+        if (flushed || a.overflowed()) {
+            disconnect(key, a);
+        } else {
+            lingering.putIfAbsent(a, System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS));
+        }
+    }
+
+    /**
+     * Close the lingering connections which have not taken their output in
+     * time, dropping it.
+     */
+    private void expireLingering() {
+        final long now = System.nanoTime();
+        final List<NetworkIOAdapter> expired = lingering.entrySet().stream()
+                .filter(l -> now - l.getValue() >= 0).map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        for (final NetworkIOAdapter a : expired) {
+            LOG.fine("Dropping the output of a lingering connection.");
+            disconnect(a.channel().keyFor(selector), a);
+        }
+    }
+
+    /**
+     * Service adapters which have new output or are closing.
+     */
+    private void serviceAdapters() {
+        NetworkIOAdapter a = service.poll();
+        while (a != null) {
+            a.serviced();
+            final SelectionKey key = a.channel().keyFor(selector);
+            if (key != null && key.isValid()) {
+                try {
+                    final boolean flushed = write(key, a);
+                    if (!a.isOpen()) {
+                        closing(key, a, flushed);
+                    }
+                } catch (IOException ex) {
+                    LOG.log(Level.FINE, "Connection failed.", ex);
+                    disconnect(key, a);
+                }
+            }
+            a = service.poll();
+        }
+    }
+
+    /**
+     * Close a connection.
+     *
+     * @param key
+     *                the key of the connection
+     * @param a
+     *                the adapter of the connection
+     */
+    private void disconnect(final SelectionKey key, final NetworkIOAdapter a) {
+        lingering.remove(a);
+        key.cancel();
+        try {
+            a.channel().close();
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Could not close connection cleanly.", ex);
+        }
+        a.disconnected();
+    }
+
+    /**
+     * Close every connection and the listener.
+     */
+    private void closeAll() {
+        try {
+            if (selector.isOpen()) {
+                selector.keys().stream()
+                        .filter(k -> k.attachment() != null)
+                        .forEach(k -> disconnect(k,
+                                (NetworkIOAdapter) k.attachment()));
+                selector.close();
+            }
+            listener.close();
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not close network server cleanly.",
+                    ex);
+        }
+    }
+
+    /**
+     * Stop the running server. The server thread closes every connection and
+     * the listener before it exits. The server cannot be restarted.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+}
@@ -4,13 +4,16 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Runnable for pulling lines from a queue and printing them to an output
  * stream.
+ *
+ * The runner blocks while the queue is empty, and is interrupted when
+ * stopped.
  */
 public final class OutputRunner implements Runnable {
 
@@ -26,24 +29,35 @@ public final class OutputRunner implements Runnable {
     private final OutputStream out;
 
     /**
-     * The queue to poll from.
+     * The queue to take from.
      */
-    private final Queue<String> queue;
+    private final BlockingQueue<String> queue;
 
     /**
      * Controls running continuation.
      */
     private boolean run;
 
+    /**
+     * Set once stopped, so that a runner stopped before it starts never
+     * runs.
+     */
+    private boolean stopped;
+
+    /**
+     * The thread running this, while running.
+     */
+    private Thread runner;
+
     /**
      * Construct an output runner with the given stream and queue.
      *
      * @param o
      *              the output stream to write to
      * @param q
-     *              the queue to poll from
+     *              the queue to take from
      */
-    public OutputRunner(final OutputStream o, final Queue<String> q) {
+    public OutputRunner(final OutputStream o, final BlockingQueue<String> q) {
         this.out = o;
         this.queue = q;
         run = false;
@@ -52,25 +66,29 @@ public final class OutputRunner implements Runnable {
     @Override
     public void run() {
         synchronized (this) {
-            run = true;
+            run = !stopped;
+            runner = Thread.currentThread();
             this.notifyAll();
         }
-        String line;
         try (final PrintStream ps = new PrintStream(out, false,
                 Charset.defaultCharset())) {
             while (isRunning()) {
-                line = queue.poll();
-                if (line != null) {
-                    if (LOG.isLoggable(Level.FINE)) {
-                        LOG.fine("Output found: " + line);
-                    }
-                    ps.print(line);
-                    ps.flush();
+                final String line = queue.take();
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Output found: " + line);
                 }
+                ps.print(line);
+                ps.flush();
+            }
+        } catch (InterruptedException ex) {
+            if (isRunning()) {
+                LOG.fine("Interrupted while running.");
+                Thread.currentThread().interrupt();
             }
         } finally {
             synchronized (this) {
                 run = false;
+                runner = null;
                 this.notifyAll();
             }
         }
@@ -85,6 +103,10 @@ public final class OutputRunner implements Runnable {
      */
     public synchronized void stop() throws IOException {
         run = false;
+        stopped = true;
+        if (runner != null) {
+            runner.interrupt();
+        }
         out.close();
     }
 
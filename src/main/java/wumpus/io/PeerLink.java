@@ -0,0 +1,335 @@
+package wumpus.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityBundle;
+import wumpus.engine.service.Peer;
+
+/**
+ * Link to another process of the game over a socket, across which players
+ * move between the overworld and a host of lairs.
+ *
+ * Everything sent is a frame: its length as a four byte integer, then its
+ * type and fields encoded by a {@link ComponentWriter}, with strings interned
+ * within the frame. A player moving is sent as its {@link EntityBundle}, and
+ * a forwarded intent carries a request number, which its response returns.
+ * A thread of the link reads the frames and hands them to the receiver in
+ * order; frames are written whole by whichever thread sends them.
+ */
+public final class PeerLink implements Peer, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(PeerLink.class.getName());
+
+    /**
+     * Frame moving a player.
+     */
+    private static final int ARRIVE = 1;
+
+    /**
+     * Frame forwarding an intent.
+     */
+    private static final int COMMAND = 2;
+
+    /**
+     * Frame replying to an intent.
+     */
+    private static final int RESPONSE = 3;
+
+    /**
+     * Frame telling a player a message.
+     */
+    private static final int MESSAGE = 4;
+
+    /**
+     * Largest frame accepted, in bytes: 16 MiB.
+     */
+    private static final int MAX_FRAME = 0x100_0000;
+
+    /**
+     * Response to the intents outstanding when the link is lost.
+     */
+    private static final String LOST = "The way back from the lair is lost.";
+
+    /**
+     * The socket of the link.
+     */
+    private final Socket socket;
+
+    /**
+     * Stream of frames received.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Stream of frames sent, guarded by this link.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Channel writing frame bodies to the stream of frames sent.
+     */
+    private final WritableByteChannel body;
+
+    /**
+     * Writer encoding frames, guarded by this link.
+     */
+    private final ComponentWriter writer;
+
+    /**
+     * Intents forwarded and awaiting their responses, by request number.
+     */
+    private final Map<Long, Intent> pending;
+
+    /**
+     * Number of the last request.
+     */
+    private final AtomicLong requests;
+
+    /**
+     * Set once the link is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Create a link over a connected socket. Nothing is received until the
+     * link is started.
+     *
+     * @param s
+     *              the socket
+     * @throws IOException
+     *                         if the streams of the socket cannot be opened
+     */
+    public PeerLink(final Socket s) throws IOException {
+        socket = s;
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+        body = Channels.newChannel(out);
+        writer = new ComponentWriter();
+        pending = new ConcurrentHashMap<>();
+        requests = new AtomicLong();
+    }
+
+    /**
+     * Connect to a process listening for links.
+     *
+     * @param address
+     *                    the address of the process
+     * @return the link
+     * @throws IOException
+     *                         if the process cannot be reached
+     */
+    public static PeerLink connect(final InetSocketAddress address)
+            throws IOException {
+        final Socket s = new Socket();
+        try {
+            s.connect(address);
+            return new PeerLink(s);
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start receiving frames on a thread of the link, until it is lost or
+     * closed.
+     *
+     * @param r
+     *              the receiver of the frames
+     */
+    public void start(final Receiver r) {
+        Thread.ofPlatform().name("peer-link-" + socket.getPort()).daemon()
+                .start(() -> receive(r));
+    }
+
+    /**
+     * Receive frames until the link is lost or closed, then answer the
+     * intents still outstanding and tell the receiver.
+     *
+     * @param r
+     *              the receiver of the frames
+     */
+    private void receive(final Receiver r) {
+        try {
+            while (!closed) {
+                final int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME) {
+                    throw new IOException(
+                            "Frame of " + length + " bytes is too long.");
+                }
+                final byte[] b = new byte[length];
+                in.readFully(b);
+                dispatch(new ComponentReader(ByteBuffer.wrap(b)), r);
+            }
+        } catch (EOFException e) {
+            LOG.fine("The link was closed by its peer.");
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                LOG.log(Level.WARNING, "The link failed.", e);
+            }
+        } finally {
+            close();
+            pending.keySet().forEach(k -> {
+                final Intent i = pending.remove(k);
+                if (i != null) {
+                    r.replied(i, LOST);
+                }
+            });
+            r.closed();
+        }
+    }
+
+    /**
+     * Hand a frame to the receiver.
+     *
+     * @param f
+     *              the reader of the frame
+     * @param r
+     *              the receiver
+     * @throws IOException
+     *                         if the frame is of no known type
+     */
+    private void dispatch(final ComponentReader f, final Receiver r)
+            throws IOException {
+        final int type = f.readByte();
+        if (type == ARRIVE) {
+            final boolean listening = f.readByte() != 0;
+            r.arrived(EntityBundle.read(f), listening);
+        } else if (type == COMMAND) {
+            final long request = f.readUnsignedVarLong();
+            final long source = f.readFixedLong();
+            final String command = f.readString();
+            final String[] args = new String[f.readVarInt()];
+            for (int a = 0; a < args.length; a++) {
+                args[a] = f.readString();
+            }
+            r.command(new Intent(source, command,
+                    response -> respond(request, response), args));
+        } else if (type == RESPONSE) {
+            final Intent i = pending.remove(f.readUnsignedVarLong());
+            final String response = f.readString();
+            if (i != null) {
+                r.replied(i, response);
+            }
+        } else if (type == MESSAGE) {
+            final long player = f.readFixedLong();
+            r.message(player, f.readString());
+        } else {
+            throw new IOException("Unknown frame type " + type + ".");
+        }
+    }
+
+    /**
+     * Send a frame, closing the link if it cannot be sent.
+     *
+     * @param frame
+     *                  writes the type and fields of the frame
+     */
+    private synchronized void send(final Consumer<ComponentWriter> frame) {
+        if (!closed) {
+            frame.accept(writer.reset());
+            try {
+                out.writeInt(writer.size());
+                body.write(writer.view());
+                out.flush();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not send over the link.", e);
+                close();
+            }
+        }
+    }
+
+    /**
+     * Send the response to a forwarded intent.
+     *
+     * @param request
+     *                     the request number of the intent
+     * @param response
+     *                     the response
+     */
+    private void respond(final long request, final String response) {
+        send(w -> w.writeByte(RESPONSE).writeUnsignedVarLong(request)
+                .writeString(response));
+    }
+
+    @Override
+    public void arrive(final Collection<Entity> bundle,
+            final boolean listening) {
+        send(w -> {
+            w.writeByte(ARRIVE);
+            if (listening) {
+                w.writeByte(1);
+            } else {
+                w.writeByte(0);
+            }
+            EntityBundle.write(bundle, w);
+        });
+    }
+
+    @Override
+    public void command(final Intent i) {
+        final long request = requests.incrementAndGet();
+        pending.put(request, i);
+        send(w -> {
+            w.writeByte(COMMAND).writeUnsignedVarLong(request)
+                    .writeFixedLong(i.source()).writeString(i.command());
+            final String[] args = i.args();
+            w.writeVarInt(args.length);
+            for (final String a : args) {
+                w.writeString(a);
+            }
+        });
+        if (closed && pending.remove(request) != null) {
+            i.reply(LOST);
+        }
+    }
+
+    @Override
+    public void message(final long player, final String text) {
+        send(w -> w.writeByte(MESSAGE).writeFixedLong(player)
+                .writeString(text));
+    }
+
+    /**
+     * Close the link. Its thread then stops receiving, and tells the receiver
+     * the link is lost.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Could not close the link cleanly.", e);
+        }
+    }
+}
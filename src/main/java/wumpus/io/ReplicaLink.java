@@ -0,0 +1,300 @@
+package wumpus.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.ChangeFeed;
+import wumpus.engine.entity.EntityBundle;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.metrics.ReplicaMetrics;
+
+/**
+ * Link of a replica to its primary, keeping a store of the replica a copy of
+ * the primary's world as served by a {@link ReplicationServer}.
+ *
+ * The link copies the world, then makes each change of the primary to the
+ * store in order, on the thread running the link. Nothing else may change
+ * the store meanwhile. Should the link fail, or a frame not make sense, the
+ * link reaches the primary again and copies its world afresh; stores never
+ * drop entities, so copying every entity over the last copy leaves the
+ * store as the primary has it. The link ends once the primary goes away
+ * cleanly, or cannot be reached for a while, provided the whole world has
+ * been copied: the store is then as the primary last had it, give or take
+ * the changes in flight, for the replica to take over as primary.
+ */
+public final class ReplicaLink implements Runnable, Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(ReplicaLink.class.getName());
+
+    /**
+     * Time between attempts to reach the primary.
+     */
+    private static final long RETRY_MILLIS = 100;
+
+    /**
+     * Time the primary may be out of reach, once its link failed, before
+     * the replica takes over from it, in milliseconds.
+     */
+    private static final long GRACE_MILLIS = 5000;
+
+    /**
+     * Address of the primary.
+     */
+    private final SocketAddress primary;
+
+    /**
+     * The store of the replica.
+     */
+    private final EntityStore store;
+
+    /**
+     * Metrics of the replica.
+     */
+    private final ReplicaMetrics metrics;
+
+    /**
+     * Time the primary may be out of reach before the link ends, in
+     * nanoseconds.
+     */
+    private final long grace;
+
+    /**
+     * The link to the primary, if linked, guarded by this link.
+     */
+    private Optional<SocketChannel> channel;
+
+    /**
+     * Cleared once the link is closed.
+     */
+    private volatile boolean running;
+
+    /**
+     * Set once the whole world of the primary has been copied, and cleared
+     * while it is copied again.
+     */
+    private volatile boolean copied;
+
+    /**
+     * Create a link to a primary, ending once it has been out of reach for
+     * five seconds with its world copied. The primary is not reached until
+     * the link is run.
+     *
+     * @param p
+     *              the address of the primary
+     * @param s
+     *              the store to keep a copy of the primary's world in, empty
+     *              and changed by nothing else while the link runs
+     * @param m
+     *              the metrics to record the progress of the replica to
+     * @throws IllegalStateException
+     *                                   if the store already holds entities
+     */
+    public ReplicaLink(final SocketAddress p, final EntityStore s,
+            final ReplicaMetrics m) {
+        this(p, s, m, GRACE_MILLIS);
+    }
+
+    /**
+     * Create a link to a primary. The primary is not reached until the link
+     * is run.
+     *
+     * @param p
+     *              the address of the primary
+     * @param s
+     *              the store to keep a copy of the primary's world in, empty
+     *              and changed by nothing else while the link runs
+     * @param m
+     *              the metrics to record the progress of the replica to
+     * @param g
+     *              the time the primary may be out of reach, once its link
+     *              failed, before the link ends, in milliseconds
+     * @throws IllegalStateException
+     *                                   if the store already holds entities
+     */
+    public ReplicaLink(final SocketAddress p, final EntityStore s,
+            final ReplicaMetrics m, final long g) {
+        if (s.stream().findAny().isPresent()) {
+            throw new IllegalStateException(
+                    "Cannot replicate over an existing world.");
+        }
+        primary = p;
+        store = s;
+        metrics = m;
+        grace = TimeUnit.MILLISECONDS.toNanos(g);
+        channel = Optional.empty();
+        running = true;
+    }
+
+    /**
+     * Whether the store holds the whole world of the primary, as last copied
+     * and changed since, so the replica may take over.
+     *
+     * @return true once the world has been copied
+     */
+    public boolean copied() {
+        return copied;
+    }
+
+    /**
+     * Reach the primary and follow it, reaching it again whenever the link
+     * fails, until the primary goes away or has been out of reach for the
+     * grace time with its world copied, or the link is closed.
+     */
+    @Override
+    public void run() {
+        long lost = System.nanoTime();
+        boolean over = false;
+        while (running && !over) {
+            final Optional<SocketChannel> ch = reach();
+            if (ch.isPresent()) {
+                over = follow(ch.get());
+                lost = System.nanoTime();
+            } else if (copied && System.nanoTime() - lost >= grace) {
+                LOG.warning("The primary has been out of reach too long.");
+                over = true;
+            }
+            if (!over) {
+                pause();
+            }
+        }
+    }
+
+    /**
+     * Wait before trying to reach the primary again. The link is closed if
+     * interrupted.
+     */
+    private void pause() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(RETRY_MILLIS);
+        } catch (InterruptedException e) {
+            LOG.fine("Interrupted while waiting for the primary.");
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Try to reach the primary.
+     *
+     * @return the link to the primary, or empty if it cannot be reached or
+     *         the link is closed
+     */
+    private synchronized Optional<SocketChannel> reach() {
+        if (running) {
+            try {
+                channel = Optional.of(GatewayProtocol.connect(primary));
+            } catch (IOException e) {
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.log(Level.FINE, "Could not reach the primary.", e);
+                }
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Ask the primary to be followed, then copy its world and make its
+     * changes until it goes away, the link fails or the link is closed.
+     *
+     * @param ch
+     *               the link to the primary
+     * @return true if the primary closed the link between frames once its
+     *         world was copied
+     */
+    private boolean follow(final SocketChannel ch) {
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Following the primary at " + primary + ".");
+        }
+        metrics.linked(true);
+        try {
+            GatewayProtocol.write(ch, new ComponentWriter()
+                    .writeByte(ReplicationServer.FOLLOW));
+            while (running) {
+                dispatch(GatewayProtocol.read(ch));
+            }
+        } catch (EOFException e) {
+            if (copied) {
+                LOG.info("The primary has gone away.");
+                return true;
+            }
+            LOG.warning("The primary went away before its world was copied.");
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                LOG.log(Level.WARNING, "The link to the primary failed.", e);
+            }
+        } finally {
+            metrics.linked(false);
+            disconnect();
+        }
+        return false;
+    }
+
+    /**
+     * Act on a frame.
+     *
+     * @param f
+     *              the reader of the frame
+     * @throws IOException
+     *                         if the frame is of no known type
+     */
+    private void dispatch(final ComponentReader f) throws IOException {
+        final int type = f.readByte();
+        if (type == ReplicationServer.WORLD) {
+            final long tick = f.readUnsignedVarLong();
+            copied = false;
+            store.commitAll(EntityBundle.read(f));
+            metrics.copied(tick);
+        } else if (type == ReplicationServer.COPIED) {
+            metrics.copied(f.readUnsignedVarLong());
+            copied = true;
+        } else if (type == ReplicationServer.CHANGE) {
+            ChangeFeed.decode(f.readUnsignedVarLong(), f).ifPresent(c -> {
+                c.apply(store);
+                metrics.applied(c.tick());
+            });
+        } else if (type == ReplicationServer.PROGRESS) {
+            final long tick = f.readUnsignedVarLong();
+            final long head = f.readUnsignedVarLong();
+            metrics.reported(tick, f.readUnsignedVarLong() >= head);
+        } else {
+            throw new IOException("Unknown frame type " + type + ".");
+        }
+    }
+
+    /**
+     * Close the link to the primary, if linked.
+     */
+    private synchronized void disconnect() {
+        channel.ifPresent(c -> {
+            try {
+                c.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Could not close the primary link.", e);
+            }
+        });
+        channel = Optional.empty();
+    }
+
+    /**
+     * Stop following the primary. The store is left as the link last
+     * changed it.
+     */
+    @Override
+    public void close() {
+        running = false;
+        disconnect();
+    }
+}
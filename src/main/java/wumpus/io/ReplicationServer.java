@@ -0,0 +1,291 @@
+package wumpus.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.Change;
+import wumpus.engine.entity.ChangeFeed;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityBundle;
+import wumpus.engine.entity.EntityStore;
+
+/**
+ * Streams the changes of a {@link ChangeFeed} to replicas, each following
+ * the world of this primary with a {@link ReplicaLink}.
+ *
+ * Frames are sent as by {@link GatewayProtocol}. A replica asks to follow;
+ * the primary notes the offset of its next change, copies its world to the
+ * replica in batches of entities, marks the end of the copy, then sends each
+ * change from that offset on. Changes already in the copy are made again,
+ * which leaves them as they were. After each batch of changes, and whenever
+ * its tick moves on, the primary reports its tick, the offset of its next
+ * change, and the offset the replica has been sent up to. A thread per
+ * replica reads the world and the feed for itself, so a slow replica never
+ * holds up the engine, only falls behind.
+ */
+public final class ReplicationServer implements Runnable, Closeable {
+
+    /**
+     * Frame asking to follow the world.
+     */
+    static final int FOLLOW = 1;
+
+    /**
+     * Frame carrying the tick of the primary and a batch of the entities of
+     * its world.
+     */
+    static final int WORLD = 2;
+
+    /**
+     * Frame carrying a change and its offset.
+     */
+    static final int CHANGE = 3;
+
+    /**
+     * Frame reporting the tick of the primary, the offset of its next
+     * change, and the offset of the next change to be sent.
+     */
+    static final int PROGRESS = 4;
+
+    /**
+     * Frame carrying the tick of the primary and marking the end of the copy
+     * of its world.
+     */
+    static final int COPIED = 5;
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = Logger
+            .getLogger(ReplicationServer.class.getName());
+
+    /**
+     * Most changes sent between reports of progress, and most entities sent
+     * in a frame.
+     */
+    private static final int BATCH = 256;
+
+    /**
+     * Pause at the end of the feed before looking for more changes, in
+     * milliseconds.
+     */
+    private static final long PAUSE = 2;
+
+    /**
+     * Channel accepting replicas.
+     */
+    private final ServerSocketChannel listener;
+
+    /**
+     * The world copied.
+     */
+    private final EntityStore store;
+
+    /**
+     * The feed of the changes to the world.
+     */
+    private final ChangeFeed feed;
+
+    /**
+     * Links to replicas.
+     */
+    private final List<SocketChannel> replicas;
+
+    /**
+     * Listen for replicas on an address. Replicas are not accepted until the
+     * server is run.
+     *
+     * @param address
+     *                    the address to listen on
+     * @param s
+     *                    the world to copy
+     * @param f
+     *                    the feed publishing every change to the world
+     * @throws IOException
+     *                         if the address cannot be bound
+     */
+    public ReplicationServer(final SocketAddress address,
+            final EntityStore s, final ChangeFeed f) throws IOException {
+        listener = GatewayProtocol.listen(address);
+        store = s;
+        feed = f;
+        replicas = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * The address the server is listening on.
+     *
+     * @return the local address
+     * @throws IOException
+     *                         if the server is closed
+     */
+    public SocketAddress address() throws IOException {
+        return listener.getLocalAddress();
+    }
+
+    /**
+     * Accept replicas until the server is closed.
+     */
+    @Override
+    public void run() {
+        LOG.info("Accepting replicas.");
+        try {
+            while (listener.isOpen()) {
+                final SocketChannel c = listener.accept();
+                replicas.add(c);
+                Thread.ofPlatform().name("replica-", replicas.size())
+                        .daemon().start(() -> stream(c));
+                LOG.info("A replica has linked.");
+            }
+        } catch (IOException e) {
+            if (listener.isOpen()) {
+                LOG.log(Level.SEVERE, "Could not accept replicas.", e);
+            }
+        }
+        LOG.info("Stopped accepting replicas.");
+    }
+
+    /**
+     * Copy the world to a replica once it asks to follow, then stream the
+     * changes to it until the link is lost or closed.
+     *
+     * @param c
+     *              the link to the replica
+     */
+    void stream(final SocketChannel c) {
+        try (c) {
+            if (GatewayProtocol.read(c).readByte() != FOLLOW) {
+                throw new IOException("The replica did not ask to follow.");
+            }
+            final ComponentWriter w = new ComponentWriter();
+            final long offset = feed.next();
+            copy(c, w);
+            final ChangeFeed.Cursor cursor = feed.tail(offset);
+            long reported = -1;
+            while (c.isOpen()) {
+                final int sent = send(c, cursor, w);
+                final long tick = feed.tick();
+                if (sent > 0 || tick != reported) {
+                    GatewayProtocol.write(c, w.reset().writeByte(PROGRESS)
+                            .writeUnsignedVarLong(tick)
+                            .writeUnsignedVarLong(feed.next())
+                            .writeUnsignedVarLong(cursor.offset()));
+                    reported = tick;
+                }
+                if (sent == 0) {
+                    Thread.sleep(PAUSE);
+                }
+            }
+        } catch (EOFException e) {
+            LOG.fine("The replica closed its link.");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            LOG.log(Level.SEVERE, "The feed no longer retains the changes"
+                    + " the replica needs.", e);
+        } catch (IOException | RuntimeException e) {
+            if (listener.isOpen()) {
+                LOG.log(Level.WARNING, "The replica link failed.", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            replicas.remove(c);
+        }
+    }
+
+    /**
+     * Copy every entity of the world to a replica, a batch at a time, then
+     * mark the end of the copy.
+     *
+     * @param c
+     *              the link to the replica
+     * @param w
+     *              the writer to encode frames with
+     * @throws IOException
+     *                         if the link fails
+     */
+    private void copy(final SocketChannel c, final ComponentWriter w)
+            throws IOException {
+        final List<Entity> batch = new ArrayList<>(BATCH);
+        final Iterator<Entity> es = store.stream().iterator();
+        while (es.hasNext()) {
+            batch.add(es.next());
+            if (batch.size() == BATCH || !es.hasNext()) {
+                w.reset().writeByte(WORLD).writeUnsignedVarLong(feed.tick());
+                EntityBundle.write(batch, w);
+                GatewayProtocol.write(c, w);
+                batch.clear();
+            }
+        }
+        GatewayProtocol.write(c, w.reset().writeByte(COPIED)
+                .writeUnsignedVarLong(feed.tick()));
+    }
+
+    /**
+     * Send the changes the feed holds, up to a batch of them.
+     *
+     * @param c
+     *                   the link to the replica
+     * @param cursor
+     *                   the cursor reading the changes
+     * @param w
+     *                   the writer to encode frames with
+     * @return the number of changes sent
+     * @throws IOException
+     *                         if the feed cannot be read or the link fails
+     */
+    private static int send(final SocketChannel c,
+            final ChangeFeed.Cursor cursor, final ComponentWriter w)
+            throws IOException {
+        int sent = 0;
+        boolean more = true;
+        while (more && sent < BATCH) {
+            final Optional<Change> next = cursor.poll();
+            more = next.isPresent();
+            if (more) {
+                GatewayProtocol.write(c, ChangeFeed.encode(next.get(),
+                        w.reset().writeByte(CHANGE)
+                                .writeUnsignedVarLong(next.get().offset())));
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Close a link to a replica.
+     *
+     * @param c
+     *              the link
+     */
+    private static void close(final SocketChannel c) {
+        try {
+            c.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Could not close the replica link.", e);
+        }
+    }
+
+    /**
+     * Stop accepting replicas and close the links of those linked.
+     *
+     * @throws IOException
+     *                         if the listener cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        listener.close();
+        replicas.forEach(ReplicationServer::close);
+    }
+}
@@ -1,5 +1,8 @@
 package wumpus.io;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
 /**
  * Represents a connection to the game.
  */
@@ -16,7 +19,12 @@ public final class Session {
     private final IOAdapter io;
 
     /**
-     * Create a new session.
+     * Done once the entity has joined the game as a player.
+     */
+    private final Future<?> joined;
+
+    /**
+     * Create a new session for an entity which has already joined the game.
      *
      * @param e
      *              the ID of the entity for the session
@@ -24,8 +32,23 @@ public final class Session {
      *              the IO for the session
      */
     public Session(final long e, final IOAdapter i) {
+        this(e, i, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Create a new session for an entity joining the game.
+     *
+     * @param e
+     *              the ID of the entity for the session
+     * @param i
+     *              the IO for the session
+     * @param j
+     *              done once the entity has joined
+     */
+    public Session(final long e, final IOAdapter i, final Future<?> j) {
         this.entityId = e;
         this.io = i;
+        this.joined = j;
     }
 
     /**
@@ -46,6 +69,15 @@ public final class Session {
         return io;
     }
 
+    /**
+     * Determines if the entity has joined the game yet.
+     *
+     * @return true once the entity has joined
+     */
+    public boolean hasJoined() {
+        return joined.isDone();
+    }
+
     /**
      * Determines if the session is open.
      *
@@ -2,21 +2,47 @@ package wumpus.io;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import wumpus.engine.command.CommandLibrary;
+import wumpus.engine.command.Intent;
 import wumpus.engine.entity.Entity;
 import wumpus.engine.entity.EntityStore;
 import wumpus.engine.entity.component.Listener;
+import wumpus.engine.service.CommandService;
 
 /**
  * Manages IO sessions.
+ *
+ * By default a single dispatcher serves sessions as they become active. An
+ * adapter signalling that input has arrived or that it has closed queues its
+ * session for dispatch; the dispatcher wakes once per queued session, looks
+ * it up by ID, submits its input, and reaps it if it is no longer live. Idle
+ * sessions cost nothing. Command responses are queued for the dispatcher in
+ * the same way, so the tick executing a command never does session IO.
+ *
+ * Alternatively each session may be hosted by a thread of its own, which
+ * waits for the input of its session, submits it, and waits to post the
+ * response. This suits virtual threads, which make a thread per session
+ * cheap.
+ *
+ * Either way, input is not executed by the manager: each line is submitted
+ * as an {@link Intent} to a {@link CommandService}, which executes it on the
+ * next tick.
  */
 public final class SessionManager {
 
@@ -27,9 +53,20 @@ public final class SessionManager {
             .getLogger(SessionManager.class.getName());
 
     /**
-     * Game sessions.
+     * ID of no session, queued to wake the dispatcher for a response or to
+     * stop.
      */
-    private final Set<Session> sessions;
+    private static final long WAKE = Long.MIN_VALUE;
+
+    /**
+     * Command which stops a player listening.
+     */
+    private static final String QUIT = "quit";
+
+    /**
+     * Game sessions by the ID of their player entity.
+     */
+    private final Map<Long, Session> sessions;
 
     /**
      * Executor for IO.
@@ -42,63 +79,257 @@ public final class SessionManager {
     private final EntityStore store;
 
     /**
-     * Game commands.
+     * Executor of submitted commands.
+     */
+    private final CommandService commands;
+
+    /**
+     * IDs of sessions with activity to serve, once per signal.
      */
-    private final CommandLibrary library;
+    private final BlockingQueue<Long> dispatch;
+
+    /**
+     * Command responses to post, queued by the tick for the dispatcher.
+     */
+    private final Queue<Runnable> replies;
+
+    /**
+     * Released once the last session has been closed.
+     */
+    private final CountDownLatch finished;
+
+    /**
+     * True if each session is hosted by a thread of its own.
+     */
+    private final boolean perSession;
 
     /**
      * Running status of session manager.
      */
-    private boolean running;
+    private volatile boolean running;
 
     /**
-     * Create a session manager.
+     * Create a session manager serving every session from one dispatcher.
      *
      * @param s
      *              the entity store this manager should use
+     * @param c
+     *              the service to submit commands to
      */
-    public SessionManager(final EntityStore s) {
-        sessions = ConcurrentHashMap.newKeySet();
-        service = Executors.newCachedThreadPool();
-        library = new CommandLibrary();
+    public SessionManager(final EntityStore s, final CommandService c) {
+        this(s, c, null);
+    }
+
+    /**
+     * Create a session manager hosting each session on a thread of its own.
+     *
+     * @param s
+     *              the entity store this manager should use
+     * @param c
+     *              the service to submit commands to
+     * @param f
+     *              the factory of session threads, such as
+     *              {@code Thread.ofVirtual().factory()}, or null to serve
+     *              every session from one dispatcher
+     */
+    public SessionManager(final EntityStore s, final CommandService c,
+            final ThreadFactory f) {
+        sessions = new ConcurrentHashMap<>();
+        perSession = f != null;
+        if (perSession) {
+            service = Executors.newThreadPerTaskExecutor(f);
+        } else {
+            service = Executors.newCachedThreadPool();
+        }
+        commands = c;
         store = s;
+        dispatch = new LinkedBlockingQueue<>();
+        replies = new ConcurrentLinkedQueue<>();
+        finished = new CountDownLatch(1);
         running = true;
     }
 
     /**
-     * The main operation of the session manager.
+     * The main operation of the session manager, serving sessions as they
+     * are dispatched.
      */
     private void run() {
-        while (running) {
-            sessions.stream().forEach(s -> {
-                final Optional<Entity> p = store.get(s.entityId());
-                if (s.isOpen() && p.isPresent()
-                        && p.get().hasComponent(Listener.class)) {
-                    Optional<String> i = s.io().poll();
-                    if (i.isPresent()) {
-                        final String[] tokens = i.get().split("\\s+");
-                        if (tokens.length > 0
-                                && tokens[0].trim().length() > 0) {
-                            final String response = library.execute(tokens[0],
-                                    s.entityId(), store, Arrays.copyOfRange(
-                                            tokens, 1, tokens.length));
-                            s.io().post(response);
-                        }
+        try {
+            while (running) {
+                final long id = dispatch.take();
+                Runnable r = replies.poll();
+                while (r != null) {
+                    r.run();
+                    r = replies.poll();
+                }
+                final Session s = sessions.get(id);
+                if (s != null) {
+                    serve(s);
+                }
+            }
+        } catch (InterruptedException ex) {
+            LOG.fine("Interrupted while waiting for input.");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue a session for dispatch.
+     *
+     * @param id
+     *               the ID of the session's player entity
+     */
+    private void signal(final long id) {
+        dispatch.add(id);
+    }
+
+    /**
+     * Determine if a session may still play.
+     *
+     * @param s
+     *              the session
+     * @return true if the session is open and its player is yet to join or
+     *         still listening
+     */
+    private boolean live(final Session s) {
+        final Optional<Entity> p = store.get(s.entityId());
+        return s.isOpen() && p.isPresent() && (!s.hasJoined()
+                || p.get().hasComponent(Listener.class));
+    }
+
+    /**
+     * Take the next input of a session.
+     *
+     * @param s
+     *              the session
+     * @return the next input, or empty if there is none or the session is no
+     *         longer live
+     */
+    private Optional<String> input(final Session s) {
+        if (live(s)) {
+            return s.io().poll();
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Submit all of the queued input of a session, then close the session if
+     * it is no longer live. The tick queues each response for the
+     * dispatcher to post.
+     *
+     * @param s
+     *              the session to serve
+     */
+    private void serve(final Session s) {
+        Optional<String> i = input(s);
+        while (i.isPresent()) {
+            submit(s, i.get()).ifPresent(r -> r.thenAccept(response -> {
+                replies.add(() -> respond(s, response));
+                signal(WAKE);
+            }));
+            i = input(s);
+        }
+        if (!live(s)) {
+            close(s);
+        }
+    }
+
+    /**
+     * Post a command response to a session, then close the session if the
+     * command ended its play.
+     *
+     * @param s
+     *                     the session
+     * @param response
+     *                     the command response
+     */
+    private void respond(final Session s, final String response) {
+        s.io().post(response);
+        if (!live(s)) {
+            close(s);
+        }
+    }
+
+    /**
+     * Host a session on the current thread, submitting its input as it
+     * arrives and waiting for each response, until the session is no longer
+     * live or the manager stops.
+     *
+     * @param s
+     *              the session to host
+     */
+    private void host(final Session s) {
+        final Semaphore ready = new Semaphore(0);
+        s.io().onActivity(ready::release);
+        try {
+            while (running && live(s)) {
+                final Optional<String> i = s.io().poll();
+                if (i.isPresent()) {
+                    final Optional<CompletableFuture<String>> r = submit(s,
+                            i.get());
+                    if (r.isPresent()) {
+                        s.io().post(r.get().get());
                     }
                 } else {
-                    try {
-                        s.io().shutdown();
-                    } catch (IOException ex) {
-                        LOG.log(Level.WARNING,
-                                "Could not shut down I/O adapter completely.",
-                                ex);
-                    }
-                    p.ifPresent(e -> {
-                        e.deregisterComponent(Listener.class);
-                        store.commit(e);
-                    });
+                    ready.acquire();
                 }
-            });
+            }
+            if (!live(s)) {
+                close(s);
+            }
+        } catch (InterruptedException ex) {
+            LOG.fine("Interrupted while waiting for input.");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOG.log(Level.SEVERE, "Could not obtain command response.", ex);
+            close(s);
+        }
+    }
+
+    /**
+     * Submit a line of input of a session as a command.
+     *
+     * @param s
+     *                 the session
+     * @param line
+     *                 the input
+     * @return the eventual command response, or empty if the line is blank
+     */
+    private Optional<CompletableFuture<String>> submit(final Session s,
+            final String line) {
+        final String[] tokens = line.trim().split("\\s+");
+        if (tokens[0].isEmpty()) {
+            return Optional.empty();
+        } else {
+            final CompletableFuture<String> response =
+                    new CompletableFuture<>();
+            commands.submit(new Intent(s.entityId(), tokens[0],
+                    response::complete,
+                    Arrays.copyOfRange(tokens, 1, tokens.length)));
+            return Optional.of(response);
+        }
+    }
+
+    /**
+     * Close a session, releasing anyone awaiting the end of the last session.
+     * The player stops listening once the tick executes its departure.
+     *
+     * @param s
+     *              the session to close
+     */
+    private void close(final Session s) {
+        if (sessions.remove(s.entityId()) != null) {
+            try {
+                s.io().shutdown();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING,
+                        "Could not shut down I/O adapter completely.", ex);
+            }
+            commands.submit(new Intent(s.entityId(), QUIT, r -> { }));
+            if (sessions.isEmpty()) {
+                finished.countDown();
+            }
         }
     }
 
@@ -107,7 +338,9 @@ public final class SessionManager {
      */
     public void start() {
         LOG.info("Starting IO.");
-        service.execute(this::run);
+        if (!perSession) {
+            service.execute(this::run);
+        }
     }
 
     /**
@@ -115,23 +348,91 @@ public final class SessionManager {
      */
     public void stop() {
         running = false;
+        signal(WAKE);
         LOG.info("Shutting down I/O.");
-        service.shutdown();
+        if (perSession) {
+            service.shutdownNow();
+        } else {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Add a new player session on standard IO to the manager.
+     */
+    public void create() {
+        create(new StandardIOAdapter(service));
     }
 
     /**
      * Add a new player session to the manager.
      *
-     * At this time only standard IO sessions are supported.
+     * @param io
+     *               the IO adapter of the player
+     * @return the ID of the player entity
      */
-    public void create() {
-        final StandardIOAdapter io = new StandardIOAdapter(service);
+    public long create(final IOAdapter io) {
         io.post("\nWelcome to Hunt the Wumpus by Zack Hoffmann!");
-        final Entity player = store.create();
-        player.registerComponent(new Listener(m -> {
-            io.post("\n" + m.toString());
-        }));
-        store.commit(player);
-        sessions.add(new Session(player.id(), io));
+        return open(io, store.create().id());
+    }
+
+    /**
+     * Add a player session to the manager for a player who played before,
+     * such as one whose gateway has reconnected after the game restarted.
+     * The player resumes if it is still kept by the world and not already
+     * listening; otherwise a new player is created as by
+     * {@link #create(IOAdapter)}.
+     *
+     * @param io
+     *                   the IO adapter of the player
+     * @param player
+     *                   the ID of the player entity played before
+     * @return the ID of the player entity
+     */
+    public long resume(final IOAdapter io, final long player) {
+        if (store.get(player).filter(e -> !e.hasComponent(Listener.class))
+                .isPresent()) {
+            io.post("\nWelcome back to Hunt the Wumpus!");
+            return open(io, player);
+        } else {
+            return create(io);
+        }
+    }
+
+    /**
+     * Open a session for a stored entity, which joins the game on the next
+     * tick.
+     *
+     * @param io
+     *               the IO adapter of the player
+     * @param id
+     *               the ID of the player entity
+     * @return the ID of the player entity
+     */
+    private long open(final IOAdapter io, final long id) {
+        final Session s = new Session(id, io, commands.join(id,
+                new Listener(m -> {
+                    io.post("\n" + m.toString());
+                })));
+        sessions.put(id, s);
+        if (perSession) {
+            service.execute(() -> host(s));
+        } else {
+            io.onActivity(() -> signal(id));
+            signal(id);
+        }
+        return id;
+    }
+
+    /**
+     * Wait until the last session has been closed. Returns immediately if
+     * every session has already been closed; waits for the first session to
+     * be created and closed otherwise.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    public void awaitFinished() throws InterruptedException {
+        finished.await();
     }
 }
@@ -3,8 +3,10 @@ package wumpus.io;
 import java.io.IOException;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * An IO adapter using standard input/output.
@@ -39,7 +41,12 @@ public final class StandardIOAdapter implements IOAdapter {
     /**
      * Output queue.
      */
-    private final Queue<String> outQueue;
+    private final BlockingQueue<String> outQueue;
+
+    /**
+     * Called whenever input arrives or the input closes.
+     */
+    private volatile Runnable activity;
 
     /**
      * Construct and start the adapter with the provided service.
@@ -50,9 +57,11 @@ public final class StandardIOAdapter implements IOAdapter {
      */
     public StandardIOAdapter(final ExecutorService s) {
         serv = s;
+        activity = () -> { };
         inQueue = new ConcurrentLinkedQueue<>();
-        outQueue = new ConcurrentLinkedQueue<>();
-        inRunner = new InputRunner(System.in, inQueue);
+        outQueue = new LinkedBlockingQueue<>();
+        inRunner = new InputRunner(System.in, inQueue,
+                () -> activity.run());
         outRunner = new OutputRunner(System.out, outQueue);
         serv.execute(inRunner);
         serv.execute(outRunner);
@@ -78,4 +87,9 @@ public final class StandardIOAdapter implements IOAdapter {
     public boolean isOpen() {
         return inRunner.isRunning() && outRunner.isRunning();
     }
+
+    @Override
+    public void onActivity(final Runnable signal) {
+        activity = signal;
+    }
 }
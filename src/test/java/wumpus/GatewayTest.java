@@ -0,0 +1,280 @@
+package wumpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wumpus.engine.command.CommandLibrary;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.service.CommandService;
+import wumpus.io.GatewayProtocol;
+import wumpus.io.GatewayServer;
+import wumpus.io.SessionManager;
+
+/**
+ * Testing players connected through a gateway to an engine over a
+ * Unix-domain socket, across restarts of the engine.
+ */
+public final class GatewayTest {
+
+    /**
+     * Longest wait for the gateway or the engine, in milliseconds.
+     */
+    private static final int TIMEOUT = 10000;
+
+    /**
+     * Pause while waiting for the world to settle, in milliseconds.
+     */
+    private static final long PAUSE = 5;
+
+    /**
+     * Duration of a tick in milliseconds.
+     */
+    private static final int TICK_IN_MILLIS = 1;
+
+    /**
+     * Bytes read at a time by the player.
+     */
+    private static final int BUFFER = 1024;
+
+    /**
+     * The world, kept across restarts of the engine.
+     */
+    private EntityStore store;
+
+    /**
+     * The service executing submitted commands.
+     */
+    private CommandService commands;
+
+    /**
+     * Executor ticking the command service.
+     */
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Directory holding the socket of the engine.
+     */
+    private Path dir;
+
+    /**
+     * The address of the engine.
+     */
+    private SocketAddress address;
+
+    /**
+     * The sessions of the running engine.
+     */
+    private SessionManager sessions;
+
+    /**
+     * The server of gateways of the running engine.
+     */
+    private GatewayServer engine;
+
+    /**
+     * The gateway.
+     */
+    private Gateway gateway;
+
+    /**
+     * The connection of the player to the gateway.
+     */
+    private Socket client;
+
+    /**
+     * Text received by the player, not yet expected.
+     */
+    private StringBuilder received;
+
+    /**
+     * Start an engine and a gateway linked to it, and connect a player.
+     *
+     * @throws IOException
+     *                         if the engine, gateway or player cannot start
+     */
+    @Before
+    public void startGateway() throws IOException {
+        store = new MemoryEntityStore();
+        commands = new CommandService(store);
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(commands::tick, 0, TICK_IN_MILLIS,
+                TimeUnit.MILLISECONDS);
+        dir = Files.createTempDirectory("wumpus-gateway");
+        address = GatewayProtocol
+                .address("unix:" + dir.resolve("engine.sock"));
+        startEngine();
+        gateway = new Gateway(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                address);
+        Thread.ofPlatform().daemon().start(gateway);
+        client = new Socket(InetAddress.getLoopbackAddress(),
+                gateway.port());
+        client.setSoTimeout(TIMEOUT);
+        received = new StringBuilder();
+    }
+
+    /**
+     * Stop the player, the gateway and the engine.
+     *
+     * @throws IOException
+     *                                  if they cannot be closed
+     * @throws InterruptedException
+     *                                  if interrupted while stopping
+     */
+    @After
+    public void stopGateway() throws IOException, InterruptedException {
+        client.close();
+        gateway.close();
+        engine.close();
+        sessions.stop();
+        ticker.shutdown();
+        assertTrue(ticker.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS));
+        Files.deleteIfExists(dir.resolve("engine.sock"));
+        Files.delete(dir);
+    }
+
+    /**
+     * Start the engine serving gateways.
+     *
+     * @throws IOException
+     *                         if the engine cannot listen
+     */
+    private void startEngine() throws IOException {
+        sessions = new SessionManager(store, commands);
+        sessions.start();
+        engine = new GatewayServer(address, sessions);
+        Thread.ofPlatform().daemon().start(engine);
+    }
+
+    /**
+     * Wait until a condition holds.
+     *
+     * @param done
+     *                 the condition
+     */
+    private static void waitUntil(final BooleanSupplier done) {
+        final long end = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+        while (!done.getAsBoolean() && System.nanoTime() < end) {
+            try {
+                Thread.sleep(PAUSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertTrue(done.getAsBoolean());
+    }
+
+    /**
+     * Send a line from the player.
+     *
+     * @param line
+     *                 the line
+     * @throws IOException
+     *                         if the line cannot be sent
+     */
+    private void send(final String line) throws IOException {
+        final OutputStream out = client.getOutputStream();
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Read what the player receives until it has received some text,
+     * dropping everything before and including it.
+     *
+     * @param text
+     *                 the text expected
+     * @throws IOException
+     *                         if the text is not received in time
+     */
+    private void expect(final String text) throws IOException {
+        final InputStream in = client.getInputStream();
+        final byte[] buf = new byte[BUFFER];
+        int at = received.indexOf(text);
+        while (at < 0) {
+            final int n = in.read(buf);
+            if (n < 0) {
+                throw new IOException("Connection closed before " + text);
+            }
+            received.append(new String(buf, 0, n, StandardCharsets.UTF_8));
+            at = received.indexOf(text);
+        }
+        received.delete(0, at + text.length());
+    }
+
+    /**
+     * The ID of the player listening, if any.
+     *
+     * @return the ID
+     */
+    private Optional<Long> listening() {
+        return store.stream().component(Listener.class).findAny()
+                .map(l -> l.entity().id());
+    }
+
+    /**
+     * Verify that a player connected through the gateway plays, keeps its
+     * connection while the engine restarts, and resumes as the same player.
+     *
+     * @throws IOException
+     *                         if the player or engine fail
+     */
+    @Test
+    public void playerSurvivesEngineRestart() throws IOException {
+        final String bogus = new CommandLibrary().execute("bogus", 0, store);
+        expect("Welcome to Hunt the Wumpus");
+        send("bogus");
+        expect(bogus);
+        waitUntil(() -> listening().isPresent());
+        final long player = listening().get();
+
+        engine.close();
+        expect("restarting");
+        waitUntil(() -> listening().isEmpty());
+        sessions.stop();
+        startEngine();
+
+        expect("Welcome back");
+        send("bogus");
+        expect(bogus);
+        assertTrue(client.isConnected());
+        assertEquals(Optional.of(player), listening());
+    }
+
+    /**
+     * Verify that a player hanging up on the gateway leaves the game.
+     *
+     * @throws IOException
+     *                         if the player fails
+     */
+    @Test
+    public void hangingUpLeavesGame() throws IOException {
+        expect("Welcome to Hunt the Wumpus");
+        waitUntil(() -> listening().isPresent());
+        client.close();
+        waitUntil(() -> listening().isEmpty());
+    }
+}
@@ -0,0 +1,299 @@
+package wumpus;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Arrow;
+import wumpus.engine.entity.component.Away;
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Lair;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.Tavern;
+import wumpus.engine.entity.component.Wilderness;
+import wumpus.engine.service.CommandService;
+import wumpus.engine.service.LairService;
+import wumpus.engine.service.Service;
+import wumpus.engine.service.TickScheduler;
+
+/**
+ * Testing players moving between an overworld and a lair host, each with its
+ * own store, linked over a local socket.
+ */
+public final class LairHostTest {
+
+    /**
+     * Seed of the overworld services.
+     */
+    private static final long SEED = 11L;
+
+    /**
+     * Longest wait for the worlds to settle, in milliseconds.
+     */
+    private static final long TIMEOUT = 5000;
+
+    /**
+     * Pause between ticks of the overworld, in milliseconds.
+     */
+    private static final long TICK = 5;
+
+    /**
+     * The lair host.
+     */
+    private LairHost host;
+
+    /**
+     * Thread running the lair host.
+     */
+    private Thread hosting;
+
+    /**
+     * The store of the overworld.
+     */
+    private EntityStore store;
+
+    /**
+     * The command service of the overworld.
+     */
+    private CommandService commands;
+
+    /**
+     * The services of the overworld.
+     */
+    private Set<Service> services;
+
+    /**
+     * The ticks of the overworld.
+     */
+    private TickScheduler ticks;
+
+    /**
+     * The ID of the player.
+     */
+    private long player;
+
+    /**
+     * Messages told to the player.
+     */
+    private Queue<Object> messages;
+
+    /**
+     * Responses to the commands of the player.
+     */
+    private Queue<String> responses;
+
+    /**
+     * Start a lair host and an overworld linked to it, with a player in the
+     * tavern.
+     *
+     * @throws IOException
+     *                         if the host cannot listen
+     */
+    @Before
+    public void linkWorlds() throws IOException {
+        host = new LairHost(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        hosting = new Thread(host);
+        hosting.start();
+        store = new MemoryEntityStore();
+        commands = new CommandService(store);
+        services = App.services(store, commands, SEED, 1, null);
+        services.removeIf(LairService.class::isInstance);
+        services.addAll(App.portals(store, null,
+                "localhost:" + host.port()));
+        ticks = new TickScheduler(services, 1, Runnable::run);
+        messages = new ConcurrentLinkedQueue<>();
+        responses = new ConcurrentLinkedQueue<>();
+        final Entity p = store.create();
+        p.registerComponent(new Listener(messages::add));
+        store.commit(p);
+        player = p.id();
+        final long tavern = tickUntil(
+                () -> store.stream().component(Tavern.class).findAny()
+                        .isPresent()).stream().component(Tavern.class)
+                .findAny().get().entity().id();
+        tickUntil(() -> at(tavern));
+    }
+
+    /**
+     * Stop both worlds.
+     *
+     * @throws IOException
+     *                                  if the host cannot be closed
+     * @throws InterruptedException
+     *                                  if interrupted waiting for the host
+     */
+    @After
+    public void stopWorlds() throws IOException, InterruptedException {
+        App.close(services);
+        host.close();
+        hosting.join(TIMEOUT);
+    }
+
+    /**
+     * Tick the overworld until a condition holds.
+     *
+     * @param done
+     *                 the condition
+     * @return the overworld store
+     */
+    private EntityStore tickUntil(final BooleanSupplier done) {
+        final long end = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+        while (!done.getAsBoolean() && System.nanoTime() < end) {
+            ticks.run();
+            try {
+                Thread.sleep(TICK);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertTrue(done.getAsBoolean());
+        return store;
+    }
+
+    /**
+     * Determine if the player is in a room of the overworld.
+     *
+     * @param room
+     *                 the ID of the room
+     * @return true if the player is there
+     */
+    private boolean at(final long room) {
+        return store.get(player).filter(e -> e.hasComponent(Physical.class))
+                .filter(e -> e.component(Physical.class).location() == room)
+                .isPresent();
+    }
+
+    /**
+     * Find the player in the lair host.
+     *
+     * @return the player, if it is there
+     */
+    private Optional<Entity> inLair() {
+        return host.store().get(player);
+    }
+
+    /**
+     * Submit a command of the player.
+     *
+     * @param command
+     *                    the command
+     */
+    private void play(final String command) {
+        commands.submit(new Intent(player, command, responses::add));
+    }
+
+    /**
+     * Walk the player from the tavern to the lair host.
+     */
+    private void descend() {
+        play("north");
+        final long wilderness = store.stream().component(Wilderness.class)
+                .findAny().get().entity().id();
+        tickUntil(() -> at(wilderness));
+        play("north");
+        tickUntil(() -> inLair().isPresent());
+    }
+
+    /**
+     * Find the arrow the player carries.
+     *
+     * @param s
+     *              the store to look in
+     * @return true if the player's inventory holds an arrow
+     */
+    private boolean armed(final EntityStore s) {
+        return s.get(s.get(player).get().component(Player.class).inventory())
+                .get().contentsStream(s).component(Arrow.class).findAny()
+                .isPresent();
+    }
+
+    /**
+     * Verify that a player descending to the lair moves to the host with its
+     * inventory, plays there by commands forwarded from the overworld, and
+     * returns to the wilderness when it climbs out.
+     */
+    @Test
+    public void playerVisitsLair() {
+        descend();
+        final Entity away = store.get(player).get();
+        assertTrue(away.hasComponent(Away.class));
+        assertFalse(away.hasComponent(Physical.class));
+        final EntityStore lairs = host.store();
+        final Lair lair = lairs.stream().component(Lair.class).findAny().get();
+        final long entrance = lair.entrance();
+        tickUntil(() -> inLair().filter(e -> e.component(Physical.class)
+                .location() == entrance).isPresent());
+        assertTrue(armed(lairs));
+
+        play("look");
+        tickUntil(() -> !responses.isEmpty());
+        play("south");
+        final long wilderness = store.stream().component(Wilderness.class)
+                .findAny().get().entity().id();
+        tickUntil(() -> at(wilderness));
+        final Entity back = store.get(player).get();
+        assertFalse(back.hasComponent(Away.class));
+        assertTrue(back.hasComponent(Listener.class));
+        assertTrue(armed(store));
+        assertTrue(inLair().isEmpty());
+        assertFalse(lairs.get(lair.entity().id()).get()
+                .component(Container.class)
+                .contains(player));
+    }
+
+    /**
+     * Verify that a player quitting in the lair leaves the game, and is kept
+     * by the overworld.
+     */
+    @Test
+    public void playerQuitsInLair() {
+        descend();
+        play("quit");
+        tickUntil(() -> responses.contains("Leaving the game..."));
+        final Entity back = store.get(player).get();
+        assertFalse(back.hasComponent(Listener.class));
+        assertFalse(back.hasComponent(Away.class));
+        assertTrue(inLair().isEmpty());
+    }
+
+    /**
+     * Verify that a player in the lair is rescued to the wilderness when the
+     * host is lost.
+     *
+     * @throws IOException
+     *                         if the host cannot be closed
+     */
+    @Test
+    public void playerRescuedFromLostHost() throws IOException {
+        descend();
+        host.close();
+        final long wilderness = store.stream().component(Wilderness.class)
+                .findAny().get().entity().id();
+        tickUntil(() -> at(wilderness));
+        assertFalse(store.get(player).get().hasComponent(Away.class));
+        assertTrue(armed(store));
+        assertTrue(messages.stream()
+                .anyMatch(m -> m.toString().contains("cave falls in")));
+    }
+}
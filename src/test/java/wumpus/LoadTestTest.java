@@ -0,0 +1,42 @@
+package wumpus;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import wumpus.engine.metrics.LatencyHistogram;
+
+/**
+ * Testing the load test of simulated hunters.
+ */
+public final class LoadTestTest {
+
+    /**
+     * Number of hunters.
+     */
+    private static final int HUNTERS = 20;
+
+    /**
+     * Duration of the test in milliseconds.
+     */
+    private static final long DURATION = 1000;
+
+    /**
+     * Mean think time of the hunters in milliseconds.
+     */
+    private static final long THINK = 10;
+
+    /**
+     * Verify that every hunter plays and that the latency of their commands
+     * and the ticks of the game are measured.
+     */
+    @Test
+    public void measuresHunters() {
+        final LoadTest l = new LoadTest(HUNTERS, DURATION, THINK);
+        l.run();
+        final LatencyHistogram latency = l.latency();
+        assertTrue(latency.count() >= HUNTERS);
+        assertTrue(latency.percentile(0) > 0);
+        assertTrue(l.ticks().getTicks() > 0);
+    }
+}
@@ -0,0 +1,202 @@
+package wumpus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import wumpus.engine.codec.ComponentCodecs;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.TransientComponent;
+import wumpus.engine.service.CommandService;
+import wumpus.engine.service.ReplayJournal;
+import wumpus.engine.service.Service;
+import wumpus.engine.service.TickScheduler;
+
+/**
+ * Testing the journaling and replay of a game.
+ */
+public final class ReplayTest {
+
+    /**
+     * Seed of the game's services.
+     */
+    private static final long SEED = 42L;
+
+    /**
+     * Number of shards of the world, more than one so that players cross
+     * between shards.
+     */
+    private static final int SHARDS = 2;
+
+    /**
+     * Number of ticks played.
+     */
+    private static final int TICKS = 600;
+
+    /**
+     * Number of ticks between the commands of a player.
+     */
+    private static final int PACE = 3;
+
+    /**
+     * Tick on which the second player joins.
+     */
+    private static final int LATE = 100;
+
+    /**
+     * Commands played, chosen at random.
+     */
+    private static final List<String> COMMANDS = List.of("north", "south",
+            "east", "west", "up", "down", "look", "shoot north",
+            "shoot south", "shoot east", "shoot west", "inventory", "bogus");
+
+    /**
+     * Encode the persistent state of every entity of a store, by ID.
+     *
+     * @param store
+     *                  the store
+     * @return the encoding of each entity's components in order of type
+     */
+    private static Map<Long, ByteBuffer> state(final EntityStore store) {
+        final ComponentCodecs codecs = ComponentCodecs.standard();
+        return store.stream().collect(Collectors.toMap(Entity::id, e -> {
+            final ComponentWriter out = new ComponentWriter().base(e.id());
+            e.componentMap().values().stream()
+                    .filter(c -> !(c instanceof TransientComponent))
+                    .sorted(Comparator
+                            .comparing(c -> c.getClass().getName()))
+                    .forEach((Component c) -> codecs.write(c, out));
+            return out.toByteBuffer();
+        }));
+    }
+
+    /**
+     * Have a player join the game.
+     *
+     * @param commands
+     *                     the command service
+     * @param player
+     *                     the ID of the player
+     */
+    private static void join(final CommandService commands,
+            final long player) {
+        commands.join(player, new Listener(m -> {
+        }));
+    }
+
+    /**
+     * Submit a command chosen at random for a player.
+     *
+     * @param commands
+     *                     the command service
+     * @param player
+     *                     the ID of the player
+     * @param r
+     *                     the random choice of command
+     */
+    private static void play(final CommandService commands,
+            final long player, final Random r) {
+        final String[] c = COMMANDS.get(r.nextInt(COMMANDS.size()))
+                .split(" ");
+        commands.submit(new Intent(player, c[0], response -> {
+        }, Arrays.copyOfRange(c, 1, c.length)));
+    }
+
+    /**
+     * Record a game with players joining, moving, shooting and quitting,
+     * then verify that replaying its journal, which ticks sequentially,
+     * reproduces the world of the game.
+     *
+     * @param executor
+     *                     the executor running the services of a tick of
+     *                     the game recorded
+     * @throws IOException
+     *                         if the journal cannot be read
+     */
+    private static void reproduces(final Executor executor)
+            throws IOException {
+        final MemoryEntityStore store = new MemoryEntityStore();
+        final StringWriter out = new StringWriter();
+        final ReplayJournal journal = new ReplayJournal(out, store.origin(),
+                SEED, SHARDS);
+        final CommandService commands = new CommandService(store, journal);
+        final Set<Service> services = App.services(store, commands, SEED,
+                SHARDS, null);
+        final TickScheduler ticks = new TickScheduler(services,
+                App.TICK_IN_MILLIS, executor);
+        final Random players = new Random(SEED);
+        final long first = store.create().id();
+        final long second = store.create().id();
+        join(commands, first);
+        for (int t = 1; t <= TICKS; t++) {
+            if (t == LATE) {
+                join(commands, second);
+            }
+            if (t % PACE == 0) {
+                play(commands, first, players);
+                if (t > LATE) {
+                    play(commands, second, players);
+                }
+            }
+            ticks.run();
+        }
+        commands.submit(new Intent(second, "quit", r -> {
+        }));
+        ticks.run();
+        journal.close();
+        App.close(services);
+
+        final Replay replay = new Replay(ReplayJournal.read(
+                new BufferedReader(new StringReader(out.toString()))));
+        replay.run();
+        assertEquals(2, store.stream().component(Player.class).count());
+        assertEquals(state(store), state(replay.store()));
+    }
+
+    /**
+     * Verify that replaying the journal of a game ticked sequentially
+     * reproduces the world of the game.
+     *
+     * @throws IOException
+     *                         if the journal cannot be read
+     */
+    @Test
+    public void reproducesGame() throws IOException {
+        reproduces(Runnable::run);
+    }
+
+    /**
+     * Verify that replaying the journal of a game ticked in parallel on
+     * sharded workers, as a game is served, reproduces the world of the
+     * game.
+     *
+     * @throws IOException
+     *                         if the journal cannot be read
+     */
+    @Test
+    public void reproducesParallelGame() throws IOException {
+        reproduces(ForkJoinPool.commonPool());
+    }
+}
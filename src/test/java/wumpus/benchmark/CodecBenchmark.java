@@ -0,0 +1,146 @@
+package wumpus.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import wumpus.engine.codec.ComponentCodecs;
+import wumpus.engine.codec.ComponentReader;
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.TransientComponent;
+
+/**
+ * Encoding and decoding every entity of a world with a lair and players, each
+ * entity relative to its own ID as the durable store logs them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = CodecBenchmark.WARMUPS, time = 1)
+@Measurement(iterations = CodecBenchmark.MEASUREMENTS, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    /**
+     * Number of warmup iterations.
+     */
+    static final int WARMUPS = 3;
+
+    /**
+     * Number of measured iterations.
+     */
+    static final int MEASUREMENTS = 5;
+
+    /**
+     * Number of rooms in the lair.
+     */
+    @Param({ "20", "200" })
+    private int size;
+
+    /**
+     * Number of players in the world.
+     */
+    @Param({ "100" })
+    private int players;
+
+    /**
+     * The codecs under test.
+     */
+    private ComponentCodecs codecs;
+
+    /**
+     * The entities of the world.
+     */
+    private List<Entity> entities;
+
+    /**
+     * The encoding of each entity.
+     */
+    private List<ByteBuffer> encoded;
+
+    /**
+     * Writer reused for every entity.
+     */
+    private ComponentWriter writer;
+
+    /**
+     * Build the world and encode it once for decoding.
+     */
+    @Setup(Level.Trial)
+    public final void build() {
+        final EntityStore store = Worlds.store("memory");
+        Worlds.populate(store, size, players);
+        codecs = ComponentCodecs.standard();
+        entities = store.stream().collect(Collectors.toList());
+        writer = new ComponentWriter();
+        encoded = entities.stream().map(e -> {
+            write(e);
+            return writer.toByteBuffer();
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Encode the persistent components of an entity into the reused writer.
+     *
+     * @param e
+     *              the entity
+     */
+    private void write(final Entity e) {
+        writer.reset().base(e.id());
+        for (final Component c : e.componentMap().values()) {
+            if (!(c instanceof TransientComponent)) {
+                codecs.write(c, writer);
+            }
+        }
+    }
+
+    /**
+     * Encode every entity.
+     *
+     * @return the total size of the encodings in bytes
+     */
+    @Benchmark
+    public final long encode() {
+        long bytes = 0;
+        for (final Entity e : entities) {
+            write(e);
+            bytes += writer.size();
+        }
+        return bytes;
+    }
+
+    /**
+     * Decode every entity.
+     *
+     * @param hole
+     *                 consumes the decoded components
+     */
+    @Benchmark
+    public final void decode(final Blackhole hole) {
+        for (int i = 0; i < encoded.size(); i++) {
+            final ComponentReader in = new ComponentReader(
+                    encoded.get(i).duplicate()).base(entities.get(i).id());
+            while (in.hasRemaining()) {
+                hole.consume(codecs.read(in));
+            }
+        }
+    }
+}
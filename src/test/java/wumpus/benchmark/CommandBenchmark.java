@@ -0,0 +1,144 @@
+package wumpus.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wumpus.engine.command.CommandLibrary;
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.service.CommandService;
+
+/**
+ * Command execution by players standing in the tavern, either directly or
+ * submitted to a command service and executed by its tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = CommandBenchmark.WARMUPS, time = 1)
+@Measurement(iterations = CommandBenchmark.MEASUREMENTS, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+
+    /**
+     * Number of warmup iterations.
+     */
+    static final int WARMUPS = 3;
+
+    /**
+     * Number of measured iterations.
+     */
+    static final int MEASUREMENTS = 5;
+
+    /**
+     * Number of rooms in the lair.
+     */
+    private static final int LAIR_SIZE = 20;
+
+    /**
+     * Store implementation under test.
+     */
+    @Param({ "memory", "archetype" })
+    private String type;
+
+    /**
+     * Command to execute, with its arguments separated by spaces.
+     */
+    @Param({ "look", "inventory", "north", "move south", "bogus" })
+    private String command;
+
+    /**
+     * Number of connected players.
+     */
+    @Param({ "1", "1000" })
+    private int players;
+
+    /**
+     * The world.
+     */
+    private EntityStore store;
+
+    /**
+     * The command library under test.
+     */
+    private CommandLibrary library;
+
+    /**
+     * The command service under test.
+     */
+    private CommandService commands;
+
+    /**
+     * The response of the last queued command.
+     */
+    private String response;
+
+    /**
+     * The player IDs.
+     */
+    private long[] ids;
+
+    /**
+     * Command name.
+     */
+    private String name;
+
+    /**
+     * Command arguments.
+     */
+    private String[] args;
+
+    /**
+     * Build the world.
+     */
+    @Setup(Level.Trial)
+    public final void build() {
+        store = Worlds.store(type);
+        ids = Worlds.populate(store, LAIR_SIZE, players);
+        library = new CommandLibrary();
+        commands = new CommandService(store);
+        final String[] words = command.split(" ");
+        name = words[0];
+        args = new String[words.length - 1];
+        System.arraycopy(words, 1, args, 0, args.length);
+    }
+
+    /**
+     * Execute the command as a random player.
+     *
+     * @return the command response
+     */
+    @Benchmark
+    public final String execute() {
+        return library.execute(name,
+                ids[ThreadLocalRandom.current().nextInt(ids.length)], store,
+                args);
+    }
+
+    /**
+     * Submit the command as a random player and tick the command service.
+     *
+     * @return the command response
+     */
+    @Benchmark
+    public final String queued() {
+        commands.submit(new Intent(
+                ids[ThreadLocalRandom.current().nextInt(ids.length)], name,
+                r -> response = r, args));
+        commands.tick();
+        return response;
+    }
+}
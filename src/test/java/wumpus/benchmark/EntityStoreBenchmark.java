@@ -0,0 +1,129 @@
+package wumpus.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Physical;
+
+/**
+ * Single entity operations of the entity stores against stores of varying
+ * size. Lookups by ID should take about as long in a store of a million
+ * entities as in one of a thousand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = EntityStoreBenchmark.WARMUPS, time = 1)
+@Measurement(iterations = EntityStoreBenchmark.MEASUREMENTS, time = 1)
+@Fork(1)
+public class EntityStoreBenchmark {
+
+    /**
+     * Number of warmup iterations.
+     */
+    static final int WARMUPS = 3;
+
+    /**
+     * Number of measured iterations.
+     */
+    static final int MEASUREMENTS = 5;
+
+    /**
+     * Number of locations entities are spread over.
+     */
+    private static final int ROOMS = 100;
+
+    /**
+     * Store implementation under test.
+     */
+    @Param({ "memory", "archetype" })
+    private String type;
+
+    /**
+     * Number of entities in the store.
+     */
+    @Param({ "1000", "100000", "1000000" })
+    private int size;
+
+    /**
+     * The store under test.
+     */
+    private EntityStore store;
+
+    /**
+     * IDs of the stored entities.
+     */
+    private long[] ids;
+
+    /**
+     * Fill the store with described physical entities.
+     */
+    @Setup(Level.Trial)
+    public final void fill() {
+        store = Worlds.store(type);
+        ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            final Entity e = store.create();
+            e.registerComponent(new Descriptive("thing", "a thing"));
+            e.registerComponent(new Physical(i % ROOMS, i % ROOMS));
+            store.commit(e);
+            ids[i] = e.id();
+        }
+    }
+
+    /**
+     * Pick a stored entity ID at random.
+     *
+     * @return a stored entity ID
+     */
+    private long anyId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    /**
+     * Look up an entity by ID.
+     *
+     * @return the entity
+     */
+    @Benchmark
+    public final Object get() {
+        return store.get(anyId());
+    }
+
+    /**
+     * Re-commit an entity which is already stored.
+     *
+     * @return the committed entity
+     */
+    @Benchmark
+    public final Object commit() {
+        return store.commit(store.get(anyId()).get());
+    }
+
+    /**
+     * Create and commit a new entity. The store grows over the course of the
+     * measurement.
+     *
+     * @return the new entity
+     */
+    @Benchmark
+    public final Object create() {
+        return store.commit(store.create());
+    }
+}
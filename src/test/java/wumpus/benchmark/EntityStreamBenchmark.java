@@ -0,0 +1,121 @@
+package wumpus.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Physical;
+
+/**
+ * Whole store queries through entity streams. One entity in ten is a container
+ * of the nine before it, and one in two is physical.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = EntityStreamBenchmark.WARMUPS, time = 1)
+@Measurement(iterations = EntityStreamBenchmark.MEASUREMENTS, time = 1)
+@Fork(1)
+public class EntityStreamBenchmark {
+
+    /**
+     * Number of warmup iterations.
+     */
+    static final int WARMUPS = 3;
+
+    /**
+     * Number of measured iterations.
+     */
+    static final int MEASUREMENTS = 5;
+
+    /**
+     * Size of each container.
+     */
+    private static final int GROUP = 10;
+
+    /**
+     * Store implementation under test.
+     */
+    @Param({ "memory", "archetype" })
+    private String type;
+
+    /**
+     * Number of entities in the store.
+     */
+    @Param({ "1000", "100000" })
+    private int size;
+
+    /**
+     * The store under test.
+     */
+    private EntityStore store;
+
+    /**
+     * Fill the store.
+     */
+    @Setup(Level.Trial)
+    public final void fill() {
+        store = Worlds.store(type);
+        final long[] group = new long[GROUP - 1];
+        for (int i = 0; i < size; i++) {
+            final Entity e = store.create();
+            e.registerComponent(new Descriptive("thing", "a thing"));
+            if (i % 2 == 0) {
+                e.registerComponent(new Physical(0, 0));
+            }
+            if (i % GROUP == GROUP - 1) {
+                e.registerComponent(new Container(group));
+            } else {
+                group[i % GROUP] = e.id();
+            }
+            store.commit(e);
+        }
+    }
+
+    /**
+     * Count the entities with a single component.
+     *
+     * @return the count
+     */
+    @Benchmark
+    public final long component() {
+        return store.stream().component(Physical.class).count();
+    }
+
+    /**
+     * Count the entities with a pair of components.
+     *
+     * @return the count
+     */
+    @Benchmark
+    public final long components() {
+        return store.stream()
+                .components(Set.of(Descriptive.class, Physical.class)).count();
+    }
+
+    /**
+     * Count the distinct contents of every container.
+     *
+     * @return the count
+     */
+    @Benchmark
+    public final long contents() {
+        return store.stream().contents().count();
+    }
+}
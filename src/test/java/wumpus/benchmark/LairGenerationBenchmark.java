@@ -0,0 +1,75 @@
+package wumpus.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.service.LairService;
+
+/**
+ * Generation of a new lair in an empty store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = LairGenerationBenchmark.WARMUPS)
+@Measurement(iterations = LairGenerationBenchmark.MEASUREMENTS)
+@Fork(1)
+public class LairGenerationBenchmark {
+
+    /**
+     * Number of warmup iterations.
+     */
+    static final int WARMUPS = 20;
+
+    /**
+     * Number of measured iterations.
+     */
+    static final int MEASUREMENTS = 50;
+
+    /**
+     * Store implementation under test.
+     */
+    @Param({ "memory", "archetype" })
+    private String type;
+
+    /**
+     * Number of rooms in the lair.
+     */
+    @Param({ "20", "200", "2000" })
+    private int size;
+
+    /**
+     * The lair service under test.
+     */
+    private LairService service;
+
+    /**
+     * Create an empty store so that every tick generates a lair.
+     */
+    @Setup(Level.Invocation)
+    public final void empty() {
+        final EntityStore store = Worlds.store(type);
+        service = new LairService(store, size);
+    }
+
+    /**
+     * Generate a lair.
+     */
+    @Benchmark
+    public final void generate() {
+        service.tick();
+    }
+}
@@ -0,0 +1,99 @@
+package wumpus.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.service.Service;
+
+/**
+ * A single tick of each game service, and of all of them in priority order,
+ * against a populated world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = ServiceTickBenchmark.WARMUPS, time = 1)
+@Measurement(iterations = ServiceTickBenchmark.MEASUREMENTS, time = 1)
+@Fork(1)
+public class ServiceTickBenchmark {
+
+    /**
+     * Number of warmup iterations.
+     */
+    static final int WARMUPS = 3;
+
+    /**
+     * Number of measured iterations.
+     */
+    static final int MEASUREMENTS = 5;
+
+    /**
+     * Store implementation under test.
+     */
+    @Param({ "memory", "archetype" })
+    private String type;
+
+    /**
+     * Simple class name of the service to tick, or "all".
+     */
+    @Param({ "CooldownService", "PlayerService", "WorldService",
+            "LairService", "TransitService", "ExaminingService",
+            "HazardService", "all" })
+    private String service;
+
+    /**
+     * Number of rooms in the lair.
+     */
+    @Param({ "200" })
+    private int lairSize;
+
+    /**
+     * Number of connected players.
+     */
+    @Param({ "1", "100", "1000" })
+    private int players;
+
+    /**
+     * The services to tick.
+     */
+    private List<Service> ticked;
+
+    /**
+     * Build the world and select the services.
+     */
+    @Setup(Level.Trial)
+    public final void build() {
+        final EntityStore store = Worlds.store(type);
+        Worlds.populate(store, lairSize, players);
+        final List<Service> all = Worlds.services(store, lairSize);
+        if ("all".equals(service)) {
+            ticked = all;
+        } else {
+            ticked = List.of(all.stream()
+                    .filter(s -> s.getClass().getSimpleName().equals(service))
+                    .findAny().orElseThrow());
+        }
+    }
+
+    /**
+     * Tick the selected services.
+     */
+    @Benchmark
+    public final void tick() {
+        ticked.forEach(Service::tick);
+    }
+}
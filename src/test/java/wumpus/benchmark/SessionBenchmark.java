@@ -0,0 +1,165 @@
+package wumpus.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.service.CommandService;
+import wumpus.io.SessionManager;
+import wumpus.io.SimulatedIOAdapter;
+
+/**
+ * Round trips of a line through every one of many simulated sessions, with
+ * sessions served by the dispatcher or hosted by a platform or virtual thread
+ * each. Commands are executed by a command service ticking every
+ * millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = SessionBenchmark.WARMUPS, time = 1)
+@Measurement(iterations = SessionBenchmark.MEASUREMENTS, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+
+    /**
+     * Number of warmup iterations.
+     */
+    static final int WARMUPS = 3;
+
+    /**
+     * Number of measured iterations.
+     */
+    static final int MEASUREMENTS = 5;
+
+    /**
+     * Line sent by every session; an invalid command, so that the round trip
+     * rather than the command dominates.
+     */
+    private static final String LINE = "bogus";
+
+    /**
+     * Duration of a tick in milliseconds.
+     */
+    private static final int TICK_IN_MILLIS = 1;
+
+    /**
+     * How sessions are hosted.
+     */
+    @Param({ "dispatcher", "platform", "virtual" })
+    private String mode;
+
+    /**
+     * Number of simulated sessions.
+     */
+    @Param({ "10000" })
+    private int sessions;
+
+    /**
+     * Executor ticking the command service.
+     */
+    private ScheduledExecutorService ticker;
+
+    /**
+     * The session manager under test.
+     */
+    private SessionManager manager;
+
+    /**
+     * The simulated sessions.
+     */
+    private List<SimulatedIOAdapter> adapters;
+
+    /**
+     * Counts down the responses outstanding in the current round.
+     */
+    private AtomicReference<CountDownLatch> responses;
+
+    /**
+     * The factory of session threads for the mode under test.
+     *
+     * @return the factory, or null for the dispatcher
+     */
+    private ThreadFactory threads() {
+        if ("platform".equals(mode)) {
+            return Thread.ofPlatform().factory();
+        } else if ("virtual".equals(mode)) {
+            return Thread.ofVirtual().factory();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Open the sessions and wait for all of them to be welcomed.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Setup(Level.Trial)
+    public final void open() throws InterruptedException {
+        final EntityStore store = new MemoryEntityStore();
+        final CommandService commands = new CommandService(store);
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(commands::tick, 0, TICK_IN_MILLIS,
+                TimeUnit.MILLISECONDS);
+        manager = new SessionManager(store, commands, threads());
+        manager.start();
+        responses = new AtomicReference<>(new CountDownLatch(sessions));
+        adapters = new ArrayList<>(sessions);
+        for (int s = 0; s < sessions; s++) {
+            final SimulatedIOAdapter io = new SimulatedIOAdapter(
+                    o -> responses.get().countDown());
+            adapters.add(io);
+            manager.create(io);
+        }
+        responses.get().await();
+    }
+
+    /**
+     * Close the sessions.
+     */
+    @TearDown(Level.Trial)
+    public final void close() {
+        adapters.forEach(SimulatedIOAdapter::hangUp);
+        manager.stop();
+        ticker.shutdown();
+    }
+
+    /**
+     * Send a line from every session and wait for every response.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Benchmark
+    public final void roundTrip() throws InterruptedException {
+        final CountDownLatch round = new CountDownLatch(sessions);
+        responses.set(round);
+        for (final SimulatedIOAdapter io : adapters) {
+            io.send(LINE);
+        }
+        round.await();
+    }
+}
@@ -0,0 +1,98 @@
+package wumpus.benchmark;
+
+import java.util.List;
+
+import wumpus.engine.entity.ArchetypeEntityStore;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.service.CooldownService;
+import wumpus.engine.service.ExaminingService;
+import wumpus.engine.service.HazardService;
+import wumpus.engine.service.LairService;
+import wumpus.engine.service.PlayerService;
+import wumpus.engine.service.Service;
+import wumpus.engine.service.TransitService;
+import wumpus.engine.service.WorldService;
+
+/**
+ * Builds game worlds for benchmarks.
+ */
+final class Worlds {
+
+    /**
+     * Number of ticks needed for new players to arrive in the tavern.
+     */
+    private static final int SETTLE_TICKS = 3;
+
+    /**
+     * Create an empty store by name.
+     *
+     * @param type
+     *                 "memory" or "archetype"
+     * @return the new store
+     */
+    static EntityStore store(final String type) {
+        if ("archetype".equals(type)) {
+            return new ArchetypeEntityStore();
+        } else if ("memory".equals(type)) {
+            return new MemoryEntityStore();
+        } else {
+            throw new IllegalArgumentException("Unknown store " + type);
+        }
+    }
+
+    /**
+     * Create the services of the game, in the same arrangement as the
+     * application.
+     *
+     * @param store
+     *                     the store of the world
+     * @param lairSize
+     *                     the number of rooms in generated lairs
+     * @return the services, in priority order
+     */
+    static List<Service> services(final EntityStore store,
+            final int lairSize) {
+        return List.of(new CooldownService(store), new PlayerService(store),
+                new WorldService(store), new LairService(store, lairSize),
+                new TransitService(store), new ExaminingService(store),
+                new HazardService(store));
+    }
+
+    /**
+     * Build a world with a lair and a number of players standing in the
+     * tavern. Messages to players are discarded.
+     *
+     * @param store
+     *                     an empty store to build the world in
+     * @param lairSize
+     *                     the number of rooms in the lair
+     * @param players
+     *                     the number of players
+     * @return the IDs of the players
+     */
+    static long[] populate(final EntityStore store, final int lairSize,
+            final int players) {
+        final List<Service> services = services(store, lairSize);
+        final long[] ids = new long[players];
+        for (int i = 0; i < players; i++) {
+            final Entity p = store.create();
+            p.registerComponent(new Listener(m -> { }));
+            store.commit(p);
+            ids[i] = p.id();
+        }
+        for (int t = 0; t < SETTLE_TICKS; t++) {
+            services.forEach(Service::tick);
+        }
+        return ids;
+    }
+
+    /**
+     * Concealed constructor. Do not use.
+     */
+    private Worlds() {
+        throw new UnsupportedOperationException("Do not instantiate.");
+    }
+}
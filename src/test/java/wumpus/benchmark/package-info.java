@@ -0,0 +1,4 @@
+/**
+ * Benchmarks of the game engine, run with JMH.
+ */
+package wumpus.benchmark;
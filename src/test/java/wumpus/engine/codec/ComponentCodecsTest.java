@@ -0,0 +1,303 @@
+package wumpus.engine.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import wumpus.engine.entity.component.Arrow;
+import wumpus.engine.entity.component.ArrowHit;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Cooldown;
+import wumpus.engine.entity.component.Dead;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Examining;
+import wumpus.engine.entity.component.Expired;
+import wumpus.engine.entity.component.Hazard;
+import wumpus.engine.entity.component.Hidden;
+import wumpus.engine.entity.component.Inventory;
+import wumpus.engine.entity.component.Item;
+import wumpus.engine.entity.component.Lair;
+import wumpus.engine.entity.component.Overworld;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.PitTrap;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.entity.component.SuperBat;
+import wumpus.engine.entity.component.Tavern;
+import wumpus.engine.entity.component.Transit;
+import wumpus.engine.entity.component.Void;
+import wumpus.engine.entity.component.Wilderness;
+import wumpus.engine.entity.component.Wumpus;
+import wumpus.engine.entity.component.Zone;
+import wumpus.engine.type.Direction;
+
+/**
+ * Testing the component codecs and their format.
+ */
+public final class ComponentCodecsTest {
+
+    /**
+     * An entity ID as generated by the stores, used as the base ID.
+     */
+    private static final long BASE = 1879306364323818145L;
+
+    /**
+     * Distance between the IDs of entities created close together.
+     */
+    private static final long NEAR = 40_000L;
+
+    /**
+     * Length of a description long enough to need a multi-byte length.
+     */
+    private static final int LONG_TEXT = 1_000;
+
+    /**
+     * Ticks left on the cooldown encoded.
+     */
+    private static final int COOLDOWN = -2;
+
+    /**
+     * Count of the item encoded.
+     */
+    private static final int COUNT = 3;
+
+    /**
+     * Greatest size in bytes of an encoded physical component near its base.
+     */
+    private static final int PHYSICAL_BYTES = 9;
+
+    /**
+     * Least factor by which Java serialization of a room's state is larger
+     * than its encoding.
+     */
+    private static final int SAVING = 10;
+
+    /**
+     * The registry under test.
+     */
+    private final ComponentCodecs codecs = ComponentCodecs.standard();
+
+    /**
+     * One component of every persistent type.
+     *
+     * @return the components
+     */
+    private static List<Component> everyComponent() {
+        return List.of(new Arrow(), new ArrowHit(),
+                new Container(BASE - NEAR, BASE + 2, BASE + NEAR),
+                new Cooldown(COOLDOWN), new Dead(),
+                new Descriptive("a room", "a dark room"),
+                new Examining(BASE + 1), new Expired(), new Hazard(),
+                new Hidden(), new Inventory(), new Item(COUNT),
+                new Lair(BASE + NEAR, BASE - NEAR), new Overworld(),
+                new Physical(BASE + 1, BASE - 1), new PitTrap(),
+                new Player(BASE + 2),
+                new Room(Map.of(Direction.north, BASE + 1, Direction.down,
+                        BASE - 1), BASE + NEAR),
+                new SuperBat(), new Tavern(), new Transit(BASE - 2),
+                new Void(), new Wilderness(), new Wumpus(), new Zone());
+    }
+
+    /**
+     * Encode a component relative to the base ID.
+     *
+     * @param c
+     *              the component
+     * @return the encoding
+     */
+    private ByteBuffer encode(final Component c) {
+        final ComponentWriter out = new ComponentWriter().base(BASE);
+        codecs.write(c, out);
+        return out.toByteBuffer();
+    }
+
+    /**
+     * Decode a component relative to the base ID.
+     *
+     * @param b
+     *              the encoding
+     * @return the component
+     */
+    private Component decode(final ByteBuffer b) {
+        final ComponentReader in = new ComponentReader(b).base(BASE);
+        final Component c = codecs.read(in).get();
+        assertFalse(in.hasRemaining());
+        return c;
+    }
+
+    /**
+     * Verify that every persistent component type has a codec, and that every
+     * component decodes to one of the same type which encodes identically.
+     */
+    @Test
+    public void roundTripsEveryComponent() {
+        for (final Component c : everyComponent()) {
+            assertTrue(codecs.has(c.getClass()));
+            final ByteBuffer encoded = encode(c);
+            final Component decoded = decode(encoded.duplicate());
+            assertEquals(c.getClass(), decoded.getClass());
+            assertEquals(encoded, encode(decoded));
+        }
+    }
+
+    /**
+     * Verify that the state of components survives a round trip.
+     */
+    @Test
+    public void preservesState() {
+        final Room r = (Room) decode(encode(new Room(
+                Map.of(Direction.east, BASE + 1, Direction.up, 1L), -1L)));
+        assertEquals(Map.of(Direction.east, BASE + 1, Direction.up, 1L),
+                new HashMap<>(r.linkedRooms()));
+        assertEquals(-1L, r.zone());
+        final Container c = (Container) decode(
+                encode(new Container(Long.MAX_VALUE, Long.MIN_VALUE, BASE)));
+        assertArrayEquals(new long[] {Long.MIN_VALUE, BASE, Long.MAX_VALUE},
+                c.contents().toArray());
+        final Descriptive d = (Descriptive) decode(
+                encode(new Descriptive("short", "x".repeat(LONG_TEXT))));
+        assertEquals("short", d.shortDescription());
+        assertEquals("x".repeat(LONG_TEXT), d.longDescription());
+        assertEquals(COOLDOWN, ((Cooldown) decode(
+                encode(new Cooldown(COOLDOWN)))).remaining());
+        final Physical p = (Physical) decode(
+                encode(new Physical(BASE + NEAR, BASE)));
+        assertEquals(BASE + NEAR, p.location());
+        assertEquals(BASE, p.zone());
+    }
+
+    /**
+     * Verify that variable-length quantities hold extreme values.
+     */
+    @Test
+    public void encodesExtremes() {
+        final long[] values = {0L, 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE};
+        final ComponentWriter out = new ComponentWriter().base(BASE);
+        for (final long v : values) {
+            out.writeVarLong(v).writeUnsignedVarLong(v).writeId(v);
+        }
+        final ComponentReader in = new ComponentReader(out.toByteBuffer())
+                .base(BASE);
+        for (final long v : values) {
+            assertEquals(v, in.readVarLong());
+            assertEquals(v, in.readUnsignedVarLong());
+            assertEquals(v, in.readId());
+        }
+        assertFalse(in.hasRemaining());
+    }
+
+    /**
+     * Verify that components referring to nearby entities encode in a few
+     * bytes, and far fewer than Java serialization of the same state.
+     *
+     * @throws IOException
+     *                         never, serializing to memory
+     */
+    @Test
+    public void isCompact() throws IOException {
+        assertTrue(encode(new Physical(BASE + NEAR, BASE - NEAR))
+                .remaining() <= PHYSICAL_BYTES);
+        final Map<Direction, Long> links = new HashMap<>(Map.of(
+                Direction.north, BASE + 1, Direction.south, BASE + 2,
+                Direction.east, BASE + NEAR));
+        final ByteArrayOutputStream java = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(java)) {
+            out.writeObject(links);
+            out.writeLong(BASE);
+        }
+        assertTrue(encode(new Room(links, BASE)).remaining()
+                * SAVING < java.size());
+    }
+
+    /**
+     * Verify that a string written again is written as a reference.
+     */
+    @Test
+    public void internsStrings() {
+        final String text = "x".repeat(LONG_TEXT);
+        final ComponentWriter out = new ComponentWriter();
+        codecs.write(new Descriptive(text), out);
+        final int once = out.size();
+        codecs.write(new Descriptive(text), out);
+        assertTrue(out.size() - once < once / SAVING);
+        final ComponentReader in = new ComponentReader(out.toByteBuffer());
+        codecs.read(in);
+        assertEquals(text, ((Descriptive) codecs.read(in).get())
+                .shortDescription());
+    }
+
+    /**
+     * Verify that components of unknown types are skipped.
+     */
+    @Test
+    public void skipsUnknownTypes() {
+        final ComponentWriter out = new ComponentWriter();
+        codecs.write(new Descriptive("x".repeat(LONG_TEXT)), out);
+        codecs.write(new Item(2), out);
+        final ComponentCodecs none = new ComponentCodecs();
+        final ComponentReader in = new ComponentReader(out.toByteBuffer());
+        assertTrue(none.read(in).isEmpty());
+        assertTrue(none.read(in).isEmpty());
+        assertFalse(in.hasRemaining());
+    }
+
+    /**
+     * Verify that an encoding newer than its codec is refused.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void refusesNewerVersions() {
+        final ComponentCodec<Item> v1 = new ComponentCodec<>() {
+            @Override
+            public Class<Item> type() {
+                return Item.class;
+            }
+
+            @Override
+            public void write(final Item i, final ComponentWriter out) {
+                out.writeVarInt(i.count());
+            }
+
+            @Override
+            public Item read(final ComponentReader in, final int version) {
+                return new Item(in.readVarInt());
+            }
+        };
+        final ComponentCodec<Item> v2 = new ComponentCodec<>() {
+            @Override
+            public Class<Item> type() {
+                return Item.class;
+            }
+
+            @Override
+            public int version() {
+                return 2;
+            }
+
+            @Override
+            public void write(final Item i, final ComponentWriter out) {
+                v1.write(i, out);
+            }
+
+            @Override
+            public Item read(final ComponentReader in, final int version) {
+                return v1.read(in, version);
+            }
+        };
+        final ComponentWriter out = new ComponentWriter();
+        new ComponentCodecs().register(v2).write(new Item(1), out);
+        new ComponentCodecs().register(v1)
+                .read(new ComponentReader(out.toByteBuffer()));
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Tests of the compact binary encoding of components.
+ */
+package wumpus.engine.codec;
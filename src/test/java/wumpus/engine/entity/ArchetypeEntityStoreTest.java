@@ -0,0 +1,66 @@
+package wumpus.engine.entity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import wumpus.engine.entity.component.Hidden;
+import wumpus.engine.entity.component.Physical;
+
+/**
+ * Testing the archetype-based entity store.
+ */
+public final class ArchetypeEntityStoreTest extends EntityStoreTest {
+
+    /**
+     * Number of entities moved between archetypes, enough to compact them
+     * several times.
+     */
+    private static final int ENTITIES = 100;
+
+    @Override
+    protected EntityStore newStore() {
+        return new ArchetypeEntityStore();
+    }
+
+    /**
+     * Tests that entities leaving an archetype, and those added after it was
+     * compacted, are each found once by queries and still follow their
+     * changes.
+     */
+    @Test
+    public void compactedArchetypeKeepsItsEntities() {
+        final EntityStore es = newStore();
+        final List<Entity> all = new ArrayList<>();
+        for (int i = 0; i < ENTITIES; i++) {
+            final Entity e = es.create();
+            e.registerComponent(new Physical(i, 0));
+            all.add(e);
+        }
+        for (int i = 0; i < ENTITIES; i += 2) {
+            all.get(i).registerComponent(new Hidden());
+        }
+        for (int i = 0; i < ENTITIES; i++) {
+            final Entity e = es.create();
+            e.registerComponent(new Physical(ENTITIES + i, 0));
+            all.add(e);
+        }
+        all.forEach(e -> e.registerComponent(
+                new Physical(e.component(Physical.class).location(), 1)));
+
+        assertEquals(ENTITIES * 2,
+                es.stream().component(Physical.class)
+                        .filter(p -> p.zone() == 1).count());
+        assertEquals(
+                all.stream().filter(e -> e.hasComponent(Hidden.class))
+                        .map(Entity::id).collect(Collectors.toSet()),
+                es.stream().components(Set.of(Physical.class, Hidden.class))
+                        .map(m -> m.entity().id())
+                        .collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,244 @@
+package wumpus.engine.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Listener;
+
+/**
+ * Testing the feed of changes to a store.
+ */
+public final class ChangeFeedTest {
+
+    /**
+     * Capacity of each segment used by tests, small enough to roll.
+     */
+    private static final int SEGMENT = 4096;
+
+    /**
+     * Number of segments retained by tests.
+     */
+    private static final int RETAINED = 2;
+
+    /**
+     * Number of changes made to roll beyond the retained segments.
+     */
+    private static final int CHANGES = 500;
+
+    /**
+     * Directory of each test's feed.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The directory of the test's feed.
+     *
+     * @return the directory
+     */
+    private Path dir() {
+        return folder.getRoot().toPath();
+    }
+
+    /**
+     * Open the feed in the test's directory.
+     *
+     * @return the feed
+     * @throws IOException
+     *                         if the feed cannot be opened
+     */
+    private ChangeFeed open() throws IOException {
+        return new ChangeFeed(dir(), SEGMENT, RETAINED);
+    }
+
+    /**
+     * Take every change a cursor can reach.
+     *
+     * @param c
+     *              the cursor
+     * @return the changes, in order
+     * @throws IOException
+     *                         if the feed cannot be read
+     */
+    private static List<Change> drain(final ChangeFeed.Cursor c)
+            throws IOException {
+        final List<Change> changes = new ArrayList<>();
+        Optional<Change> next = c.poll();
+        while (next.isPresent()) {
+            changes.add(next.get());
+            next = c.poll();
+        }
+        return changes;
+    }
+
+    /**
+     * Verify that components registered and removed, and entities stored,
+     * are published in order, stamped with their ticks, leaving out
+     * transient components.
+     *
+     * @throws IOException
+     *                         if the feed cannot be opened
+     */
+    @Test
+    public void publishesChanges() throws IOException {
+        try (ChangeFeed feed = open()) {
+            final EntityStore store = new MemoryEntityStore(feed);
+            final Entity e = store.create();
+            e.registerComponent(new Descriptive("a thing"));
+            e.registerComponent(new Listener(m -> { }));
+            feed.endTick();
+            e.deregisterComponent(Descriptive.class);
+            final List<Change> changes = drain(ChangeFeed.tail(dir(), 0));
+            assertEquals(feed.next(), changes.size());
+            for (int i = 0; i < changes.size(); i++) {
+                assertEquals(i, changes.get(i).offset());
+                assertEquals(e.id(), changes.get(i).entity());
+            }
+            assertEquals(Change.Kind.STORED, changes.get(0).kind());
+            assertEquals(Change.Kind.REGISTERED, changes.get(1).kind());
+            assertEquals(Descriptive.class, changes.get(1).type());
+            assertEquals("a thing", ((Descriptive) changes.get(1)
+                    .components().iterator().next()).shortDescription());
+            assertEquals(0, changes.get(1).tick());
+            assertEquals(Change.Kind.REMOVED, changes.get(2).kind());
+            assertEquals(Descriptive.class, changes.get(2).type());
+            assertEquals(1, changes.get(2).tick());
+        }
+    }
+
+    /**
+     * Verify that a cursor starts at its offset and waits at the end of the
+     * feed for the changes which follow.
+     *
+     * @throws IOException
+     *                         if the feed cannot be opened
+     */
+    @Test
+    public void tailsFromOffset() throws IOException {
+        try (ChangeFeed feed = open()) {
+            final EntityStore store = new MemoryEntityStore(feed);
+            final Entity e = store.create();
+            e.registerComponent(new Descriptive("first"));
+            final ChangeFeed.Cursor c = ChangeFeed.tail(dir(), 1);
+            assertEquals(1, c.poll().get().offset());
+            assertTrue(c.poll().isEmpty());
+            e.registerComponent(new Descriptive("second"));
+            final Change next = c.poll().get();
+            assertEquals(2, next.offset());
+            assertEquals("second", ((Descriptive) next.components()
+                    .iterator().next()).shortDescription());
+            assertEquals(next.offset() + 1, c.offset());
+        }
+    }
+
+    /**
+     * Verify that a reopened feed continues after the changes and ticks it
+     * holds.
+     *
+     * @throws IOException
+     *                         if the feed cannot be opened
+     */
+    @Test
+    public void continuesWhenReopened() throws IOException {
+        final long id;
+        try (ChangeFeed feed = open()) {
+            final Entity e = new MemoryEntityStore(feed).create();
+            feed.endTick();
+            e.registerComponent(new Descriptive("before"));
+            id = e.id();
+        }
+        try (ChangeFeed feed = open()) {
+            assertEquals(2, feed.next());
+            assertEquals(2, feed.tick());
+            final EntityStore store = new MemoryEntityStore(feed);
+            store.commit(new Entity(id, new Descriptive("after")));
+            final List<Change> changes = drain(ChangeFeed.tail(dir(), 0));
+            assertEquals(feed.next(), changes.size());
+            assertEquals(2, changes.get(2).offset());
+            assertEquals(2, changes.get(2).tick());
+            assertEquals(Change.Kind.STORED, changes.get(2).kind());
+        }
+    }
+
+    /**
+     * Make enough changes to roll the feed beyond its retained segments,
+     * draining a cursor after each.
+     *
+     * @param feed
+     *                     the feed
+     * @param follower
+     *                     the cursor to drain, or null for none
+     * @throws IOException
+     *                         if the feed cannot be read
+     */
+    private static void roll(final ChangeFeed feed,
+            final ChangeFeed.Cursor follower) throws IOException {
+        final Entity e = new MemoryEntityStore(feed).create();
+        for (int i = 0; i < CHANGES; i++) {
+            e.registerComponent(new Descriptive("change " + i));
+            if (follower != null) {
+                drain(follower);
+            }
+        }
+    }
+
+    /**
+     * Verify that a cursor keeping up follows the feed over its segments.
+     *
+     * @throws IOException
+     *                         if the feed cannot be opened
+     */
+    @Test
+    public void followsSegments() throws IOException {
+        try (ChangeFeed feed = open()) {
+            final ChangeFeed.Cursor follower = ChangeFeed.tail(dir(), 0);
+            roll(feed, follower);
+            assertEquals(CHANGES + 1, follower.offset());
+            final long last = feed.next() - 1;
+            assertEquals(last, ChangeFeed.tail(dir(), last).poll().get()
+                    .offset());
+        }
+    }
+
+    /**
+     * Verify that a cursor falling behind the retained segments fails rather
+     * than skipping changes.
+     *
+     * @throws IOException
+     *                         if the feed cannot be opened
+     */
+    @Test(expected = IllegalStateException.class)
+    public void cursorFallingBehindFails() throws IOException {
+        try (ChangeFeed feed = open()) {
+            new MemoryEntityStore(feed).create();
+            final ChangeFeed.Cursor early = ChangeFeed.tail(dir(), 0);
+            roll(feed, null);
+            drain(early);
+        }
+    }
+
+    /**
+     * Verify that a cursor cannot be opened at an offset no longer retained.
+     *
+     * @throws IOException
+     *                         if the feed cannot be opened
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void droppedOffsetRefused() throws IOException {
+        try (ChangeFeed feed = open()) {
+            roll(feed, null);
+            ChangeFeed.tail(dir(), 0);
+        }
+    }
+}
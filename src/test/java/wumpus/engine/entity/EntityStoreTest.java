@@ -0,0 +1,362 @@
+package wumpus.engine.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import wumpus.Testing;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Expired;
+import wumpus.engine.entity.component.Hidden;
+import wumpus.engine.entity.component.Physical;
+
+/**
+ * Tests common to every entity store implementation.
+ */
+public abstract class EntityStoreTest {
+
+    /**
+     * Number of entities in the store looked up from.
+     */
+    private static final int STORE_SIZE = 10_000;
+
+    /**
+     * Prime stride between successive lookups, so they do not follow
+     * insertion order.
+     */
+    private static final long STRIDE = 7919L;
+
+    /**
+     * Create an empty store of the implementation under test.
+     *
+     * @return a new empty store
+     */
+    protected abstract EntityStore newStore();
+
+    /**
+     * Tests that new store has no entities.
+     */
+    @Test
+    public final void hasNoEntities() {
+        final EntityStore es = newStore();
+        assertEquals(0, es.stream().count());
+    }
+
+    /**
+     * Tests that new store does not have a given entity.
+     */
+    @Test
+    public final void doesNotHaveEntity() {
+        final EntityStore es = newStore();
+        assertTrue(es.get(0L).isEmpty());
+    }
+
+    /**
+     * Tests that new store has created entity.
+     */
+    @Test
+    public final void hasCreatedEntity() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        assertTrue(es.get(e.id()).isPresent());
+    }
+
+    /**
+     * Tests that the entity stream contains a created entity.
+     */
+    @Test
+    public final void hasCreatedEntityInStream() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        assertTrue(es.stream().anyMatch(n -> n.equals(e)));
+    }
+
+    /**
+     * Tests that a newly created entity has no components.
+     */
+    @Test
+    public final void createdEntityHasNoComponents() {
+        final EntityStore es = newStore();
+        assertTrue(es.create().components().isEmpty());
+    }
+
+    /**
+     * Tests that an entity updated with a component still has that component in
+     * the store.
+     */
+    @Test
+    public final void committedEntityHasComponent() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        final Component c = new Component() {
+            @Override
+            public Entity entity() {
+                return null;
+            }
+        };
+        e.registerComponent(c);
+        es.commit(e);
+        final Optional<Entity> n = es.get(e.id());
+        assertTrue(n.isPresent());
+        assertTrue(n.get().hasComponent(c.getClass()));
+    }
+
+    /**
+     * Tests that a committed entity replaces the stored entity with its ID.
+     */
+    @Test
+    public final void commitReplacesEntity() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        final Entity r = new Entity(e.id(), Testing.getMockComponent());
+        es.commit(r);
+        assertTrue(es.get(e.id()).get().hasComponent(
+                Testing.MockComponent.class));
+        assertEquals(1, es.stream().count());
+    }
+
+    /**
+     * Tests that expired entities cannot be retrieved.
+     */
+    @Test
+    public final void expiredEntityIsAbsent() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        e.registerComponent(new Expired());
+        es.commit(e);
+        assertTrue(es.get(e.id()).isEmpty());
+    }
+
+    /**
+     * Tests that every entity of a larger store is found by its ID, in an
+     * order unrelated to that of insertion, and that IDs past them are not.
+     */
+    @Test
+    public final void lookupFindsEveryEntity() {
+        final EntityStore es = newStore();
+        for (long i = 0; i < STORE_SIZE; i++) {
+            es.commit(new Entity(i));
+        }
+        for (int i = 0; i < STORE_SIZE; i++) {
+            final long id = (i * STRIDE) % STORE_SIZE;
+            assertEquals(id, es.get(id).get().id());
+        }
+        assertTrue(es.get(STORE_SIZE).isEmpty());
+    }
+
+    /**
+     * Tests that a component registered on a stored entity is found by a
+     * component stream.
+     */
+    @Test
+    public final void registeredComponentIsStreamed() {
+        final EntityStore es = newStore();
+        es.create();
+        final Entity e = es.create();
+        e.registerComponent(Testing.getMockComponent());
+        assertEquals(1L,
+                es.stream().component(Testing.MockComponent.class).count());
+    }
+
+    /**
+     * Tests that a component deregistered from a stored entity is no longer
+     * found by a component stream.
+     */
+    @Test
+    public final void deregisteredComponentIsNotStreamed() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        e.registerComponent(Testing.getMockComponent());
+        e.deregisterComponent(Testing.MockComponent.class);
+        assertEquals(0L,
+                es.stream().component(Testing.MockComponent.class).count());
+    }
+
+    /**
+     * Tests that components of an entity built outside the store are streamed
+     * once it is committed, and those of the entity it replaced are not.
+     */
+    @Test
+    public final void committedEntityIsReindexed() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        e.registerComponent(new Expired());
+        es.commit(new Entity(e.id(), Testing.getMockComponent()));
+        assertEquals(0L, es.stream().component(Expired.class).count());
+        assertEquals(1L, es.stream()
+                .components(Set.of(Testing.MockComponent.class)).count());
+    }
+
+    /**
+     * Tests that component queries find entities with differing sets of other
+     * components, and still do after entities leave the query.
+     */
+    @Test
+    public final void componentsAcrossMixedEntities() {
+        final EntityStore es = newStore();
+        final Entity a = es.create();
+        final Entity b = es.create();
+        final Entity c = es.create();
+        a.registerComponent(Testing.getMockComponent("a"));
+        b.registerComponent(Testing.getMockComponent("b"));
+        c.registerComponent(Testing.getMockComponent("c"));
+        b.registerComponent(new Hidden());
+        a.deregisterComponent(Testing.MockComponent.class);
+        assertEquals(Set.of(Testing.getMockComponent("b"),
+                Testing.getMockComponent("c")),
+                es.stream().component(Testing.MockComponent.class)
+                        .collect(Collectors.toSet()));
+        assertEquals(1L, es.stream()
+                .components(Set.of(Testing.MockComponent.class, Hidden.class))
+                .count());
+        c.registerComponent(Testing.getMockComponent("d"));
+        assertTrue(es.stream().component(Testing.MockComponent.class)
+                .anyMatch(m -> m.equals(Testing.getMockComponent("d"))));
+    }
+
+    /**
+     * Tests that the occupants of a location follow their physical
+     * components.
+     */
+    @Test
+    public final void locatedFollowsPhysical() {
+        final EntityStore es = newStore();
+        final Entity room = es.create();
+        final Entity other = es.create();
+        final Entity e = es.create();
+        e.registerComponent(new Physical(room.id(), room.id()));
+        assertEquals(Set.of(e), es.located(room.id()).collect(
+                Collectors.toSet()));
+        e.registerComponent(new Physical(other.id(), room.id()));
+        assertEquals(0L, es.located(room.id()).count());
+        assertEquals(1L, es.located(other.id()).count());
+        e.deregisterComponent(Physical.class);
+        assertEquals(0L, es.located(other.id()).count());
+    }
+
+    /**
+     * Tests that a committed entity is located by its physical component.
+     */
+    @Test
+    public final void committedEntityIsLocated() {
+        final EntityStore es = newStore();
+        final Entity room = es.create();
+        final Entity e = new Entity(room.id() + 1,
+                new Physical(room.id(), room.id()));
+        es.commit(e);
+        assertTrue(es.located(room.id()).anyMatch(n -> n.equals(e)));
+    }
+
+    /**
+     * Tests that a committed batch replaces and reindexes each of its
+     * entities, keeping the last of any entities sharing an ID.
+     */
+    @Test
+    public final void commitAllReplacesAndReindexes() {
+        final EntityStore es = newStore();
+        final Entity room = es.create();
+        final Entity a = es.create();
+        final Entity b = es.create();
+        a.registerComponent(new Expired());
+        final Entity fresh = new Entity(b.id() + 1,
+                new Physical(room.id(), room.id()));
+        es.commitAll(List.of(new Entity(a.id(), new Hidden()),
+                new Entity(b.id(), new Expired()),
+                new Entity(b.id(), Testing.getMockComponent()), fresh));
+        assertEquals(0L, es.stream().component(Expired.class).count());
+        assertEquals(Set.of(a.id()), es.stream().component(Hidden.class)
+                .map(h -> h.entity().id()).collect(Collectors.toSet()));
+        assertTrue(es.get(b.id()).get()
+                .hasComponent(Testing.MockComponent.class));
+        assertEquals(Set.of(fresh), es.located(room.id())
+                .collect(Collectors.toSet()));
+        fresh.registerComponent(new Hidden());
+        assertEquals(2L, es.stream().component(Hidden.class).count());
+    }
+
+    /**
+     * Tests that changes staged by a transaction are invisible until it
+     * commits, and then replace the entity at a later version.
+     */
+    @Test
+    public final void transactionIsInvisibleUntilCommit() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        final long version = e.version();
+        final Transaction t = new Transaction(es);
+        t.register(e.id(), new Hidden());
+        assertTrue(t.get(e.id()).get().hasComponent(Hidden.class));
+        assertFalse(es.get(e.id()).get().hasComponent(Hidden.class));
+        assertEquals(0L, es.stream().component(Hidden.class).count());
+        assertTrue(t.commit());
+        final Entity now = es.get(e.id()).get();
+        assertTrue(now.hasComponent(Hidden.class));
+        assertTrue(now.version() > version);
+        assertEquals(1L, es.stream().component(Hidden.class).count());
+        assertFalse(e.hasComponent(Hidden.class));
+    }
+
+    /**
+     * Tests that a transaction does not commit over a change made to an
+     * entity it read.
+     */
+    @Test
+    public final void conflictingChangeFailsCommit() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        final Transaction t = new Transaction(es);
+        t.get(e.id());
+        e.registerComponent(Testing.getMockComponent());
+        t.register(e.id(), new Hidden());
+        assertFalse(t.commit());
+        assertFalse(es.get(e.id()).get().hasComponent(Hidden.class));
+        assertTrue(es.get(e.id()).get()
+                .hasComponent(Testing.MockComponent.class));
+    }
+
+    /**
+     * Tests that changes made through an entity replaced by a transaction
+     * reach its replacement.
+     */
+    @Test
+    public final void replacedEntityForwardsChanges() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        Transaction.run(es, t -> t.register(e.id(), new Hidden()));
+        e.registerComponent(Testing.getMockComponent());
+        assertTrue(es.get(e.id()).get()
+                .hasComponent(Testing.MockComponent.class));
+        assertEquals(1L, es.stream()
+                .components(Set.of(Testing.MockComponent.class, Hidden.class))
+                .count());
+    }
+
+    /**
+     * Tests that running a transaction retries it after a conflict.
+     */
+    @Test
+    public final void transactionIsRetried() {
+        final EntityStore es = newStore();
+        final Entity e = es.create();
+        final AtomicInteger attempts = new AtomicInteger();
+        Transaction.run(es, t -> {
+            t.register(e.id(), new Hidden());
+            if (attempts.incrementAndGet() == 1) {
+                es.get(e.id()).get()
+                        .registerComponent(Testing.getMockComponent());
+            }
+        });
+        assertEquals(2, attempts.get());
+        final Entity now = es.get(e.id()).get();
+        assertTrue(now.hasComponent(Hidden.class));
+        assertTrue(now.hasComponent(Testing.MockComponent.class));
+    }
+}
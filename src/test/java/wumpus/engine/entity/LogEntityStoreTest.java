@@ -0,0 +1,205 @@
+package wumpus.engine.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Expired;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.entity.component.Wumpus;
+import wumpus.engine.type.Direction;
+
+/**
+ * Testing the durable entity store.
+ */
+public final class LogEntityStoreTest {
+
+    /**
+     * Capacity of each log segment used by tests, small enough to roll.
+     */
+    private static final int SEGMENT = 4096;
+
+    /**
+     * Number of segments beyond which tests compact the log.
+     */
+    private static final int COMPACT = 2;
+
+    /**
+     * Number of changes made to grow the log beyond compaction.
+     */
+    private static final int CHANGES = 500;
+
+    /**
+     * Directory of each test's log.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Open the store logged in the test's directory.
+     *
+     * @return the store
+     * @throws IOException
+     *                         if the log cannot be opened
+     */
+    private LogEntityStore open() throws IOException {
+        return new LogEntityStore(folder.getRoot().toPath(), SEGMENT,
+                COMPACT);
+    }
+
+    /**
+     * Count the log segments in the test's directory.
+     *
+     * @return the number of segments
+     * @throws IOException
+     *                         if the directory cannot be listed
+     */
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Verify that committed entities and the changes made to them in place
+     * are restored by reopening the store.
+     *
+     * @throws IOException
+     *                         if the log cannot be opened
+     */
+    @Test
+    public void restoresChanges() throws IOException {
+        final long room;
+        final long wumpus;
+        try (LogEntityStore store = open()) {
+            final Entity r = store.create();
+            r.registerComponent(new Room(Map.of(Direction.north, 1L), 2L));
+            r.registerComponent(new Descriptive("a room"));
+            store.commit(r);
+            final Entity w = new Entity(store.create().id(), new Wumpus());
+            w.registerComponent(new Physical(r.id(), 2L));
+            store.commit(w);
+            r.registerComponent(new Container(w.id()));
+            r.deregisterComponent(Descriptive.class);
+            room = r.id();
+            wumpus = w.id();
+        }
+        try (LogEntityStore store = open()) {
+            final Entity r = store.get(room).get();
+            assertEquals(Long.valueOf(1L), r.component(Room.class)
+                    .linkedRooms().get(Direction.north));
+            assertFalse(r.hasComponent(Descriptive.class));
+            assertArrayEquals(new long[] {wumpus},
+                    r.contents().toArray());
+            assertTrue(r.component(Room.class).entity() == r);
+            final Entity w = store.located(room).findAny().get();
+            assertEquals(wumpus, w.id());
+            assertEquals("a wumpus",
+                    w.component(Descriptive.class).shortDescription());
+            assertEquals(1, store.stream().component(Wumpus.class).count());
+        }
+    }
+
+    /**
+     * Verify that transient components are not restored.
+     *
+     * @throws IOException
+     *                         if the log cannot be opened
+     */
+    @Test
+    public void skipsTransientComponents() throws IOException {
+        final long id;
+        try (LogEntityStore store = open()) {
+            final Entity e = store.create();
+            e.registerComponent(new Listener(m -> {
+            }));
+            e.registerComponent(new Descriptive("a player"));
+            id = e.id();
+        }
+        try (LogEntityStore store = open()) {
+            final Entity e = store.get(id).get();
+            assertFalse(e.hasComponent(Listener.class));
+            assertTrue(e.hasComponent(Descriptive.class));
+        }
+    }
+
+    /**
+     * Verify that the log is compacted once it grows beyond its threshold,
+     * dropping expired entities, without losing any live state.
+     *
+     * @throws IOException
+     *                         if the log cannot be opened
+     */
+    @Test
+    public void compactsLog() throws IOException {
+        final long id;
+        final long expired;
+        try (LogEntityStore store = open()) {
+            final Entity e = store.create();
+            final Entity x = store.create();
+            x.registerComponent(new Expired());
+            for (int i = 0; i < CHANGES; i++) {
+                e.registerComponent(new Descriptive("change " + i));
+            }
+            assertTrue(segments() > COMPACT);
+            store.sync();
+            assertEquals(1, segments());
+            id = e.id();
+            expired = x.id();
+        }
+        try (LogEntityStore store = open()) {
+            assertEquals("change " + (CHANGES - 1), store.get(id).get()
+                    .component(Descriptive.class).shortDescription());
+            assertEquals(1, store.stream().count());
+            assertFalse(store.get(expired).isPresent());
+        }
+    }
+
+    /**
+     * Verify that a record torn by a crash is ignored, while the records
+     * before it are restored.
+     *
+     * @throws IOException
+     *                         if the log cannot be opened
+     */
+    @Test
+    public void ignoresTornRecord() throws IOException {
+        final long id;
+        try (LogEntityStore store = open()) {
+            final Entity e = store.create();
+            e.registerComponent(new Descriptive("intact"));
+            e.registerComponent(new Descriptive("torn"));
+            id = e.id();
+        }
+        final Path segment;
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            segment = files.findFirst().get();
+        }
+        final byte[] bytes = Files.readAllBytes(segment);
+        int last = bytes.length - 1;
+        while (bytes[last] == 0) {
+            last--;
+        }
+        bytes[last] = (byte) ~bytes[last];
+        Files.write(segment, bytes);
+        try (LogEntityStore store = open()) {
+            assertEquals("intact", store.get(id).get()
+                    .component(Descriptive.class).shortDescription());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package wumpus.engine.entity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Physical;
+
+/**
+ * Testing the metered entity store decorator.
+ */
+public final class MeteredEntityStoreTest {
+
+    /**
+     * Counter of entities touched.
+     */
+    private LongAdder touched;
+
+    /**
+     * Counter of commits.
+     */
+    private LongAdder commits;
+
+    /**
+     * Store under test.
+     */
+    private EntityStore store;
+
+    /**
+     * Shared store behind the metered store.
+     */
+    private EntityStore shared;
+
+    /**
+     * Create a metered store with a physical container holding one entity.
+     */
+    @Before
+    public void createStore() {
+        touched = new LongAdder();
+        commits = new LongAdder();
+        shared = new MemoryEntityStore();
+        final Entity a = shared.create();
+        final Entity b = shared.create();
+        b.registerComponent(new Physical(1, 1));
+        b.registerComponent(new Container(a.id()));
+        shared.commit(b);
+        store = new MeteredEntityStore(shared, touched, commits);
+    }
+
+    /**
+     * Verify that lookups count found entities only.
+     */
+    @Test
+    public void countsLookups() {
+        final long id = shared.stream().findAny().get().id();
+        store.get(id);
+        store.get(-1L);
+        assertEquals(1L, touched.sum());
+    }
+
+    /**
+     * Verify that indexed component queries count the entities yielded.
+     */
+    @Test
+    public void countsComponentQueries() {
+        assertEquals(1L, store.stream().component(Physical.class).count());
+        assertEquals(1L, touched.sum());
+    }
+
+    /**
+     * Verify that streamed contents are counted.
+     */
+    @Test
+    public void countsContents() {
+        assertEquals(1L, store.stream().component(Container.class)
+                .map(c -> c.entity()).findAny().get().contentsStream(store)
+                .count());
+        assertEquals(2L, touched.sum());
+    }
+
+    /**
+     * Verify that commits are counted.
+     */
+    @Test
+    public void countsCommits() {
+        store.commit(store.create());
+        assertEquals(1L, commits.sum());
+        assertEquals(0L, touched.sum());
+    }
+}
@@ -0,0 +1,156 @@
+package wumpus.engine.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.type.Direction;
+
+/**
+ * Testing world snapshots.
+ */
+public final class SnapshotTest {
+
+    /**
+     * Tick captured by tests.
+     */
+    private static final long TICK = 7L;
+
+    /**
+     * Zone of the rooms created by tests.
+     */
+    private static final long ZONE = 2L;
+
+    /**
+     * Directory of each test's snapshots.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Create a store holding a described room.
+     *
+     * @return the store
+     */
+    private static EntityStore world() {
+        final EntityStore store = new MemoryEntityStore();
+        final Entity r = store.create();
+        r.registerComponent(new Room(Map.of(Direction.north, 1L), ZONE));
+        r.registerComponent(new Descriptive("a room"));
+        return store;
+    }
+
+    /**
+     * Write a snapshot to the test's directory.
+     *
+     * @param s
+     *              the snapshot
+     * @return the snapshot file
+     * @throws IOException
+     *                         if the snapshot cannot be written
+     */
+    private Path write(final Snapshot s) throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("world.snap");
+        final long bytes = s.write(file, new ComponentWriter());
+        assertEquals(Files.size(file), bytes);
+        assertFalse(Files.exists(file.resolveSibling("world.snap.tmp")));
+        return file;
+    }
+
+    /**
+     * Verify that a snapshot holds the world as captured, however it changes
+     * while the snapshot is written, and that transient components are left
+     * out.
+     *
+     * @throws IOException
+     *                         if the snapshot cannot be written or read
+     */
+    @Test
+    public void capturesPointInTime() throws IOException {
+        final EntityStore store = world();
+        final Entity r = store.stream().findAny().get();
+        r.registerComponent(new Listener(m -> {
+        }));
+        final Snapshot s = Snapshot.capture(store, TICK, null);
+        r.registerComponent(
+                new Room(r.component(Room.class), Direction.south, 1L));
+        r.deregisterComponent(Descriptive.class);
+        store.create();
+        assertEquals(TICK, s.tick());
+        assertEquals(1, s.size());
+        final EntityStore restored = new MemoryEntityStore();
+        assertEquals(1, Snapshot.restore(write(s), restored));
+        final Entity e = restored.get(r.id()).get();
+        assertEquals(Map.of(Direction.north, 1L),
+                Map.copyOf(e.component(Room.class).linkedRooms()));
+        assertEquals(ZONE, e.component(Room.class).zone());
+        assertEquals("a room",
+                e.component(Descriptive.class).shortDescription());
+        assertFalse(e.hasComponent(Listener.class));
+        assertTrue(e.component(Room.class).entity() == e);
+    }
+
+    /**
+     * Verify that a snapshot captured after another holds the entities
+     * changed since, and keeps those which are not.
+     *
+     * @throws IOException
+     *                         if the snapshot cannot be written or read
+     */
+    @Test
+    public void recapturesChangedEntities() throws IOException {
+        final EntityStore store = world();
+        final Entity r = store.stream().findAny().get();
+        final Entity other = store.create();
+        other.registerComponent(new Descriptive("a tavern"));
+        final Snapshot first = Snapshot.capture(store, TICK, null);
+        r.registerComponent(new Descriptive("a dark room"));
+        final Snapshot second = Snapshot.capture(store, TICK + 1, first);
+        final EntityStore restored = new MemoryEntityStore();
+        assertEquals(2, Snapshot.restore(write(second), restored));
+        assertEquals("a dark room", restored.get(r.id()).get()
+                .component(Descriptive.class).shortDescription());
+        assertEquals("a tavern", restored.get(other.id()).get()
+                .component(Descriptive.class).shortDescription());
+    }
+
+    /**
+     * Verify that a damaged snapshot is refused.
+     *
+     * @throws IOException
+     *                         as the snapshot is damaged
+     */
+    @Test(expected = IOException.class)
+    public void refusesDamagedSnapshot() throws IOException {
+        final Path file = write(Snapshot.capture(world(), TICK, null));
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        Snapshot.restore(file, new MemoryEntityStore());
+    }
+
+    /**
+     * Verify that a snapshot is not restored over an existing world.
+     *
+     * @throws IOException
+     *                         if the snapshot cannot be written
+     */
+    @Test(expected = IllegalStateException.class)
+    public void refusesExistingWorld() throws IOException {
+        final EntityStore store = world();
+        Snapshot.restore(write(Snapshot.capture(store, TICK, null)), store);
+    }
+}
@@ -1,5 +1,6 @@
 package wumpus.engine.entity.component;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -17,7 +18,7 @@ public final class ContainerTest {
     @Test
     public void hasNoContents() {
         final Container c = new Container();
-        assertTrue(c.contents().isEmpty());
+        assertTrue(c.isEmpty());
     }
 
     /**
@@ -26,7 +27,7 @@ public final class ContainerTest {
     @Test
     public void hasContents() {
         final Container c = new Container(0L);
-        assertEquals(1, c.contents().size());
+        assertEquals(1, c.size());
     }
 
     /**
@@ -35,9 +36,9 @@ public final class ContainerTest {
     @Test
     public void hasMultipleContents() {
         final Container c = new Container(0L, 1L);
-        assertTrue(c.contents().contains(0L));
-        assertTrue(c.contents().contains(1L));
-        assertEquals(2, c.contents().size());
+        assertTrue(c.contains(0L));
+        assertTrue(c.contains(1L));
+        assertEquals(2, c.size());
     }
 
     /**
@@ -47,9 +48,9 @@ public final class ContainerTest {
     public void copyContents() {
         final Container c1 = new Container(0L);
         final Container c2 = new Container(c1, 1L);
-        assertTrue(c2.contents().contains(0L));
-        assertTrue(c2.contents().contains(1L));
-        assertEquals(2, c2.contents().size());
+        assertTrue(c2.contains(0L));
+        assertTrue(c2.contains(1L));
+        assertEquals(2, c2.size());
     }
 
     /**
@@ -59,8 +60,18 @@ public final class ContainerTest {
     public void copySubsetContents() {
         final Container c1 = new Container(0L, 1L);
         final Container c2 = new Container(c1, (l -> l != 0L));
-        assertFalse(c2.contents().contains(0L));
-        assertTrue(c2.contents().contains(1L));
-        assertEquals(1, c2.contents().size());
+        assertFalse(c2.contains(0L));
+        assertTrue(c2.contains(1L));
+        assertEquals(1, c2.size());
+    }
+
+    /**
+     * Test that adding an entity already held does not duplicate it.
+     */
+    @Test
+    public void copyDoesNotDuplicate() {
+        final Container c1 = new Container(2L, 0L);
+        final Container c2 = new Container(c1, 1L, 2L, 1L);
+        assertArrayEquals(new long[] {0L, 1L, 2L}, c2.contents().toArray());
     }
 }
@@ -0,0 +1,99 @@
+package wumpus.engine.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Testing the latency histogram.
+ */
+public final class LatencyHistogramTest {
+
+    /**
+     * Largest relative error of a recorded value.
+     */
+    private static final double PRECISION = 1.0 / 32;
+
+    /**
+     * Number of values recorded in the percentile test.
+     */
+    private static final int VALUES = 10_000;
+
+    /**
+     * Spacing of the values recorded in the percentile test.
+     */
+    private static final long STEP = 1000L;
+
+    /**
+     * Number of buckets checked for contiguity.
+     */
+    private static final int CHECKED = 1000;
+
+    /**
+     * Median percentile.
+     */
+    private static final double P50 = 50;
+
+    /**
+     * 99th percentile.
+     */
+    private static final double P99 = 99;
+
+    /**
+     * Largest percentile.
+     */
+    private static final double P100 = 100;
+
+    /**
+     * Verify that every bucket holds the values below its highest value and
+     * above the highest value of the previous bucket.
+     */
+    @Test
+    public void bucketsAreContiguous() {
+        long v = 0;
+        for (int b = 0; b < CHECKED; b++) {
+            assertEquals(b, LatencyHistogram.bucket(v));
+            v = LatencyHistogram.highest(b);
+            assertEquals(b, LatencyHistogram.bucket(v));
+            v++;
+        }
+        assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE),
+                LatencyHistogram.bucket(LatencyHistogram
+                        .highest(LatencyHistogram.bucket(Long.MAX_VALUE))));
+    }
+
+    /**
+     * Verify that an empty histogram reports zeroes.
+     */
+    @Test
+    public void emptyIsZero() {
+        final LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0L, h.count());
+        assertEquals(0L, h.percentile(P50));
+        assertEquals(0L, h.max());
+        assertEquals(0.0, h.mean(), 0.0);
+    }
+
+    /**
+     * Verify that percentiles of a uniform range are within the histogram
+     * precision.
+     */
+    @Test
+    public void percentilesWithinPrecision() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= VALUES; i++) {
+            h.record(i * STEP);
+        }
+        final long largest = VALUES * STEP;
+        assertEquals(VALUES, h.count());
+        assertEquals(largest, h.max());
+        assertEquals(largest, h.percentile(P100));
+        final double median = largest * P50 / P100;
+        assertTrue(h.percentile(P50) >= median);
+        assertTrue(h.percentile(P50) <= median * (1 + PRECISION));
+        final double high = largest * P99 / P100;
+        assertTrue(h.percentile(P99) >= high);
+        assertTrue(h.percentile(P99) <= high * (1 + PRECISION));
+    }
+}
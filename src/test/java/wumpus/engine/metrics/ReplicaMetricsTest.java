@@ -0,0 +1,37 @@
+package wumpus.engine.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Testing the metrics of a replica.
+ */
+public final class ReplicaMetricsTest {
+
+    /**
+     * Tick of the last change applied.
+     */
+    private static final long APPLIED = 5;
+
+    /**
+     * Tick reported by the primary.
+     */
+    private static final long PRIMARY = 9;
+
+    /**
+     * Verify that the lag counts the ticks between the primary and the last
+     * change applied, until the replica has caught up.
+     */
+    @Test
+    public void lagCountsTicksBehindPrimary() {
+        final ReplicaMetrics m = new ReplicaMetrics();
+        assertEquals(0, m.getLagTicks());
+        m.applied(APPLIED);
+        m.reported(PRIMARY, false);
+        assertEquals(PRIMARY - APPLIED, m.getLagTicks());
+        m.reported(PRIMARY, true);
+        assertEquals(0, m.getLagTicks());
+        assertEquals(1, m.getChanges());
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Tests of the engine metrics.
+ */
+package wumpus.engine.metrics;
@@ -0,0 +1,84 @@
+package wumpus.engine.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import wumpus.engine.command.CommandLibrary;
+import wumpus.engine.command.Intent;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Listener;
+
+/**
+ * Testing the command service.
+ */
+public final class CommandServiceTest {
+
+    /**
+     * Entity store used for testing.
+     */
+    private EntityStore store;
+
+    /**
+     * Command service under test.
+     */
+    private CommandService commands;
+
+    /**
+     * Responses received, in order.
+     */
+    private List<String> responses;
+
+    /**
+     * Create an empty store and service for each test.
+     */
+    @Before
+    public void initializeService() {
+        store = new MemoryEntityStore();
+        commands = new CommandService(store);
+        responses = new ArrayList<>();
+    }
+
+    /**
+     * Verify that submitted commands wait for the tick, then run in order.
+     */
+    @Test
+    public void executesOnTick() {
+        final Entity player = store.create();
+        player.registerComponent(new Listener(m -> {
+        }));
+        store.commit(player);
+        commands.submit(new Intent(player.id(), "bogus", responses::add));
+        commands.submit(new Intent(player.id(), "quit", responses::add));
+        Assert.assertTrue(responses.isEmpty());
+        Assert.assertTrue(store.get(player.id()).get()
+                .hasComponent(Listener.class));
+        commands.tick();
+        final CommandLibrary library = new CommandLibrary();
+        Assert.assertEquals(List.of(library.execute("bogus", 0, store),
+                library.execute("quit", 0, store)), responses);
+        Assert.assertFalse(store.get(player.id()).get()
+                .hasComponent(Listener.class));
+    }
+
+    /**
+     * Verify that a failing command is answered without stopping the
+     * commands after it.
+     */
+    @Test
+    public void survivesFailure() {
+        final Entity player = store.create();
+        store.commit(player);
+        commands.submit(new Intent(player.id(), "move", responses::add));
+        commands.submit(new Intent(player.id(), "bogus", responses::add));
+        commands.tick();
+        Assert.assertEquals(2, responses.size());
+        Assert.assertEquals(new CommandLibrary().execute("bogus", 0, store),
+                responses.get(1));
+    }
+}
@@ -98,8 +98,8 @@ public final class LairServiceTest {
         final Optional<Entity> e = store.stream().component(Lair.class)
                 .map(c -> c.entity()).findFirst();
         assertEquals(size,
-                e.get().component(Container.class).contents().stream()
-                        .map(l -> store.get(l).get())
+                e.get().component(Container.class).contents()
+                        .mapToObj(l -> store.get(l).get())
                         .filter(n -> n.hasComponent(Room.class)).count());
     }
 
@@ -114,8 +114,8 @@ public final class LairServiceTest {
         final Optional<Entity> e = store.stream().component(Lair.class)
                 .map(c -> c.entity()).findFirst();
         final int roomCount = (int) e.orElseGet(Testing.badEntitySupplier())
-                .component(Container.class).contents().stream()
-                .map(i -> store.get(i)).filter(o -> o.isPresent())
+                .component(Container.class).contents()
+                .mapToObj(i -> store.get(i)).filter(o -> o.isPresent())
                 .map(o -> o.get()).filter(n -> n.hasComponent(Room.class))
                 .count();
         assertEquals(size, roomCount);
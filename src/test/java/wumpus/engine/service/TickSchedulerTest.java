@@ -0,0 +1,241 @@
+package wumpus.engine.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Cooldown;
+import wumpus.engine.entity.component.Examining;
+import wumpus.engine.metrics.MetricsRegistry;
+import wumpus.engine.metrics.ServiceMetrics;
+
+/**
+ * Testing the tick scheduler.
+ */
+public final class TickSchedulerTest {
+
+    /**
+     * Seconds to wait for a concurrently ticking service.
+     */
+    private static final int WAIT = 5;
+
+    /**
+     * A service recording its ticks, with declared component access.
+     */
+    private static final class MockService implements Service {
+
+        /**
+         * Name recorded on tick.
+         */
+        private final String name;
+
+        /**
+         * Execution priority.
+         */
+        private final int priority;
+
+        /**
+         * Declared component access, both read and written.
+         */
+        private final Set<Class<? extends Component>> access;
+
+        /**
+         * Record of ticks.
+         */
+        private final List<String> log;
+
+        /**
+         * Optional action to run on tick.
+         */
+        private final Runnable action;
+
+        /**
+         * Create a mock service.
+         *
+         * @param n
+         *              name recorded on tick
+         * @param p
+         *              execution priority
+         * @param a
+         *              declared component access
+         * @param l
+         *              record of ticks
+         * @param r
+         *              action to run on tick
+         */
+        MockService(final String n, final int p,
+                final Set<Class<? extends Component>> a, final List<String> l,
+                final Runnable r) {
+            name = n;
+            priority = p;
+            access = a;
+            log = l;
+            action = r;
+        }
+
+        @Override
+        public void tick() {
+            action.run();
+            log.add(name);
+        }
+
+        @Override
+        public int priority() {
+            return priority;
+        }
+
+        @Override
+        public Set<Class<? extends Component>> reads() {
+            return access;
+        }
+
+        @Override
+        public Set<Class<? extends Component>> writes() {
+            return access;
+        }
+    }
+
+    /**
+     * Executor for service ticks.
+     */
+    private ExecutorService pool;
+
+    /**
+     * Create a pool for each test.
+     */
+    @Before
+    public void createPool() {
+        pool = Executors.newFixedThreadPool(2);
+    }
+
+    /**
+     * Stop the pool after each test.
+     */
+    @After
+    public void stopPool() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Verify that conflicting services tick in priority order.
+     */
+    @Test
+    public void conflictingServicesInPriorityOrder() {
+        final List<String> log = new CopyOnWriteArrayList<>();
+        final Set<Class<? extends Component>> a = Set.of(Cooldown.class);
+        final TickScheduler ts = new TickScheduler(List.of(
+                new MockService("c", 3, a, log, () -> { }),
+                new MockService("a", 1, a, log, () -> { }),
+                new MockService("b", 2, Set.of(Component.class), log,
+                        () -> { })),
+                1, pool);
+        ts.run();
+        assertEquals(List.of("a", "b", "c"), log);
+        assertEquals(1L, ts.ticks());
+    }
+
+    /**
+     * Verify that services with disjoint access tick concurrently. Each
+     * service waits for the other to start, which only succeeds if both run
+     * at once.
+     */
+    @Test
+    public void disjointServicesConcurrently() {
+        final List<String> log = new CopyOnWriteArrayList<>();
+        final CyclicBarrier both = new CyclicBarrier(2);
+        final Runnable meet = () -> {
+            try {
+                both.await(WAIT, TimeUnit.SECONDS);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        };
+        new TickScheduler(List.of(
+                new MockService("a", 1, Set.of(Cooldown.class), log, meet),
+                new MockService("b", 2, Set.of(Examining.class), log, meet)),
+                1, pool).run();
+        assertEquals(Set.of("a", "b"), Set.copyOf(log));
+    }
+
+    /**
+     * Verify that undeclared access conflicts with everything.
+     */
+    @Test
+    public void undeclaredAccessConflicts() {
+        final Service undeclared = new Service() {
+            @Override
+            public void tick() {
+            }
+
+            @Override
+            public int priority() {
+                return 0;
+            }
+        };
+        final Service cooldown = new MockService("a", 1,
+                Set.of(Cooldown.class), List.of(), () -> { });
+        final Service examining = new MockService("b", 1,
+                Set.of(Examining.class), List.of(), () -> { });
+        assertTrue(TickScheduler.conflicts(undeclared, cooldown));
+        assertFalse(TickScheduler.conflicts(examining, cooldown));
+    }
+
+    /**
+     * Verify that a tick longer than the budget is counted as an overrun.
+     */
+    @Test
+    public void countsOverrun() {
+        final TickScheduler ts = new TickScheduler(
+                List.of(new MockService("a", 1, Set.of(), List.of(), () -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                })), 1, pool);
+        ts.run();
+        assertEquals(1L, ts.overruns());
+    }
+
+    /**
+     * Verify that service and whole tick latencies are recorded and
+     * published.
+     */
+    @Test
+    public void recordsMetrics() {
+        final MBeanServer server = MBeanServerFactory.newMBeanServer();
+        final MetricsRegistry metrics = new MetricsRegistry(server, 1);
+        final TickScheduler ts = new TickScheduler(
+                List.of(new MockService("a", 1, Set.of(), List.of(), () -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                })), 1, pool, metrics);
+        ts.run();
+        ts.run();
+        final ServiceMetrics m = metrics.service("MockService");
+        assertEquals(2L, m.getTicks());
+        assertEquals(2L, m.getOverruns());
+        assertTrue(m.getMaxMicros() >= TimeUnit.MILLISECONDS.toMicros(2));
+        assertEquals(2L, metrics.service(MetricsRegistry.TICK).getTicks());
+        assertEquals(2, MetricsRegistry.query(server).size());
+    }
+}
@@ -0,0 +1,241 @@
+package wumpus.engine.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.ArrowHit;
+import wumpus.engine.entity.component.Component;
+import wumpus.engine.entity.component.Container;
+import wumpus.engine.entity.component.Dead;
+import wumpus.engine.entity.component.Lair;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.entity.component.Overworld;
+import wumpus.engine.entity.component.Physical;
+import wumpus.engine.entity.component.Player;
+import wumpus.engine.entity.component.Room;
+import wumpus.engine.entity.component.Tavern;
+import wumpus.engine.entity.component.Transit;
+import wumpus.engine.entity.component.Void;
+import wumpus.engine.entity.component.Wilderness;
+import wumpus.engine.entity.component.Wumpus;
+
+/**
+ * Testing the zone sharded transit and hazards.
+ */
+public final class ZoneShardServiceTest {
+
+    /**
+     * Number of shards, one for each of the void, the overworld and a lair.
+     */
+    private static final int SHARDS = 3;
+
+    /**
+     * Number of rooms in the lair.
+     */
+    private static final int LAIR_SIZE = 5;
+
+    /**
+     * Seed of the services.
+     */
+    private static final long SEED = 7L;
+
+    /**
+     * Number of players.
+     */
+    private static final int PLAYERS = 10;
+
+    /**
+     * Number of ticks for new players to reach the tavern.
+     */
+    private static final int SETTLE_TICKS = 5;
+
+    /**
+     * Entity store used for testing.
+     */
+    private EntityStore store;
+
+    /**
+     * The sharded service under test.
+     */
+    private ZoneShardService shards;
+
+    /**
+     * The ticks of the world.
+     */
+    private TickScheduler ticks;
+
+    /**
+     * Create a world of a store served by sharded transit and hazards.
+     */
+    @Before
+    public void createWorld() {
+        store = new MemoryEntityStore();
+        shards = new ZoneShardService(store, SHARDS, SEED);
+        ticks = new TickScheduler(List.of(new PlayerService(store),
+                new WorldService(store), new ExaminingService(store),
+                new LairService(store, LAIR_SIZE, SEED), shards,
+                shards.hazards()), 1, Runnable::run);
+    }
+
+    /**
+     * Stop the workers of the shards.
+     */
+    @After
+    public void closeShards() {
+        shards.close();
+    }
+
+    /**
+     * Find the entity of a place.
+     *
+     * @param c
+     *              the component type marking the place
+     * @return the entity
+     */
+    private Entity place(final Class<? extends Component> c) {
+        return store.stream().component(c).findAny().get().entity();
+    }
+
+    /**
+     * Determine if a place contains an entity.
+     *
+     * @param place
+     *                  the entity of the place
+     * @param id
+     *                  the ID of the entity
+     * @return true if the place's container holds the entity
+     */
+    private boolean holds(final Entity place, final long id) {
+        return store.get(place.id()).get().component(Container.class)
+                .contains(id);
+    }
+
+    /**
+     * Add players and tick until they reach the tavern.
+     *
+     * @return the IDs of the players
+     */
+    private long[] populate() {
+        final long[] ids = new long[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            final Entity p = store.create();
+            p.registerComponent(new Listener(m -> { }));
+            store.commit(p);
+            ids[i] = p.id();
+        }
+        for (int t = 0; t < SETTLE_TICKS; t++) {
+            ticks.run();
+        }
+        return ids;
+    }
+
+    /**
+     * Verify that new players are handed off from the shard of the void to
+     * that of the overworld, and leave the contents of the one for the other.
+     */
+    @Test
+    public void playersCrossShards() {
+        final long[] ids = populate();
+        final Entity tavern = place(Tavern.class);
+        for (final long id : ids) {
+            final Physical p = store.get(id).get().component(Physical.class);
+            assertEquals(tavern.id(), p.location());
+            assertTrue(holds(tavern, id));
+            assertTrue(holds(place(Overworld.class), id));
+            assertFalse(holds(place(Void.class), id));
+        }
+    }
+
+    /**
+     * Verify that a player entering a lair moves to the lair's zone.
+     */
+    @Test
+    public void playerEntersLair() {
+        final long id = populate()[0];
+        final Entity lair = place(Lair.class);
+        final long entrance = lair.component(Lair.class).entrance();
+        final Entity player = store.get(id).get();
+        player.registerComponent(new Transit(place(Wilderness.class).id()));
+        store.commit(player);
+        ticks.run();
+        final Entity moved = store.get(id).get();
+        moved.registerComponent(new Transit(entrance));
+        store.commit(moved);
+        ticks.run();
+        final Physical p = store.get(id).get().component(Physical.class);
+        assertEquals(entrance, p.location());
+        assertEquals(lair.id(), p.zone());
+        assertTrue(holds(lair, id));
+        assertFalse(holds(place(Overworld.class), id));
+    }
+
+    /**
+     * Verify that a player walking in on a wumpus is shown the room before
+     * the wumpus kills them, as when hazards are not sharded.
+     */
+    @Test
+    public void roomIsShownBeforeHazardsAct() {
+        final List<Object> heard = new ArrayList<>();
+        final Entity player = store.create();
+        player.registerComponent(new Listener(heard::add));
+        store.commit(player);
+        populate();
+        final Entity wilderness = place(Wilderness.class);
+        final Entity wumpus = store.create();
+        wumpus.registerComponent(new Wumpus());
+        wumpus.registerComponent(new Physical(wilderness.id(),
+                wilderness.component(Room.class).zone()));
+        wumpus.registerComponent(new Transit(wilderness.id()));
+        store.commit(wumpus);
+        ticks.run();
+        heard.clear();
+        final Entity p = store.get(player.id()).get();
+        p.registerComponent(new Transit(wilderness.id()));
+        store.commit(p);
+        ticks.run();
+        assertEquals(2, heard.size());
+        assertTrue(heard.get(0).toString().contains("You are in"));
+        assertTrue(heard.get(1).toString().contains("end to your life"));
+    }
+
+    /**
+     * Verify that an arrow hitting a hazard with no physical place is
+     * resolved, by one shard only.
+     */
+    @Test
+    public void unplacedHazardIsHitOnce() {
+        final List<Object> heard = new ArrayList<>();
+        final Entity player = store.create();
+        player.registerComponent(new Player(0L));
+        player.registerComponent(new Listener(heard::add));
+        store.commit(player);
+        final Entity wumpus = store.create();
+        wumpus.registerComponent(new Wumpus());
+        wumpus.registerComponent(new ArrowHit());
+        store.commit(wumpus);
+        shards.hazards().tick();
+        final Entity hit = store.get(wumpus.id()).get();
+        assertTrue(hit.hasComponent(Dead.class));
+        assertFalse(hit.hasComponent(ArrowHit.class));
+        assertEquals(1, heard.size());
+    }
+
+    /**
+     * Verify that a world cannot have no shards.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoShards() {
+        new ZoneShardService(store, 0, SEED).close();
+    }
+}
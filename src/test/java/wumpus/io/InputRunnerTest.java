@@ -7,10 +7,13 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedList;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
@@ -23,9 +26,9 @@ import org.junit.Test;
 public final class InputRunnerTest {
 
     /**
-     * Milliseconds to wait for queue processing.
+     * Seconds to wait for the runner.
      */
-    private static final int WAIT = 100;
+    private static final int WAIT = 5;
 
     /**
      * Generate an input stream from a string.
@@ -53,7 +56,7 @@ public final class InputRunnerTest {
      */
     @Before
     public void initialize() {
-        tempQueue = new LinkedList<>();
+        tempQueue = new LinkedBlockingQueue<>();
         serv = Executors.newSingleThreadExecutor();
     }
 
@@ -66,7 +69,7 @@ public final class InputRunnerTest {
     }
 
     /**
-     * Validate that a runner with no input can be stopped.
+     * Validate that a runner with no input stops at the end of the stream.
      *
      * @throws IOException
      *                                  if there is a problem reading the stream
@@ -77,14 +80,9 @@ public final class InputRunnerTest {
     public void runsWithNoInput() throws IOException, InterruptedException {
         final InputRunner ir = new InputRunner(streamFromString(""), tempQueue);
         serv.execute(ir);
-        synchronized (ir) {
-            ir.wait();
-        }
-        ir.stop();
-        serv.awaitTermination(1, TimeUnit.SECONDS);
         serv.shutdown();
+        assertTrue(serv.awaitTermination(1, TimeUnit.SECONDS));
         assertFalse(ir.isRunning());
-        assertTrue(serv.isShutdown());
     }
 
     /**
@@ -99,12 +97,8 @@ public final class InputRunnerTest {
     public void queuesNoInput() throws IOException, InterruptedException {
         final InputRunner ir = new InputRunner(streamFromString(""), tempQueue);
         serv.execute(ir);
-        synchronized (ir) {
-            ir.wait();
-        }
-        Thread.sleep(WAIT);
-        ir.stop();
-        serv.awaitTermination(1, TimeUnit.SECONDS);
+        serv.shutdown();
+        assertTrue(serv.awaitTermination(1, TimeUnit.SECONDS));
         assertTrue(tempQueue.isEmpty());
     }
 
@@ -121,12 +115,8 @@ public final class InputRunnerTest {
         final InputRunner ir = new InputRunner(streamFromString("test"),
                 tempQueue);
         serv.execute(ir);
-        synchronized (ir) {
-            ir.wait();
-        }
-        Thread.sleep(WAIT);
-        ir.stop();
-        serv.awaitTermination(1, TimeUnit.SECONDS);
+        serv.shutdown();
+        assertTrue(serv.awaitTermination(1, TimeUnit.SECONDS));
         assertEquals(1, tempQueue.size());
     }
 
@@ -143,12 +133,36 @@ public final class InputRunnerTest {
         final InputRunner ir = new InputRunner(streamFromString("test\ntest"),
                 tempQueue);
         serv.execute(ir);
-        synchronized (ir) {
-            ir.wait();
-        }
-        Thread.sleep(WAIT);
-        ir.stop();
-        serv.awaitTermination(1, TimeUnit.SECONDS);
+        serv.shutdown();
+        assertTrue(serv.awaitTermination(1, TimeUnit.SECONDS));
         assertEquals(2, tempQueue.size());
     }
+
+    /**
+     * Validates that a runner signals each input, and signals again when its
+     * stream ends.
+     *
+     * @throws IOException
+     *                                  if there is a problem with the pipe
+     * @throws InterruptedException
+     *                                  if there is a problem joining the thread
+     */
+    @Test
+    public void signalsInputAndEnd() throws IOException, InterruptedException {
+        final PipedOutputStream source = new PipedOutputStream();
+        final Semaphore signals = new Semaphore(0);
+        final InputRunner ir = new InputRunner(new PipedInputStream(source),
+                tempQueue, signals::release);
+        serv.execute(ir);
+        source.write("test\n".getBytes());
+        source.flush();
+        assertTrue(signals.tryAcquire(WAIT, TimeUnit.SECONDS));
+        assertEquals(1, tempQueue.size());
+        assertTrue(ir.isRunning());
+        source.close();
+        assertTrue(signals.tryAcquire(WAIT, TimeUnit.SECONDS));
+        serv.shutdown();
+        assertTrue(serv.awaitTermination(WAIT, TimeUnit.SECONDS));
+        assertFalse(ir.isRunning());
+    }
 }
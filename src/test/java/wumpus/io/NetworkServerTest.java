@@ -0,0 +1,356 @@
+package wumpus.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the network server over loopback.
+ */
+public final class NetworkServerTest {
+
+    /**
+     * Seconds to wait for the server.
+     */
+    private static final int WAIT = 10;
+
+    /**
+     * Prompt following every output.
+     */
+    private static final String PROMPT = "\n>>> ";
+
+    /**
+     * Number of simultaneous connections in the load test.
+     */
+    private static final int CLIENTS = 1000;
+
+    /**
+     * Number of lines sent by each connection in the load test.
+     */
+    private static final int LINES = 5;
+
+    /**
+     * Most threads the server may add while hosting the load test.
+     */
+    private static final int THREAD_ALLOWANCE = 10;
+
+    /**
+     * Size of each output posted to a client which does not read.
+     */
+    private static final int CHUNK = 64 * 1024;
+
+    /**
+     * Most outputs posted to a client which does not read, far more than the
+     * connection and the server may buffer.
+     */
+    private static final int MAX_CHUNKS = 1000;
+
+    /**
+     * Receive buffer of a client slow to read.
+     */
+    private static final int SMALL_BUFFER = 4096;
+
+    /**
+     * The server under test, echoing every line it receives.
+     */
+    private NetworkServer server;
+
+    /**
+     * Connections accepted by the server.
+     */
+    private BlockingQueue<IOAdapter> accepted;
+
+    /**
+     * Executor running the server.
+     */
+    private ExecutorService serv;
+
+    /**
+     * Client sockets to close after each test.
+     */
+    private List<Socket> clients;
+
+    /**
+     * Start an echoing server on a free loopback port.
+     *
+     * @throws IOException
+     *                         if the server cannot be started
+     */
+    @Before
+    public void startServer() throws IOException {
+        accepted = new LinkedBlockingQueue<>();
+        clients = new ArrayList<>();
+        server = new NetworkServer(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                io -> {
+                    io.onActivity(() -> echo(io));
+                    accepted.add(io);
+                });
+        serv = Executors.newSingleThreadExecutor();
+        serv.execute(server);
+    }
+
+    /**
+     * Stop the server and close the clients.
+     *
+     * @throws IOException
+     *                         if a client cannot be closed
+     * @throws InterruptedException
+     *                                  if interrupted while waiting for the
+     *                                  server to stop
+     */
+    @After
+    public void stopServer() throws IOException, InterruptedException {
+        for (final Socket c : clients) {
+            c.close();
+        }
+        server.close();
+        serv.shutdown();
+        assertTrue(serv.awaitTermination(WAIT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Echo every line an adapter has received.
+     *
+     * @param io
+     *               the adapter
+     */
+    private static void echo(final IOAdapter io) {
+        Optional<String> line = io.poll();
+        while (line.isPresent()) {
+            io.post("echo " + line.get());
+            line = io.poll();
+        }
+    }
+
+    /**
+     * Connect a client to the server.
+     *
+     * @return the connected socket
+     * @throws IOException
+     *                         if the client cannot connect
+     */
+    private Socket connect() throws IOException {
+        final Socket s = new Socket(InetAddress.getLoopbackAddress(),
+                server.port());
+        s.setSoTimeout((int) TimeUnit.SECONDS.toMillis(WAIT));
+        clients.add(s);
+        return s;
+    }
+
+    /**
+     * Send text from a client.
+     *
+     * @param s
+     *              the client
+     * @param text
+     *              the text to send
+     * @throws IOException
+     *                         if the text cannot be sent
+     */
+    private static void send(final Socket s, final String text)
+            throws IOException {
+        final OutputStream out = s.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Read an exact amount of text from a client.
+     *
+     * @param s
+     *                  the client
+     * @param bytes
+     *                  the number of bytes to read
+     * @return the text read
+     * @throws IOException
+     *                         if the text cannot be read in time
+     */
+    private static String receive(final Socket s, final int bytes)
+            throws IOException {
+        final InputStream in = s.getInputStream();
+        final byte[] buf = new byte[bytes];
+        int n = 0;
+        while (n < bytes) {
+            final int r = in.read(buf, n, bytes - n);
+            if (r < 0) {
+                throw new IOException("Connection closed after " + n
+                        + " of " + bytes + " bytes.");
+            }
+            n += r;
+        }
+        return new String(buf, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The output of the echo server for a line.
+     *
+     * @param line
+     *                 the line sent
+     * @return the output expected back
+     */
+    private static String echoed(final String line) {
+        return "echo " + line + PROMPT;
+    }
+
+    /**
+     * Verify that lines are framed, with carriage returns dropped, and
+     * answered.
+     *
+     * @throws IOException
+     *                         if the connection fails
+     */
+    @Test
+    public void echoesLines() throws IOException {
+        final Socket s = connect();
+        send(s, "hello\r\nwor");
+        send(s, "ld\n");
+        final String expected = echoed("hello") + echoed("world");
+        assertEquals(expected, receive(s, expected.length()));
+    }
+
+    /**
+     * Verify that a closed connection closes its adapter and signals.
+     *
+     * @throws IOException
+     *                                  if the connection fails
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void detectsDisconnect() throws IOException, InterruptedException {
+        final Socket s = connect();
+        final IOAdapter io = accepted.poll(WAIT, TimeUnit.SECONDS);
+        final Semaphore signals = new Semaphore(0);
+        io.onActivity(signals::release);
+        assertTrue(io.isOpen());
+        s.close();
+        assertTrue(signals.tryAcquire(WAIT, TimeUnit.SECONDS));
+        assertFalse(io.isOpen());
+    }
+
+    /**
+     * Verify that shutting down an adapter delivers its output and then
+     * closes the connection.
+     *
+     * @throws IOException
+     *                                  if the connection fails
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void shutdownFlushesAndCloses()
+            throws IOException, InterruptedException {
+        final Socket s = connect();
+        final IOAdapter io = accepted.poll(WAIT, TimeUnit.SECONDS);
+        io.post("bye");
+        io.shutdown();
+        final String expected = "bye" + PROMPT;
+        assertEquals(expected, receive(s, expected.length()));
+        assertEquals(-1, s.getInputStream().read());
+        assertFalse(io.isOpen());
+    }
+
+    /**
+     * Verify that output left queued by a slow client is still delivered
+     * after its adapter is shut down.
+     *
+     * @throws IOException
+     *                                  if the connection fails
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void shutdownDrainsQueuedOutput()
+            throws IOException, InterruptedException {
+        final Socket s = new Socket();
+        s.setReceiveBufferSize(SMALL_BUFFER);
+        s.setSoTimeout((int) TimeUnit.SECONDS.toMillis(WAIT));
+        clients.add(s);
+        s.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                server.port()));
+        final IOAdapter io = accepted.poll(WAIT, TimeUnit.SECONDS);
+        final String chunk = "x".repeat(CHUNK);
+        final int chunks = NetworkIOAdapter.MAX_QUEUED / CHUNK / 2;
+        for (int c = 0; c < chunks; c++) {
+            io.post(chunk);
+        }
+        io.shutdown();
+        final String expected = (chunk + PROMPT).repeat(chunks);
+        assertEquals(expected, receive(s, expected.length()));
+        assertEquals(-1, s.getInputStream().read());
+    }
+
+    /**
+     * Verify that a client which stops reading is disconnected once too much
+     * output waits for it.
+     *
+     * @throws IOException
+     *                                  if the connection fails
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void dropsClientNotReading()
+            throws IOException, InterruptedException {
+        connect();
+        final IOAdapter io = accepted.poll(WAIT, TimeUnit.SECONDS);
+        final String chunk = "x".repeat(CHUNK);
+        for (int c = 0; c < MAX_CHUNKS && io.isOpen(); c++) {
+            io.post(chunk);
+        }
+        assertFalse(io.isOpen());
+    }
+
+    /**
+     * Verify that a thousand simultaneous connections are all served, by the
+     * one server thread.
+     *
+     * @throws IOException
+     *                         if a connection fails
+     */
+    @Test
+    public void servesManyConnections() throws IOException {
+        final int threads = Thread.activeCount();
+        final List<Socket> load = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            load.add(connect());
+        }
+        final StringBuilder lines = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int l = 0; l < LINES; l++) {
+            lines.append("line ").append(l).append('\n');
+            expected.append(echoed("line " + l));
+        }
+        for (final Socket s : load) {
+            send(s, lines.toString());
+        }
+        for (final Socket s : load) {
+            assertEquals(expected.toString(),
+                    receive(s, expected.length()));
+        }
+        assertEquals(CLIENTS, accepted.size());
+        assertTrue(Thread.activeCount() - threads < THREAD_ALLOWANCE);
+    }
+}
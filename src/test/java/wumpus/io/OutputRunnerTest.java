@@ -8,10 +8,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -36,9 +36,31 @@ public final class OutputRunnerTest {
      *               the strings to queue
      * @return the queue of the given strings
      */
-    private static Queue<String> queueFromStrings(final String... ss) {
+    private static BlockingQueue<String> queueFromStrings(
+            final String... ss) {
         return Arrays.stream(ss)
-                .collect(Collectors.toCollection(LinkedList::new));
+                .collect(Collectors.toCollection(LinkedBlockingQueue::new));
+    }
+
+    /**
+     * Wait for a runner to start and to empty its queue.
+     *
+     * @param or
+     *               the runner
+     * @param q
+     *               the queue of the runner
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    private static void awaitDrained(final OutputRunner or,
+            final BlockingQueue<String> q) throws InterruptedException {
+        final long deadline = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(1);
+        while ((!or.isRunning() || !q.isEmpty())
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(WAIT);
     }
 
     /**
@@ -78,16 +100,14 @@ public final class OutputRunnerTest {
      */
     @Test
     public void runsWithNoOutput() throws InterruptedException, IOException {
-        final OutputRunner or = new OutputRunner(out, queueFromStrings());
+        final BlockingQueue<String> q = queueFromStrings();
+        final OutputRunner or = new OutputRunner(out, q);
         serv.execute(or);
-        synchronized (or) {
-            or.wait();
-        }
+        awaitDrained(or, q);
         or.stop();
-        serv.awaitTermination(1, TimeUnit.SECONDS);
         serv.shutdown();
+        assertTrue(serv.awaitTermination(1, TimeUnit.SECONDS));
         assertFalse(or.isRunning());
-        assertTrue(serv.isShutdown());
     }
 
     /**
@@ -100,12 +120,10 @@ public final class OutputRunnerTest {
      */
     @Test
     public void printsNoOutput() throws InterruptedException, IOException {
-        final OutputRunner or = new OutputRunner(out, queueFromStrings());
+        final BlockingQueue<String> q = queueFromStrings();
+        final OutputRunner or = new OutputRunner(out, q);
         serv.execute(or);
-        synchronized (or) {
-            or.wait();
-        }
-        Thread.sleep(WAIT);
+        awaitDrained(or, q);
         or.stop();
         serv.awaitTermination(1, TimeUnit.SECONDS);
         assertEquals(0, out.toByteArray().length);
@@ -121,12 +139,10 @@ public final class OutputRunnerTest {
      */
     @Test
     public void printsOutput() throws InterruptedException, IOException {
-        final OutputRunner or = new OutputRunner(out, queueFromStrings("test"));
+        final BlockingQueue<String> q = queueFromStrings("test");
+        final OutputRunner or = new OutputRunner(out, q);
         serv.execute(or);
-        synchronized (or) {
-            or.wait();
-        }
-        Thread.sleep(WAIT);
+        awaitDrained(or, q);
         or.stop();
         serv.awaitTermination(1, TimeUnit.SECONDS);
         String o = new String(out.toByteArray(), Charset.defaultCharset())
@@ -145,13 +161,10 @@ public final class OutputRunnerTest {
     @Test
     public void printsMultipleOutput()
             throws InterruptedException, IOException {
-        final OutputRunner or = new OutputRunner(out,
-                queueFromStrings("test\n", "test2"));
+        final BlockingQueue<String> q = queueFromStrings("test\n", "test2");
+        final OutputRunner or = new OutputRunner(out, q);
         serv.execute(or);
-        synchronized (or) {
-            or.wait();
-        }
-        Thread.sleep(WAIT);
+        awaitDrained(or, q);
         or.stop();
         serv.awaitTermination(1, TimeUnit.SECONDS);
         String[] outs = new String(out.toByteArray(), Charset.defaultCharset())
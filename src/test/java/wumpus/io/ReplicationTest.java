@@ -0,0 +1,376 @@
+package wumpus.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import wumpus.engine.codec.ComponentWriter;
+import wumpus.engine.entity.ChangeFeed;
+import wumpus.engine.entity.Entity;
+import wumpus.engine.entity.EntityBundle;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Descriptive;
+import wumpus.engine.metrics.ReplicaMetrics;
+
+/**
+ * Testing a replica following a primary over a Unix-domain socket.
+ */
+public final class ReplicationTest {
+
+    /**
+     * Longest wait for the replica, in milliseconds.
+     */
+    private static final int TIMEOUT = 10000;
+
+    /**
+     * Longest wait for the replica to let go of a primary gone away, in
+     * milliseconds.
+     */
+    private static final int TAKEOVER = 1000;
+
+    /**
+     * Time a primary may be out of reach before a replica takes over from
+     * it, in milliseconds.
+     */
+    private static final long GRACE = 200;
+
+    /**
+     * A change kind no feed writes.
+     */
+    private static final int NONSENSE = 99;
+
+    /**
+     * Pause while waiting for the replica, in milliseconds.
+     */
+    private static final long PAUSE = 5;
+
+    /**
+     * Directory of the feed and socket of the primary.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The feed of the primary.
+     */
+    private ChangeFeed feed;
+
+    /**
+     * The world of the primary.
+     */
+    private EntityStore primary;
+
+    /**
+     * The server of replicas of the primary.
+     */
+    private ReplicationServer server;
+
+    /**
+     * The world of the replica.
+     */
+    private EntityStore replica;
+
+    /**
+     * The metrics of the replica.
+     */
+    private ReplicaMetrics metrics;
+
+    /**
+     * The link of the replica to the primary.
+     */
+    private ReplicaLink link;
+
+    /**
+     * The thread running the link.
+     */
+    private Thread follower;
+
+    /**
+     * Start the primary serving replicas.
+     *
+     * @throws IOException
+     *                         if the primary cannot start
+     */
+    @Before
+    public void startPrimary() throws IOException {
+        feed = new ChangeFeed(folder.newFolder("feed").toPath());
+        primary = new MemoryEntityStore(feed);
+        server = new ReplicationServer(GatewayProtocol.address("unix:"
+                + folder.getRoot().toPath().resolve("primary.sock")),
+                primary, feed);
+        Thread.ofPlatform().daemon().start(server);
+        replica = new MemoryEntityStore();
+        metrics = new ReplicaMetrics();
+    }
+
+    /**
+     * Stop the replica and the primary.
+     *
+     * @throws IOException
+     *                                  if the primary cannot be closed
+     * @throws InterruptedException
+     *                                  if interrupted while stopping
+     */
+    @After
+    public void stopPrimary() throws IOException, InterruptedException {
+        if (link != null) {
+            link.close();
+            follower.join(TIMEOUT);
+        }
+        server.close();
+        feed.close();
+    }
+
+    /**
+     * Start the replica following the primary.
+     *
+     * @throws IOException
+     *                         if the address of the primary is unknown
+     */
+    private void follow() throws IOException {
+        final SocketAddress address = server.address();
+        link = new ReplicaLink(address, replica, metrics);
+        follower = Thread.ofPlatform().daemon().start(link);
+    }
+
+    /**
+     * Listen as a primary speaking frames the test writes itself.
+     *
+     * @return the listener
+     * @throws IOException
+     *                         if the address cannot be bound
+     */
+    private ServerSocketChannel fake() throws IOException {
+        final ServerSocketChannel l = GatewayProtocol.listen(
+                GatewayProtocol.address("unix:" + folder.getRoot().toPath()
+                        .resolve("fake.sock")));
+        link = new ReplicaLink(l.getLocalAddress(), replica, metrics, GRACE);
+        follower = Thread.ofPlatform().daemon().start(link);
+        return l;
+    }
+
+    /**
+     * Accept the replica, which asks to follow.
+     *
+     * @param l
+     *              the listener
+     * @return the link to the replica
+     * @throws IOException
+     *                         if the link fails
+     */
+    private static SocketChannel accept(final ServerSocketChannel l)
+            throws IOException {
+        final SocketChannel c = l.accept();
+        assertEquals(ReplicationServer.FOLLOW,
+                GatewayProtocol.read(c).readByte());
+        return c;
+    }
+
+    /**
+     * Copy an entity of the primary to the replica.
+     *
+     * @param c
+     *              the link to the replica
+     * @param e
+     *              the entity
+     * @throws IOException
+     *                         if the link fails
+     */
+    private static void copy(final SocketChannel c, final Entity e)
+            throws IOException {
+        final ComponentWriter w = new ComponentWriter()
+                .writeByte(ReplicationServer.WORLD).writeUnsignedVarLong(0);
+        EntityBundle.write(List.of(e), w);
+        GatewayProtocol.write(c, w);
+    }
+
+    /**
+     * Mark the end of the copy of the world.
+     *
+     * @param c
+     *              the link to the replica
+     * @throws IOException
+     *                         if the link fails
+     */
+    private static void copied(final SocketChannel c) throws IOException {
+        GatewayProtocol.write(c, new ComponentWriter()
+                .writeByte(ReplicationServer.COPIED).writeUnsignedVarLong(0));
+    }
+
+    /**
+     * Wait until a condition holds.
+     *
+     * @param done
+     *                 the condition
+     */
+    private static void waitUntil(final BooleanSupplier done) {
+        final long end = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+        while (!done.getAsBoolean() && System.nanoTime() < end) {
+            try {
+                Thread.sleep(PAUSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertTrue(done.getAsBoolean());
+    }
+
+    /**
+     * The short description of an entity of the replica.
+     *
+     * @param id
+     *               the ID of the entity
+     * @return the description, if the entity is described
+     */
+    private Optional<String> described(final long id) {
+        return replica.get(id).filter(e -> e.hasComponent(Descriptive.class))
+                .map(e -> e.component(Descriptive.class).shortDescription());
+    }
+
+    /**
+     * Verify that a replica copies the world of the primary, then makes each
+     * change the primary makes, and catches up with its tick.
+     *
+     * @throws IOException
+     *                         if the replica cannot follow
+     */
+    @Test
+    public void replicaCopiesWorldThenFollows() throws IOException {
+        final Entity old = primary.create();
+        old.registerComponent(new Descriptive("copied"));
+        feed.endTick();
+        follow();
+        waitUntil(() -> described(old.id()).isPresent());
+        assertEquals("copied", described(old.id()).get());
+
+        old.registerComponent(new Descriptive("changed"));
+        final Entity created = primary.create();
+        created.registerComponent(new Descriptive("created"));
+        feed.endTick();
+        waitUntil(() -> described(created.id()).isPresent());
+        assertEquals("changed", described(old.id()).get());
+        assertEquals("created", described(created.id()).get());
+
+        old.deregisterComponent(Descriptive.class);
+        feed.endTick();
+        waitUntil(() -> described(old.id()).isEmpty());
+        waitUntil(() -> metrics.getPrimaryTick() == feed.tick());
+        assertTrue(metrics.isLinked());
+        assertEquals(0, metrics.getLagTicks());
+    }
+
+    /**
+     * Verify that the link of a replica ends promptly once its primary goes
+     * away, leaving the replica with the world of the primary.
+     *
+     * @throws IOException
+     *                                  if the replica cannot follow
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void linkEndsWhenPrimaryGoesAway()
+            throws IOException, InterruptedException {
+        final Entity e = primary.create();
+        e.registerComponent(new Descriptive("kept"));
+        follow();
+        waitUntil(link::copied);
+        server.close();
+        follower.join(TAKEOVER);
+        assertFalse(follower.isAlive());
+        assertFalse(metrics.isLinked());
+        assertEquals("kept", described(e.id()).get());
+    }
+
+    /**
+     * Verify that a replica cannot be kept over a world of its own.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void replicaStartsEmpty() {
+        replica.create();
+        new ReplicaLink(GatewayProtocol.address("unix:none"), replica,
+                metrics);
+    }
+
+    /**
+     * Verify that a replica whose primary goes away part way through copying
+     * its world does not take over, but copies it afresh once the primary is
+     * back.
+     *
+     * @throws IOException
+     *                                  if the replica cannot follow
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void cutCopyIsNotTakenOver()
+            throws IOException, InterruptedException {
+        final Entity e = primary.create();
+        e.registerComponent(new Descriptive("kept"));
+        try (ServerSocketChannel l = fake()) {
+            try (SocketChannel c = accept(l)) {
+                copy(c, e);
+            }
+            Thread.sleep(GRACE * 2);
+            assertTrue(follower.isAlive());
+            assertFalse(link.copied());
+            try (SocketChannel c = accept(l)) {
+                copy(c, e);
+                copied(c);
+            }
+            follower.join(TAKEOVER);
+            assertFalse(follower.isAlive());
+            assertTrue(link.copied());
+            assertEquals("kept", described(e.id()).get());
+        }
+    }
+
+    /**
+     * Verify that a change that makes no sense fails the link rather than
+     * the replica, which takes over once the primary stays out of reach.
+     *
+     * @throws IOException
+     *                                  if the replica cannot follow
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void nonsenseFailsTheLink()
+            throws IOException, InterruptedException {
+        final Entity e = primary.create();
+        e.registerComponent(new Descriptive("kept"));
+        final ServerSocketChannel l = fake();
+        try (SocketChannel c = accept(l)) {
+            l.close();
+            copy(c, e);
+            copied(c);
+            GatewayProtocol.write(c, new ComponentWriter()
+                    .writeByte(ReplicationServer.CHANGE)
+                    .writeUnsignedVarLong(0).writeByte(NONSENSE)
+                    .writeUnsignedVarLong(0));
+            Thread.sleep(GRACE / 2);
+            assertTrue(follower.isAlive());
+        }
+        follower.join(TAKEOVER);
+        assertFalse(follower.isAlive());
+        assertTrue(link.copied());
+        assertEquals("kept", described(e.id()).get());
+    }
+}
@@ -0,0 +1,247 @@
+package wumpus.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wumpus.engine.command.CommandLibrary;
+import wumpus.engine.entity.EntityStore;
+import wumpus.engine.entity.MemoryEntityStore;
+import wumpus.engine.entity.component.Listener;
+import wumpus.engine.service.CommandService;
+
+/**
+ * Tests of session hosting in each of its modes.
+ */
+public final class SessionManagerTest {
+
+    /**
+     * Seconds to wait for a session.
+     */
+    private static final int WAIT = 10;
+
+    /**
+     * Duration of a tick in milliseconds.
+     */
+    private static final int TICK_IN_MILLIS = 1;
+
+    /**
+     * Number of idle sessions alongside the active one.
+     */
+    private static final int IDLE = 100;
+
+    /**
+     * The world.
+     */
+    private EntityStore store;
+
+    /**
+     * The service executing submitted commands.
+     */
+    private CommandService commands;
+
+    /**
+     * Executor ticking the command service.
+     */
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Start ticking the command service of an empty world.
+     */
+    @Before
+    public void startTicking() {
+        store = new MemoryEntityStore();
+        commands = new CommandService(store);
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(commands::tick, 0, TICK_IN_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop ticking, then run one last tick to execute any remaining commands.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting for the
+     *                                  ticker to stop
+     */
+    @After
+    public void stopTicking() throws InterruptedException {
+        ticker.shutdown();
+        assertTrue(ticker.awaitTermination(WAIT, TimeUnit.SECONDS));
+        commands.tick();
+    }
+
+    /**
+     * Play one session to its end: receive the welcome, answer a command,
+     * and release the player once the session hangs up.
+     *
+     * @param threads
+     *                    the factory of session threads, or null for the
+     *                    dispatcher
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    private void play(final ThreadFactory threads)
+            throws InterruptedException {
+        final SessionManager sessions = new SessionManager(store, commands,
+                threads);
+        final BlockingQueue<String> out = new LinkedBlockingQueue<>();
+        final SimulatedIOAdapter io = new SimulatedIOAdapter(out::add);
+        sessions.start();
+        try {
+            sessions.create(io);
+            assertNotNull(out.poll(WAIT, TimeUnit.SECONDS));
+            io.send("bogus");
+            assertEquals(new CommandLibrary().execute("bogus", 0, store),
+                    out.poll(WAIT, TimeUnit.SECONDS));
+            io.hangUp();
+            sessions.awaitFinished();
+            assertFalse(io.isOpen());
+            stopTicking();
+            assertTrue(store.stream().component(Listener.class)
+                    .findAny().isEmpty());
+        } finally {
+            sessions.stop();
+        }
+    }
+
+    /**
+     * Verify a session served by the dispatcher.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void dispatcherHostsSession() throws InterruptedException {
+        play(null);
+    }
+
+    /**
+     * Verify a session hosted by a platform thread of its own.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void platformThreadHostsSession() throws InterruptedException {
+        play(Thread.ofPlatform().factory());
+    }
+
+    /**
+     * Verify a session hosted by a virtual thread of its own.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void virtualThreadHostsSession() throws InterruptedException {
+        play(Thread.ofVirtual().factory());
+    }
+
+    /**
+     * Verify that the dispatcher, rather than the tick executing a command,
+     * posts its response.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     * @throws ExecutionException
+     *                                  if the tick thread cannot be found
+     */
+    @Test
+    public void dispatcherPostsResponsesOffTheTick()
+            throws InterruptedException, ExecutionException {
+        final Thread tick = ticker.submit(Thread::currentThread).get();
+        final SessionManager sessions = new SessionManager(store, commands);
+        final BlockingQueue<Thread> posters = new LinkedBlockingQueue<>();
+        final SimulatedIOAdapter io = new SimulatedIOAdapter(
+                o -> posters.add(Thread.currentThread()));
+        sessions.start();
+        try {
+            sessions.create(io);
+            assertNotNull(posters.poll(WAIT, TimeUnit.SECONDS));
+            io.send("bogus");
+            final Thread poster = posters.poll(WAIT, TimeUnit.SECONDS);
+            assertNotNull(poster);
+            assertNotSame(tick, poster);
+        } finally {
+            sessions.stop();
+        }
+    }
+
+    /**
+     * Verify that quitting ends a session in each mode.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void quitEndsSession() throws InterruptedException {
+        for (final ThreadFactory threads : new ThreadFactory[] {null,
+                Thread.ofVirtual().factory() }) {
+            final SessionManager sessions = new SessionManager(store,
+                    commands, threads);
+            final SimulatedIOAdapter io = new SimulatedIOAdapter(o -> { });
+            sessions.start();
+            try {
+                sessions.create(io);
+                io.send("quit");
+                sessions.awaitFinished();
+                assertFalse(io.isOpen());
+            } finally {
+                sessions.stop();
+            }
+        }
+    }
+
+    /**
+     * Verify that the dispatcher serves only the session with input, leaving
+     * idle sessions unpolled.
+     *
+     * @throws InterruptedException
+     *                                  if interrupted while waiting
+     */
+    @Test
+    public void dispatcherIgnoresIdleSessions() throws InterruptedException {
+        final SessionManager sessions = new SessionManager(store, commands);
+        final BlockingQueue<String> out = new LinkedBlockingQueue<>();
+        final List<SimulatedIOAdapter> idle = new ArrayList<>();
+        sessions.start();
+        try {
+            for (int i = 0; i < IDLE; i++) {
+                final SimulatedIOAdapter io = new SimulatedIOAdapter(
+                        o -> { });
+                idle.add(io);
+                sessions.create(io);
+            }
+            final SimulatedIOAdapter active = new SimulatedIOAdapter(
+                    out::add);
+            sessions.create(active);
+            assertNotNull(out.poll(WAIT, TimeUnit.SECONDS));
+            for (int l = 0; l < IDLE; l++) {
+                active.send("bogus");
+                assertNotNull(out.poll(WAIT, TimeUnit.SECONDS));
+            }
+            for (final SimulatedIOAdapter io : idle) {
+                assertEquals(1, io.polls());
+            }
+        } finally {
+            sessions.stop();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package wumpus.io;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * An IO adapter driven by code rather than a stream or connection, for tests
+ * and benchmarks of session hosting.
+ */
+public final class SimulatedIOAdapter implements IOAdapter {
+
+    /**
+     * Input lines not yet taken.
+     */
+    private final Queue<String> inQueue;
+
+    /**
+     * Receiver of every output.
+     */
+    private final Consumer<String> output;
+
+    /**
+     * Number of times input has been polled.
+     */
+    private final LongAdder polls;
+
+    /**
+     * Set once the adapter is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Called whenever input arrives or the adapter closes.
+     */
+    private volatile Runnable activity;
+
+    /**
+     * Create an open adapter.
+     *
+     * @param o
+     *              receiver of every output, called on the posting thread
+     */
+    public SimulatedIOAdapter(final Consumer<String> o) {
+        inQueue = new ConcurrentLinkedQueue<>();
+        output = o;
+        polls = new LongAdder();
+        activity = () -> { };
+    }
+
+    /**
+     * Simulate a line of input from the player.
+     *
+     * @param line
+     *                 the input
+     */
+    public void send(final String line) {
+        inQueue.add(line);
+        activity.run();
+    }
+
+    /**
+     * Simulate the player disconnecting.
+     */
+    public void hangUp() {
+        closed = true;
+        activity.run();
+    }
+
+    /**
+     * The number of times input has been polled.
+     *
+     * @return the number of polls
+     */
+    public long polls() {
+        return polls.sum();
+    }
+
+    @Override
+    public Optional<String> poll() {
+        polls.increment();
+        return Optional.ofNullable(inQueue.poll());
+    }
+
+    @Override
+    public void post(final String o) {
+        if (!closed) {
+            output.accept(o);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void onActivity(final Runnable signal) {
+        activity = signal;
+    }
+}